@@ -53,6 +53,7 @@ import de.intarsys.tools.locking.ILockSupport;
 import de.intarsys.tools.logging.LogTools;
 import de.intarsys.tools.randomaccess.IRandomAccess;
 import de.intarsys.tools.randomaccess.RandomAccessFile;
+import de.intarsys.tools.randomaccess.RandomAccessMappedFile;
 import de.intarsys.tools.stream.StreamTools;
 import de.intarsys.tools.stream.TempFileOutputStream;
 import de.intarsys.tools.string.StringTools;
@@ -113,6 +114,11 @@ public class FileLocator extends CommonLocator implements ILockSupport,
 
 	private File canonicalFile;
 
+	/**
+	 * flag if random access to a read only file is memory mapped
+	 */
+	private boolean mapped = false;
+
 	final private boolean append;
 
 	public FileLocator(File file) {
@@ -315,6 +321,12 @@ public class FileLocator extends CommonLocator implements ILockSupport,
 			throw new UnsupportedOperationException(
 					"no random access to temp file");
 		}
+		if (super.isReadOnly()) {
+			if (isMapped()) {
+				return new RandomAccessMappedFile(getFile());
+			}
+			return new RandomAccessFile(getFile(), false, true);
+		}
 		return new RandomAccessFile(getFile());
 	}
 
@@ -432,6 +444,17 @@ public class FileLocator extends CommonLocator implements ILockSupport,
 		return getFile().isDirectory();
 	}
 
+	/**
+	 * <code>true</code> if random access to the file is memory mapped. This
+	 * is only effective if the locator is read only.
+	 * 
+	 * @return <code>true</code> if random access to the file is memory
+	 *         mapped.
+	 */
+	public boolean isMapped() {
+		return mapped;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -563,6 +586,16 @@ public class FileLocator extends CommonLocator implements ILockSupport,
 		this.charset = charset;
 	}
 
+	/**
+	 * Request memory mapped random access to the file. This is only effective
+	 * if the locator is read only, see {@link #setReadOnly()}.
+	 * 
+	 * @param mapped
+	 */
+	public void setMapped(boolean mapped) {
+		this.mapped = mapped;
+	}
+
 	/**
 	 * @param synchSynchronous
 	 */
@@ -189,6 +189,15 @@ public class BufferedRandomAccess extends AbstractRandomAccess {
 		return totalOffset;
 	}
 
+	/**
+	 * The {@link IRandomAccess} buffered by this.
+	 * 
+	 * @return The {@link IRandomAccess} buffered by this.
+	 */
+	public IRandomAccess getRandomAccess() {
+		return randomAccess;
+	}
+
 	protected boolean isClosed() {
 		return closed;
 	}
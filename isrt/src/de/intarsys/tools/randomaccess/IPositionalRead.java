@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.tools.randomaccess;
+
+import java.io.IOException;
+
+/**
+ * Read access to data at an absolute position, independent of any current
+ * offset.
+ * <p>
+ * Implementations must support concurrent calls from multiple threads as long
+ * as the data is not modified.
+ */
+public interface IPositionalRead {
+	/**
+	 * The length of the data.
+	 * 
+	 * @return The length of the data.
+	 * @throws IOException
+	 */
+	public long getLength() throws IOException;
+
+	/**
+	 * Read up to <code>numBytes</code> bytes starting at
+	 * <code>position</code> into <code>buffer</code>. The current offset is
+	 * not changed.
+	 * 
+	 * @param position
+	 *            The absolute position in the data.
+	 * @param buffer
+	 *            The buffer to read into.
+	 * @param start
+	 *            The start index in <code>buffer</code>.
+	 * @param numBytes
+	 *            The maximum number of bytes to read.
+	 * @return The number of bytes read or -1 if <code>position</code> is at
+	 *         or beyond the end of data.
+	 * @throws IOException
+	 */
+	public int read(long position, byte[] buffer, int start, int numBytes)
+			throws IOException;
+}
@@ -35,7 +35,8 @@ import java.io.IOException;
  * A wrapper around a byte array to allow random access like API.
  * 
  */
-public class RandomAccessByteArray extends AbstractRandomAccess {
+public class RandomAccessByteArray extends AbstractRandomAccess implements
+		IPositionalRead {
 	/**
 	 * The minimum number of bytes we will resize the byte array buffer
 	 */
@@ -171,6 +172,22 @@ public class RandomAccessByteArray extends AbstractRandomAccess {
 	 * @see de.intarsys.tools.randomaccess.IRandomAccessData#read(byte[], int,
 	 * int)
 	 */
+	public int read(long position, byte[] buffer, int start, int numBytes) {
+		// "length" and "data" may change only with write access
+		int currentLength = length;
+		if (position >= currentLength) {
+			return -1;
+		}
+		int count = (int) Math.min(numBytes, currentLength - position);
+		System.arraycopy(data, (int) position, buffer, start, count);
+		return count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read(byte[], int, int)
+	 */
 	public int read(byte[] buffer, int bufferOffset, int numBytes) {
 		int remaining = (length - offset);
 		if (numBytes > remaining) {
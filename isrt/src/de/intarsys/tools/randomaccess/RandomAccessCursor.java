@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.tools.randomaccess;
+
+import java.io.IOException;
+
+/**
+ * A buffered, read only {@link IRandomAccess} with its own offset on a shared
+ * {@link IPositionalRead}.
+ * <p>
+ * A cursor itself is not thread safe, but any number of cursors can be used
+ * concurrently on the same {@link IPositionalRead}, one for each thread.
+ */
+public class RandomAccessCursor extends AbstractRandomAccess {
+	private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	/**
+	 * The buffer for the source data
+	 */
+	private final byte[] bytes;
+
+	/**
+	 * The position of the buffer's first byte in the source data
+	 */
+	private long bytesOffset = 0;
+
+	/**
+	 * The number of valid bytes in the buffer
+	 */
+	private int count = 0;
+
+	/**
+	 * The current offset in the source data
+	 */
+	private long offset = 0;
+
+	/**
+	 * The shared data
+	 */
+	private final IPositionalRead source;
+
+	public RandomAccessCursor(IPositionalRead source) {
+		this(source, DEFAULT_BUFFER_SIZE);
+	}
+
+	public RandomAccessCursor(IPositionalRead source, int bufferSize) {
+		super();
+		this.source = source;
+		this.bytes = new byte[bufferSize];
+	}
+
+	protected int basicRead(byte[] buffer, int start, int numBytes)
+			throws IOException {
+		int index = (int) (offset - bytesOffset);
+		if ((offset < bytesOffset) || (index >= count)) {
+			if (numBytes >= bytes.length) {
+				// large read, bypass the buffer
+				int read = source.read(offset, buffer, start, numBytes);
+				if (read > 0) {
+					offset += read;
+				}
+				return read;
+			}
+			if (!fill()) {
+				return -1;
+			}
+			index = 0;
+		}
+		int available = Math.min(count - index, numBytes);
+		System.arraycopy(bytes, index, buffer, start, available);
+		offset += available;
+		return available;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#close()
+	 */
+	public void close() throws IOException {
+		// the source is shared and closed by its owner
+		count = 0;
+	}
+
+	/**
+	 * Fill the buffer with the data starting at the current offset.
+	 * 
+	 * @return <code>false</code> if no more data is available.
+	 * @throws IOException
+	 */
+	protected boolean fill() throws IOException {
+		int read = source.read(offset, bytes, 0, bytes.length);
+		if (read <= 0) {
+			count = 0;
+			return false;
+		}
+		bytesOffset = offset;
+		count = read;
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#flush()
+	 */
+	public void flush() throws IOException {
+		// read only
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#getLength()
+	 */
+	public long getLength() throws IOException {
+		return source.getLength();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#getOffset()
+	 */
+	public long getOffset() throws IOException {
+		return offset;
+	}
+
+	public IPositionalRead getSource() {
+		return source;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#isReadOnly()
+	 */
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read()
+	 */
+	public int read() throws IOException {
+		int index = (int) (offset - bytesOffset);
+		if ((offset < bytesOffset) || (index >= count)) {
+			if (!fill()) {
+				return -1;
+			}
+			index = 0;
+		}
+		offset++;
+		return bytes[index] & 0xff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read(byte[])
+	 */
+	public int read(byte[] buffer) throws IOException {
+		return read(buffer, 0, buffer.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read(byte[], int, int)
+	 */
+	public int read(byte[] buffer, int start, int numBytes) throws IOException {
+		if (numBytes == 0) {
+			return 0;
+		}
+		int totalByteCount = 0;
+		while (totalByteCount < numBytes) {
+			int byteCount = basicRead(buffer, start + totalByteCount, numBytes
+					- totalByteCount);
+			if (byteCount <= 0) {
+				break;
+			}
+			totalByteCount += byteCount;
+		}
+		if (totalByteCount == 0) {
+			return -1;
+		}
+		return totalByteCount;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#seek(long)
+	 */
+	public void seek(long pOffset) throws IOException {
+		if (pOffset < 0) {
+			throw new IOException("offset less than 0"); //$NON-NLS-1$
+		}
+		this.offset = pOffset;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#seekBy(long)
+	 */
+	public void seekBy(long delta) throws IOException {
+		seek(offset + delta);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#setLength(long)
+	 */
+	public void setLength(long newLength) throws IOException {
+		throw new IOException("read only"); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#write(byte[])
+	 */
+	public void write(byte[] buffer) throws IOException {
+		throw new IOException("read only"); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#write(byte[], int, int)
+	 */
+	public void write(byte[] buffer, int start, int numBytes)
+			throws IOException {
+		throw new IOException("read only"); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#write(int)
+	 */
+	public void write(int b) throws IOException {
+		throw new IOException("read only"); //$NON-NLS-1$
+	}
+}
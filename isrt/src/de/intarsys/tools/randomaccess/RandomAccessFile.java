@@ -32,12 +32,17 @@ package de.intarsys.tools.randomaccess;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.logging.Logger;
 
 /**
  * Implements random access to a file.
  */
-public class RandomAccessFile extends AbstractRandomAccess {
+public class RandomAccessFile extends AbstractRandomAccess implements
+		IPositionalRead {
 
 	/** The logger to be used in this package */
 	private static Logger Log = PACKAGE.Log;
@@ -54,6 +59,23 @@ public class RandomAccessFile extends AbstractRandomAccess {
 
 	private File file;
 
+	/**
+	 * The channel for positional reads. This is separate from
+	 * {@link #fileAccess}, as a {@link FileChannel} is closed when a thread
+	 * reading from it is interrupted.
+	 */
+	private FileChannel readChannel;
+
+	/**
+	 * The lock for {@link #readChannel} and {@link #closed}
+	 */
+	private final Object readLock = new Object();
+
+	/**
+	 * Flag if this has been closed
+	 */
+	private boolean closed = false;
+
 	/**
 	 * @param file
 	 *            to open for random access
@@ -73,7 +95,24 @@ public class RandomAccessFile extends AbstractRandomAccess {
 	 *             process
 	 */
 	public RandomAccessFile(File file, boolean create) throws IOException {
+		this(file, create, false);
+	}
+
+	/**
+	 * @param file
+	 *            to open for random access
+	 * @param create
+	 *            flag if the file should be created if it doesn't exist
+	 * @param readOnly
+	 *            flag if the file should be opened read only
+	 * @throws FileNotFoundException
+	 *             if file was not found or the file is locked by a different
+	 *             process
+	 */
+	public RandomAccessFile(File file, boolean create, boolean readOnly)
+			throws IOException {
 		this.file = file;
+		this.readOnly = readOnly;
 		if (create && !file.exists()) {
 			File dir = file.getParentFile();
 			if ((dir != null) && !dir.exists()) {
@@ -85,7 +124,7 @@ public class RandomAccessFile extends AbstractRandomAccess {
 			throw new FileNotFoundException(
 					"file does not exist or can't be created");
 		}
-		if (file.canWrite()) {
+		if (file.canWrite() && !readOnly) {
 			try {
 				fileAccess = new java.io.RandomAccessFile(file, "rw");
 				return;
@@ -104,6 +143,13 @@ public class RandomAccessFile extends AbstractRandomAccess {
 	 * @see de.intarsys.tools.randomaccess.IRandomAccessData#close()
 	 */
 	public void close() throws IOException {
+		synchronized (readLock) {
+			closed = true;
+			if (readChannel != null) {
+				readChannel.close();
+				readChannel = null;
+			}
+		}
 		if (fileAccess != null) {
 			fileAccess.close();
 		}
@@ -136,6 +182,25 @@ public class RandomAccessFile extends AbstractRandomAccess {
 		return fileAccess.getFilePointer();
 	}
 
+	/**
+	 * The channel for positional reads, opened on demand.
+	 * 
+	 * @return The channel for positional reads.
+	 * @throws IOException
+	 */
+	protected FileChannel getReadChannel() throws IOException {
+		synchronized (readLock) {
+			if (closed) {
+				throw new ClosedChannelException();
+			}
+			if ((readChannel == null) || !readChannel.isOpen()) {
+				readChannel = new java.io.RandomAccessFile(file, "r")
+						.getChannel();
+			}
+			return readChannel;
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -169,6 +234,32 @@ public class RandomAccessFile extends AbstractRandomAccess {
 	 * @see de.intarsys.tools.randomaccess.IRandomAccessData#read(byte[], int,
 	 *      int)
 	 */
+	public int read(long position, byte[] buffer, int start, int numBytes)
+			throws IOException {
+		// the channel supports concurrent positional reads and leaves the
+		// file pointer untouched
+		while (true) {
+			FileChannel channel = getReadChannel();
+			try {
+				return channel.read(ByteBuffer.wrap(buffer, start, numBytes),
+						position);
+			} catch (ClosedByInterruptException e) {
+				// this thread was interrupted
+				throw e;
+			} catch (ClosedChannelException e) {
+				// closed by another reader being interrupted, reopen
+				if (Thread.currentThread().isInterrupted()) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read(byte[], int, int)
+	 */
 	public int read(byte[] buffer, int start, int numBytes) throws IOException {
 		return fileAccess.read(buffer, start, numBytes);
 	}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.tools.randomaccess;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A read only {@link IRandomAccess} on a sequential {@link InputStream}.
+ * <p>
+ * Only a window of the data is kept in memory. The window always contains at
+ * least <code>history</code> bytes before the current offset, so that a
+ * parser may look ahead and step back a limited distance. Seeking before
+ * the window is an error, seeking forward skips the data in between.
+ * <p>
+ * The length of the data is not known until the end of the stream was
+ * reached, {@link #getLength()} returns -1 until then.
+ */
+public class RandomAccessInputStream extends AbstractRandomAccess {
+	private static final int DEFAULT_HISTORY = 8192;
+
+	/**
+	 * The window on the source data
+	 */
+	private final byte[] bytes;
+
+	/**
+	 * The position of the window's first byte in the source data
+	 */
+	private long bytesOffset = 0;
+
+	/**
+	 * The number of valid bytes in the window
+	 */
+	private int count = 0;
+
+	/**
+	 * Flag if the end of the source was reached
+	 */
+	private boolean eof = false;
+
+	/**
+	 * The number of bytes to keep before the current offset
+	 */
+	private final int history;
+
+	/**
+	 * The current index in the window
+	 */
+	private int index = 0;
+
+	/**
+	 * The sequential data
+	 */
+	private final InputStream source;
+
+	public RandomAccessInputStream(InputStream source) {
+		this(source, DEFAULT_HISTORY);
+	}
+
+	public RandomAccessInputStream(InputStream source, int history) {
+		super();
+		this.source = source;
+		this.history = history;
+		this.bytes = new byte[history * 2];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#close()
+	 */
+	public void close() throws IOException {
+		count = 0;
+		index = 0;
+		eof = true;
+		source.close();
+	}
+
+	/**
+	 * Read more data from the source, discarding all but
+	 * <code>history</code> bytes of the window if it is full.
+	 * 
+	 * @return <code>false</code> if no more data is available.
+	 * @throws IOException
+	 */
+	protected boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+		if (count == bytes.length) {
+			int shift = count - history;
+			System.arraycopy(bytes, shift, bytes, 0, history);
+			bytesOffset += shift;
+			count -= shift;
+			index -= shift;
+		}
+		int read = source.read(bytes, count, bytes.length - count);
+		if (read == -1) {
+			eof = true;
+			return false;
+		}
+		count += read;
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#flush()
+	 */
+	public void flush() throws IOException {
+		// read only
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#getLength()
+	 */
+	public long getLength() throws IOException {
+		if (eof) {
+			return bytesOffset + count;
+		}
+		return -1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#getOffset()
+	 */
+	public long getOffset() throws IOException {
+		return bytesOffset + index;
+	}
+
+	public InputStream getSource() {
+		return source;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#isReadOnly()
+	 */
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read()
+	 */
+	public int read() throws IOException {
+		if (index >= count && !fill()) {
+			return -1;
+		}
+		return bytes[index++] & 0xff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read(byte[])
+	 */
+	public int read(byte[] buffer) throws IOException {
+		return read(buffer, 0, buffer.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read(byte[], int, int)
+	 */
+	public int read(byte[] buffer, int start, int numBytes) throws IOException {
+		if (numBytes == 0) {
+			return 0;
+		}
+		int totalByteCount = 0;
+		while (totalByteCount < numBytes) {
+			if (index >= count && !fill()) {
+				break;
+			}
+			int available = Math.min(count - index, numBytes - totalByteCount);
+			System.arraycopy(bytes, index, buffer, start + totalByteCount,
+					available);
+			index += available;
+			totalByteCount += available;
+		}
+		if (totalByteCount == 0) {
+			return -1;
+		}
+		return totalByteCount;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#seek(long)
+	 */
+	public void seek(long pOffset) throws IOException {
+		if (pOffset < 0) {
+			throw new IOException("offset less than 0"); //$NON-NLS-1$
+		}
+		if (pOffset < bytesOffset) {
+			throw new IOException("offset no longer available"); //$NON-NLS-1$
+		}
+		while (pOffset > bytesOffset + count) {
+			index = count;
+			if (!fill()) {
+				// beyond end of data
+				return;
+			}
+		}
+		index = (int) (pOffset - bytesOffset);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#seekBy(long)
+	 */
+	public void seekBy(long delta) throws IOException {
+		seek(getOffset() + delta);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#setLength(long)
+	 */
+	public void setLength(long newLength) throws IOException {
+		throw new IOException("read only"); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#write(byte[])
+	 */
+	public void write(byte[] buffer) throws IOException {
+		throw new IOException("read only"); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#write(byte[], int, int)
+	 */
+	public void write(byte[] buffer, int start, int numBytes)
+			throws IOException {
+		throw new IOException("read only"); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#write(int)
+	 */
+	public void write(int b) throws IOException {
+		throw new IOException("read only"); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.tools.randomaccess;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Implements read only random access to a file mapped into memory.
+ * <p>
+ * The file is mapped in chunks so that files larger than 2 GB can be
+ * accessed. Reading does not need a system call and no buffering is needed.
+ * <p>
+ * The mapping is released by the garbage collector only, the file may stay
+ * locked on some platforms until then.
+ */
+public class RandomAccessMappedFile extends AbstractRandomAccess implements
+		IPositionalRead {
+
+	/**
+	 * The default number of bytes mapped in one chunk (1 GB)
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+	/**
+	 * The mapped chunks of the file
+	 */
+	private ByteBuffer[] chunks;
+
+	/**
+	 * The number of bytes in each chunk but the last
+	 */
+	final private int chunkSize;
+
+	/**
+	 * The file mapped
+	 */
+	final private File file;
+
+	/**
+	 * The length of the file
+	 */
+	final private long length;
+
+	/**
+	 * The current offset
+	 */
+	private long offset = 0;
+
+	/**
+	 * @param file
+	 *            The file to map
+	 * @throws FileNotFoundException
+	 *             if file was not found
+	 */
+	public RandomAccessMappedFile(File file) throws IOException {
+		this(file, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param file
+	 *            The file to map
+	 * @param chunkSize
+	 *            The number of bytes mapped in one chunk
+	 * @throws FileNotFoundException
+	 *             if file was not found
+	 */
+	public RandomAccessMappedFile(File file, int chunkSize) throws IOException {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunk size must be positive"); //$NON-NLS-1$
+		}
+		if (!file.exists()) {
+			throw new FileNotFoundException("file does not exist"); //$NON-NLS-1$
+		}
+		this.file = file;
+		this.chunkSize = chunkSize;
+		java.io.RandomAccessFile fileAccess = new java.io.RandomAccessFile(
+				file, "r"); //$NON-NLS-1$
+		try {
+			FileChannel channel = fileAccess.getChannel();
+			length = channel.size();
+			int count = (int) ((length + chunkSize - 1) / chunkSize);
+			chunks = new ByteBuffer[count];
+			for (int i = 0; i < count; i++) {
+				long position = (long) i * chunkSize;
+				long size = Math.min(chunkSize, length - position);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						position, size);
+			}
+		} finally {
+			// the mapping stays valid after the channel is closed
+			fileAccess.close();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#close()
+	 */
+	public void close() throws IOException {
+		chunks = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#flush()
+	 */
+	public void flush() throws IOException {
+		// read only
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#getLength()
+	 */
+	public long getLength() throws IOException {
+		return length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#getOffset()
+	 */
+	public long getOffset() throws IOException {
+		return offset;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#isReadOnly()
+	 */
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read()
+	 */
+	public int read() throws IOException {
+		ByteBuffer[] tempChunks = chunks;
+		if (tempChunks == null) {
+			throw new IOException("random access closed"); //$NON-NLS-1$
+		}
+		if (offset >= length) {
+			return -1;
+		}
+		int b = tempChunks[(int) (offset / chunkSize)]
+				.get((int) (offset % chunkSize)) & 0xff;
+		offset++;
+		return b;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read(byte[])
+	 */
+	public int read(byte[] buffer) throws IOException {
+		return read(buffer, 0, buffer.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read(byte[], int, int)
+	 */
+	public int read(byte[] buffer, int start, int numBytes) throws IOException {
+		int count = read(offset, buffer, start, numBytes);
+		if (count > 0) {
+			offset += count;
+		}
+		return count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IPositionalRead#read(long, byte[],
+	 * int, int)
+	 */
+	public int read(long position, byte[] buffer, int start, int numBytes)
+			throws IOException {
+		ByteBuffer[] tempChunks = chunks;
+		if (tempChunks == null) {
+			throw new IOException("random access closed"); //$NON-NLS-1$
+		}
+		if (numBytes == 0) {
+			return 0;
+		}
+		if (position >= length) {
+			return -1;
+		}
+		int total = (int) Math.min(numBytes, length - position);
+		int done = 0;
+		while (done < total) {
+			long current = position + done;
+			int index = (int) (current / chunkSize);
+			int chunkOffset = (int) (current % chunkSize);
+			// a duplicate has its own position and may be used concurrently
+			ByteBuffer chunk = tempChunks[index].duplicate();
+			int count = Math.min(total - done, chunk.limit() - chunkOffset);
+			chunk.position(chunkOffset);
+			chunk.get(buffer, start + done, count);
+			done += count;
+		}
+		return total;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#seek(long)
+	 */
+	public void seek(long pOffset) throws IOException {
+		if (pOffset < 0) {
+			throw new IOException("offset less than 0"); //$NON-NLS-1$
+		}
+		this.offset = pOffset;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#seekBy(long)
+	 */
+	public void seekBy(long delta) throws IOException {
+		seek(offset + delta);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#setLength(long)
+	 */
+	public void setLength(long newLength) throws IOException {
+		throw new IOException("read only"); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#write(byte[])
+	 */
+	public void write(byte[] buffer) throws IOException {
+		throw new IOException("read only"); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#write(byte[], int, int)
+	 */
+	public void write(byte[] buffer, int start, int numBytes)
+			throws IOException {
+		throw new IOException("read only"); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#write(int)
+	 */
+	public void write(int b) throws IOException {
+		throw new IOException("read only"); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.tools.randomaccess;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A write only {@link IRandomAccess} on a sequential {@link OutputStream}.
+ * <p>
+ * The data can only be appended, the offset is the number of bytes written
+ * so far. Seeking to the current offset or to the end is allowed, seeking
+ * forward fills the gap with zero bytes and seeking backward is an error.
+ * <p>
+ * This is useful to write data with a component expecting a
+ * {@link IRandomAccess}, for example to a network connection or a pipe,
+ * without a temporary file.
+ */
+public class RandomAccessOutputStream extends AbstractRandomAccess {
+	/**
+	 * The number of bytes written
+	 */
+	private long offset = 0;
+
+	/**
+	 * The sequential target
+	 */
+	private final OutputStream target;
+
+	public RandomAccessOutputStream(OutputStream target) {
+		super();
+		this.target = target;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#close()
+	 */
+	public void close() throws IOException {
+		target.close();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#flush()
+	 */
+	public void flush() throws IOException {
+		target.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#getLength()
+	 */
+	public long getLength() throws IOException {
+		return offset;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#getOffset()
+	 */
+	public long getOffset() throws IOException {
+		return offset;
+	}
+
+	public OutputStream getTarget() {
+		return target;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#isReadOnly()
+	 */
+	public boolean isReadOnly() {
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read()
+	 */
+	public int read() throws IOException {
+		throw new IOException("write only"); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read(byte[])
+	 */
+	public int read(byte[] buffer) throws IOException {
+		throw new IOException("write only"); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#read(byte[], int, int)
+	 */
+	public int read(byte[] buffer, int start, int numBytes) throws IOException {
+		throw new IOException("write only"); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#seek(long)
+	 */
+	public void seek(long pOffset) throws IOException {
+		if (pOffset < offset) {
+			throw new IOException("offset no longer available"); //$NON-NLS-1$
+		}
+		byte[] gap = new byte[(int) Math.min(pOffset - offset, 8192)];
+		while (offset < pOffset) {
+			write(gap, 0, (int) Math.min(gap.length, pOffset - offset));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#seekBy(long)
+	 */
+	public void seekBy(long delta) throws IOException {
+		seek(offset + delta);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#setLength(long)
+	 */
+	public void setLength(long newLength) throws IOException {
+		if (newLength != offset) {
+			throw new IOException("can't change length of sequential data"); //$NON-NLS-1$
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#write(byte[])
+	 */
+	public void write(byte[] buffer) throws IOException {
+		write(buffer, 0, buffer.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#write(byte[], int, int)
+	 */
+	public void write(byte[] buffer, int start, int numBytes)
+			throws IOException {
+		target.write(buffer, start, numBytes);
+		offset += numBytes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.tools.randomaccess.IRandomAccess#write(int)
+	 */
+	public void write(int b) throws IOException {
+		target.write(b);
+		offset++;
+	}
+}
@@ -113,7 +113,7 @@ public class RandomAccessViewport extends RandomAccessFilter {
 			return -1;
 		}
 		if (getViewLength() != -1) {
-			numBytes = Math.min(numBytes, (int) (getViewEnd() - getOffset()));
+			numBytes = (int) Math.min(numBytes, getViewEnd() - getOffset());
 		}
 		return super.read(buffer, start, numBytes);
 	}
@@ -19,6 +19,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Iterator;
 
+import de.intarsys.pdf.content.CSContentCursor;
 import de.intarsys.pdf.content.CSDeviceBasedInterpreter;
 import de.intarsys.pdf.content.CSException;
 import de.intarsys.pdf.content.text.CSTextExtractor;
@@ -60,8 +61,15 @@ public class ExtractText extends CommonJPodExample {
 					extractor.setDeviceTransform(pageTx);
 					CSDeviceBasedInterpreter interpreter = new CSDeviceBasedInterpreter(
 							null, extractor);
-					interpreter.process(page.getContentStream(), page
-							.getResources());
+					CSContentCursor content = CSContentCursor
+							.createFromCos(page.cosGetContents());
+					try {
+						interpreter.process(content, page.getResources());
+					} finally {
+						if (content != null) {
+							content.close();
+						}
+					}
 					sb.append(extractor.getContent());
 				} catch (CSException e) {
 					e.printStackTrace();
@@ -48,6 +48,26 @@ import de.intarsys.tools.geometry.ApplySpaceChangeShape;
  * 
  */
 abstract public class CSBasicDevice extends CSDeviceAdapter {
+	/**
+	 * A {@link ByteArrayInputStream} that can be reused for the bytes of the
+	 * next string shown.
+	 */
+	static class TextInputStream extends ByteArrayInputStream {
+
+		private static final byte[] EMPTY = new byte[0];
+
+		public TextInputStream() {
+			super(EMPTY);
+		}
+
+		public void reset(byte[] bytes, int offset, int length) {
+			this.buf = bytes;
+			this.pos = offset;
+			this.count = Math.min(offset + length, bytes.length);
+			this.mark = offset;
+		}
+	}
+
 	public static final float THOUSAND = 1000f;
 
 	/** Flag if clipping is requested by the current path creating operations */
@@ -99,6 +119,12 @@ abstract public class CSBasicDevice extends CSDeviceAdapter {
 	 */
 	private float initialY;
 
+	/**
+	 * The stream on the string currently shown, <code>null</code> while in
+	 * use.
+	 */
+	private TextInputStream textInputStream = new TextInputStream();
+
 	protected void basicClip(Shape shape) throws CSException {
 		// override in subclass
 	}
@@ -464,24 +490,35 @@ abstract public class CSBasicDevice extends CSDeviceAdapter {
 		float advanceFactor = ts.derivedGlyphAdvanceFactor;
 		float charSpacing = ts.derivedCharSpacingScaled;
 		float wordSpacing = ts.derivedWordSpacingScaled;
-		ByteArrayInputStream is = new ByteArrayInputStream(text);
-		basicTextShowBegin();
-		while (true) {
-			try {
-				PDGlyphs glyphs = font.getNextGlyphsEncoded(is);
-				if (glyphs == null) {
-					// all glyphs referenced by "text" consumed
-					break;
+		// reuse the stream, unless we are called reentrant (Type3 glyphs)
+		TextInputStream is = textInputStream;
+		textInputStream = null;
+		if (is == null) {
+			is = new TextInputStream();
+		}
+		try {
+			is.reset(text, offset, length);
+			basicTextShowBegin();
+			while (true) {
+				try {
+					PDGlyphs glyphs = font.getNextGlyphsEncoded(is);
+					if (glyphs == null) {
+						// all glyphs referenced by "text" consumed
+						break;
+					}
+					float advance = advanceFactor
+							* glyphs.getWidth()
+							+ (wordSpacing != 0 && glyphs.isWhitespace() ? wordSpacing
+									: 0) + charSpacing;
+					basicTextShowGlyphs(glyphs, advance);
+				} catch (IOException e) {
+					// ignore, no io exception on byte array
 				}
-				float advance = advanceFactor
-						* glyphs.getWidth()
-						+ (wordSpacing != 0 && glyphs.isWhitespace() ? wordSpacing
-								: 0) + charSpacing;
-				basicTextShowGlyphs(glyphs, advance);
-			} catch (IOException e) {
-				// ignore, no io exception on byte array
 			}
+			basicTextShowEnd();
+		} finally {
+			is.reset(TextInputStream.EMPTY, 0, 0);
+			textInputStream = is;
 		}
-		basicTextShowEnd();
 	}
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.pdf.content;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+
+import de.intarsys.pdf.cos.COSArray;
+import de.intarsys.pdf.cos.COSObject;
+import de.intarsys.pdf.cos.COSRuntimeException;
+import de.intarsys.pdf.cos.COSStream;
+import de.intarsys.pdf.parser.COSLoadException;
+import de.intarsys.pdf.parser.CSContentParser;
+import de.intarsys.tools.randomaccess.IRandomAccess;
+import de.intarsys.tools.randomaccess.RandomAccessByteArray;
+import de.intarsys.tools.randomaccess.RandomAccessInputStream;
+import de.intarsys.tools.stream.StreamTools;
+
+/**
+ * A forward only cursor over the operations of a PDF content stream.
+ * <p>
+ * In contrast to {@link CSContent} the content stream is not tokenized as a
+ * whole. The operations are parsed one at a time, straight from the decoded
+ * stream data, so that the memory needed is independent of the size of the
+ * content stream.
+ * <p>
+ * The {@link CSOperation} returned by {@link #next()} and its operands array
+ * are reused for the next operation. Clients that need to keep an operation
+ * must use {@link CSContent} instead.
+ * <p>
+ * A cursor must be closed after use.
+ */
+public class CSContentCursor {
+
+	/**
+	 * The decoded data of a content stream chunk, followed by a single space
+	 * between the chunks.
+	 */
+	static class StreamEnumeration implements Enumeration<InputStream> {
+
+		private static final byte[] SEPARATOR = new byte[] { 32 };
+
+		private int index = 0;
+
+		private boolean separator = false;
+
+		final private List<COSStream> streams;
+
+		public StreamEnumeration(List<COSStream> streams) {
+			super();
+			this.streams = streams;
+		}
+
+		public boolean hasMoreElements() {
+			return index < streams.size();
+		}
+
+		public InputStream nextElement() {
+			if (separator) {
+				separator = false;
+				index++;
+				return new ByteArrayInputStream(SEPARATOR);
+			}
+			separator = true;
+			try {
+				return streams.get(index).getDecodedInputStream();
+			} catch (IOException e) {
+				throw new COSRuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Create a {@link CSContentCursor} on a byte array containing a PDF
+	 * content stream.
+	 * 
+	 * @param data
+	 *            The bytes defining the PDF content stream.
+	 * 
+	 * @return The new {@link CSContentCursor}
+	 */
+	static public CSContentCursor createFromBytes(byte[] data) {
+		return new CSContentCursor(new RandomAccessByteArray(data));
+	}
+
+	/**
+	 * Create a {@link CSContentCursor} on an array of {@link COSStream},
+	 * together defining a PDF content stream.
+	 * 
+	 * @param streams
+	 *            An array of {@link COSStream} objects containing each a chunk
+	 *            of the content stream.
+	 * 
+	 * @return The new {@link CSContentCursor}.
+	 */
+	static public CSContentCursor createFromCos(COSArray streams) {
+		List<COSStream> list = new ArrayList<COSStream>(streams.size());
+		for (Iterator it = streams.iterator(); it.hasNext();) {
+			COSStream stream = ((COSObject) it.next()).asStream();
+			if (stream != null) {
+				list.add(stream);
+			}
+		}
+		return new CSContentCursor(list);
+	}
+
+	/**
+	 * Create a {@link CSContentCursor} on a {@link COSStream} containing a
+	 * PDF content stream.
+	 * 
+	 * @param stream
+	 *            The stream defining containing the PDF content stream.
+	 * 
+	 * @return The new {@link CSContentCursor}
+	 */
+	static public CSContentCursor createFromCos(COSStream stream) {
+		List<COSStream> list = new ArrayList<COSStream>(1);
+		list.add(stream);
+		return new CSContentCursor(list);
+	}
+
+	/**
+	 * Create a {@link CSContentCursor} on the content stream defined by
+	 * <code>contents</code>, which may be either a single {@link COSStream}
+	 * or a {@link COSArray} of {@link COSStream} objects, as in a page's
+	 * /Contents entry.
+	 * 
+	 * @param contents
+	 *            The content stream definition
+	 * 
+	 * @return The new {@link CSContentCursor} or <code>null</code> if
+	 *         <code>contents</code> defines no content stream.
+	 */
+	static public CSContentCursor createFromCos(COSObject contents) {
+		if (contents instanceof COSStream) {
+			return createFromCos((COSStream) contents);
+		}
+		if (contents instanceof COSArray) {
+			return createFromCos((COSArray) contents);
+		}
+		return null;
+	}
+
+	private IRandomAccess input;
+
+	final private CSContentParser parser;
+
+	/**
+	 * The streams defining the content, decoded when the first operation is
+	 * requested.
+	 */
+	private List<COSStream> streams;
+
+	protected CSContentCursor(IRandomAccess input) {
+		super();
+		this.input = input;
+		this.parser = new CSContentParser();
+	}
+
+	protected CSContentCursor(List<COSStream> streams) {
+		super();
+		this.streams = streams;
+		this.parser = new CSContentParser();
+	}
+
+	/**
+	 * Release the resources associated with this.
+	 */
+	public void close() {
+		if (input != null) {
+			StreamTools.close(input);
+		}
+		streams = null;
+	}
+
+	/**
+	 * The input the operations are parsed from, the streams are decoded on
+	 * first access.
+	 * 
+	 * @return The input the operations are parsed from.
+	 * @throws IOException
+	 */
+	protected IRandomAccess getInput() throws IOException {
+		if (input == null) {
+			InputStream is;
+			if (streams == null) {
+				is = new ByteArrayInputStream(new byte[0]);
+			} else if (streams.size() == 1) {
+				is = streams.get(0).getDecodedInputStream();
+			} else {
+				is = new SequenceInputStream(new StreamEnumeration(streams));
+			}
+			streams = null;
+			input = new RandomAccessInputStream(is);
+		}
+		return input;
+	}
+
+	/**
+	 * The next operation in the content stream. The result is valid only
+	 * until the next call to this method.
+	 * <p>
+	 * Errors reading or decoding the content stream are thrown as
+	 * {@link COSRuntimeException}.
+	 * 
+	 * @return The next operation in the content stream or <code>null</code>
+	 *         at the end of the content stream.
+	 */
+	public CSOperation next() {
+		try {
+			return parser.parseNextOperation(getInput());
+		} catch (IOException e) {
+			throw new COSRuntimeException(e);
+		} catch (COSLoadException e) {
+			throw new COSRuntimeException(e);
+		}
+	}
+}
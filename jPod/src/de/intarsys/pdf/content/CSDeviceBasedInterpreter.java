@@ -201,6 +201,23 @@ public class CSDeviceBasedInterpreter extends CSInterpreter {
 		}
 	}
 
+	@Override
+	public void process(CSContentCursor pContent, PDResources resourceDict)
+			throws CSException {
+		try {
+			if (nesting == 0) {
+				device.open(this);
+			}
+			nesting++;
+			super.process(pContent, resourceDict);
+		} finally {
+			nesting--;
+			if (nesting == 0) {
+				device.close();
+			}
+		}
+	}
+
 	@Override
 	protected void render_b(CSOperation operation) {
 		try {
@@ -31,6 +31,7 @@ package de.intarsys.pdf.content;
 
 import java.util.Map;
 
+import de.intarsys.pdf.cos.COSRuntimeException;
 import de.intarsys.pdf.pd.PDColorSpace;
 import de.intarsys.pdf.pd.PDDocument;
 import de.intarsys.pdf.pd.PDResources;
@@ -149,6 +150,49 @@ abstract public class CSInterpreter implements ICSInterpreter {
 				+ StringTools.safeString(operation) + " not supported")); //$NON-NLS-1$
 	}
 
+	/**
+	 * Setup the new {@link #frame} for interpreting a content stream with
+	 * <code>pResources</code>.
+	 * 
+	 * @param pResources
+	 * @param oldFrame
+	 */
+	protected void initFrame(PDResources pResources,
+			CSInterpreterFrame oldFrame) {
+		frame.resources = pResources;
+		if (frame.resources == null && oldFrame != null) {
+			// this is not exactly what the spec said..
+			// currently we need this for use with Type3 fonts without
+			// resources.
+			frame.resources = oldFrame.resources;
+		}
+		// cache default colorspaces now
+		if (frame.resources != null) {
+			try {
+				frame.defaultCMYK = frame.resources
+						.getColorSpaceResource(PDColorSpace.CN_CS_DefaultCMYK);
+			} catch (Exception ex) {
+				getExceptionHandler().warning(new CSWarning(ex));
+			}
+			try {
+				frame.defaultRGB = frame.resources
+						.getColorSpaceResource(PDColorSpace.CN_CS_DefaultRGB);
+			} catch (Exception ex) {
+				getExceptionHandler().warning(new CSWarning(ex));
+			}
+			try {
+				frame.defaultGray = frame.resources
+						.getColorSpaceResource(PDColorSpace.CN_CS_DefaultGray);
+			} catch (Exception ex) {
+				getExceptionHandler().warning(new CSWarning(ex));
+			}
+		} else {
+			frame.defaultCMYK = null;
+			frame.defaultRGB = null;
+			frame.defaultGray = null;
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -164,53 +208,49 @@ abstract public class CSInterpreter implements ICSInterpreter {
 		CSInterpreterFrame oldFrame = frame;
 		try {
 			frame = createFrame();
-			frame.resources = pResources;
-			if (frame.resources == null && oldFrame != null) {
-				// this is not exactly what the spec said..
-				// currently we need this for use with Type3 fonts without
-				// resources.
-				frame.resources = oldFrame.resources;
-			}
-			// cache default colorspaces now
-			if (frame.resources != null) {
-				try {
-					frame.defaultCMYK = frame.resources
-							.getColorSpaceResource(PDColorSpace.CN_CS_DefaultCMYK);
-				} catch (Exception ex) {
-					getExceptionHandler().warning(new CSWarning(ex));
-				}
-				try {
-					frame.defaultRGB = frame.resources
-							.getColorSpaceResource(PDColorSpace.CN_CS_DefaultRGB);
-				} catch (Exception ex) {
-					getExceptionHandler().warning(new CSWarning(ex));
-				}
-				try {
-					frame.defaultGray = frame.resources
-							.getColorSpaceResource(PDColorSpace.CN_CS_DefaultGray);
-				} catch (Exception ex) {
-					getExceptionHandler().warning(new CSWarning(ex));
-				}
-			} else {
-				frame.defaultCMYK = null;
-				frame.defaultRGB = null;
-				frame.defaultGray = null;
-			}
+			initFrame(pResources, oldFrame);
 			int len = pContent.size();
 			for (int i = 0; i < len; i++) {
 				if (checkInterrupt()) {
 					break;
 				}
-				CSOperation operation = pContent.getOperation(i);
+				processHandled(pContent.getOperation(i));
+			}
+		} finally {
+			frame = oldFrame;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.intarsys.pdf.content.ICSInterpreter#process(de.intarsys.pdf.content
+	 * .CSContentCursor, de.intarsys.pdf.pd.PDResources)
+	 */
+	public void process(CSContentCursor pContent, PDResources pResources)
+			throws CSException {
+		if (pContent == null) {
+			return;
+		}
+		CSInterpreterFrame oldFrame = frame;
+		try {
+			frame = createFrame();
+			initFrame(pResources, oldFrame);
+			while (!checkInterrupt()) {
+				CSOperation operation;
 				try {
-					process(operation);
-				} catch (CSError e) {
-					handleError(e);
-				} catch (CSWarning w) {
-					handleWarning(w);
-				} catch (RuntimeException e) {
-					handleError(new CSError("unexpected exception", e)); //$NON-NLS-1$
+					operation = pContent.next();
+				} catch (COSRuntimeException e) {
+					// the remaining content is not available
+					handleError(new CSError(
+							"error reading content stream", e)); //$NON-NLS-1$
+					break;
 				}
+				if (operation == null) {
+					break;
+				}
+				processHandled(operation);
 			}
 		} finally {
 			frame = oldFrame;
@@ -493,6 +533,25 @@ abstract public class CSInterpreter implements ICSInterpreter {
 		}
 	}
 
+	/**
+	 * Process <code>operation</code>, handing any exception to the
+	 * {@link ICSExceptionHandler}.
+	 * 
+	 * @param operation
+	 * @throws CSException
+	 */
+	protected void processHandled(CSOperation operation) throws CSException {
+		try {
+			process(operation);
+		} catch (CSError e) {
+			handleError(e);
+		} catch (CSWarning w) {
+			handleWarning(w);
+		} catch (RuntimeException e) {
+			handleError(new CSError("unexpected exception", e)); //$NON-NLS-1$
+		}
+	}
+
 	protected void render_b(CSOperation operation) throws CSException {
 		// close, fill and stroke path using nonzero winding rule
 		notSupported(operation);
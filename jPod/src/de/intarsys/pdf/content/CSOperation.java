@@ -191,6 +191,24 @@ public class CSOperation {
 		return operands.length;
 	}
 
+	/**
+	 * Reuse this for a new operator and operands. Any cached data is
+	 * discarded.
+	 * <p>
+	 * This supports parsers handing out a single {@link CSOperation} for
+	 * every operation in a content stream.
+	 * 
+	 * @param pOperatorToken
+	 *            The new operator token
+	 * @param pOperands
+	 *            The new operands
+	 */
+	public void reset(byte[] pOperatorToken, COSObject[] pOperands) {
+		this.operatorToken = pOperatorToken;
+		this.operands = pOperands;
+		this.cache = null;
+	}
+
 	public void setCache(Object cache) {
 		this.cache = cache;
 	}
@@ -53,6 +53,21 @@ public interface ICSInterpreter {
 	 */
 	public void process(CSContent content, PDResources resources);
 
+	/**
+	 * Process the operations delivered by <code>content</code> one at a time,
+	 * using <code>resources</code> if needed.
+	 * <p>
+	 * In contrast to {@link #process(CSContent, PDResources)} the content
+	 * stream is never held in memory as a whole. The cursor is not closed.
+	 * 
+	 * @param content
+	 *            The cursor on the PDF content stream to be interpreted.
+	 * 
+	 * @param resources
+	 *            The {@link PDResources} repository for the content stream
+	 */
+	public void process(CSContentCursor content, PDResources resources);
+
 	/**
 	 * Transparent options used by the interpreter implementation. The method
 	 * may return <code>null</code>.
@@ -5,6 +5,7 @@ import java.awt.geom.Rectangle2D;
 import de.intarsys.pdf.cds.CDSMatrix;
 import de.intarsys.pdf.cds.CDSRectangle;
 import de.intarsys.pdf.content.CSContent;
+import de.intarsys.pdf.content.CSContentCursor;
 import de.intarsys.pdf.content.CSDeviceBasedInterpreter;
 import de.intarsys.pdf.content.CSError;
 import de.intarsys.pdf.content.CSException;
@@ -49,8 +50,15 @@ public class CSContentTools {
 		CSDeviceBasedInterpreter interpreter = new CSDeviceBasedInterpreter(
 				null, bbCollector);
 		interpreter.setExceptionHandler(ignoreExceptionHandler);
-		CSContent content = page.getContentStream();
-		interpreter.process(content, page.getResources());
+		CSContentCursor content = CSContentCursor.createFromCos(page
+				.cosGetContents());
+		try {
+			interpreter.process(content, page.getResources());
+		} finally {
+			if (content != null) {
+				content.close();
+			}
+		}
 		if (bbCollector.getBoundingBox() != null) {
 			return bbCollector.getBoundingBox();
 		} else {
@@ -15,6 +15,12 @@ import de.intarsys.pdf.font.PDGlyphs;
 
 /**
  * Collect the character objects in a content stream.
+ * <p>
+ * The position of each glyph is reported to
+ * {@link #onGlyphFound(PDGlyphs, int, int, float, float, float, float)} in
+ * primitive device coordinates, without allocating any objects. The default
+ * implementation checks the bounds and forwards to
+ * {@link #onCharacterFound(PDGlyphs, Rectangle2D)}.
  */
 abstract public class CSCharacterParser extends CSTextDevice {
 
@@ -28,6 +34,18 @@ abstract public class CSCharacterParser extends CSTextDevice {
 
 	private Shape bounds;
 
+	/**
+	 * The transformation from text space to device space, reused for each
+	 * glyph.
+	 */
+	private final AffineTransform glyphTransform = new AffineTransform();
+
+	/**
+	 * The buffer for a single character returned by
+	 * {@link #getGlyphChars(PDGlyphs, int)}.
+	 */
+	private final char[] glyphChar = new char[1];
+
 	protected CSCharacterParser() {
 		super();
 	}
@@ -35,9 +53,7 @@ abstract public class CSCharacterParser extends CSTextDevice {
 	@Override
 	protected void basicTextShowGlyphs(PDGlyphs glyphs, float advance)
 			throws CSException {
-		AffineTransform tx;
-		tx = (AffineTransform) getDeviceTransform().clone();
-		tx.concatenate(textState.globalTransform);
+		AffineTransform tx = updateGlyphTransform();
 		lastStartX = tx.getTranslateX();
 		lastStartY = tx.getTranslateY();
 		// get the transformed character bounding box
@@ -48,13 +64,19 @@ abstract public class CSCharacterParser extends CSTextDevice {
 		if (descent > 0) {
 			descent = -descent;
 		}
-		double[] pts = new double[] { 0, descent, advance, ascent };
-		tx.deltaTransform(pts, 0, pts, 0, 2);
+		// delta transform (0, descent) and (advance, ascent)
+		double m00 = tx.getScaleX();
+		double m01 = tx.getShearX();
+		double m10 = tx.getShearY();
+		double m11 = tx.getScaleY();
+		double descentY = m11 * descent;
+		double ascentX = advance * m00 + ascent * m01;
+		double ascentY = advance * m10 + ascent * m11;
 		//
 		float x = (float) lastStartX;
-		float y = (float) (lastStartY + pts[1]);
-		float width = (float) pts[2];
-		float height = (float) (pts[3] - pts[1]);
+		float y = (float) (lastStartY + descentY);
+		float width = (float) ascentX;
+		float height = (float) (ascentY - descentY);
 		if (width < 0) {
 			x += width;
 			width = -width;
@@ -63,28 +85,93 @@ abstract public class CSCharacterParser extends CSTextDevice {
 			y += height;
 			height = -height;
 		}
-		Rectangle2D charRect = new Rectangle2D.Float(x, y, width, height);
-		if (getBounds() == null || getBounds().intersects(charRect)) {
-			onCharacterFound(glyphs, charRect);
-		}
+		onGlyphFound(glyphs, glyphs.getCodepoint(), glyphs.getUnicode(), x, y,
+				width, height);
 		// advance text matrix and store position for reference
 		super.basicTextShowGlyphs(glyphs, advance);
-		tx = (AffineTransform) getDeviceTransform().clone();
-		tx.concatenate(textState.globalTransform);
+		tx = updateGlyphTransform();
 		lastStopX = tx.getTranslateX();
 		lastStopY = tx.getTranslateY();
 	}
 
+	public Shape getBounds() {
+		return bounds;
+	}
+
+	/**
+	 * The characters shown by <code>glyphs</code> or a space if they are not
+	 * known.
+	 * <p>
+	 * Without a /ToUnicode map <code>unicode</code> is used and no char array
+	 * is created. The result may be reused, it is valid until the next call
+	 * only.
+	 * 
+	 * @param glyphs
+	 *            The glyphs shown
+	 * @param unicode
+	 *            The unicode value of the glyphs
+	 * @return The characters shown by <code>glyphs</code>.
+	 */
+	protected char[] getGlyphChars(PDGlyphs glyphs, int unicode) {
+		if (glyphs.getFont().getToUnicode() == null) {
+			glyphChar[0] = (unicode < 0) ? ' ' : (char) unicode;
+			return glyphChar;
+		}
+		char[] chars = glyphs.getChars();
+		if (chars == null) {
+			glyphChar[0] = ' ';
+			return glyphChar;
+		}
+		return chars;
+	}
+
 	protected void onCharacterFound(PDGlyphs glyphs, Rectangle2D rect) {
 		// redefine
 	}
 
-	public Shape getBounds() {
-		return bounds;
+	/**
+	 * A glyph was shown at the given position in device space.
+	 * <p>
+	 * The default implementation creates the glyph rectangle and calls
+	 * {@link #onCharacterFound(PDGlyphs, Rectangle2D)} if it intersects the
+	 * bounds. Redefine this to process the glyphs without any allocation.
+	 * 
+	 * @param glyphs
+	 *            The glyphs shown
+	 * @param code
+	 *            The glyphs code point in the font encoding
+	 * @param unicode
+	 *            The unicode value of the glyphs
+	 * @param x
+	 *            The x coordinate of the lower left corner
+	 * @param y
+	 *            The y coordinate of the lower left corner
+	 * @param width
+	 *            The width of the glyph box
+	 * @param height
+	 *            The height of the glyph box
+	 */
+	protected void onGlyphFound(PDGlyphs glyphs, int code, int unicode,
+			float x, float y, float width, float height) {
+		if (getBounds() == null || getBounds().intersects(x, y, width, height)) {
+			onCharacterFound(glyphs, new Rectangle2D.Float(x, y, width, height));
+		}
 	}
 
 	public void setBounds(Shape bounds) {
 		this.bounds = bounds;
 	}
 
+	/**
+	 * Compute the current transformation from text space to device space.
+	 * <p>
+	 * The result is reused, it is valid until the next call only.
+	 * 
+	 * @return The current transformation from text space to device space.
+	 */
+	protected AffineTransform updateGlyphTransform() {
+		glyphTransform.setTransform(getDeviceTransform());
+		glyphTransform.concatenate(textState.globalTransform);
+		return glyphTransform;
+	}
 }
@@ -0,0 +1,242 @@
+/*
+ * intarsys consulting gmbh
+ * all rights reserved
+ *
+ */
+package de.intarsys.pdf.content.text;
+
+import java.awt.geom.AffineTransform;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.intarsys.pdf.content.CSContentCursor;
+import de.intarsys.pdf.content.CSDeviceBasedInterpreter;
+import de.intarsys.pdf.content.ICSExceptionHandler;
+import de.intarsys.pdf.pd.PDDocument;
+import de.intarsys.pdf.pd.PDPage;
+import de.intarsys.pdf.tools.kernel.PDFGeometryTools;
+import de.intarsys.tools.exception.ExceptionTools;
+
+/**
+ * Extract the text of all pages in a document, interpreting the pages
+ * concurrently.
+ * <p>
+ * The pages are submitted to an {@link ExecutorService}, each one with its
+ * own {@link CSTextExtractor}. The results are delivered in page order as
+ * soon as they are available. At most {@link #getMaxPending()} pages are
+ * interpreted or waiting for delivery at any time, so the memory needed does
+ * not grow with the number of pages.
+ * <p>
+ * For real concurrency the document should be opened read only with the
+ * {@link de.intarsys.pdf.st.STDocument#OPTION_CONCURRENTREAD} option.
+ * Otherwise the object loading is serialized.
+ * <p>
+ * If no executor is assigned, a new one is created for each extraction. It
+ * uses virtual threads if the platform supports them, and a pool with one
+ * thread per processor otherwise.
+ */
+public class CSDocumentTextExtractor {
+
+	private static final String LINE_SEPARATOR = System
+			.getProperty("line.separator"); //$NON-NLS-1$
+
+	final private PDDocument doc;
+
+	private ICSExceptionHandler exceptionHandler;
+
+	private ExecutorService executor;
+
+	private int maxPending = Runtime.getRuntime().availableProcessors() * 2;
+
+	public CSDocumentTextExtractor(PDDocument doc) {
+		super();
+		this.doc = doc;
+	}
+
+	/**
+	 * Create the {@link ExecutorService} used if none is assigned.
+	 * 
+	 * @return The new {@link ExecutorService}
+	 */
+	protected ExecutorService createExecutor() {
+		try {
+			Method method = Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor"); //$NON-NLS-1$
+			return (ExecutorService) method.invoke(null);
+		} catch (Exception e) {
+			// no virtual threads
+		}
+		return Executors.newFixedThreadPool(Runtime.getRuntime()
+				.availableProcessors());
+	}
+
+	/**
+	 * Extract the text of <code>page</code>. This is called concurrently for
+	 * different pages.
+	 * 
+	 * @param page
+	 *            The page to be processed.
+	 * @return The text on the page.
+	 */
+	protected String extract(PDPage page) {
+		CSTextExtractor extractor = new CSTextExtractor();
+		AffineTransform pageTx = new AffineTransform();
+		PDFGeometryTools.adjustTransform(pageTx, page);
+		extractor.setDeviceTransform(pageTx);
+		CSDeviceBasedInterpreter interpreter = new CSDeviceBasedInterpreter(
+				null, extractor);
+		if (exceptionHandler != null) {
+			interpreter.setExceptionHandler(exceptionHandler);
+		}
+		CSContentCursor content = CSContentCursor.createFromCos(page
+				.cosGetContents());
+		if (content == null) {
+			return ""; //$NON-NLS-1$
+		}
+		try {
+			interpreter.process(content, page.getResources());
+		} finally {
+			content.close();
+		}
+		return extractor.getContent();
+	}
+
+	/**
+	 * Extract the text of all pages, delivering it to <code>handler</code>
+	 * in page order.
+	 * <p>
+	 * An exception while interpreting a page cancels the pending pages and is
+	 * rethrown.
+	 * 
+	 * @param handler
+	 *            The receiver of the page text
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void extract(ICSPageTextHandler handler) throws IOException,
+			InterruptedException {
+		ExecutorService tempExecutor = executor;
+		if (tempExecutor == null) {
+			tempExecutor = createExecutor();
+		}
+		LinkedList<Future<String>> pending = new LinkedList<Future<String>>();
+		LinkedList<PDPage> pendingPages = new LinkedList<PDPage>();
+		int index = 0;
+		try {
+			PDPage page = doc.getPageTree().getFirstPage();
+			while (page != null || !pending.isEmpty()) {
+				if (page != null && pending.size() < Math.max(1, maxPending)) {
+					final PDPage tempPage = page;
+					pending.add(tempExecutor.submit(new Callable<String>() {
+						public String call() {
+							return extract(tempPage);
+						}
+					}));
+					pendingPages.add(page);
+					page = page.getNextPage();
+					continue;
+				}
+				String text = waitFor(pending.removeFirst());
+				handler.onPageText(index++, pendingPages.removeFirst(), text);
+			}
+		} finally {
+			for (Future<String> future : pending) {
+				future.cancel(true);
+			}
+			if (tempExecutor != executor) {
+				tempExecutor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Extract the text of all pages to <code>writer</code>, in page order and
+	 * each page followed by a line separator. The writer is not closed.
+	 * 
+	 * @param writer
+	 *            The destination for the text
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void extract(final Writer writer) throws IOException,
+			InterruptedException {
+		extract(new ICSPageTextHandler() {
+			public void onPageText(int index, PDPage page, String text)
+					throws IOException {
+				writer.write(text);
+				writer.write(LINE_SEPARATOR);
+			}
+		});
+		writer.flush();
+	}
+
+	public PDDocument getDoc() {
+		return doc;
+	}
+
+	public ICSExceptionHandler getExceptionHandler() {
+		return exceptionHandler;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * The maximum number of pages in interpretation or waiting for delivery.
+	 * 
+	 * @return The maximum number of pages in interpretation or waiting for
+	 *         delivery.
+	 */
+	public int getMaxPending() {
+		return maxPending;
+	}
+
+	/**
+	 * Assign the {@link ICSExceptionHandler} for the interpretation of the
+	 * pages. It is shared by all pages and must be thread safe.
+	 * 
+	 * @param exceptionHandler
+	 */
+	public void setExceptionHandler(ICSExceptionHandler exceptionHandler) {
+		this.exceptionHandler = exceptionHandler;
+	}
+
+	/**
+	 * Assign the {@link ExecutorService} for the interpretation of the pages.
+	 * An assigned executor is not shut down by the extraction.
+	 * 
+	 * @param executor
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	public void setMaxPending(int maxPending) {
+		this.maxPending = maxPending;
+	}
+
+	protected String waitFor(Future<String> future) throws IOException,
+			InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw ExceptionTools.createIOException(
+					"page extraction failed", cause); //$NON-NLS-1$
+		}
+	}
+}
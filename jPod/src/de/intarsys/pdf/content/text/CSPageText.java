@@ -0,0 +1,203 @@
+/*
+ * intarsys consulting gmbh
+ * all rights reserved
+ *
+ */
+package de.intarsys.pdf.content.text;
+
+import java.awt.geom.Rectangle2D;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The text of a page together with the position of each character in device
+ * space.
+ * <p>
+ * Characters inferred from the layout, like the spaces between words, have
+ * an empty box.
+ */
+public class CSPageText {
+
+	/**
+	 * Read a {@link CSPageText} as written by {@link #write(DataOutput)}.
+	 * 
+	 * @param input
+	 * @return The new {@link CSPageText}
+	 * @throws IOException
+	 */
+	static public CSPageText read(DataInput input) throws IOException {
+		int length = input.readInt();
+		if (length < 0) {
+			throw new IOException("invalid text length"); //$NON-NLS-1$
+		}
+		// the length is not trusted, grow with the characters actually read
+		CSPageText result = new CSPageText(Math.min(length, 4096));
+		for (int i = 0; i < length; i++) {
+			result.add(input.readChar(), input.readFloat(), input.readFloat(),
+					input.readFloat(), input.readFloat());
+		}
+		return result;
+	}
+
+	/**
+	 * The x, y, width and height of each character
+	 */
+	private float[] boxes;
+
+	private char[] chars;
+
+	private int length = 0;
+
+	public CSPageText() {
+		this(256);
+	}
+
+	public CSPageText(int capacity) {
+		super();
+		chars = new char[Math.max(capacity, 16)];
+		boxes = new float[chars.length * 4];
+	}
+
+	/**
+	 * Add a character with its box in device space.
+	 * 
+	 * @param c
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 */
+	public void add(char c, float x, float y, float width, float height) {
+		if (length == chars.length) {
+			char[] newChars = new char[chars.length * 2];
+			System.arraycopy(chars, 0, newChars, 0, length);
+			chars = newChars;
+			float[] newBoxes = new float[boxes.length * 2];
+			System.arraycopy(boxes, 0, newBoxes, 0, length * 4);
+			boxes = newBoxes;
+		}
+		int offset = length * 4;
+		chars[length] = c;
+		boxes[offset] = x;
+		boxes[offset + 1] = y;
+		boxes[offset + 2] = width;
+		boxes[offset + 3] = height;
+		length++;
+	}
+
+	protected CSTextSearchHit createHit(int pageIndex, int termIndex,
+			int start, int end) {
+		CSTextSearchHit hit = new CSTextSearchHit();
+		hit.setPageIndex(pageIndex);
+		hit.setTermIndex(termIndex);
+		Rectangle2D.Float box = new Rectangle2D.Float();
+		for (int i = start; i < end; i++) {
+			int offset = i * 4;
+			if (boxes[offset + 2] == 0 && boxes[offset + 3] == 0) {
+				hit.add(chars[i]);
+			} else {
+				box.setRect(boxes[offset], boxes[offset + 1],
+						boxes[offset + 2], boxes[offset + 3]);
+				hit.add(chars[i], box);
+			}
+		}
+		int contextStart = Math.max(0,
+				start - CSTextSearcher.FLOATING_CONTEXT_LENGTH);
+		hit.setPrefix(new String(chars, contextStart, start - contextStart));
+		int contextEnd = Math.min(length,
+				end + CSTextSearcher.FLOATING_CONTEXT_LENGTH);
+		hit.setSuffix(new String(chars, end, contextEnd - end));
+		return hit;
+	}
+
+	/**
+	 * The character at <code>index</code>.
+	 * 
+	 * @param index
+	 * @return The character at <code>index</code>.
+	 */
+	public char getChar(int index) {
+		return chars[index];
+	}
+
+	public float getHeight(int index) {
+		return boxes[index * 4 + 3];
+	}
+
+	/**
+	 * The number of characters.
+	 * 
+	 * @return The number of characters.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * The text of the page.
+	 * 
+	 * @return The text of the page.
+	 */
+	public String getText() {
+		return new String(chars, 0, length);
+	}
+
+	public float getWidth(int index) {
+		return boxes[index * 4 + 2];
+	}
+
+	public float getX(int index) {
+		return boxes[index * 4];
+	}
+
+	public float getY(int index) {
+		return boxes[index * 4 + 1];
+	}
+
+	/**
+	 * All occurrences of the terms of <code>matcher</code> in this page,
+	 * ordered by their end.
+	 * 
+	 * @param matcher
+	 *            The terms to search
+	 * @param pageIndex
+	 *            The page index to be recorded in the hits
+	 * @return The list of {@link CSTextSearchHit} instances.
+	 */
+	public List<CSTextSearchHit> search(CSTextTermMatcher matcher,
+			int pageIndex) {
+		List<CSTextSearchHit> hits = new ArrayList<CSTextSearchHit>();
+		int state = CSTextTermMatcher.START;
+		for (int i = 0; i < length; i++) {
+			state = matcher.next(state, chars[i]);
+			int[] terms = matcher.getTerms(state);
+			for (int k = 0; k < terms.length; k++) {
+				int end = i + 1;
+				int start = end - matcher.getTerm(terms[k]).length();
+				hits.add(createHit(pageIndex, terms[k], start, end));
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * Write this to <code>output</code>.
+	 * 
+	 * @param output
+	 * @throws IOException
+	 */
+	public void write(DataOutput output) throws IOException {
+		output.writeInt(length);
+		for (int i = 0; i < length; i++) {
+			int offset = i * 4;
+			output.writeChar(chars[i]);
+			output.writeFloat(boxes[offset]);
+			output.writeFloat(boxes[offset + 1]);
+			output.writeFloat(boxes[offset + 2]);
+			output.writeFloat(boxes[offset + 3]);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * intarsys consulting gmbh
+ * all rights reserved
+ *
+ */
+package de.intarsys.pdf.content.text;
+
+import java.awt.geom.AffineTransform;
+
+import de.intarsys.pdf.content.ICSInterpreter;
+import de.intarsys.pdf.cos.COSName;
+import de.intarsys.pdf.font.PDFont;
+import de.intarsys.pdf.font.PDGlyphs;
+
+/**
+ * Collect the characters in a content stream together with their position
+ * into a {@link CSPageText}.
+ * <p>
+ * Spaces are inferred from the glyph positions like in {@link CSTextSearcher}.
+ * The result can be searched for any number of terms at once, see
+ * {@link CSPageText#search(CSTextTermMatcher, int)}.
+ */
+public class CSPageTextCollector extends CSCharacterParser {
+
+	private double maxDX = 5;
+
+	private double maxDY = 5;
+
+	private CSPageText pageText;
+
+	public CSPageTextCollector() {
+		super();
+	}
+
+	public CSPageText getPageText() {
+		return pageText;
+	}
+
+	@Override
+	protected void onGlyphFound(PDGlyphs glyphs, int code, int unicode,
+			float x, float y, float width, float height) {
+		if (getBounds() != null
+				&& !getBounds().intersects(x, y, width, height)) {
+			return;
+		}
+		double dX = lastStopX - lastStartX;
+		double dY = lastStopY - lastStartY;
+		if (Math.abs(dX) >= maxDX || Math.abs(dY) >= maxDY) {
+			pageText.add(' ', (int) lastStartX, (int) lastStartY, 0, 0);
+		}
+		char[] chars = getGlyphChars(glyphs, unicode);
+		for (int i = 0; i < chars.length; i++) {
+			pageText.add(chars[i], x, y, width, height);
+		}
+	}
+
+	@Override
+	public void open(ICSInterpreter pInterpreter) {
+		super.open(pInterpreter);
+		pageText = new CSPageText();
+	}
+
+	@Override
+	public void textSetFont(COSName name, PDFont font, float size) {
+		super.textSetFont(name, font, size);
+		AffineTransform tx = updateGlyphTransform();
+		maxDX = textState.fontSize * 0.2 * tx.getScaleX();
+		maxDY = textState.fontSize * 0.6 * tx.getScaleY();
+	}
+
+	@Override
+	public void textSetTransform(float a, float b, float c, float d, float e,
+			float f) {
+		super.textSetTransform(a, b, c, d, e, f);
+		AffineTransform tx = updateGlyphTransform();
+		maxDX = textState.fontSize * 0.2 * tx.getScaleX();
+		maxDY = textState.fontSize * 0.6 * tx.getScaleY();
+	}
+}
@@ -6,7 +6,6 @@
 package de.intarsys.pdf.content.text;
 
 import java.awt.geom.AffineTransform;
-import java.awt.geom.Rectangle2D;
 
 import de.intarsys.pdf.content.ICSInterpreter;
 import de.intarsys.pdf.cos.COSName;
@@ -49,12 +48,12 @@ public class CSTextExtractor extends CSCharacterParser {
 	}
 
 	@Override
-	protected void onCharacterFound(PDGlyphs glyphs, Rectangle2D rect) {
-		char[] chars = glyphs.getChars();
-		if (chars == null) {
-			chars = new char[] { ' ' };
+	protected void onGlyphFound(PDGlyphs glyphs, int code, int unicode,
+			float x, float y, float width, float height) {
+		if (getBounds() != null
+				&& !getBounds().intersects(x, y, width, height)) {
+			return;
 		}
-
 		double dX = lastStopX - lastStartX;
 		double dY = lastStopY - lastStartY;
 		if (Math.abs(dX) < maxDX) {
@@ -70,7 +69,7 @@ public class CSTextExtractor extends CSCharacterParser {
 				}
 			}
 		}
-		append(chars);
+		append(getGlyphChars(glyphs, unicode));
 	}
 
 	@Override
@@ -82,9 +81,7 @@ public class CSTextExtractor extends CSCharacterParser {
 	@Override
 	public void textSetFont(COSName name, PDFont font, float size) {
 		super.textSetFont(name, font, size);
-		AffineTransform tx;
-		tx = (AffineTransform) getDeviceTransform().clone();
-		tx.concatenate(textState.globalTransform);
+		AffineTransform tx = updateGlyphTransform();
 		maxDX = textState.fontSize * 0.2 * tx.getScaleX();
 		maxDY = textState.fontSize * 0.6 * tx.getScaleY();
 	}
@@ -93,9 +90,7 @@ public class CSTextExtractor extends CSCharacterParser {
 	public void textSetTransform(float a, float b, float c, float d, float e,
 			float f) {
 		super.textSetTransform(a, b, c, d, e, f);
-		AffineTransform tx;
-		tx = (AffineTransform) getDeviceTransform().clone();
-		tx.concatenate(textState.globalTransform);
+		AffineTransform tx = updateGlyphTransform();
 		maxDX = textState.fontSize * 0.2 * tx.getScaleX();
 		maxDY = textState.fontSize * 0.6 * tx.getScaleY();
 	}
@@ -0,0 +1,181 @@
+/*
+ * intarsys consulting gmbh
+ * all rights reserved
+ *
+ */
+package de.intarsys.pdf.content.text;
+
+import java.awt.geom.AffineTransform;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.intarsys.pdf.content.CSContentCursor;
+import de.intarsys.pdf.content.CSDeviceBasedInterpreter;
+import de.intarsys.pdf.content.ICSExceptionHandler;
+import de.intarsys.pdf.pd.PDDocument;
+import de.intarsys.pdf.pd.PDPage;
+import de.intarsys.pdf.tools.kernel.PDFGeometryTools;
+
+/**
+ * A positional text index of a document.
+ * <p>
+ * The index holds a {@link CSPageText} for each page. Once created, it
+ * answers queries for any number of terms without interpreting the content
+ * streams again. It can be written to a stream, for example to a file next
+ * to the document, and read back later. The index does not check if the
+ * document was changed in the meantime.
+ */
+public class CSTextIndex {
+
+	private static final int MAGIC = 0x6A505449; // "jPTI"
+
+	private static final int VERSION = 1;
+
+	/**
+	 * Create the index for all pages of <code>doc</code>.
+	 * 
+	 * @param doc
+	 * @param exceptionHandler
+	 *            The {@link ICSExceptionHandler} for interpreting the pages
+	 *            or <code>null</code>
+	 * @return The new {@link CSTextIndex}
+	 */
+	static public CSTextIndex create(PDDocument doc,
+			ICSExceptionHandler exceptionHandler) {
+		CSTextIndex result = new CSTextIndex();
+		for (PDPage page = doc.getPageTree().getFirstPage(); page != null; page = page
+				.getNextPage()) {
+			result.addPage(createPageText(page, exceptionHandler));
+		}
+		return result;
+	}
+
+	/**
+	 * Interpret the content of <code>page</code> and create its
+	 * {@link CSPageText}.
+	 * 
+	 * @param page
+	 * @param exceptionHandler
+	 *            The {@link ICSExceptionHandler} for interpreting the page or
+	 *            <code>null</code>
+	 * @return The new {@link CSPageText}
+	 */
+	static public CSPageText createPageText(PDPage page,
+			ICSExceptionHandler exceptionHandler) {
+		CSPageTextCollector collector = new CSPageTextCollector();
+		AffineTransform pageTx = new AffineTransform();
+		PDFGeometryTools.adjustTransform(pageTx, page);
+		collector.setDeviceTransform(pageTx);
+		CSDeviceBasedInterpreter interpreter = new CSDeviceBasedInterpreter(
+				null, collector);
+		if (exceptionHandler != null) {
+			interpreter.setExceptionHandler(exceptionHandler);
+		}
+		CSContentCursor content = CSContentCursor.createFromCos(page
+				.cosGetContents());
+		if (content == null) {
+			return new CSPageText();
+		}
+		try {
+			interpreter.process(content, page.getResources());
+		} finally {
+			content.close();
+		}
+		return collector.getPageText();
+	}
+
+	/**
+	 * Read an index as written by {@link #write(OutputStream)}. The stream is
+	 * read up to the end of the index only and is not closed. It should be
+	 * buffered by the caller.
+	 * 
+	 * @param is
+	 * @return The new {@link CSTextIndex}
+	 * @throws IOException
+	 */
+	static public CSTextIndex read(InputStream is) throws IOException {
+		DataInputStream input = new DataInputStream(is);
+		if (input.readInt() != MAGIC) {
+			throw new IOException("not a text index"); //$NON-NLS-1$
+		}
+		int version = input.readInt();
+		if (version != VERSION) {
+			throw new IOException("unsupported text index version " //$NON-NLS-1$
+					+ version);
+		}
+		int size = input.readInt();
+		CSTextIndex result = new CSTextIndex();
+		for (int i = 0; i < size; i++) {
+			result.addPage(CSPageText.read(input));
+		}
+		return result;
+	}
+
+	final private List<CSPageText> pages = new ArrayList<CSPageText>();
+
+	public CSTextIndex() {
+		super();
+	}
+
+	public void addPage(CSPageText pageText) {
+		pages.add(pageText);
+	}
+
+	/**
+	 * The {@link CSPageText} for the page at <code>index</code>.
+	 * 
+	 * @param index
+	 * @return The {@link CSPageText} for the page at <code>index</code>.
+	 */
+	public CSPageText getPage(int index) {
+		return pages.get(index);
+	}
+
+	/**
+	 * All occurrences of the terms of <code>matcher</code> in the document,
+	 * ordered by page.
+	 * 
+	 * @param matcher
+	 * @return The list of {@link CSTextSearchHit} instances.
+	 */
+	public List<CSTextSearchHit> search(CSTextTermMatcher matcher) {
+		List<CSTextSearchHit> hits = new ArrayList<CSTextSearchHit>();
+		for (int i = 0; i < pages.size(); i++) {
+			hits.addAll(pages.get(i).search(matcher, i));
+		}
+		return hits;
+	}
+
+	/**
+	 * The number of pages.
+	 * 
+	 * @return The number of pages.
+	 */
+	public int size() {
+		return pages.size();
+	}
+
+	/**
+	 * Write this to <code>os</code>. The stream is not closed.
+	 * 
+	 * @param os
+	 * @throws IOException
+	 */
+	public void write(OutputStream os) throws IOException {
+		DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(os));
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(pages.size());
+		for (CSPageText page : pages) {
+			page.write(output);
+		}
+		output.flush();
+	}
+}
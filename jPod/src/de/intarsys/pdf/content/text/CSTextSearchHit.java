@@ -21,11 +21,24 @@ public class CSTextSearchHit {
 
 	private String suffix;
 
+	private int pageIndex = -1;
+
+	private int termIndex = -1;
+
 	public CSTextSearchHit() {
 		super();
 		buffer = new StringBuilder();
 	}
 
+	/**
+	 * Add a character without a visual extent, like an inferred space.
+	 * 
+	 * @param c
+	 */
+	public void add(char c) {
+		buffer.append(c);
+	}
+
 	public void add(char c, Rectangle2D charRect) {
 		buffer.append(c);
 		if (rect == null) {
@@ -39,6 +52,15 @@ public class CSTextSearchHit {
 		return getTrimmedPrefix() + getText() + getSuffix() + "...";
 	}
 
+	/**
+	 * The zero based index of the page containing the hit or -1 if unknown.
+	 * 
+	 * @return The zero based index of the page containing the hit.
+	 */
+	public int getPageIndex() {
+		return pageIndex;
+	}
+
 	public Rectangle2D getRect() {
 		return rect;
 	}
@@ -47,6 +69,16 @@ public class CSTextSearchHit {
 		return suffix;
 	}
 
+	/**
+	 * The index of the term found, when searching with a
+	 * {@link CSTextTermMatcher}, or -1.
+	 * 
+	 * @return The index of the term found.
+	 */
+	public int getTermIndex() {
+		return termIndex;
+	}
+
 	public String getText() {
 		return buffer.toString();
 	}
@@ -58,6 +90,9 @@ public class CSTextSearchHit {
 	 * @return
 	 */
 	private String getTrimmedPrefix() {
+		if (prefix == null || prefix.length() == 0) {
+			return ""; //$NON-NLS-1$
+		}
 		int i = prefix.length() - 1;
 		while (i > 0) {
 			char c = prefix.charAt(i);
@@ -72,6 +107,10 @@ public class CSTextSearchHit {
 		return prefix.substring(i);
 	}
 
+	public void setPageIndex(int pageIndex) {
+		this.pageIndex = pageIndex;
+	}
+
 	public void setPrefix(String prefix) {
 		this.prefix = prefix;
 	}
@@ -79,4 +118,8 @@ public class CSTextSearchHit {
 	public void setSuffix(String suffix) {
 		this.suffix = suffix;
 	}
+
+	public void setTermIndex(int termIndex) {
+		this.termIndex = termIndex;
+	}
 }
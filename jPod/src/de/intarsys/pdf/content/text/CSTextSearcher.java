@@ -172,9 +172,7 @@ public class CSTextSearcher extends CSCharacterParser {
 	@Override
 	public void textSetFont(COSName name, PDFont font, float size) {
 		super.textSetFont(name, font, size);
-		AffineTransform tx;
-		tx = (AffineTransform) getDeviceTransform().clone();
-		tx.concatenate(textState.globalTransform);
+		AffineTransform tx = updateGlyphTransform();
 		maxDX = textState.fontSize * 0.2 * tx.getScaleX();
 		maxDY = textState.fontSize * 0.6 * tx.getScaleY();
 	}
@@ -183,9 +181,7 @@ public class CSTextSearcher extends CSCharacterParser {
 	public void textSetTransform(float a, float b, float c, float d, float e,
 			float f) {
 		super.textSetTransform(a, b, c, d, e, f);
-		AffineTransform tx;
-		tx = (AffineTransform) getDeviceTransform().clone();
-		tx.concatenate(textState.globalTransform);
+		AffineTransform tx = updateGlyphTransform();
 		maxDX = textState.fontSize * 0.2 * tx.getScaleX();
 		maxDY = textState.fontSize * 0.6 * tx.getScaleY();
 	}
@@ -0,0 +1,224 @@
+/*
+ * intarsys consulting gmbh
+ * all rights reserved
+ *
+ */
+package de.intarsys.pdf.content.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An automaton matching a dictionary of terms in a single pass over a
+ * character sequence (Aho-Corasick).
+ * <p>
+ * Characters are normalized before matching: any whitespace is a space and,
+ * if case is ignored, characters are compared in lower case. The terms are
+ * normalized the same way, so a normalized term has the same length as the
+ * original.
+ * <p>
+ * The automaton is immutable after construction and can be shared between
+ * threads. The matching state is a plain <code>int</code>, starting with
+ * {@link #START}.
+ */
+public class CSTextTermMatcher {
+
+	private static final int[] NO_TERMS = new int[0];
+
+	/**
+	 * The initial state.
+	 */
+	public static final int START = 0;
+
+	/**
+	 * The failure transition of each state
+	 */
+	final private int[] fail;
+
+	final private boolean ignoreCase;
+
+	/**
+	 * The sorted transition characters of each state
+	 */
+	final private char[][] labels;
+
+	/**
+	 * The terms recognized in each state, including those of the failure
+	 * states
+	 */
+	final private int[][] outputs;
+
+	/**
+	 * The target states, parallel to labels
+	 */
+	final private int[][] targets;
+
+	final private String[] terms;
+
+	public CSTextTermMatcher(String[] terms, boolean ignoreCase) {
+		super();
+		this.terms = terms.clone();
+		this.ignoreCase = ignoreCase;
+		// build the trie
+		List<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character, Integer>>();
+		List<List<Integer>> termLists = new ArrayList<List<Integer>>();
+		trie.add(new TreeMap<Character, Integer>());
+		termLists.add(new ArrayList<Integer>());
+		for (int i = 0; i < terms.length; i++) {
+			String term = terms[i];
+			if (term == null || term.length() == 0) {
+				continue;
+			}
+			int state = START;
+			for (int j = 0; j < term.length(); j++) {
+				Character c = Character.valueOf(normalize(term.charAt(j)));
+				Integer next = trie.get(state).get(c);
+				if (next == null) {
+					next = Integer.valueOf(trie.size());
+					trie.get(state).put(c, next);
+					trie.add(new TreeMap<Character, Integer>());
+					termLists.add(new ArrayList<Integer>());
+				}
+				state = next.intValue();
+			}
+			termLists.get(state).add(Integer.valueOf(i));
+		}
+		int size = trie.size();
+		labels = new char[size][];
+		targets = new int[size][];
+		for (int state = 0; state < size; state++) {
+			TreeMap<Character, Integer> children = trie.get(state);
+			labels[state] = new char[children.size()];
+			targets[state] = new int[children.size()];
+			int k = 0;
+			for (Map.Entry<Character, Integer> entry : children.entrySet()) {
+				labels[state][k] = entry.getKey().charValue();
+				targets[state][k] = entry.getValue().intValue();
+				k++;
+			}
+		}
+		// failure transitions and outputs in breadth first order
+		fail = new int[size];
+		outputs = new int[size][];
+		outputs[START] = NO_TERMS;
+		LinkedList<Integer> queue = new LinkedList<Integer>();
+		for (int k = 0; k < targets[START].length; k++) {
+			int child = targets[START][k];
+			fail[child] = START;
+			queue.add(Integer.valueOf(child));
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.removeFirst().intValue();
+			outputs[state] = createOutputs(termLists.get(state),
+					outputs[fail[state]]);
+			for (int k = 0; k < targets[state].length; k++) {
+				int child = targets[state][k];
+				char c = labels[state][k];
+				int f = fail[state];
+				int t;
+				while ((t = transition(f, c)) < 0 && f != START) {
+					f = fail[f];
+				}
+				fail[child] = t < 0 ? START : t;
+				queue.add(Integer.valueOf(child));
+			}
+		}
+	}
+
+	private int[] createOutputs(List<Integer> own, int[] inherited) {
+		if (own.isEmpty()) {
+			return inherited;
+		}
+		int[] result = new int[own.size() + inherited.length];
+		for (int i = 0; i < own.size(); i++) {
+			result[i] = own.get(i).intValue();
+		}
+		System.arraycopy(inherited, 0, result, own.size(), inherited.length);
+		return result;
+	}
+
+	/**
+	 * The term at <code>index</code>.
+	 * 
+	 * @param index
+	 * @return The term at <code>index</code>.
+	 */
+	public String getTerm(int index) {
+		return terms[index];
+	}
+
+	/**
+	 * The number of terms.
+	 * 
+	 * @return The number of terms.
+	 */
+	public int getTermCount() {
+		return terms.length;
+	}
+
+	/**
+	 * The indices of the terms ending with the last character consumed in
+	 * <code>state</code>. The result must not be modified.
+	 * 
+	 * @param state
+	 * @return The indices of the terms ending in <code>state</code>.
+	 */
+	public int[] getTerms(int state) {
+		return outputs[state];
+	}
+
+	public boolean isIgnoreCase() {
+		return ignoreCase;
+	}
+
+	/**
+	 * The state after consuming <code>c</code> in <code>state</code>.
+	 * 
+	 * @param state
+	 * @param c
+	 * @return The state after consuming <code>c</code> in
+	 *         <code>state</code>.
+	 */
+	public int next(int state, char c) {
+		char normalized = normalize(c);
+		while (true) {
+			int t = transition(state, normalized);
+			if (t >= 0) {
+				return t;
+			}
+			if (state == START) {
+				return START;
+			}
+			state = fail[state];
+		}
+	}
+
+	/**
+	 * The character <code>c</code> as used for matching.
+	 * 
+	 * @param c
+	 * @return The character <code>c</code> as used for matching.
+	 */
+	public char normalize(char c) {
+		if (Character.isWhitespace(c)) {
+			return ' ';
+		}
+		if (ignoreCase) {
+			return Character.toLowerCase(c);
+		}
+		return c;
+	}
+
+	private int transition(int state, char c) {
+		char[] stateLabels = labels[state];
+		int index = Arrays.binarySearch(stateLabels, c);
+		if (index < 0) {
+			return -1;
+		}
+		return targets[state][index];
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * intarsys consulting gmbh
+ * all rights reserved
+ *
+ */
+package de.intarsys.pdf.content.text;
+
+import java.io.IOException;
+
+import de.intarsys.pdf.pd.PDPage;
+
+/**
+ * The receiver of the text extracted from the pages of a document by a
+ * {@link CSDocumentTextExtractor}.
+ * <p>
+ * The pages are delivered in document order, one at a time, from the thread
+ * calling {@link CSDocumentTextExtractor#extract(ICSPageTextHandler)}.
+ */
+public interface ICSPageTextHandler {
+
+	/**
+	 * The text of <code>page</code> is available.
+	 * 
+	 * @param index
+	 *            The zero based index of the page in the document
+	 * @param page
+	 *            The page
+	 * @param text
+	 *            The text extracted from the page
+	 * @throws IOException
+	 */
+	public void onPageText(int index, PDPage page, String text)
+			throws IOException;
+}
@@ -30,6 +30,7 @@
 package de.intarsys.pdf.cos;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -657,6 +658,20 @@ public class COSDocument implements ICOSContainer, ICOSExceptionHandler,
 		triggerChangedLocator(oldValue, locator);
 	}
 
+	/**
+	 * Write the document sequentially to <code>os</code> using the
+	 * <code>options</code> to control specific serializing behavior. The
+	 * document keeps its locator.
+	 * 
+	 * @param os
+	 * @param options
+	 * @throws IOException
+	 * @see STDocument#save(OutputStream, Map)
+	 */
+	public void save(OutputStream os, Map options) throws IOException {
+		stDoc.save(os, options);
+	}
+
 	/**
 	 * This method should not be used by the application programmer. This is
 	 * called in the {@link COSObject} lifecycle to ensure internal consistency.
@@ -183,6 +183,16 @@ public class COSFixed extends COSNumber {
 		return (int) floatValue;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.cos.COSNumber#longValue()
+	 */
+	@Override
+	public long longValue() {
+		return (long) floatValue;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.logging.Level;
 
 import de.intarsys.pdf.parser.COSLoadException;
@@ -80,6 +81,14 @@ public class COSIndirectObject extends COSDocumentElement implements
 
 	private static final byte F_FIXED = 2;
 
+	/**
+	 * Update the reference count without holding the object monitor. The
+	 * monitor is the load lock with concurrent reading, a parser registering a
+	 * reference must not block on it.
+	 */
+	private static final AtomicIntegerFieldUpdater<COSIndirectObject> REFERENCE_COUNT = AtomicIntegerFieldUpdater
+			.newUpdater(COSIndirectObject.class, "referenceCount"); //$NON-NLS-1$
+
 	/**
 	 * Create an indirection for object.
 	 * 
@@ -120,9 +129,12 @@ public class COSIndirectObject extends COSDocumentElement implements
 	/**
 	 * The referenced COS object. This may be a {@link Reference} object also,
 	 * so this is typed to {@link Object}.
+	 * <p>
+	 * This is volatile as the object may be read without a lock while it is
+	 * loaded concurrently.
 	 * 
 	 */
-	private Object object;
+	private volatile Object object;
 
 	/** The document hosting the indirect object. */
 	private COSDocument doc;
@@ -139,7 +151,7 @@ public class COSIndirectObject extends COSDocumentElement implements
 	/**
 	 * number of known references.
 	 */
-	private short referenceCount = 0;
+	private volatile int referenceCount = 0;
 
 	protected COSIndirectObject() {
 		super();
@@ -187,7 +199,7 @@ public class COSIndirectObject extends COSDocumentElement implements
 	 */
 	public ICOSContainer associate(ICOSContainer newContainer, COSObject pObject) {
 		newContainer.register(this);
-		referenceCount++;
+		REFERENCE_COUNT.incrementAndGet(this);
 		return this;
 	}
 
@@ -283,11 +295,7 @@ public class COSIndirectObject extends COSDocumentElement implements
 		}
 		// do NOT hold read lock when accessing !!
 		if (tempObject == null) {
-			Object lock = this;
-			if (stGetDoc() != null) {
-				lock = stGetDoc().getAccessLock();
-			}
-			synchronized (lock) {
+			synchronized (getLoadLock()) {
 				// must retry
 				tempObject = getObject();
 				if (tempObject == null) {
@@ -320,7 +328,7 @@ public class COSIndirectObject extends COSDocumentElement implements
 	 */
 	public ICOSContainer disassociate(ICOSContainer oldContainer,
 			COSObject pObject) {
-		referenceCount--;
+		REFERENCE_COUNT.decrementAndGet(this);
 		return this;
 	}
 
@@ -340,11 +348,7 @@ public class COSIndirectObject extends COSDocumentElement implements
 			return true;
 		}
 		// do NOT hold read lock when accessing !!
-		Object lock = this;
-		if (stGetDoc() != null) {
-			lock = stGetDoc().getAccessLock();
-		}
-		synchronized (lock) {
+		synchronized (getLoadLock()) {
 			// must retry
 			tempObject = getObject();
 			if (tempObject != null) {
@@ -387,13 +391,33 @@ public class COSIndirectObject extends COSDocumentElement implements
 		return key;
 	}
 
+	/**
+	 * The lock to hold while swapping in the object.
+	 * <p>
+	 * This is the documents access lock, unless the document supports
+	 * concurrent reading. In that case each object is loaded holding its own
+	 * lock only. Nested loads (an indirect stream length, the object stream
+	 * of a compressed object) only ever proceed from an object to its
+	 * container data and can not form a cycle.
+	 * 
+	 * @return The lock to hold while swapping in the object.
+	 */
+	protected Object getLoadLock() {
+		STDocument stDoc = stGetDoc();
+		if ((stDoc == null) || stDoc.isConcurrentRead()) {
+			return this;
+		}
+		return stDoc.getAccessLock();
+	}
+
 	protected COSObject getObject() {
-		if (object == null) {
+		Object tempObject = object;
+		if (tempObject == null) {
 			return null;
-		} else if (object instanceof Reference) {
-			return (COSObject) ((Reference) object).get();
+		} else if (tempObject instanceof Reference) {
+			return (COSObject) ((Reference) tempObject).get();
 		} else {
-			return (COSObject) object;
+			return (COSObject) tempObject;
 		}
 	}
 
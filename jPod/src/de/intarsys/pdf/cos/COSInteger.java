@@ -34,7 +34,7 @@ package de.intarsys.pdf.cos;
  */
 public class COSInteger extends COSNumber {
 	static public COSInteger create(byte[] bytes, int start, int length) {
-		int result = 0;
+		long result = 0;
 		int end = start + length;
 		boolean negative = false;
 		byte prefix = bytes[start];
@@ -57,6 +57,10 @@ public class COSInteger extends COSNumber {
 		return new COSInteger(value);
 	}
 
+	static public COSInteger create(long value) {
+		return new COSInteger(value);
+	}
+
 	static public COSInteger createStrict(byte[] bytes, int start, int length) {
 		long resultLong = 0;
 		int end = start + length;
@@ -68,23 +72,23 @@ public class COSInteger extends COSNumber {
 			negative = true;
 			start++;
 		}
+		if (end - start > 18) {
+			// may exceed the range of long
+			return null;
+		}
 		for (int i = start; i < end; i++) {
 			resultLong = ((resultLong * 10) + bytes[i]) - '0';
 		}
-		if (resultLong > Integer.MAX_VALUE || resultLong < Integer.MIN_VALUE) {
-			return null;
-		}
-		int resultInt = (int) resultLong;
 		if (negative) {
-			return new COSInteger(-resultInt);
+			return new COSInteger(-resultLong);
 		}
-		return new COSInteger(resultInt);
+		return new COSInteger(resultLong);
 	}
 
 	/** the integer value represented */
-	private final int value;
+	private final long value;
 
-	protected COSInteger(int newValue) {
+	protected COSInteger(long newValue) {
 		value = newValue;
 	}
 
@@ -116,7 +120,7 @@ public class COSInteger extends COSNumber {
 	 */
 	@Override
 	protected String basicToString() {
-		return String.valueOf(intValue());
+		return String.valueOf(value);
 	}
 
 	/*
@@ -139,7 +143,7 @@ public class COSInteger extends COSNumber {
 		if (!(o instanceof COSInteger)) {
 			return false;
 		}
-		return value == ((COSInteger) o).intValue();
+		return value == ((COSInteger) o).longValue();
 	}
 
 	/*
@@ -159,7 +163,7 @@ public class COSInteger extends COSNumber {
 	 */
 	@Override
 	public int hashCode() {
-		return value;
+		return (int) (value ^ (value >>> 32));
 	}
 
 	/*
@@ -169,6 +173,16 @@ public class COSInteger extends COSNumber {
 	 */
 	@Override
 	public int intValue() {
+		return (int) value;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.cos.COSNumber#longValue()
+	 */
+	@Override
+	public long longValue() {
 		return value;
 	}
 
@@ -56,6 +56,13 @@ abstract public class COSNumber extends COSPrimitiveObject {
 	 */
 	abstract public int intValue();
 
+	/**
+	 * Answer the value of the receiver as a long
+	 * 
+	 * @return Answer the value of the receiver as a long
+	 */
+	abstract public long longValue();
+
 	/*
 	 * (non-Javadoc)
 	 * 
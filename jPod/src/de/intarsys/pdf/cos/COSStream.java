@@ -29,8 +29,14 @@
  */
 package de.intarsys.pdf.cos;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -41,6 +47,7 @@ import de.intarsys.pdf.filter.FilterFactory;
 import de.intarsys.pdf.filter.IFilter;
 import de.intarsys.tools.collection.SingleObjectIterator;
 import de.intarsys.tools.file.FileTools;
+import de.intarsys.tools.stream.StreamTools;
 
 /**
  * An object representing stream data in a PDF document. Unlike a string, stream
@@ -194,6 +201,21 @@ public class COSStream extends COSCompositeObject {
 	/** The physical byte stream */
 	private byte[] encodedBytes;
 
+	/** The lazy source of the physical byte stream */
+	private ICOSStreamSource encodedSource;
+
+	/**
+	 * The physical bytes read from {@link #encodedSource}, they may be
+	 * reclaimed when memory is low
+	 */
+	private SoftReference<byte[]> encodedSourceBytes;
+
+	/**
+	 * The number of physical bytes read from {@link #encodedSource} or -1 if
+	 * not yet read. This may differ from /Length when decrypted.
+	 */
+	private int encodedSourceLength = -1;
+
 	protected COSStream() {
 		super();
 	}
@@ -278,6 +300,7 @@ public class COSStream extends COSCompositeObject {
 		// be sure decoded stream is available
 		getDecodedBytes();
 		encodedBytes = null;
+		encodedSource = null;
 		COSObject filters = getFilters();
 		if (filters.isNull()) {
 			getDict().put(DK_Filter, name);
@@ -356,6 +379,36 @@ public class COSStream extends COSCompositeObject {
 		return this;
 	}
 
+	/**
+	 * The physical content currently available, either held in memory or read
+	 * from the lazy source. No encoding is performed.
+	 * 
+	 * @return The physical content currently available.
+	 */
+	protected byte[] basicGetEncodedBytes() {
+		if ((encodedBytes != null) || (encodedSource == null)) {
+			return encodedBytes;
+		}
+		byte[] result = null;
+		if (encodedSourceBytes != null) {
+			result = encodedSourceBytes.get();
+		}
+		if (result == null) {
+			try {
+				result = encodedSource.getBytes();
+			} catch (IOException e) {
+				handleException(new COSRuntimeException(
+						"error reading stream", e)); //$NON-NLS-1$
+				return null;
+			}
+			encodedSourceBytes = new SoftReference<byte[]>(result);
+			// decryption may have changed the length, the dictionary is not
+			// touched here as reading may be concurrent
+			encodedSourceLength = result.length;
+		}
+		return result;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -375,6 +428,7 @@ public class COSStream extends COSCompositeObject {
 	public void basicSetDecodedBytes(byte[] newBytes) {
 		decodedBytes = newBytes;
 		encodedBytes = null;
+		encodedSource = null;
 		// no update propagation, please!!
 		getDict().basicRemoveSilent(DK_Length);
 	}
@@ -387,12 +441,32 @@ public class COSStream extends COSCompositeObject {
 	 */
 	public void basicSetEncodedBytes(byte[] newBytes) {
 		encodedBytes = newBytes;
+		encodedSource = null;
 		decodedBytes = null;
 		int length = (encodedBytes == null) ? 0 : encodedBytes.length;
 		// no update propagation, please!!
 		getDict().basicPutSilent(DK_Length, COSInteger.create(length));
 	}
 
+	/**
+	 * Set the source for the streams physical content. The content is read
+	 * from <code>source</code> upon first access and may be read again when
+	 * memory is low.
+	 * <p>
+	 * The stream dictionary is not changed, /Length should already state the
+	 * number of bytes in the source.
+	 * 
+	 * @param source
+	 *            the source for the physical content for the stream
+	 */
+	public void basicSetEncodedSource(ICOSStreamSource source) {
+		encodedSource = source;
+		encodedSourceBytes = null;
+		encodedSourceLength = -1;
+		encodedBytes = null;
+		decodedBytes = null;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -417,7 +491,8 @@ public class COSStream extends COSCompositeObject {
 		COSStream result = new COSStream();
 		result.beIndirect();
 		// aggregated dictionary takes care of itself
-		result.encodedBytes = this.encodedBytes;
+		// a copy may outlive the document, don't share the source
+		result.encodedBytes = this.basicGetEncodedBytes();
 		result.decodedBytes = this.decodedBytes;
 		return result;
 	}
@@ -483,8 +558,8 @@ public class COSStream extends COSCompositeObject {
 	public COSObject copyDeep(Map copied) {
 		COSStream result = (COSStream) super.copyDeep(copied);
 		result.setDict((COSDictionary) getDict().copyDeep(copied));
-		if (encodedBytes != null) {
-			result.setEncodedBytes(encodedBytes);
+		if ((encodedBytes != null) || (encodedSource != null)) {
+			result.setEncodedBytes(basicGetEncodedBytes());
 		} else {
 			result.setDecodedBytes(decodedBytes);
 		}
@@ -500,8 +575,8 @@ public class COSStream extends COSCompositeObject {
 	public COSObject copyShallow() {
 		COSStream result = (COSStream) super.copyShallow();
 		result.setDict((COSDictionary) getDict().copyShallow());
-		if (encodedBytes != null) {
-			result.setEncodedBytes(encodedBytes);
+		if ((encodedBytes != null) || (encodedSource != null)) {
+			result.setEncodedBytes(basicGetEncodedBytes());
 		} else {
 			result.setDecodedBytes(decodedBytes);
 		}
@@ -517,14 +592,34 @@ public class COSStream extends COSCompositeObject {
 	protected COSObject copySubGraph(Map copied) {
 		COSStream result = (COSStream) super.copySubGraph(copied);
 		result.setDict((COSDictionary) getDict().copySubGraph(copied));
-		if (encodedBytes != null) {
-			result.setEncodedBytes(encodedBytes);
+		if ((encodedBytes != null) || (encodedSource != null)) {
+			result.setEncodedBytes(basicGetEncodedBytes());
 		} else {
 			result.setDecodedBytes(decodedBytes);
 		}
 		return result;
 	}
 
+	/**
+	 * Read the physical content from its lazy source (if any) and hold it in
+	 * memory, so that this no longer depends on the source.
+	 * <p>
+	 * This must be called before the storage the source refers to is
+	 * overwritten.
+	 */
+	public void detachEncodedSource() {
+		if (encodedSource == null) {
+			return;
+		}
+		encodedBytes = basicGetEncodedBytes();
+		encodedSource = null;
+		encodedSourceBytes = null;
+		encodedSourceLength = -1;
+		int length = (encodedBytes == null) ? 0 : encodedBytes.length;
+		// no update propagation, please!!
+		getDict().basicPutSilent(DK_Length, COSInteger.create(length));
+	}
+
 	/**
 	 * Decode the filtered stream content using the filters defined in the
 	 * /Filter entry in the stream dictionary
@@ -534,13 +629,16 @@ public class COSStream extends COSCompositeObject {
 	 */
 	protected byte[] doDecode() throws IOException {
 		byte[] newBytes;
+		byte[] tempEncoded = basicGetEncodedBytes();
 
-		if (isExternal() && isBytesArrayEmpty(encodedBytes)) {
+		if (isExternal() && isBytesArrayEmpty(tempEncoded)) {
 			// reset the encodedbytes because of later null checks
 			encodedBytes = null;
+			encodedSource = null;
 			parseFKeyedFile();
+			tempEncoded = encodedBytes;
 		}
-		if (encodedBytes == null) {
+		if (tempEncoded == null) {
 			return null;
 		}
 
@@ -548,11 +646,11 @@ public class COSStream extends COSCompositeObject {
 		COSObject filters = getFilters();
 		if (filters.isNull()) {
 			int length = getLength();
-			if ((length != -1) && (encodedBytes.length > length)) {
+			if ((length != -1) && (tempEncoded.length > length)) {
 				newBytes = new byte[length];
-				System.arraycopy(encodedBytes, 0, newBytes, 0, length);
+				System.arraycopy(tempEncoded, 0, newBytes, 0, length);
 			} else {
-				newBytes = encodedBytes;
+				newBytes = tempEncoded;
 			}
 			return newBytes;
 		}
@@ -563,9 +661,9 @@ public class COSStream extends COSCompositeObject {
 		// decode
 		if (filters instanceof COSName) {
 			newBytes = doDecode((COSName) filters, options.asDictionary(),
-					encodedBytes, 0, getAnyLength());
+					tempEncoded, 0, getAnyLength());
 		} else {
-			byte[] temp = encodedBytes;
+			byte[] temp = tempEncoded;
 			int length = getAnyLength();
 			for (int i = 0; i < ((COSArray) filters).size(); i++) {
 				COSObject option = COSNull.NULL;
@@ -611,6 +709,62 @@ public class COSStream extends COSCompositeObject {
 		return filter.decode(bytes, offset, length);
 	}
 
+	/**
+	 * Chain the decoding step for <code>filterName</code> to the
+	 * {@link InputStream} <code>is</code>.
+	 * 
+	 * @param filterName
+	 *            The name of a filter to use for this step.
+	 * @param options
+	 *            The options to use for the filter.
+	 * @param is
+	 *            The {@link InputStream} delivering the encoded data.
+	 * 
+	 * @return The {@link InputStream} delivering the decoded data.
+	 * 
+	 * @throws IOException
+	 */
+	protected InputStream doDecode(COSName filterName, COSDictionary options,
+			InputStream is) throws IOException {
+		IFilter filter = FilterFactory.get().createFilter(filterName, options);
+		filter.setStream(this);
+		return filter.decode(is);
+	}
+
+	/**
+	 * An {@link InputStream} on the encoded (physical) bytes or
+	 * <code>null</code> if no content is available.
+	 * 
+	 * @return An {@link InputStream} on the encoded (physical) bytes.
+	 * 
+	 * @throws IOException
+	 */
+	protected InputStream doGetEncodedInputStream() throws IOException {
+		if ((encodedBytes == null) && (encodedSource != null)) {
+			if ((encodedSourceBytes == null)
+					|| (encodedSourceBytes.get() == null)) {
+				// stream from the source without holding the bytes
+				return encodedSource.getInputStream();
+			}
+		}
+		if (isExternal() && isBytesArrayEmpty(basicGetEncodedBytes())) {
+			File externalFile = getExternalFile();
+			if (externalFile == null) {
+				return null;
+			}
+			return new FileInputStream(externalFile);
+		}
+		byte[] tempBytes = getEncodedBytes();
+		if (tempBytes == null) {
+			return null;
+		}
+		int length = getLength();
+		if ((length == -1) || (length > tempBytes.length)) {
+			length = tempBytes.length;
+		}
+		return new ByteArrayInputStream(tempBytes, 0, length);
+	}
+
 	/**
 	 * encode the filtered stream content using the filters defined in the
 	 * /Filter entry in the stream dictionary in reverse order
@@ -756,7 +910,8 @@ public class COSStream extends COSCompositeObject {
 	public int getAnyLength() {
 		int result = getLength();
 		if (result == -1) {
-			return encodedBytes.length;
+			byte[] tempEncoded = basicGetEncodedBytes();
+			return (tempEncoded == null) ? 0 : tempEncoded.length;
 		}
 		return result;
 	}
@@ -781,6 +936,71 @@ public class COSStream extends COSCompositeObject {
 		return decodedBytes;
 	}
 
+	/**
+	 * A {@link ReadableByteChannel} on the unfiltered (logical) stream content.
+	 * 
+	 * @see #getDecodedInputStream()
+	 * 
+	 * @return A {@link ReadableByteChannel} on the unfiltered (logical) stream
+	 *         content
+	 * 
+	 * @throws IOException
+	 */
+	public ReadableByteChannel getDecodedChannel() throws IOException {
+		return Channels.newChannel(getDecodedInputStream());
+	}
+
+	/**
+	 * An {@link InputStream} on the unfiltered (logical) stream content.
+	 * <p>
+	 * In contrast to {@link #getDecodedBytes()} the filters are applied lazily
+	 * while reading and the result is not cached in the stream, so that even
+	 * very large streams can be processed with constant memory. Filters that
+	 * have no streaming implementation still decode in memory.
+	 * <p>
+	 * The caller is responsible for closing the {@link InputStream}.
+	 * 
+	 * @return An {@link InputStream} on the unfiltered (logical) stream
+	 *         content
+	 * 
+	 * @throws IOException
+	 */
+	public InputStream getDecodedInputStream() throws IOException {
+		byte[] tempBytes = decodedBytes;
+		if (tempBytes != null) {
+			return new ByteArrayInputStream(tempBytes);
+		}
+		InputStream is = doGetEncodedInputStream();
+		if (is == null) {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+		COSObject filters = getFilters();
+		if (filters.isNull()) {
+			return is;
+		}
+		COSObject options = getDecodeParams();
+		try {
+			if (filters instanceof COSName) {
+				return doDecode((COSName) filters, options.asDictionary(), is);
+			}
+			for (int i = 0; i < ((COSArray) filters).size(); i++) {
+				COSObject option = COSNull.NULL;
+				if (!options.isNull()) {
+					option = ((COSArray) options).get(i);
+				}
+				COSName filter = ((COSArray) filters).get(i).asName();
+				is = doDecode(filter, option.asDictionary(), is);
+			}
+			return is;
+		} catch (IOException e) {
+			StreamTools.close(is);
+			throw e;
+		} catch (RuntimeException e) {
+			StreamTools.close(is);
+			throw e;
+		}
+	}
+
 	/**
 	 * The unfiltered content as in getDecodedBytes, but allow the caller to
 	 * manipulate the result by copying/not caching the returned bytes
@@ -794,7 +1014,7 @@ public class COSStream extends COSCompositeObject {
 		try {
 			bytes = doDecode();
 			// take care; doDecode does not always create a new array
-			if (bytes != encodedBytes) {
+			if (bytes != basicGetEncodedBytes()) {
 				return bytes;
 			}
 		} catch (IOException e) {
@@ -843,6 +1063,9 @@ public class COSStream extends COSCompositeObject {
 	 * @return The filtered (physical) stream content
 	 */
 	public byte[] getEncodedBytes() {
+		if ((encodedBytes == null) && (encodedSource != null)) {
+			return basicGetEncodedBytes();
+		}
 		if (encodedBytes == null) {
 			try {
 				doEncode();
@@ -856,6 +1079,53 @@ public class COSStream extends COSCompositeObject {
 		return encodedBytes;
 	}
 
+	/**
+	 * An {@link InputStream} on the filtered (physical) stream content.
+	 * <p>
+	 * The caller is responsible for closing the {@link InputStream}.
+	 * 
+	 * @return An {@link InputStream} on the filtered (physical) stream
+	 *         content
+	 * 
+	 * @throws IOException
+	 */
+	public InputStream getEncodedInputStream() throws IOException {
+		InputStream is = doGetEncodedInputStream();
+		if (is == null) {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+		return is;
+	}
+
+	/**
+	 * The source the physical content is read from on demand or
+	 * <code>null</code>. The source is only available as long as the content
+	 * has not been changed or detached from the source.
+	 * 
+	 * @return The source of the physical content or <code>null</code>.
+	 */
+	public ICOSStreamSource getEncodedSource() {
+		return encodedSource;
+	}
+
+	/**
+	 * The file referenced by the F key in this stream or <code>null</code>.
+	 * 
+	 * @return The file referenced by the F key in this stream.
+	 */
+	protected File getExternalFile() {
+		COSObject fileSpec = dict.get(DK_F);
+		if (!(fileSpec instanceof COSString)) {
+			// todo 2 implement PDF fileSpecification logic
+			return null;
+		}
+		File externalFile = new File(((COSString) fileSpec).stringValue());
+		if (!externalFile.exists()) {
+			return null;
+		}
+		return externalFile;
+	}
+
 	/**
 	 * Return the filter or the collection of filters for the stream.
 	 * 
@@ -933,10 +1203,16 @@ public class COSStream extends COSCompositeObject {
 	 * The length of the encoded content. Be aware that this is the /Length
 	 * written in the stream dictionary, which is not necessarily a meaningful
 	 * value...
+	 * <p>
+	 * When the content is read from a lazy source, this is the number of bytes
+	 * read as soon as they are available.
 	 * 
 	 * @return The length of the encoded content
 	 */
 	public int getLength() {
+		if ((encodedSource != null) && (encodedSourceLength >= 0)) {
+			return encodedSourceLength;
+		}
 		COSNumber length = dict.get(DK_Length).asInteger();
 		if (length != null) {
 			return length.intValue();
@@ -972,6 +1248,22 @@ public class COSStream extends COSCompositeObject {
 		return false;
 	}
 
+	/**
+	 * <code>true</code> if the physical content is not yet available and will
+	 * be computed from the logical content by {@link #getEncodedBytes()}.
+	 * <p>
+	 * The encoding of such a stream reads the filters and filter options,
+	 * which may be indirect objects loaded from the document data. Once these
+	 * are loaded, the encoding may be performed in another thread, as long as
+	 * the stream is not accessed otherwise in the meantime.
+	 * 
+	 * @return <code>true</code> if the physical content must be encoded.
+	 */
+	public boolean isEncodingRequired() {
+		return (encodedBytes == null) && (encodedSource == null)
+				&& (decodedBytes != null);
+	}
+
 	/**
 	 * <code>true</code> if the stream dictionary contains the F key.
 	 * 
@@ -996,16 +1288,8 @@ public class COSStream extends COSCompositeObject {
 	 * filtered content.
 	 */
 	protected void parseFKeyedFile() {
-		COSObject fileSpec = dict.get(DK_F);
-		String filepath = ""; //$NON-NLS-1$
-		if (fileSpec instanceof COSString) {
-			filepath = ((COSString) fileSpec).stringValue();
-		} else {
-			// todo 2 implement PDF fileSpecification logic
-			return;
-		}
-		File externalFile = new File(filepath);
-		if (!externalFile.exists()) {
+		File externalFile = getExternalFile();
+		if (externalFile == null) {
 			return;
 		}
 		byte[] content;
@@ -1016,6 +1300,7 @@ public class COSStream extends COSCompositeObject {
 		}
 		if (content != null) {
 			encodedBytes = content;
+			encodedSource = null;
 		}
 	}
 
@@ -1026,6 +1311,7 @@ public class COSStream extends COSCompositeObject {
 		// be sure decoded stream is available
 		getDecodedBytes();
 		encodedBytes = null;
+		encodedSource = null;
 		getDict().remove(DK_Filter);
 	}
 
@@ -1054,6 +1340,9 @@ public class COSStream extends COSCompositeObject {
 		super.restoreState(object);
 		COSStream stream = (COSStream) object;
 		encodedBytes = stream.encodedBytes;
+		encodedSource = stream.encodedSource;
+		encodedSourceBytes = stream.encodedSourceBytes;
+		encodedSourceLength = stream.encodedSourceLength;
 		decodedBytes = stream.decodedBytes;
 		triggerChanged(null, null, null);
 	}
@@ -1067,6 +1356,9 @@ public class COSStream extends COSCompositeObject {
 		COSStream result = new COSStream();
 		// aggregated dictionary takes care of itself
 		result.encodedBytes = this.encodedBytes;
+		result.encodedSource = this.encodedSource;
+		result.encodedSourceBytes = this.encodedSourceBytes;
+		result.encodedSourceLength = this.encodedSourceLength;
 		result.decodedBytes = this.decodedBytes;
 		result.container = this.container.saveStateContainer();
 		return result;
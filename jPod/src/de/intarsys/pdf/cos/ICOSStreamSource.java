@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.pdf.cos;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The source of the physical (encoded) content of a {@link COSStream} that is
+ * not held in memory, for example a region in the documents file.
+ * <p>
+ * The content is read on demand. The bytes delivered are ready to be decoded,
+ * that is any decryption is already performed by the source.
+ */
+public interface ICOSStreamSource {
+
+	/**
+	 * Read the complete content of this.
+	 * 
+	 * @return The complete content of this.
+	 * 
+	 * @throws IOException
+	 */
+	public byte[] getBytes() throws IOException;
+
+	/**
+	 * An {@link InputStream} on the content of this.
+	 * <p>
+	 * The caller is responsible for closing the {@link InputStream}.
+	 * 
+	 * @return An {@link InputStream} on the content of this.
+	 * 
+	 * @throws IOException
+	 */
+	public InputStream getInputStream() throws IOException;
+
+	/**
+	 * The number of bytes physically stored in the source. This may differ
+	 * from the number of bytes delivered when the content is encrypted.
+	 * 
+	 * @return The number of bytes physically stored in the source.
+	 */
+	public long getLength();
+}
@@ -29,10 +29,13 @@
  */
 package de.intarsys.pdf.crypt;
 
+import java.io.InputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.IvParameterSpec;
@@ -43,21 +46,42 @@ import javax.crypto.spec.SecretKeySpec;
  * 
  */
 public class AESCryptHandler extends StandardCryptHandler {
+
+	/**
+	 * The AES {@link CryptContext}, adding the source for the initialization
+	 * vectors.
+	 */
+	static protected class AESCryptContext extends CryptContext {
+
+		final protected SecureRandom random;
+
+		protected AESCryptContext(Cipher cipher, MessageDigest md) {
+			super(cipher, md);
+			this.random = new SecureRandom();
+		}
+	}
+
 	public static final String KEY_ALGORITHM = "AES"; //$NON-NLS-1$
+
 	public static final String CIPHER_ALGORITHM = "AES/CBC/PKCS5Padding"; //$NON-NLS-1$
+
 	public static final String DIGEST_ALGORITHM = "MD5"; //$NON-NLS-1$
+
+	private static final byte[] SALT = new byte[] { 0x73, 0x41, 0x6c, 0x54 };
+
 	private int blockSize;
 
 	@Override
-	synchronized protected byte[] basicDecrypt(byte[] data,
+	protected byte[] basicDecrypt(CryptContext context, byte[] data,
 			byte[] encryptionKey, int objectNum, int genNum)
 			throws COSSecurityException {
 		try {
-			updateHash(encryptionKey, objectNum, genNum);
-			byte[] keyBase = md.digest();
+			byte[] keyBase = createObjectKey(context, encryptionKey,
+					objectNum, genNum);
 			IvParameterSpec ivSpec = new IvParameterSpec(data, 0, blockSize);
 			SecretKey skeySpec = new SecretKeySpec(keyBase, 0, length,
 					KEY_ALGORITHM);
+			Cipher cipher = context.cipher;
 			cipher.init(Cipher.DECRYPT_MODE, skeySpec, ivSpec);
 			return cipher.doFinal(data, blockSize, data.length - blockSize);
 		} catch (Exception e) {
@@ -66,26 +90,61 @@ public class AESCryptHandler extends StandardCryptHandler {
 	}
 
 	@Override
-	synchronized protected byte[] basicEncrypt(byte[] data,
+	protected InputStream basicDecrypt(CryptContext context, InputStream is,
 			byte[] encryptionKey, int objectNum, int genNum)
 			throws COSSecurityException {
 		try {
-			updateHash(encryptionKey, objectNum, genNum);
-			byte[] keyBase = md.digest();
-			byte[] initVector = cipher.getIV();
-			if (initVector == null) {
-				initVector = new byte[16];
+			byte[] initVector = new byte[blockSize];
+			int position = 0;
+			while (position < blockSize) {
+				int count = is.read(initVector, position, blockSize
+						- position);
+				if (count < 0) {
+					throw new COSSecurityException(
+							"missing initialization vector"); //$NON-NLS-1$
+				}
+				position += count;
 			}
+			byte[] keyBase = createObjectKey(context, encryptionKey,
+					objectNum, genNum);
+			IvParameterSpec ivSpec = new IvParameterSpec(initVector);
+			SecretKey skeySpec = new SecretKeySpec(keyBase, 0, length,
+					KEY_ALGORITHM);
+			Cipher cipher = createCipher();
+			cipher.init(Cipher.DECRYPT_MODE, skeySpec, ivSpec);
+			return new CipherInputStream(is, cipher);
+		} catch (COSSecurityException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new COSSecurityException(e);
+		}
+	}
+
+	@Override
+	protected byte[] basicEncrypt(CryptContext context, byte[] data,
+			byte[] encryptionKey, int objectNum, int genNum)
+			throws COSSecurityException {
+		try {
+			byte[] keyBase = createObjectKey(context, encryptionKey,
+					objectNum, genNum);
+			byte[] initVector = new byte[blockSize];
+			((AESCryptContext) context).random.nextBytes(initVector);
 			IvParameterSpec ivSpec = new IvParameterSpec(initVector, 0,
 					initVector.length);
 			SecretKey skeySpec = new SecretKeySpec(keyBase, 0, length,
 					KEY_ALGORITHM);
+			Cipher cipher = context.cipher;
 			cipher.init(Cipher.ENCRYPT_MODE, skeySpec, ivSpec);
-			byte[] encrypted = cipher.doFinal(data, 0, data.length);
-			byte[] result = new byte[initVector.length + encrypted.length];
+			byte[] result = new byte[initVector.length
+					+ cipher.getOutputSize(data.length)];
 			System.arraycopy(initVector, 0, result, 0, initVector.length);
-			System.arraycopy(encrypted, 0, result, initVector.length,
-					encrypted.length);
+			int count = cipher.doFinal(data, 0, data.length, result,
+					initVector.length);
+			if (initVector.length + count < result.length) {
+				byte[] tempResult = new byte[initVector.length + count];
+				System.arraycopy(result, 0, tempResult, 0, tempResult.length);
+				result = tempResult;
+			}
 			return result;
 		} catch (Exception e) {
 			throw new COSSecurityException(e);
@@ -93,12 +152,9 @@ public class AESCryptHandler extends StandardCryptHandler {
 	}
 
 	@Override
-	public void initialize(byte[] pCryptKey) throws COSSecurityException {
-		super.initialize(pCryptKey);
+	protected Cipher createCipher() throws COSSecurityException {
 		try {
-			md = MessageDigest.getInstance(DIGEST_ALGORITHM);
-			cipher = Cipher.getInstance(CIPHER_ALGORITHM);
-			blockSize = cipher.getBlockSize();
+			return Cipher.getInstance(CIPHER_ALGORITHM);
 		} catch (NoSuchAlgorithmException e) {
 			throw new COSSecurityException(e);
 		} catch (NoSuchPaddingException e) {
@@ -107,9 +163,29 @@ public class AESCryptHandler extends StandardCryptHandler {
 	}
 
 	@Override
-	protected void updateHash(byte[] encryptionKey, int objectNum, int genNum) {
-		super.updateHash(encryptionKey, objectNum, genNum);
-		md.update(new byte[] { 0x73, 0x41, 0x6c, 0x54 });
+	protected CryptContext createContext() throws COSSecurityException {
+		return new AESCryptContext(createCipher(), createDigest());
+	}
+
+	@Override
+	protected MessageDigest createDigest() throws COSSecurityException {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new COSSecurityException(e);
+		}
+	}
+
+	@Override
+	public void initialize(byte[] pCryptKey) throws COSSecurityException {
+		super.initialize(pCryptKey);
+		blockSize = getContext().cipher.getBlockSize();
 	}
 
+	@Override
+	protected void updateHash(CryptContext context, byte[] encryptionKey,
+			int objectNum, int genNum) {
+		super.updateHash(context, encryptionKey, objectNum, genNum);
+		context.md.update(SALT);
+	}
 }
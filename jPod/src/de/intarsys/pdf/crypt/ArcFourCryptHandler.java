@@ -29,10 +29,12 @@
  */
 package de.intarsys.pdf.crypt;
 
+import java.io.InputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
@@ -50,15 +52,13 @@ public class ArcFourCryptHandler extends StandardCryptHandler {
 	public static final String DIGEST_ALGORITHM = "MD5"; //$NON-NLS-1$
 
 	@Override
-	synchronized protected byte[] basicDecrypt(byte[] data,
+	protected byte[] basicDecrypt(CryptContext context, byte[] data,
 			byte[] encryptionKey, int objectNum, int genNum)
 			throws COSSecurityException {
 		try {
-			updateHash(encryptionKey, objectNum, genNum);
-			byte[] keyBase = md.digest();
-			SecretKey skeySpec = new SecretKeySpec(keyBase, 0, length,
-					KEY_ALGORITHM);
-			cipher.init(Cipher.DECRYPT_MODE, skeySpec);
+			Cipher cipher = context.cipher;
+			cipher.init(Cipher.DECRYPT_MODE, createSecretKey(context,
+					encryptionKey, objectNum, genNum));
 			return cipher.doFinal(data);
 		} catch (Exception e) {
 			throw new COSSecurityException(e);
@@ -66,15 +66,30 @@ public class ArcFourCryptHandler extends StandardCryptHandler {
 	}
 
 	@Override
-	synchronized protected byte[] basicEncrypt(byte[] data,
+	protected InputStream basicDecrypt(CryptContext context, InputStream is,
 			byte[] encryptionKey, int objectNum, int genNum)
 			throws COSSecurityException {
 		try {
-			updateHash(encryptionKey, objectNum, genNum);
-			byte[] keyBase = md.digest();
-			SecretKey skeySpec = new SecretKeySpec(keyBase, 0, length,
-					CIPHER_ALGORITHM);
-			cipher.init(Cipher.DECRYPT_MODE, skeySpec);
+			Cipher cipher = createCipher();
+			cipher.init(Cipher.DECRYPT_MODE, createSecretKey(context,
+					encryptionKey, objectNum, genNum));
+			return new CipherInputStream(is, cipher);
+		} catch (COSSecurityException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new COSSecurityException(e);
+		}
+	}
+
+	@Override
+	protected byte[] basicEncrypt(CryptContext context, byte[] data,
+			byte[] encryptionKey, int objectNum, int genNum)
+			throws COSSecurityException {
+		try {
+			// RC4 is symmetric
+			Cipher cipher = context.cipher;
+			cipher.init(Cipher.DECRYPT_MODE, createSecretKey(context,
+					encryptionKey, objectNum, genNum));
 			return cipher.doFinal(data);
 		} catch (Exception e) {
 			throw new COSSecurityException(e);
@@ -82,15 +97,29 @@ public class ArcFourCryptHandler extends StandardCryptHandler {
 	}
 
 	@Override
-	public void initialize(byte[] pCryptKey) throws COSSecurityException {
-		super.initialize(pCryptKey);
+	protected Cipher createCipher() throws COSSecurityException {
 		try {
-			md = MessageDigest.getInstance(DIGEST_ALGORITHM);
-			cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+			return Cipher.getInstance(CIPHER_ALGORITHM);
 		} catch (NoSuchAlgorithmException e) {
 			throw new COSSecurityException(e);
 		} catch (NoSuchPaddingException e) {
 			throw new COSSecurityException(e);
 		}
 	}
+
+	@Override
+	protected MessageDigest createDigest() throws COSSecurityException {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new COSSecurityException(e);
+		}
+	}
+
+	protected SecretKey createSecretKey(CryptContext context,
+			byte[] encryptionKey, int objectNum, int genNum) {
+		byte[] keyBase = createObjectKey(context, encryptionKey, objectNum,
+				genNum);
+		return new SecretKeySpec(keyBase, 0, length, KEY_ALGORITHM);
+	}
 }
@@ -29,6 +29,8 @@
  */
 package de.intarsys.pdf.crypt;
 
+import java.io.InputStream;
+
 import de.intarsys.pdf.cos.COSCompositeObject;
 import de.intarsys.pdf.cos.COSDictionary;
 import de.intarsys.pdf.cos.COSObjectKey;
@@ -69,6 +71,24 @@ public interface ISystemSecurityHandler {
 	public byte[] decryptStream(COSObjectKey key, COSDictionary dict,
 			byte[] bytes) throws COSSecurityException;
 
+	/**
+	 * Decrypt the body of the stream <code>dict</code> while it is read from
+	 * <code>is</code>.
+	 * <p>
+	 * This is the streaming counterpart to
+	 * {@link #decryptStream(COSObjectKey, COSDictionary, byte[])}. The result
+	 * can be fed into the stream filters without materializing the encrypted
+	 * body.
+	 * 
+	 * @param key
+	 * @param dict
+	 * @param is
+	 * @return An {@link InputStream} on the decrypted body.
+	 * @throws COSSecurityException
+	 */
+	public InputStream decryptStream(COSObjectKey key, COSDictionary dict,
+			InputStream is) throws COSSecurityException;
+
 	public byte[] decryptString(COSObjectKey key, byte[] bytes)
 			throws COSSecurityException;
 
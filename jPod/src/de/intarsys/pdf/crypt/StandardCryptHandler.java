@@ -29,6 +29,7 @@
  */
 package de.intarsys.pdf.crypt;
 
+import java.io.InputStream;
 import java.security.MessageDigest;
 
 import javax.crypto.Cipher;
@@ -39,45 +40,102 @@ import de.intarsys.pdf.cos.COSObjectKey;
  * An abstract superclass for the default implementation of
  * {@link ICryptHandler}. The concrete implementations provide the standard RC4
  * and AES algorithms.
- * 
+ * <p>
+ * The handler itself is immutable after initialization. The {@link Cipher} and
+ * {@link MessageDigest} objects needed to derive the object keys are held in a
+ * {@link CryptContext} for each thread, so de/encryption from concurrent
+ * threads needs no synchronization.
  */
 abstract public class StandardCryptHandler extends AbstractCryptHandler {
-	/** The cipher object to be used in encrypting/decrypting */
-	protected Cipher cipher;
 
-	/** The message digest used throughout the encryption/decryption */
-	protected MessageDigest md;
+	/**
+	 * The mutable state needed to derive an object key and perform the
+	 * de/encryption. A {@link CryptContext} is never shared between threads.
+	 */
+	static protected class CryptContext {
+
+		/** The cipher object to be used in encrypting/decrypting */
+		final protected Cipher cipher;
 
-	/** A buffer for the bytes stemming from the generation number */
-	private byte[] generationBytes = new byte[2];
+		/** A buffer for the bytes stemming from the generation number */
+		final private byte[] generationBytes = new byte[2];
 
-	/** A buffer for the bytes stemming from the object number */
-	private byte[] objectBytes = new byte[3];
+		/** The message digest used to derive the object key */
+		final protected MessageDigest md;
+
+		/** A buffer for the bytes stemming from the object number */
+		final private byte[] objectBytes = new byte[3];
+
+		protected CryptContext(Cipher cipher, MessageDigest md) {
+			super();
+			this.cipher = cipher;
+			this.md = md;
+		}
+	}
+
+	/** The contexts for the threads using this handler */
+	final private ThreadLocal<CryptContext> contexts = new ThreadLocal<CryptContext>();
 
 	/**
 	 * The key that was computed for the encryption instance.
 	 */
 	private byte[] cryptKey;
 
-	abstract protected byte[] basicDecrypt(byte[] data, byte[] encryptionKey,
-			int objectNum, int genNum) throws COSSecurityException;
+	protected int length;
 
-	abstract protected byte[] basicEncrypt(byte[] data, byte[] encryptionKey,
-			int objectNum, int genNum) throws COSSecurityException;
+	public StandardCryptHandler() {
+		super();
+	}
 
-	protected void updateHash(byte[] encryptionKey, int objectNum, int genNum) {
-		md.reset();
-		md.update(encryptionKey);
-		objectBytes[0] = (byte) (objectNum & 0xff);
-		objectNum = objectNum >> 8;
-		objectBytes[1] = (byte) (objectNum & 0xff);
-		objectNum = objectNum >> 8;
-		objectBytes[2] = (byte) (objectNum & 0xff);
-		md.update(objectBytes);
-		generationBytes[0] = (byte) (genNum & 0xff);
-		genNum = genNum >> 8;
-		generationBytes[1] = (byte) (genNum & 0xff);
-		md.update(generationBytes);
+	abstract protected byte[] basicDecrypt(CryptContext context, byte[] data,
+			byte[] encryptionKey, int objectNum, int genNum)
+			throws COSSecurityException;
+
+	abstract protected InputStream basicDecrypt(CryptContext context,
+			InputStream is, byte[] encryptionKey, int objectNum, int genNum)
+			throws COSSecurityException;
+
+	abstract protected byte[] basicEncrypt(CryptContext context, byte[] data,
+			byte[] encryptionKey, int objectNum, int genNum)
+			throws COSSecurityException;
+
+	/**
+	 * Create a new {@link Cipher} for the algorithm implemented by this
+	 * handler.
+	 * 
+	 * @return A new {@link Cipher}
+	 * @throws COSSecurityException
+	 */
+	abstract protected Cipher createCipher() throws COSSecurityException;
+
+	protected CryptContext createContext() throws COSSecurityException {
+		return new CryptContext(createCipher(), createDigest());
+	}
+
+	/**
+	 * Create a new {@link MessageDigest} for deriving the object keys.
+	 * 
+	 * @return A new {@link MessageDigest}
+	 * @throws COSSecurityException
+	 */
+	abstract protected MessageDigest createDigest()
+			throws COSSecurityException;
+
+	/**
+	 * Derive the key for the object <code>objectNum</code>,
+	 * <code>genNum</code>. Only the first {@link #length} bytes of the result
+	 * are used.
+	 * 
+	 * @param context
+	 * @param encryptionKey
+	 * @param objectNum
+	 * @param genNum
+	 * @return The digest the object key is taken from.
+	 */
+	protected byte[] createObjectKey(CryptContext context,
+			byte[] encryptionKey, int objectNum, int genNum) {
+		updateHash(context, encryptionKey, objectNum, genNum);
+		return context.md.digest();
 	}
 
 	/*
@@ -94,24 +152,35 @@ abstract public class StandardCryptHandler extends AbstractCryptHandler {
 		if (objectKey == null) {
 			return bytes;
 		}
-		synchronized (this) {
-			return basicDecrypt(bytes, getCryptKey(), objectKey
-					.getObjectNumber(), objectKey.getGenerationNumber());
-		}
-	}
-
-	public StandardCryptHandler() {
-		super();
+		return basicDecrypt(getContext(), bytes, getCryptKey(), objectKey
+				.getObjectNumber(), objectKey.getGenerationNumber());
 	}
 
-	protected int length;
-
-	public void initialize(byte[] pCryptKey) throws COSSecurityException {
-		cryptKey = pCryptKey;
-		length = cryptKey.length + 5;
-		if (length > 16) {
-			length = 16;
+	/**
+	 * Decrypt the data read from <code>is</code> in the context of the
+	 * COSObject referenced by <code>objectKey</code>.
+	 * <p>
+	 * The result decrypts while reading and can be used as the input of the
+	 * stream filters. It holds its own {@link Cipher} and is independent of
+	 * any other use of this handler.
+	 * 
+	 * @param objectKey
+	 *            of the object which provides the context
+	 * @param is
+	 *            The encrypted data
+	 * @return An {@link InputStream} on the decrypted data
+	 * @throws COSSecurityException
+	 */
+	public InputStream decrypt(COSObjectKey objectKey, InputStream is)
+			throws COSSecurityException {
+		if (is == null) {
+			return null;
 		}
+		if (objectKey == null) {
+			return is;
+		}
+		return basicDecrypt(getContext(), is, getCryptKey(), objectKey
+				.getObjectNumber(), objectKey.getGenerationNumber());
 	}
 
 	/*
@@ -128,13 +197,55 @@ abstract public class StandardCryptHandler extends AbstractCryptHandler {
 		if (objectKey == null) {
 			return bytes;
 		}
-		synchronized (this) {
-			return basicEncrypt(bytes, getCryptKey(), objectKey
-					.getObjectNumber(), objectKey.getGenerationNumber());
+		return basicEncrypt(getContext(), bytes, getCryptKey(), objectKey
+				.getObjectNumber(), objectKey.getGenerationNumber());
+	}
+
+	/**
+	 * The {@link CryptContext} of the current thread.
+	 * 
+	 * @return The {@link CryptContext} of the current thread.
+	 * @throws COSSecurityException
+	 */
+	protected CryptContext getContext() throws COSSecurityException {
+		CryptContext context = contexts.get();
+		if (context == null) {
+			context = createContext();
+			contexts.set(context);
 		}
+		return context;
 	}
 
 	protected byte[] getCryptKey() {
 		return cryptKey;
 	}
+
+	public void initialize(byte[] pCryptKey) throws COSSecurityException {
+		cryptKey = pCryptKey;
+		length = cryptKey.length + 5;
+		if (length > 16) {
+			length = 16;
+		}
+		// fail early if algorithms are not available
+		getContext();
+	}
+
+	protected void updateHash(CryptContext context, byte[] encryptionKey,
+			int objectNum, int genNum) {
+		MessageDigest md = context.md;
+		byte[] objectBytes = context.objectBytes;
+		byte[] generationBytes = context.generationBytes;
+		md.reset();
+		md.update(encryptionKey);
+		objectBytes[0] = (byte) (objectNum & 0xff);
+		objectNum = objectNum >> 8;
+		objectBytes[1] = (byte) (objectNum & 0xff);
+		objectNum = objectNum >> 8;
+		objectBytes[2] = (byte) (objectNum & 0xff);
+		md.update(objectBytes);
+		generationBytes[0] = (byte) (genNum & 0xff);
+		genNum = genNum >> 8;
+		generationBytes[1] = (byte) (genNum & 0xff);
+		md.update(generationBytes);
+	}
 }
@@ -29,16 +29,22 @@
  */
 package de.intarsys.pdf.crypt;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
 import de.intarsys.pdf.cos.COSArray;
 import de.intarsys.pdf.cos.COSCompositeObject;
 import de.intarsys.pdf.cos.COSDictionary;
 import de.intarsys.pdf.cos.COSInteger;
 import de.intarsys.pdf.cos.COSNumber;
+import de.intarsys.pdf.cos.COSObjectKey;
 import de.intarsys.pdf.cos.COSStream;
 import de.intarsys.pdf.cos.COSTrailer;
 import de.intarsys.pdf.st.EnumWriteMode;
 import de.intarsys.pdf.st.STDocument;
 import de.intarsys.pdf.st.STStreamXRefSection;
+import de.intarsys.tools.stream.StreamTools;
 
 /**
  * An abstract superclass for implementing the PDF security process.
@@ -46,6 +52,18 @@ import de.intarsys.pdf.st.STStreamXRefSection;
  */
 abstract public class SystemSecurityHandler implements ISystemSecurityHandler {
 
+	/**
+	 * The objects a thread is currently parsing or writing and whether
+	 * encryption applies to them.
+	 */
+	static protected class ObjectContext {
+		private COSCompositeObject[] stack = new COSCompositeObject[5];
+
+		private short stackPtr = -1;
+
+		private boolean enabled = true;
+	}
+
 	public static final int DEFAULT_LENGTH = 40;
 
 	static public SystemSecurityHandler createFromSt(STDocument doc)
@@ -116,11 +134,11 @@ abstract public class SystemSecurityHandler implements ISystemSecurityHandler {
 
 	private STDocument stDoc;
 
-	private COSCompositeObject[] contextStack = new COSCompositeObject[5];
-
-	private short stackPtr = -1;
-
-	private boolean enabled = true;
+	/**
+	 * The object contexts for the threads using this handler, as parsers in
+	 * different threads may use the handler concurrently
+	 */
+	final private ThreadLocal<ObjectContext> contexts = new ThreadLocal<ObjectContext>();
 
 	protected SystemSecurityHandler(COSDictionary dict) {
 		this.cosEncryption = dict;
@@ -148,6 +166,40 @@ abstract public class SystemSecurityHandler implements ISystemSecurityHandler {
 		return cosEncryption;
 	}
 
+	/**
+	 * Decrypt the data read from <code>is</code> using <code>handler</code>.
+	 * {@link StandardCryptHandler} instances decrypt while reading, any other
+	 * {@link ICryptHandler} gets the complete data.
+	 * 
+	 * @param handler
+	 * @param key
+	 * @param is
+	 * @return An {@link InputStream} on the decrypted data.
+	 * @throws COSSecurityException
+	 */
+	protected InputStream decrypt(ICryptHandler handler, COSObjectKey key,
+			InputStream is) throws COSSecurityException {
+		if (handler instanceof StandardCryptHandler) {
+			return ((StandardCryptHandler) handler).decrypt(key, is);
+		}
+		if (handler instanceof IdentityCryptHandler) {
+			return is;
+		}
+		return new ByteArrayInputStream(handler.decrypt(key, toByteArray(is)));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.crypt.ISystemSecurityHandler#decryptStream(de.intarsys.pdf.cos.COSObjectKey,
+	 *      de.intarsys.pdf.cos.COSDictionary, java.io.InputStream)
+	 */
+	public InputStream decryptStream(COSObjectKey key, COSDictionary dict,
+			InputStream is) throws COSSecurityException {
+		return new ByteArrayInputStream(decryptStream(key, dict,
+				toByteArray(is)));
+	}
+
 	public void detach(STDocument stDoc) throws COSSecurityException {
 		if (getSecurityHandler() != null) {
 			getSecurityHandler().detach(stDoc);
@@ -165,10 +217,11 @@ abstract public class SystemSecurityHandler implements ISystemSecurityHandler {
 	}
 
 	public COSCompositeObject getContextObject() {
-		if (stackPtr < 0) {
+		ObjectContext context = getObjectContext();
+		if (context.stackPtr < 0) {
 			return null;
 		}
-		return contextStack[stackPtr];
+		return context.stack[context.stackPtr];
 	}
 
 	public COSEncryption getEncryption() {
@@ -204,16 +257,31 @@ abstract public class SystemSecurityHandler implements ISystemSecurityHandler {
 		securityHandler.initialize(stGetDoc());
 	}
 
+	/**
+	 * The {@link ObjectContext} of the current thread.
+	 * 
+	 * @return The {@link ObjectContext} of the current thread.
+	 */
+	protected ObjectContext getObjectContext() {
+		ObjectContext context = contexts.get();
+		if (context == null) {
+			context = new ObjectContext();
+			contexts.set(context);
+		}
+		return context;
+	}
+
 	protected boolean isEnabled() {
-		return enabled;
+		return getObjectContext().enabled;
 	}
 
 	public COSCompositeObject popContextObject() {
-		COSCompositeObject contextObject = contextStack[stackPtr--];
+		ObjectContext context = getObjectContext();
+		COSCompositeObject contextObject = context.stack[context.stackPtr--];
 		// enable encryption when no longer in encryption dict of file id's
 		if (contextObject == currentCosEncryption
 				|| contextObject == currentCosIDs) {
-			enabled = true;
+			context.enabled = true;
 		}
 		if (contextObject instanceof COSStream) {
 			COSDictionary dict = contextObject.asStream().getDict();
@@ -221,26 +289,26 @@ abstract public class SystemSecurityHandler implements ISystemSecurityHandler {
 					&& dict.get(STStreamXRefSection.DK_Type).equals(
 							STStreamXRefSection.CN_Type_XRef)) {
 				// /XRef streams are not encrypted
-				enabled = true;
+				context.enabled = true;
 			}
 		}
 		return contextObject;
 	}
 
 	public void pushContextObject(COSCompositeObject contextObject) {
-		stackPtr++;
-		if (stackPtr >= contextStack.length) {
-			COSCompositeObject[] tempStack = new COSCompositeObject[contextStack.length + 5];
-			System
-					.arraycopy(contextStack, 0, tempStack, 0,
-							contextStack.length);
-			contextStack = tempStack;
+		ObjectContext context = getObjectContext();
+		context.stackPtr++;
+		if (context.stackPtr >= context.stack.length) {
+			COSCompositeObject[] tempStack = new COSCompositeObject[context.stack.length + 5];
+			System.arraycopy(context.stack, 0, tempStack, 0,
+					context.stack.length);
+			context.stack = tempStack;
 		}
-		contextStack[stackPtr] = contextObject;
+		context.stack[context.stackPtr] = contextObject;
 		// do not encrypt within encryption dict and file id's
 		if (contextObject == currentCosEncryption
 				|| contextObject == currentCosIDs) {
-			enabled = false;
+			context.enabled = false;
 		}
 		if (contextObject instanceof COSStream) {
 			COSDictionary dict = contextObject.asStream().getDict();
@@ -248,7 +316,7 @@ abstract public class SystemSecurityHandler implements ISystemSecurityHandler {
 					&& dict.get(STStreamXRefSection.DK_Type).equals(
 							STStreamXRefSection.CN_Type_XRef)) {
 				// /XRef streams are not encrypted
-				enabled = false;
+				context.enabled = false;
 			}
 		}
 	}
@@ -273,6 +341,14 @@ abstract public class SystemSecurityHandler implements ISystemSecurityHandler {
 		return stDoc;
 	}
 
+	protected byte[] toByteArray(InputStream is) throws COSSecurityException {
+		try {
+			return StreamTools.toByteArray(is);
+		} catch (IOException e) {
+			throw new COSSecurityException(e);
+		}
+	}
+
 	public void updateTrailer(COSDictionary trailer) {
 		this.currentCosTrailer = trailer;
 		this.currentCosIDs = currentCosTrailer.get(COSTrailer.DK_ID).asArray();
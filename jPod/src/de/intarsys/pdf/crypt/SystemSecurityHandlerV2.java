@@ -29,6 +29,8 @@
  */
 package de.intarsys.pdf.crypt;
 
+import java.io.InputStream;
+
 import de.intarsys.pdf.cos.COSDictionary;
 import de.intarsys.pdf.cos.COSObjectKey;
 
@@ -41,7 +43,7 @@ import de.intarsys.pdf.cos.COSObjectKey;
  */
 public class SystemSecurityHandlerV2 extends SystemSecurityHandler {
 
-	private ICryptHandler cryptHandler;
+	private volatile ICryptHandler cryptHandler;
 
 	protected SystemSecurityHandlerV2(COSDictionary dict) {
 		super(dict);
@@ -68,6 +70,18 @@ public class SystemSecurityHandlerV2 extends SystemSecurityHandler {
 		return decrypt(key, bytes);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.crypt.SystemSecurityHandler#decryptStream(de.intarsys.pdf.cos.COSObjectKey,
+	 *      de.intarsys.pdf.cos.COSDictionary, java.io.InputStream)
+	 */
+	@Override
+	public InputStream decryptStream(COSObjectKey key, COSDictionary dict,
+			InputStream is) throws COSSecurityException {
+		return decrypt(getCryptHandler(), key, is);
+	}
+
 	public byte[] decryptString(COSObjectKey key, byte[] bytes)
 			throws COSSecurityException {
 		return decrypt(key, bytes);
@@ -29,8 +29,9 @@
  */
 package de.intarsys.pdf.crypt;
 
-import java.util.HashMap;
+import java.io.InputStream;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.intarsys.pdf.cos.COSBoolean;
 import de.intarsys.pdf.cos.COSDictionary;
@@ -64,7 +65,7 @@ public class SystemSecurityHandlerV4 extends SystemSecurityHandler {
 
 	public static final COSName DK_TYPE = COSName.constant("Type");
 
-	private Map<COSName, ICryptHandler> cryptHandlers = new HashMap<COSName, ICryptHandler>();
+	private Map<COSName, ICryptHandler> cryptHandlers = new ConcurrentHashMap<COSName, ICryptHandler>();
 
 	protected SystemSecurityHandlerV4(COSDictionary dict) {
 		super(dict);
@@ -155,24 +156,26 @@ public class SystemSecurityHandlerV4 extends SystemSecurityHandler {
 
 	public byte[] decryptStream(COSObjectKey key, COSDictionary dict,
 			byte[] bytes) throws COSSecurityException {
-		COSName name = COSEncryption.CN_IDENTITY;
-		if (COSStream.hasFilter(dict, Filter.CN_Filter_Crypt)) {
-			COSDictionary decodeParams = COSStream.getDecodeParams(dict,
-					Filter.CN_Filter_Crypt);
-			if (decodeParams != null) {
-				COSName paramName = decodeParams.get(DK_NAME).asName();
-				if (paramName != null) {
-					name = paramName;
-				}
-			}
-		} else {
-			name = getEncryption().getCryptFilterNameString();
-		}
+		COSName name = getCryptFilterNameStream(dict);
 		ICryptHandler handler = getCryptHandler(name);
 		byte[] result = handler.decrypt(key, bytes);
 		return result;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.crypt.SystemSecurityHandler#decryptStream(de.intarsys.pdf.cos.COSObjectKey,
+	 *      de.intarsys.pdf.cos.COSDictionary, java.io.InputStream)
+	 */
+	@Override
+	public InputStream decryptStream(COSObjectKey key, COSDictionary dict,
+			InputStream is) throws COSSecurityException {
+		COSName name = getCryptFilterNameStream(dict);
+		ICryptHandler handler = getCryptHandler(name);
+		return decrypt(handler, key, is);
+	}
+
 	public byte[] decryptString(COSObjectKey key, byte[] bytes)
 			throws COSSecurityException {
 		COSName name = getEncryption().getCryptFilterNameString();
@@ -193,19 +196,7 @@ public class SystemSecurityHandlerV4 extends SystemSecurityHandler {
 		if (!isEnabled()) {
 			return bytes;
 		}
-		COSName name = COSEncryption.CN_IDENTITY;
-		if (COSStream.hasFilter(dict, Filter.CN_Filter_Crypt)) {
-			COSDictionary decodeParams = COSStream.getDecodeParams(dict,
-					Filter.CN_Filter_Crypt);
-			if (decodeParams != null) {
-				COSName paramName = decodeParams.get(DK_NAME).asName();
-				if (paramName != null) {
-					name = paramName;
-				}
-			}
-		} else {
-			name = getEncryption().getCryptFilterNameString();
-		}
+		COSName name = getCryptFilterNameStream(dict);
 		ICryptHandler handler = getCryptHandler(name);
 		byte[] result = handler.encrypt(key, bytes);
 		return result;
@@ -221,6 +212,30 @@ public class SystemSecurityHandlerV4 extends SystemSecurityHandler {
 		return handler.encrypt(key, bytes);
 	}
 
+	/**
+	 * The name of the crypt filter to be used for the stream
+	 * <code>dict</code>.
+	 * 
+	 * @param dict
+	 * @return The name of the crypt filter to be used for the stream.
+	 */
+	protected COSName getCryptFilterNameStream(COSDictionary dict) {
+		COSName name = COSEncryption.CN_IDENTITY;
+		if (COSStream.hasFilter(dict, Filter.CN_Filter_Crypt)) {
+			COSDictionary decodeParams = COSStream.getDecodeParams(dict,
+					Filter.CN_Filter_Crypt);
+			if (decodeParams != null) {
+				COSName paramName = decodeParams.get(DK_NAME).asName();
+				if (paramName != null) {
+					name = paramName;
+				}
+			}
+		} else {
+			name = getEncryption().getCryptFilterNameString();
+		}
+		return name;
+	}
+
 	public ICryptHandler getCryptHandler(COSName name)
 			throws COSSecurityException {
 		ICryptHandler cryptHandler = cryptHandlers.get(name);
@@ -30,6 +30,7 @@
 package de.intarsys.pdf.filter;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 import de.intarsys.pdf.cos.COSDictionary;
 
@@ -57,6 +58,17 @@ public class CryptFilter extends Filter {
 		return source;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.filter.Filter#decode(java.io.InputStream)
+	 */
+	@Override
+	public InputStream decode(InputStream source) throws IOException {
+		// decryption is done in the parser
+		return source;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -29,13 +29,16 @@
  */
 package de.intarsys.pdf.filter;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import de.intarsys.pdf.cos.COSDictionary;
 import de.intarsys.pdf.cos.COSName;
 import de.intarsys.pdf.cos.COSNull;
 import de.intarsys.pdf.cos.COSObject;
 import de.intarsys.pdf.cos.COSStream;
+import de.intarsys.tools.stream.StreamTools;
 
 /**
  * The abstract superclass for the implementation of IFilter.
@@ -129,6 +132,20 @@ public abstract class Filter extends Object implements IFilter {
 		return decode(source);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.filter.IFilter#decode(java.io.InputStream)
+	 */
+	public InputStream decode(InputStream source) throws IOException {
+		// no streaming implementation available, decode in memory
+		byte[] decoded = decode(StreamTools.toByteArray(source));
+		if (decoded == null) {
+			decoded = new byte[0];
+		}
+		return new ByteArrayInputStream(decoded);
+	}
+
 	abstract protected byte[] encode(byte[] source) throws IOException;
 
 	/*
@@ -29,6 +29,8 @@
  */
 package de.intarsys.pdf.filter;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -41,6 +43,7 @@ import de.intarsys.pdf.cos.COSDictionary;
 import de.intarsys.tools.pool.GenericPool;
 import de.intarsys.tools.pool.IPool;
 import de.intarsys.tools.pool.IPoolObjectFactory;
+import de.intarsys.tools.stream.StreamTools;
 
 /**
  * 
@@ -62,10 +65,30 @@ public class FlateFilter extends StreamBasedFilter {
 
 	static class PDFInflaterOutputStream extends InflaterInputStream {
 
+		private boolean empty = true;
+
 		public PDFInflaterOutputStream(InputStream in, Inflater inf, int size) {
 			super(in, inf, size);
 		}
 
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count;
+			try {
+				count = super.read(b, off, len);
+			} catch (EOFException e) {
+				if (empty) {
+					// no data at all decodes to nothing
+					return -1;
+				}
+				throw e;
+			}
+			if (count > 0) {
+				empty = false;
+			}
+			return count;
+		}
+
 		@Override
 		public void close() throws IOException {
 			super.close();
@@ -192,17 +215,33 @@ public class FlateFilter extends StreamBasedFilter {
 
 	@Override
 	protected byte[] decode(byte[] source) throws IOException {
-		byte[] decoded;
 		IPrediction prediction;
 
 		if ((source == null) || (source.length == 0)) {
 			return new byte[0];
 		}
+		if (getOptions() == null) {
+			return super.decode(source);
+		}
+		prediction = PredictionFactory.get().createPrediction(getOptions());
+		if (prediction instanceof NoPrediction) {
+			return super.decode(source);
+		}
+		// predict directly on the inflated data
+		return StreamTools.toByteArray(prediction
+				.decode(createInputFilterStream(new ByteArrayInputStream(
+						source))));
+	}
+
+	@Override
+	public InputStream decode(InputStream source) throws IOException {
+		InputStream decoded;
+		IPrediction prediction;
+
 		decoded = super.decode(source);
 		if (getOptions() == null) {
 			return decoded;
 		}
-
 		prediction = PredictionFactory.get().createPrediction(getOptions());
 		return prediction.decode(decoded);
 	}
@@ -30,6 +30,7 @@
 package de.intarsys.pdf.filter;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 import de.intarsys.pdf.cos.COSStream;
 
@@ -43,6 +44,20 @@ public interface IFilter {
 	public byte[] decode(byte[] source, int offset, int length)
 			throws IOException;
 
+	/**
+	 * An {@link InputStream} delivering the decoded bytes of
+	 * <code>source</code>.
+	 * <p>
+	 * Implementations should decode lazily while the result is read, avoiding
+	 * to materialize the complete data.
+	 * 
+	 * @param source
+	 *            The encoded data.
+	 * @return An {@link InputStream} delivering the decoded bytes.
+	 * @throws IOException
+	 */
+	public InputStream decode(InputStream source) throws IOException;
+
 	public void setStream(COSStream stream);
 
 	public COSStream getStream();
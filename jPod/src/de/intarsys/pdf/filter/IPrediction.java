@@ -30,10 +30,20 @@
 package de.intarsys.pdf.filter;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * 
  */
 public interface IPrediction {
 	public byte[] decode(byte[] source) throws IOException;
+
+	/**
+	 * The prediction applied to <code>source</code> while reading.
+	 * 
+	 * @param source
+	 * @return The prediction applied to <code>source</code> while reading.
+	 * @throws IOException
+	 */
+	public InputStream decode(InputStream source) throws IOException;
 }
@@ -38,14 +38,61 @@ import org.jpedal.jbig2.JBIG2Exception;
 import de.intarsys.pdf.cos.COSDictionary;
 import de.intarsys.pdf.cos.COSName;
 import de.intarsys.pdf.cos.COSStream;
+import de.intarsys.tools.attribute.Attribute;
 
 /**
  * 
  */
 public class JBIG2Filter extends Filter {
+	/**
+	 * The decoded global segments of a /JBIG2Globals stream.
+	 * <p>
+	 * They are immutable once decoded and bound to the bytes they were decoded
+	 * from, so a modified globals stream is decoded again.
+	 */
+	static class Globals {
+		final private byte[] bytes;
+
+		final private JBIG2Decoder decoder;
+
+		public Globals(byte[] bytes, JBIG2Decoder decoder) {
+			super();
+			this.bytes = bytes;
+			this.decoder = decoder;
+		}
+	}
+
+	private static final Attribute ATTR_GLOBALS = new Attribute("globals"); //$NON-NLS-1$
+
 	public static final COSName DK_JBIG2Globals = COSName
 			.constant("JBIG2Globals"); //$NON-NLS-1$
 
+	/**
+	 * The decoded global segments for <code>stream</code>.
+	 * <p>
+	 * They are cached with the stream, so all images sharing the globals
+	 * within a document decode them only once and the cache is gone with the
+	 * document.
+	 * 
+	 * @param stream
+	 * @return The decoded global segments for <code>stream</code>.
+	 * @throws IOException
+	 * @throws JBIG2Exception
+	 */
+	static protected JBIG2Decoder getGlobals(COSStream stream)
+			throws IOException, JBIG2Exception {
+		byte[] bytes = stream.getDecodedBytes();
+		Globals globals = (Globals) stream.getAttribute(ATTR_GLOBALS);
+		if (globals == null || globals.bytes != bytes) {
+			JBIG2Decoder decoder = new JBIG2Decoder();
+			decoder.decodeGlobalData(bytes);
+			globals = new Globals(bytes, decoder);
+			// concurrent first use may decode twice, the results are equal
+			stream.setAttribute(ATTR_GLOBALS, globals);
+		}
+		return globals.decoder;
+	}
+
 	/**
 	 * 
 	 */
@@ -68,7 +115,7 @@ public class JBIG2Filter extends Filter {
 
 				globals = getOptions().get(DK_JBIG2Globals).asStream();
 				if (globals != null) {
-					decoder.setGlobalData(globals.getDecodedBytes());
+					decoder.setGlobalDecoder(getGlobals(globals));
 				}
 			}
 			decoder.decodeJBIG2(source);
@@ -80,7 +127,8 @@ public class JBIG2Filter extends Filter {
 			throw ioException;
 		}
 
-		return decoder.getPageAsJBIG2Bitmap(0).getData(true);
+		// the page bitmap is private to this decoder, no need to copy
+		return decoder.getPageAsJBIG2Bitmap(0).releaseData(true);
 	}
 
 	/*
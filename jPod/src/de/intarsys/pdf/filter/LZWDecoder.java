@@ -65,14 +65,43 @@
  */
 package de.intarsys.pdf.filter;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 /**
  * A class for performing LZW decoding.
+ * <p>
+ * The string table is kept as prefix code and suffix byte per entry, so a new
+ * entry never allocates. A string is written by walking its prefix chain
+ * backwards from the end.
  */
 public class LZWDecoder {
-	byte[][] stringTable;
+	public static final int CLEAR_TABLE = 256;
+
+	public static final int END_OF_DATA = 257;
+
+	public static final int TABLE_SIZE = 4096;
+
+	final private int earlyChange;
+
+	/**
+	 * The first byte of the string for each code
+	 */
+	final private byte[] first = new byte[TABLE_SIZE];
+
+	/**
+	 * The length of the string for each code
+	 */
+	final private int[] length = new int[TABLE_SIZE];
+
+	/**
+	 * The code of the string without its last byte for each code
+	 */
+	final private int[] prefix = new int[TABLE_SIZE];
+
+	/**
+	 * The last byte of the string for each code
+	 */
+	final private byte[] suffix = new byte[TABLE_SIZE];
 
 	int tableIndex;
 
@@ -80,102 +109,62 @@ public class LZWDecoder {
 
 	int bytePointer;
 
-	int bitPointer;
-
 	int nextData = 0;
 
 	int nextBits = 0;
 
+	int oldCode = -1;
+
 	int[] andTable = { 511, 1023, 2047, 4095 };
 
 	public LZWDecoder() {
-		super();
-	}
-
-	// Returns the next 9, 10, 11 or 12 bits
-	public int getNextCode(byte[] data) {
-		// Attempt to get the next code. The exception is caught to make
-		// this robust to cases wherein the EndOfInformation code has been
-		// omitted from a strip. Examples of such cases have been observed
-		// in practice.
-		try {
-			nextData = (nextData << 8) | (data[bytePointer++] & 0xff);
-			nextBits += 8;
-
-			if (nextBits < bitsToGet) {
-				nextData = (nextData << 8) | (data[bytePointer++] & 0xff);
-				nextBits += 8;
-			}
-
-			int code = (nextData >> (nextBits - bitsToGet))
-					& andTable[bitsToGet - 9];
-			nextBits -= bitsToGet;
-
-			return code;
-		} catch (ArrayIndexOutOfBoundsException e) {
-			// Strip not terminated as expected: return EndOfInformation code.
-			return 257;
-		}
+		this(1);
 	}
 
 	/**
-	 * Add a new string to the string table.
-	 * 
-	 * @param oldString
-	 * @param newString
+	 * @param earlyChange
+	 *            The /EarlyChange value, 1 if the code length increases one
+	 *            code early (the default), 0 otherwise.
 	 */
-	public void addStringToTable(byte[] oldString, byte newString) {
-		int length = oldString.length;
-		byte[] string = new byte[length + 1];
-		System.arraycopy(oldString, 0, string, 0, length);
-		string[length] = newString;
-
-		// Add this new String to the table
-		stringTable[tableIndex++] = string;
-
-		if (tableIndex == 511) {
-			bitsToGet = 10;
-		} else if (tableIndex == 1023) {
-			bitsToGet = 11;
-		} else if (tableIndex == 2047) {
-			bitsToGet = 12;
+	public LZWDecoder(int earlyChange) {
+		super();
+		this.earlyChange = earlyChange;
+		for (int i = 0; i < 256; i++) {
+			first[i] = (byte) i;
+			suffix[i] = (byte) i;
+			length[i] = 1;
+			prefix[i] = -1;
 		}
+		initializeStringTable();
 	}
 
 	/**
-	 * Add a new string to the string table.
+	 * Add a new string to the string table, made of the string for
+	 * <code>code</code> and <code>b</code>.
 	 * 
-	 * @param string
+	 * @param code
+	 * @param b
 	 */
-	public void addStringToTable(byte[] string) {
-		// Add this new String to the table
-		stringTable[tableIndex++] = string;
-
-		if (tableIndex == 511) {
-			bitsToGet = 10;
-		} else if (tableIndex == 1023) {
-			bitsToGet = 11;
-		} else if (tableIndex == 2047) {
+	protected void addStringToTable(int code, byte b) {
+		if (tableIndex >= TABLE_SIZE) {
+			// table full, the encoder should have cleared it
+			return;
+		}
+		prefix[tableIndex] = code;
+		suffix[tableIndex] = b;
+		first[tableIndex] = first[code];
+		length[tableIndex] = length[code] + 1;
+		tableIndex++;
+		int next = tableIndex + earlyChange;
+		if (next >= 2048) {
 			bitsToGet = 12;
+		} else if (next >= 1024) {
+			bitsToGet = 11;
+		} else if (next >= 512) {
+			bitsToGet = 10;
 		}
 	}
 
-	/**
-	 * Append <code>newString</code> to the end of <code>oldString</code>.
-	 * 
-	 * @param oldString
-	 * @param newString
-	 * 
-	 */
-	public byte[] composeString(byte[] oldString, byte newString) {
-		int length = oldString.length;
-		byte[] string = new byte[length + 1];
-		System.arraycopy(oldString, 0, string, 0, length);
-		string[length] = newString;
-
-		return string;
-	}
-
 	/**
 	 * Method to decode LZW compressed data.
 	 * 
@@ -185,9 +174,8 @@ public class LZWDecoder {
 	 * @throws IOException
 	 */
 	public byte[] decode(byte[] data) throws IOException {
-		ByteArrayOutputStream result = new ByteArrayOutputStream();
-
-		if ((data[0] == (byte) 0x00) && (data[1] == (byte) 0x01)) {
+		if ((data.length > 1) && (data[0] == (byte) 0x00)
+				&& (data[1] == (byte) 0x01)) {
 			throw new RuntimeException("LZW flavour not supported.");
 		}
 
@@ -195,56 +183,136 @@ public class LZWDecoder {
 
 		// Initialize pointers
 		bytePointer = 0;
-		bitPointer = 0;
-
 		nextData = 0;
 		nextBits = 0;
 
+		// LZW typically compresses 2 to 4 times
+		byte[] result = new byte[Math.max(data.length * 4, 256)];
+		int count = 0;
 		int code;
-		int oldCode = 0;
-		byte[] string;
-
-		while ((code = getNextCode(data)) != 257) {
-			if (code == 256) {
-				initializeStringTable();
-				code = getNextCode(data);
-
-				if (code == 257) {
-					break;
-				}
-				result.write(stringTable[code]);
-				oldCode = code;
-			} else {
-				if (code < tableIndex) {
-					string = stringTable[code];
-					result.write(string);
-					addStringToTable(stringTable[oldCode], string[0]);
-					oldCode = code;
-				} else {
-					string = stringTable[oldCode];
-					string = composeString(string, string[0]);
-					result.write(string);
-					addStringToTable(string);
-					oldCode = code;
-				}
+		while ((code = getNextCode(data)) != END_OF_DATA) {
+			code = decodeCode(code);
+			if (code == -1) {
+				continue;
 			}
+			int stringLength = length[code];
+			if (count + stringLength > result.length) {
+				byte[] temp = new byte[Math.max(result.length * 2, count
+						+ stringLength)];
+				System.arraycopy(result, 0, temp, 0, count);
+				result = temp;
+			}
+			count = getString(code, result, count);
+		}
+		if (count == result.length) {
+			return result;
 		}
+		byte[] temp = new byte[count];
+		System.arraycopy(result, 0, temp, 0, count);
+		return temp;
+	}
 
-		return result.toByteArray();
+	/**
+	 * Update the string table for the next <code>code</code> read.
+	 * 
+	 * @param code
+	 * @return The code of the string to output or -1 if none.
+	 */
+	protected int decodeCode(int code) {
+		if (code == CLEAR_TABLE) {
+			initializeStringTable();
+			return -1;
+		}
+		if (oldCode == -1) {
+			// first code after a clear, not preceded by any string
+			if (code >= CLEAR_TABLE) {
+				return -1;
+			}
+			oldCode = code;
+			return code;
+		}
+		if (code < tableIndex) {
+			addStringToTable(oldCode, first[code]);
+			oldCode = code;
+		} else {
+			// the string for oldCode followed by its own first byte, the
+			// code is the entry about to be defined
+			addStringToTable(oldCode, first[oldCode]);
+			oldCode = tableIndex - 1;
+		}
+		return oldCode;
 	}
 
 	/**
-	 * Initialize the string table.
+	 * The number of bits for the next code.
+	 * 
+	 * @return The number of bits for the next code.
 	 */
-	public void initializeStringTable() {
-		stringTable = new byte[8192][];
+	protected int getCodeLength() {
+		return bitsToGet;
+	}
 
-		for (int i = 0; i < 256; i++) {
-			stringTable[i] = new byte[1];
-			stringTable[i][0] = (byte) i;
+	// Returns the next 9, 10, 11 or 12 bits
+	public int getNextCode(byte[] data) {
+		// Attempt to get the next code. The exception is caught to make
+		// this robust to cases wherein the EndOfInformation code has been
+		// omitted from a strip. Examples of such cases have been observed
+		// in practice.
+		try {
+			nextData = (nextData << 8) | (data[bytePointer++] & 0xff);
+			nextBits += 8;
+
+			if (nextBits < bitsToGet) {
+				nextData = (nextData << 8) | (data[bytePointer++] & 0xff);
+				nextBits += 8;
+			}
+
+			int code = (nextData >> (nextBits - bitsToGet))
+					& andTable[bitsToGet - 9];
+			nextBits -= bitsToGet;
+
+			return code;
+		} catch (ArrayIndexOutOfBoundsException e) {
+			// Strip not terminated as expected: return EndOfInformation code.
+			return END_OF_DATA;
+		}
+	}
+
+	/**
+	 * Copy the string for <code>code</code> to <code>dest</code> at
+	 * <code>offset</code>.
+	 * 
+	 * @param code
+	 * @param dest
+	 * @param offset
+	 * @return The offset behind the string copied.
+	 */
+	protected int getString(int code, byte[] dest, int offset) {
+		int end = offset + length[code];
+		int i = end;
+		while (code >= 0) {
+			dest[--i] = suffix[code];
+			code = prefix[code];
 		}
+		return end;
+	}
 
+	/**
+	 * The length of the string for <code>code</code>.
+	 * 
+	 * @param code
+	 * @return The length of the string for <code>code</code>.
+	 */
+	protected int getStringLength(int code) {
+		return length[code];
+	}
+
+	/**
+	 * Initialize the string table.
+	 */
+	public void initializeStringTable() {
 		tableIndex = 258;
 		bitsToGet = 9;
+		oldCode = -1;
 	}
 }
@@ -29,14 +29,22 @@
  */
 package de.intarsys.pdf.filter;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import de.intarsys.pdf.cos.COSDictionary;
+import de.intarsys.pdf.cos.COSName;
+import de.intarsys.tools.stream.StreamTools;
 
 /**
  * 
  */
-public class LZWFilter extends Filter {
+public class LZWFilter extends StreamBasedFilter {
+	public static final COSName DK_EarlyChange = COSName
+			.constant("EarlyChange"); //$NON-NLS-1$
+
 	/**
 	 * 
 	 */
@@ -47,10 +55,23 @@ public class LZWFilter extends Filter {
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see de.intarsys.pdf.filter.IFilter#encode(byte[])
+	 * @see de.intarsys.pdf.filter.StreamBasedFilter#createInputFilterStream(java.io.InputStream)
 	 */
-	protected byte[] encode(byte[] source) throws IOException {
-		return null;
+	@Override
+	protected InputStream createInputFilterStream(InputStream is)
+			throws IOException {
+		return new LZWInputStream(is, getEarlyChange());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.filter.StreamBasedFilter#createOutputFilterStream(java.io.OutputStream)
+	 */
+	@Override
+	protected OutputStream createOutputFilterStream(OutputStream os)
+			throws IOException {
+		return new LZWOutputStream(os, getEarlyChange());
 	}
 
 	/*
@@ -58,14 +79,42 @@ public class LZWFilter extends Filter {
 	 * 
 	 * @see de.intarsys.pdf.filter.IFilter#decode(byte[])
 	 */
+	@Override
 	protected byte[] decode(byte[] source) throws IOException {
-		byte[] decoded;
 		IPrediction prediction;
-		decoded = new LZWDecoder().decode(source);
+
+		if (getOptions() == null) {
+			return new LZWDecoder(getEarlyChange()).decode(source);
+		}
+		prediction = PredictionFactory.get().createPrediction(getOptions());
+		if (prediction instanceof NoPrediction) {
+			return new LZWDecoder(getEarlyChange()).decode(source);
+		}
+		// predict directly on the decoded data
+		return StreamTools.toByteArray(prediction
+				.decode(createInputFilterStream(new ByteArrayInputStream(
+						source))));
+	}
+
+	@Override
+	public InputStream decode(InputStream source) throws IOException {
+		InputStream decoded;
+		IPrediction prediction;
+
+		decoded = super.decode(source);
 		if (getOptions() == null) {
 			return decoded;
 		}
 		prediction = PredictionFactory.get().createPrediction(getOptions());
 		return prediction.decode(decoded);
 	}
+
+	/**
+	 * The /EarlyChange option, 1 if not defined.
+	 * 
+	 * @return The /EarlyChange option.
+	 */
+	public int getEarlyChange() {
+		return getOption(DK_EarlyChange).getValueInteger(1);
+	}
 }
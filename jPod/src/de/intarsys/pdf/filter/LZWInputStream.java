@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.pdf.filter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} implementing LZW decoding as defined in the PDF spec.
+ * <p>
+ * The data is decoded while reading, a buffer full at a time.
+ */
+public class LZWInputStream extends FilterInputStream {
+
+	/**
+	 * The strings of the codes decoded so far, a string is never longer than
+	 * the table size
+	 */
+	final private byte[] buffer = new byte[LZWDecoder.TABLE_SIZE * 4];
+
+	final private LZWDecoder decoder;
+
+	private boolean eod = false;
+
+	/**
+	 * The encoded bytes read ahead
+	 */
+	final private byte[] input = new byte[1024];
+
+	private int inputLength = 0;
+
+	private int inputPos = 0;
+
+	private int length = 0;
+
+	private int nextBits = 0;
+
+	private int nextData = 0;
+
+	private int pos = 0;
+
+	private boolean started = false;
+
+	public LZWInputStream(InputStream in) {
+		this(in, 1);
+	}
+
+	public LZWInputStream(InputStream in, int earlyChange) {
+		super(in);
+		decoder = new LZWDecoder(earlyChange);
+	}
+
+	@Override
+	public int available() throws IOException {
+		return length - pos;
+	}
+
+	/**
+	 * Decode the next codes into the buffer.
+	 * 
+	 * @return <code>false</code> if there is no more data.
+	 * @throws IOException
+	 */
+	protected boolean fill() throws IOException {
+		pos = 0;
+		length = 0;
+		while (!eod && length <= buffer.length - LZWDecoder.TABLE_SIZE) {
+			int code = readCode();
+			if (code == LZWDecoder.END_OF_DATA) {
+				eod = true;
+				break;
+			}
+			code = decoder.decodeCode(code);
+			if (code != -1) {
+				length = decoder.getString(code, buffer, length);
+			}
+		}
+		return length > 0;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (pos >= length && !fill()) {
+			return -1;
+		}
+		return buffer[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (b == null) {
+			throw new NullPointerException();
+		} else if ((off < 0) || (off > b.length) || (len < 0)
+				|| ((off + len) > b.length) || ((off + len) < 0)) {
+			throw new IndexOutOfBoundsException();
+		} else if (len == 0) {
+			return 0;
+		}
+		int count = 0;
+		while (count < len) {
+			if (pos >= length && !fill()) {
+				break;
+			}
+			int chunk = Math.min(len - count, length - pos);
+			System.arraycopy(buffer, pos, b, off + count, chunk);
+			pos += chunk;
+			count += chunk;
+		}
+		return count == 0 ? -1 : count;
+	}
+
+	/**
+	 * The next encoded byte, -1 at the end of the input.
+	 * 
+	 * @return The next encoded byte
+	 * @throws IOException
+	 */
+	protected int readByte() throws IOException {
+		if (inputPos >= inputLength) {
+			inputPos = 0;
+			inputLength = in.read(input, 0, input.length);
+			if (inputLength <= 0) {
+				inputLength = 0;
+				return -1;
+			}
+		}
+		return input[inputPos++] & 0xff;
+	}
+
+	/**
+	 * The next code from the input, {@link LZWDecoder#END_OF_DATA} if the
+	 * input ends before.
+	 * 
+	 * @return The next code from the input
+	 * @throws IOException
+	 */
+	protected int readCode() throws IOException {
+		if (!started) {
+			started = true;
+			int b0 = readByte();
+			if (b0 == 0) {
+				int b1 = readByte();
+				if (b1 == 1) {
+					throw new IOException("LZW flavour not supported.");
+				}
+				// the leading zero byte is part of the first code
+				nextData = b1 == -1 ? 0 : b1;
+				nextBits = b1 == -1 ? 8 : 16;
+			} else if (b0 != -1) {
+				nextData = b0;
+				nextBits = 8;
+			}
+		}
+		int bitsToGet = decoder.getCodeLength();
+		while (nextBits < bitsToGet) {
+			int b = readByte();
+			if (b == -1) {
+				// not terminated as expected
+				return LZWDecoder.END_OF_DATA;
+			}
+			nextData = (nextData << 8) | b;
+			nextBits += 8;
+		}
+		nextBits -= bitsToGet;
+		return (nextData >> nextBits) & ((1 << bitsToGet) - 1);
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("method not supported");
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n) {
+			if (pos >= length && !fill()) {
+				break;
+			}
+			int chunk = (int) Math.min(n - skipped, length - pos);
+			pos += chunk;
+			skipped += chunk;
+		}
+		return skipped;
+	}
+}
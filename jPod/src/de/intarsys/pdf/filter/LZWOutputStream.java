@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.pdf.filter;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An {@link OutputStream} implementing LZW encoding as defined in the PDF
+ * spec.
+ * <p>
+ * The string table is a hash table from (prefix code, byte) to code. It is
+ * cleared when it gets full, so no code is longer than 12 bits.
+ */
+public class LZWOutputStream extends FilterOutputStream {
+
+	/**
+	 * A prime somewhat larger than the number of codes
+	 */
+	private static final int HASH_SIZE = 5003;
+
+	private int bitBuffer = 0;
+
+	private int bitCount = 0;
+
+	private boolean closed = false;
+
+	final private int[] codes = new int[HASH_SIZE];
+
+	final private int earlyChange;
+
+	/**
+	 * The (prefix code, byte) pair for each hash slot, -1 if empty
+	 */
+	final private int[] keys = new int[HASH_SIZE];
+
+	private int nextCode;
+
+	/**
+	 * The code of the string read so far, -1 if none
+	 */
+	private int prefix = -1;
+
+	private boolean started = false;
+
+	public LZWOutputStream(OutputStream out) {
+		this(out, 1);
+	}
+
+	public LZWOutputStream(OutputStream out, int earlyChange) {
+		super(out);
+		this.earlyChange = earlyChange;
+		initializeStringTable();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (!started) {
+			started = true;
+			writeCode(LZWDecoder.CLEAR_TABLE);
+		}
+		if (prefix != -1) {
+			writeCode(prefix);
+			// the decoder defines a new string when reading this code
+			nextCode++;
+		}
+		writeCode(LZWDecoder.END_OF_DATA);
+		if (bitCount > 0) {
+			out.write(bitBuffer << (8 - bitCount));
+			bitCount = 0;
+		}
+		super.close();
+	}
+
+	protected void initializeStringTable() {
+		for (int i = 0; i < HASH_SIZE; i++) {
+			keys[i] = -1;
+		}
+		nextCode = 258;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		for (int i = off; i < off + len; i++) {
+			write(b[i]);
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		b = b & 0xff;
+		if (!started) {
+			started = true;
+			writeCode(LZWDecoder.CLEAR_TABLE);
+		}
+		if (prefix == -1) {
+			prefix = b;
+			return;
+		}
+		int key = (prefix << 8) | b;
+		int index = (b << 4) ^ prefix;
+		int step = index == 0 ? 1 : HASH_SIZE - index;
+		while (keys[index] != -1) {
+			if (keys[index] == key) {
+				prefix = codes[index];
+				return;
+			}
+			index -= step;
+			if (index < 0) {
+				index += HASH_SIZE;
+			}
+		}
+		writeCode(prefix);
+		keys[index] = key;
+		codes[index] = nextCode++;
+		prefix = b;
+		if (nextCode + earlyChange >= LZWDecoder.TABLE_SIZE) {
+			// another string would need a 13 bit code
+			writeCode(LZWDecoder.CLEAR_TABLE);
+			initializeStringTable();
+		}
+	}
+
+	/**
+	 * Write <code>code</code> with as many bits as the decoder expects at
+	 * this point.
+	 * 
+	 * @param code
+	 * @throws IOException
+	 */
+	protected void writeCode(int code) throws IOException {
+		int next = nextCode - 1 + earlyChange;
+		int codeLength;
+		if (next >= 2048) {
+			codeLength = 12;
+		} else if (next >= 1024) {
+			codeLength = 11;
+		} else if (next >= 512) {
+			codeLength = 10;
+		} else {
+			codeLength = 9;
+		}
+		bitBuffer = (bitBuffer << codeLength) | code;
+		bitCount += codeLength;
+		while (bitCount >= 8) {
+			bitCount -= 8;
+			out.write(bitBuffer >> bitCount);
+		}
+		bitBuffer &= (1 << bitCount) - 1;
+	}
+}
@@ -29,6 +29,8 @@
  */
 package de.intarsys.pdf.filter;
 
+import java.io.InputStream;
+
 import de.intarsys.pdf.cos.COSDictionary;
 
 public class NoPrediction extends Prediction {
@@ -40,8 +42,13 @@ public class NoPrediction extends Prediction {
 		return source;
 	}
 
-	protected void decodeRow(byte[] source, int sourceOffset, byte[] result,
-			int resultOffset) {
+	@Override
+	public InputStream decode(InputStream source) {
+		return source;
+	}
+
+	protected void decodeRow(byte[] source, int sourceOffset, byte[] prior,
+			int priorOffset, byte[] result, int resultOffset) {
 		throw new InternalError(
 				"Program execution should not reach this point.");
 	}
@@ -38,50 +38,20 @@ public class PNGAveragePrediction extends PNGPrediction {
 	}
 
 	@Override
-	protected void decodeRow(byte[] source, int sourceOffset, byte[] result,
-			int resultOffset) {
-		// Average(x) + floor((Raw(x-bpp)+Prior(x))/2)
-		int raw;
-
-		// Average(x) + floor((Raw(x-bpp)+Prior(x))/2)
+	protected void decodeRow(byte[] source, int sourceOffset, byte[] prior,
+			int priorOffset, byte[] result, int resultOffset) {
+		int bytesPerPixel = getBytesPerPixel();
+		int rowSize = getResultRowSize();
 		int left;
-
-		// Average(x) + floor((Raw(x-bpp)+Prior(x))/2)
 		int above;
-		int colors = getColors();
-		if (getBitsPerComponent() != 8) {
-			// TODO 2 @ehk implement
-			return;
-		}
 
 		sourceOffset = sourceOffset + 1;
-
-		if (sourceOffset == 1) {
-			for (int c = 0; c < colors; c++) {
-				result[resultOffset + c] = source[sourceOffset + c];
-			}
-
-			for (int x = 1; x < getResultRowSize(); x++) {
-				raw = source[sourceOffset + x] & 0xff;
-				left = result[(resultOffset + x) - colors] & 0xff;
-				above = 0;
-				result[resultOffset + x] = (byte) (raw + ((left + above) / 2));
-			}
-			return;
-		}
-
-		for (int c = 0; c < colors; c++) {
-			raw = source[sourceOffset + c] & 0xff;
-			left = 0;
-			above = result[(resultOffset + c) - getResultRowSize()] & 0xff;
-			result[resultOffset + c] = (byte) (raw + ((left + above) / 2));
-		}
-
-		for (int x = colors; x < getResultRowSize(); x++) {
-			raw = source[sourceOffset + x] & 0xff;
-			left = result[(resultOffset + x) - colors] & 0xff;
-			above = result[(resultOffset + x) - getResultRowSize()] & 0xff;
-			result[resultOffset + x] = (byte) (raw + ((left + above) / 2));
+		// Average(x) + floor((Raw(x-bpp)+Prior(x))/2)
+		for (int x = 0; x < rowSize; x++) {
+			left = x < bytesPerPixel ? 0
+					: result[resultOffset + x - bytesPerPixel] & 0xff;
+			above = prior[priorOffset + x] & 0xff;
+			result[resultOffset + x] = (byte) (source[sourceOffset + x] + ((left + above) >> 1));
 		}
 	}
 
@@ -36,8 +36,8 @@ public class PNGNonePrediction extends PNGPrediction {
 		super(options);
 	}
 
-	protected void decodeRow(byte[] source, int sourceOffset, byte[] result,
-			int resultOffset) {
+	protected void decodeRow(byte[] source, int sourceOffset, byte[] prior,
+			int priorOffset, byte[] result, int resultOffset) {
 		System.arraycopy(source, sourceOffset + 1, result, resultOffset,
 				getResultRowSize());
 	}
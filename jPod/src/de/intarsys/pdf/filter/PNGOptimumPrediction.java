@@ -54,8 +54,9 @@ public class PNGOptimumPrediction extends PNGPrediction {
 		paeth = new PNGPaethPrediction(options);
 	}
 
-	public void decodeRow(byte[] source, int sourceOffset, byte[] result,
-			int resultOffset) throws IOException {
+	public void decodeRow(byte[] source, int sourceOffset, byte[] prior,
+			int priorOffset, byte[] result, int resultOffset)
+			throws IOException {
 		PNGPrediction prediction;
 		switch (source[sourceOffset] + 10) {
 		case PNGNone:
@@ -76,6 +77,7 @@ public class PNGOptimumPrediction extends PNGPrediction {
 		default:
 			throw new IOException("Unknown predictor function.");
 		}
-		prediction.decodeRow(source, sourceOffset, result, resultOffset);
+		prediction.decodeRow(source, sourceOffset, prior, priorOffset, result,
+				resultOffset);
 	}
 }
@@ -41,53 +41,27 @@ public class PNGPaethPrediction extends PNGPrediction {
 	}
 
 	@Override
-	public void decodeRow(byte[] source, int sourceOffset, byte[] result,
-			int resultOffset) {
-		int raw;
+	public void decodeRow(byte[] source, int sourceOffset, byte[] prior,
+			int priorOffset, byte[] result, int resultOffset) {
+		int bytesPerPixel = getBytesPerPixel();
+		int rowSize = getResultRowSize();
 		int left;
 		int above;
 		int upperLeft;
-		int colors = getColors();
-
-		if (getBitsPerComponent() != 8) {
-			// TODO 2 @ehk implement
-			return;
-		}
 
 		sourceOffset = sourceOffset + 1;
-
-		if (sourceOffset == 1) {
-			for (int c = 0; c < colors; c++) {
-				result[resultOffset + c] = source[sourceOffset + c];
-			}
-
-			for (int x = 1; x < getResultRowSize(); x++) {
-				raw = source[sourceOffset + x] & 0xff;
-				left = result[(resultOffset + x) - colors] & 0xff;
-				above = 0;
+		// Paeth(x) + PaethPredictor(Raw(x-bpp), Prior(x), Prior(x-bpp))
+		for (int x = 0; x < rowSize; x++) {
+			above = prior[priorOffset + x] & 0xff;
+			if (x < bytesPerPixel) {
+				left = 0;
 				upperLeft = 0;
-				result[resultOffset + x] = (byte) ((raw + paethPredictor(left,
-						above, upperLeft)) & 0xff);
+			} else {
+				left = result[resultOffset + x - bytesPerPixel] & 0xff;
+				upperLeft = prior[priorOffset + x - bytesPerPixel] & 0xff;
 			}
-			return;
-		}
-
-		for (int c = 0; c < colors; c++) {
-			raw = source[sourceOffset + c] & 0xff;
-			left = 0;
-			above = result[(resultOffset + c) - getResultRowSize()] & 0xff;
-			upperLeft = 0;
-			result[resultOffset + c] = (byte) ((raw + paethPredictor(left,
-					above, upperLeft)) & 0xff);
-		}
-
-		for (int x = colors; x < getResultRowSize(); x++) {
-			raw = source[sourceOffset + x] & 0xff;
-			left = result[(resultOffset + x) - colors] & 0xff;
-			above = result[(resultOffset + x) - getResultRowSize()] & 0xff;
-			upperLeft = result[(resultOffset + x) - getResultRowSize() - colors] & 0xff;
-			result[resultOffset + x] = (byte) ((raw + paethPredictor(left,
-					above, upperLeft)) & 0xff);
+			result[resultOffset + x] = (byte) (source[sourceOffset + x] + paethPredictor(
+					left, above, upperLeft));
 		}
 	}
 
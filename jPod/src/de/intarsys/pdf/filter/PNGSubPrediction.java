@@ -41,33 +41,18 @@ public class PNGSubPrediction extends PNGPrediction {
 	}
 
 	@Override
-	protected void decodeRow(byte[] source, int sourceOffset, byte[] result,
-			int resultOffset) {
-		int bytesPerSample;
-		byte[] sample;
-		int sourceIndex;
-		int resultIndex;
+	protected void decodeRow(byte[] source, int sourceOffset, byte[] prior,
+			int priorOffset, byte[] result, int resultOffset) {
+		int bytesPerPixel = getBytesPerPixel();
+		int rowSize = getResultRowSize();
 
-		bytesPerSample = (getBitsPerComponent() * getColors() + 7) / 8;
-		sample = new byte[bytesPerSample];
-
-		sourceIndex = sourceOffset + 1;
-		resultIndex = resultOffset;
-
-		System.arraycopy(source, sourceIndex, result, resultIndex,
-				bytesPerSample);
-		System.arraycopy(result, resultIndex, sample, 0, bytesPerSample);
-		sourceIndex = sourceIndex + bytesPerSample;
-		resultIndex = resultIndex + bytesPerSample;
-
-		while ((resultIndex - resultOffset + bytesPerSample) <= getResultRowSize()) {
-			for (int index = 0; index < bytesPerSample; index++) {
-				result[resultIndex + index] = (byte) ((sample[index] + source[sourceIndex
-						+ index]) & 0xFF);
-			}
-			System.arraycopy(result, resultIndex, sample, 0, bytesPerSample);
-			sourceIndex = sourceIndex + bytesPerSample;
-			resultIndex = resultIndex + bytesPerSample;
+		sourceOffset = sourceOffset + 1;
+		// Sub(x) + Raw(x-bpp)
+		System.arraycopy(source, sourceOffset, result, resultOffset, Math.min(
+				bytesPerPixel, rowSize));
+		for (int x = bytesPerPixel; x < rowSize; x++) {
+			result[resultOffset + x] = (byte) (source[sourceOffset + x] + result[resultOffset
+					+ x - bytesPerPixel]);
 		}
 	}
 }
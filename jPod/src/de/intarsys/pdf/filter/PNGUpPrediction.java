@@ -39,21 +39,15 @@ public class PNGUpPrediction extends PNGPrediction {
 		super(options);
 	}
 
-	public void decodeRow(byte[] source, int sourceOffset, byte[] result,
-			int resultOffset) {
-		int actualSourceOffset;
+	public void decodeRow(byte[] source, int sourceOffset, byte[] prior,
+			int priorOffset, byte[] result, int resultOffset) {
+		int rowSize = getResultRowSize();
 
-		actualSourceOffset = sourceOffset + 1;
-
-		if (sourceOffset == 0) {
-			System.arraycopy(source, actualSourceOffset, result, 0,
-					getResultRowSize());
-			return;
-		}
-		for (int index = 0; index < getResultRowSize(); index++) {
-			result[resultOffset + index] = (byte) (result[resultOffset
-					- getResultRowSize() + index] + source[actualSourceOffset
-					+ index]);
+		sourceOffset = sourceOffset + 1;
+		// Up(x) + Prior(x)
+		for (int x = 0; x < rowSize; x++) {
+			result[resultOffset + x] = (byte) (source[sourceOffset + x] + prior[priorOffset
+					+ x]);
 		}
 	}
 }
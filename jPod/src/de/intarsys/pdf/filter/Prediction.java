@@ -30,6 +30,7 @@
 package de.intarsys.pdf.filter;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 import de.intarsys.pdf.cos.COSDictionary;
 import de.intarsys.pdf.cos.COSInteger;
@@ -66,6 +67,8 @@ public abstract class Prediction implements IPrediction {
 
 	private int bitsPerComponent;
 
+	private int bytesPerPixel;
+
 	private int colors;
 
 	private int columns;
@@ -98,14 +101,13 @@ public abstract class Prediction implements IPrediction {
 			columns = value.intValue();
 		}
 
+		bytesPerPixel = (bitsPerComponent * colors + 7) / 8;
 		resultRowSize = computeResultRowSize();
 		sourceRowSize = computeSourceRowSize();
 	}
 
 	public int computeResultRowSize() {
-		// assume that bitsPerComponent is 8, 4, 2 or 1
-		return (int) Math.ceil(((double) colors * columns)
-				/ (8 / bitsPerComponent));
+		return (bitsPerComponent * colors * columns + 7) / 8;
 	}
 
 	public int computeSourceRowSize() {
@@ -118,20 +120,63 @@ public abstract class Prediction implements IPrediction {
 
 		rows = source.length / sourceRowSize;
 		result = new byte[rows * resultRowSize];
-		for (int index = 0; index < rows; index++) {
+		if (rows == 0) {
+			return result;
+		}
+		// the row before the first one is all zero
+		decodeRow(source, 0, new byte[resultRowSize], 0, result, 0);
+		for (int index = 1; index < rows; index++) {
 			decodeRow(source, sourceRowSize * index, result, resultRowSize
-					* index);
+					* (index - 1), result, resultRowSize * index);
 		}
 		return result;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.filter.IPrediction#decode(java.io.InputStream)
+	 */
+	public InputStream decode(InputStream source) throws IOException {
+		return new PredictionInputStream(source, this);
+	}
+
+	/**
+	 * Decode a single row.
+	 * 
+	 * @param source
+	 *            The encoded data
+	 * @param sourceOffset
+	 *            The offset of the row in <code>source</code>
+	 * @param prior
+	 *            The decoded data of the previous row, all zero for the first
+	 *            row
+	 * @param priorOffset
+	 *            The offset of the previous row in <code>prior</code>
+	 * @param result
+	 *            The decoded data
+	 * @param resultOffset
+	 *            The offset of the row in <code>result</code>
+	 * @throws IOException
+	 */
 	protected abstract void decodeRow(byte[] source, int sourceOffset,
-			byte[] result, int resultOffset) throws IOException;
+			byte[] prior, int priorOffset, byte[] result, int resultOffset)
+			throws IOException;
 
 	public int getBitsPerComponent() {
 		return bitsPerComponent;
 	}
 
+	/**
+	 * The number of bytes per pixel, rounded up to at least 1. This is the
+	 * distance to the "left" byte in PNG prediction.
+	 * 
+	 * @return The number of bytes per pixel
+	 */
+	public int getBytesPerPixel() {
+		return bytesPerPixel;
+	}
+
 	public int getColors() {
 		return colors;
 	}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.pdf.filter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} applying a {@link Prediction} to the data read from
+ * another {@link InputStream}.
+ * <p>
+ * The data is decoded row by row, only the current and the previous row are
+ * kept. An incomplete last row is dropped.
+ */
+public class PredictionInputStream extends FilterInputStream {
+
+	private byte[] current;
+
+	private boolean eof = false;
+
+	private int pos = 0;
+
+	final private Prediction prediction;
+
+	private byte[] prior;
+
+	/**
+	 * The encoded rows read ahead
+	 */
+	final private byte[] source;
+
+	private int sourceLength = 0;
+
+	private int sourcePos = 0;
+
+	public PredictionInputStream(InputStream in, Prediction prediction) {
+		super(in);
+		this.prediction = prediction;
+		int rowSize = prediction.getResultRowSize();
+		int sourceRowSize = prediction.getSourceRowSize();
+		prior = new byte[rowSize];
+		current = new byte[rowSize];
+		pos = rowSize;
+		// small rows (as in xref streams) are read a few at a time
+		source = new byte[sourceRowSize * Math.max(1, 4096 / sourceRowSize)];
+	}
+
+	@Override
+	public int available() throws IOException {
+		return current.length - pos;
+	}
+
+	/**
+	 * Decode the next row.
+	 * 
+	 * @return <code>false</code> if there is no complete row left.
+	 * @throws IOException
+	 */
+	protected boolean fill() throws IOException {
+		int sourceRowSize = prediction.getSourceRowSize();
+		if (sourceLength - sourcePos < sourceRowSize) {
+			if (eof) {
+				return false;
+			}
+			// move the partial row to the front and read more
+			int remaining = sourceLength - sourcePos;
+			System.arraycopy(source, sourcePos, source, 0, remaining);
+			sourcePos = 0;
+			sourceLength = remaining;
+			while (sourceLength < sourceRowSize) {
+				int count = in.read(source, sourceLength, source.length
+						- sourceLength);
+				if (count == -1) {
+					eof = true;
+					return false;
+				}
+				sourceLength += count;
+			}
+		}
+		byte[] temp = prior;
+		prior = current;
+		current = temp;
+		prediction.decodeRow(source, sourcePos, prior, 0, current, 0);
+		sourcePos += sourceRowSize;
+		pos = 0;
+		return true;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (pos >= current.length && !fill()) {
+			return -1;
+		}
+		return current[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (b == null) {
+			throw new NullPointerException();
+		} else if ((off < 0) || (off > b.length) || (len < 0)
+				|| ((off + len) > b.length) || ((off + len) < 0)) {
+			throw new IndexOutOfBoundsException();
+		} else if (len == 0) {
+			return 0;
+		}
+		int count = 0;
+		while (count < len) {
+			if (pos >= current.length && !fill()) {
+				break;
+			}
+			int chunk = Math.min(len - count, current.length - pos);
+			System.arraycopy(current, pos, b, off + count, chunk);
+			pos += chunk;
+			count += chunk;
+		}
+		return count == 0 ? -1 : count;
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("method not supported");
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n) {
+			if (pos >= current.length && !fill()) {
+				break;
+			}
+			int chunk = (int) Math.min(n - skipped, current.length - pos);
+			pos += chunk;
+			skipped += chunk;
+		}
+		return skipped;
+	}
+}
@@ -75,6 +75,16 @@ abstract public class StreamBasedFilter extends Filter {
 		return os.toByteArray();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.filter.Filter#decode(java.io.InputStream)
+	 */
+	@Override
+	public InputStream decode(InputStream source) throws IOException {
+		return createInputFilterStream(source);
+	}
+
 	abstract protected InputStream createInputFilterStream(InputStream is)
 			throws IOException;
 
@@ -36,27 +36,53 @@ public class TIFFPrediction extends Prediction {
 		super(options);
 	}
 
-	protected void decodeRow(byte[] source, int sourceOffset, byte[] result,
-			int resultOffset) {
-		int colors;
-		int columns;
+	protected void decodeRow(byte[] source, int sourceOffset, byte[] prior,
+			int priorOffset, byte[] result, int resultOffset) {
+		int bitsPerComponent = getBitsPerComponent();
+		int colors = getColors();
+		int rowSize = getResultRowSize();
 
-		if (getBitsPerComponent() != 8) {
-			// TODO 2 @ehk implement
+		if (bitsPerComponent == 8) {
+			System.arraycopy(source, sourceOffset, result, resultOffset, Math
+					.min(colors, rowSize));
+			for (int x = colors; x < rowSize; x++) {
+				result[resultOffset + x] = (byte) (source[sourceOffset + x] + result[resultOffset
+						+ x - colors]);
+			}
 			return;
 		}
-
-		colors = getColors();
-		columns = getColumns();
-		for (int index = 0; index < colors; index++) {
-			result[resultOffset + index] = source[sourceOffset + index];
+		if (bitsPerComponent == 16) {
+			int bytesPerPixel = colors * 2;
+			System.arraycopy(source, sourceOffset, result, resultOffset, Math
+					.min(bytesPerPixel, rowSize));
+			for (int x = bytesPerPixel; x + 1 < rowSize; x += 2) {
+				int left = ((result[resultOffset + x - bytesPerPixel] & 0xff) << 8)
+						| (result[resultOffset + x - bytesPerPixel + 1] & 0xff);
+				int value = ((source[sourceOffset + x] & 0xff) << 8)
+						| (source[sourceOffset + x + 1] & 0xff);
+				value = value + left;
+				result[resultOffset + x] = (byte) (value >> 8);
+				result[resultOffset + x + 1] = (byte) value;
+			}
+			return;
+		}
+		// 1, 2 or 4 bits, components are packed
+		int mask = (1 << bitsPerComponent) - 1;
+		int components = getColumns() * colors;
+		for (int i = 0; i < rowSize; i++) {
+			result[resultOffset + i] = 0;
 		}
-		for (int byteIndex = 1; byteIndex < columns; byteIndex++) {
-			for (int colorIndex = 0; colorIndex < colors; colorIndex++) {
-				result[resultOffset + (byteIndex * colors) + colorIndex] = (byte) (result[resultOffset
-						+ ((byteIndex - 1) * colors) + colorIndex] + source[sourceOffset
-						+ (byteIndex * colors) + colorIndex]);
+		for (int i = 0; i < components; i++) {
+			int bit = i * bitsPerComponent;
+			int shift = 8 - bitsPerComponent - (bit & 7);
+			int value = (source[sourceOffset + (bit >> 3)] >> shift) & mask;
+			if (i >= colors) {
+				int leftBit = bit - colors * bitsPerComponent;
+				int leftShift = 8 - bitsPerComponent - (leftBit & 7);
+				value = value
+						+ ((result[resultOffset + (leftBit >> 3)] >> leftShift) & mask);
 			}
+			result[resultOffset + (bit >> 3)] |= (value & mask) << shift;
 		}
 	}
 
@@ -30,6 +30,8 @@
 package de.intarsys.pdf.font;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
@@ -44,6 +46,143 @@ import de.intarsys.pdf.cos.COSObject;
  */
 public class CIDWidthMap extends COSBasedObject {
 
+	/**
+	 * The width entries compiled to primitive arrays.
+	 * <p>
+	 * Compact CID ranges use a dense table, others sorted intervals with
+	 * binary search. Overlapping intervals fall back to a scan in definition
+	 * order.
+	 */
+	static class Lookup {
+		/**
+		 * The maximum number of CID's in a dense table. The CID range is
+		 * defined by the font data and must not determine the allocation.
+		 */
+		static final private int MAX_DENSE_SIZE = 65536;
+
+		/**
+		 * The widths for the CID's from {@link #denseOffset}, -1 if undefined
+		 */
+		final private int[] denseWidths;
+
+		final private int denseOffset;
+
+		final private int[] starts;
+
+		final private int[] stops;
+
+		final private int[] widths;
+
+		final private boolean sorted;
+
+		protected Lookup(List entries) {
+			int size = entries.size();
+			int[] tempStarts = new int[size];
+			int[] tempStops = new int[size];
+			int[] tempWidths = new int[size];
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+			long covered = 0;
+			for (int i = 0; i < size; i++) {
+				CIDWidthMapEntry entry = (CIDWidthMapEntry) entries.get(i);
+				tempStarts[i] = entry.getStart();
+				tempStops[i] = entry.getStop();
+				tempWidths[i] = entry.getWidth();
+				if (tempStarts[i] <= tempStops[i]) {
+					min = Math.min(min, tempStarts[i]);
+					max = Math.max(max, tempStops[i]);
+					covered += (long) tempStops[i] - tempStarts[i] + 1;
+				}
+			}
+			long span = (long) max - min + 1;
+			if ((covered > 0) && (span <= MAX_DENSE_SIZE)
+					&& (span <= 2 * covered + 256) && (covered <= 2 * span)) {
+				denseOffset = min;
+				denseWidths = new int[(int) span];
+				Arrays.fill(denseWidths, -1);
+				// fill in reverse order, the first definition wins
+				for (int i = size - 1; i >= 0; i--) {
+					if (tempStarts[i] <= tempStops[i]) {
+						Arrays.fill(denseWidths, tempStarts[i] - min,
+								tempStops[i] - min + 1, tempWidths[i]);
+					}
+				}
+				starts = null;
+				stops = null;
+				widths = null;
+				sorted = false;
+				return;
+			}
+			denseOffset = 0;
+			denseWidths = null;
+			// sort intervals by start
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = new Integer(i);
+			}
+			final int[] keys = tempStarts;
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer o1, Integer o2) {
+					int k1 = keys[o1.intValue()];
+					int k2 = keys[o2.intValue()];
+					return k1 < k2 ? -1 : (k1 == k2 ? 0 : 1);
+				}
+			});
+			boolean disjoint = true;
+			starts = new int[size];
+			stops = new int[size];
+			widths = new int[size];
+			for (int i = 0; i < size; i++) {
+				int index = order[i].intValue();
+				starts[i] = tempStarts[index];
+				stops[i] = tempStops[index];
+				widths[i] = tempWidths[index];
+				if ((i > 0) && (starts[i] <= stops[i - 1])) {
+					disjoint = false;
+				}
+			}
+			if (!disjoint) {
+				// keep definition order for the scan
+				System.arraycopy(tempStarts, 0, starts, 0, size);
+				System.arraycopy(tempStops, 0, stops, 0, size);
+				System.arraycopy(tempWidths, 0, widths, 0, size);
+			}
+			sorted = disjoint;
+		}
+
+		protected int getWidth(int cid) {
+			if (denseWidths != null) {
+				int index = cid - denseOffset;
+				if ((index < 0) || (index >= denseWidths.length)) {
+					return -1;
+				}
+				return denseWidths[index];
+			}
+			if (sorted) {
+				int low = 0;
+				int high = starts.length - 1;
+				while (low <= high) {
+					int mid = (low + high) >>> 1;
+					if (starts[mid] <= cid) {
+						low = mid + 1;
+					} else {
+						high = mid - 1;
+					}
+				}
+				if ((high >= 0) && (stops[high] >= cid)) {
+					return widths[high];
+				}
+				return -1;
+			}
+			for (int i = 0; i < starts.length; i++) {
+				if ((starts[i] <= cid) && (stops[i] >= cid)) {
+					return widths[i];
+				}
+			}
+			return -1;
+		}
+	}
+
 	/**
 	 * The meta class implementation
 	 */
@@ -69,12 +208,18 @@ public class CIDWidthMap extends COSBasedObject {
 
 	private List entries;
 
+	/**
+	 * The compiled entries, created on demand
+	 */
+	private Lookup lookup;
+
 	protected CIDWidthMap(COSObject object) {
 		super(object);
 	}
 
 	public void addWidth(int cid, int width) {
 		entries.add(new CIDWidthMapEntry(cid, cid, width));
+		lookup = null;
 		cosGetArray().add(COSInteger.create(cid));
 		cosGetArray().add(COSInteger.create(cid));
 		cosGetArray().add(COSInteger.create(width));
@@ -82,6 +227,7 @@ public class CIDWidthMap extends COSBasedObject {
 
 	protected void createMap(COSArray array) {
 		entries = new ArrayList();
+		lookup = null;
 		if (array != null) {
 			for (Iterator itMap = array.iterator(); itMap.hasNext();) {
 				COSNumber element1 = ((COSObject) itMap.next()).asNumber();
@@ -118,16 +264,17 @@ public class CIDWidthMap extends COSBasedObject {
 		}
 	}
 
-	public int getWidth(int cid) {
-		for (Iterator it = entries.iterator(); it.hasNext();) {
-			CIDWidthMapEntry entry = (CIDWidthMapEntry) it.next();
-			if (entry.getStart() <= cid) {
-				if (entry.getStop() >= cid) {
-					return entry.getWidth();
-				}
-			}
+	protected Lookup getLookup() {
+		Lookup result = lookup;
+		if (result == null) {
+			result = new Lookup(entries);
+			lookup = result;
 		}
-		return -1;
+		return result;
+	}
+
+	public int getWidth(int cid) {
+		return getLookup().getWidth(cid);
 	}
 
 	@Override
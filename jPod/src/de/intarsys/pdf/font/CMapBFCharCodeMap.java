@@ -51,6 +51,16 @@ public class CMapBFCharCodeMap extends CMapCharMap {
 		return destination;
 	}
 
+	@Override
+	public int getCIDEnd() {
+		return destination;
+	}
+
+	@Override
+	public int getCIDStart() {
+		return destination;
+	}
+
 	@Override
 	public char[] toChars(int codepoint) {
 		if (source == codepoint) {
@@ -53,6 +53,16 @@ public class CMapBFCharNameMap extends CMapCharMap {
 		return destination;
 	}
 
+	@Override
+	public int getCIDEnd() {
+		return destinationCode;
+	}
+
+	@Override
+	public int getCIDStart() {
+		return destinationCode;
+	}
+
 	@Override
 	public char[] toChars(int codepoint) {
 		if (source == codepoint) {
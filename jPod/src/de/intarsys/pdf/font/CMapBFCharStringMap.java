@@ -59,6 +59,16 @@ public class CMapBFCharStringMap extends CMapCharMap {
 		return chars[last];
 	}
 
+	@Override
+	public int getCIDEnd() {
+		return chars[last];
+	}
+
+	@Override
+	public int getCIDStart() {
+		return chars[last];
+	}
+
 	@Override
 	public char[] toChars(int codepoint) {
 		if (source == codepoint) {
@@ -42,6 +42,16 @@ public class CMapBFRangeCodeMap extends CMapRangeMap {
 		this.destination = CMap.toInt(destination);
 	}
 
+	@Override
+	public int getCIDEnd() {
+		return destination + end - start;
+	}
+
+	@Override
+	public int getCIDStart() {
+		return destination;
+	}
+
 	@Override
 	public char[] toChars(int codepoint) {
 		if ((codepoint >= start) && (codepoint <= end)) {
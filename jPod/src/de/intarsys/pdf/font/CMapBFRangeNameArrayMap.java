@@ -41,6 +41,10 @@ import de.intarsys.pdf.encoding.GlyphNameMap;
  */
 public class CMapBFRangeNameArrayMap extends CMapRangeMap {
 
+	final private int cidEnd;
+
+	final private int cidStart;
+
 	final private int[] destinationCodes;
 
 	final private COSArray names;
@@ -49,6 +53,8 @@ public class CMapBFRangeNameArrayMap extends CMapRangeMap {
 		super(start, end);
 		this.names = names;
 		destinationCodes = new int[names.size()];
+		int tempStart = Integer.MAX_VALUE;
+		int tempEnd = Integer.MIN_VALUE;
 		int i = 0;
 		for (Iterator it = names.iterator(); it.hasNext();) {
 			COSObject name = ((COSObject) it.next()).asName();
@@ -58,8 +64,27 @@ public class CMapBFRangeNameArrayMap extends CMapRangeMap {
 				destinationCodes[i] = GlyphNameMap.Standard.getUnicode(name
 						.stringValue());
 			}
+			tempStart = Math.min(tempStart, destinationCodes[i]);
+			tempEnd = Math.max(tempEnd, destinationCodes[i]);
 			i++;
 		}
+		cidStart = tempStart;
+		cidEnd = tempEnd;
+	}
+
+	@Override
+	public int getCIDEnd() {
+		return cidEnd;
+	}
+
+	@Override
+	public int getCIDStart() {
+		return cidStart;
+	}
+
+	@Override
+	public int getCodepointEnd() {
+		return start + destinationCodes.length - 1;
 	}
 
 	@Override
@@ -41,6 +41,10 @@ import de.intarsys.pdf.cos.COSString;
  */
 public class CMapBFRangeStringArrayMap extends CMapRangeMap {
 
+	final private int cidEnd;
+
+	final private int cidStart;
+
 	final private char[][] destinations;
 
 	final private COSArray strings;
@@ -49,6 +53,8 @@ public class CMapBFRangeStringArrayMap extends CMapRangeMap {
 		super(start, end);
 		this.strings = strings;
 		destinations = new char[strings.size()][];
+		int tempStart = Integer.MAX_VALUE;
+		int tempEnd = Integer.MIN_VALUE;
 		int i = 0;
 		for (Iterator it = strings.iterator(); it.hasNext();) {
 			COSString destination = ((COSObject) it.next()).asString();
@@ -63,8 +69,30 @@ public class CMapBFRangeStringArrayMap extends CMapRangeMap {
 					destinations[i][charIndex++] = (char) ((destinationBytes[byteIndex++] << 8) + destinationBytes[byteIndex++]);
 				}
 			}
+			int length = destinations[i].length;
+			if (length > 0) {
+				tempStart = Math.min(tempStart, destinations[i][length - 1]);
+				tempEnd = Math.max(tempEnd, destinations[i][length - 1]);
+			}
 			i++;
 		}
+		cidStart = tempStart;
+		cidEnd = tempEnd;
+	}
+
+	@Override
+	public int getCIDEnd() {
+		return cidEnd;
+	}
+
+	@Override
+	public int getCIDStart() {
+		return cidStart;
+	}
+
+	@Override
+	public int getCodepointEnd() {
+		return start + destinations.length - 1;
 	}
 
 	@Override
@@ -50,6 +50,16 @@ public class CMapBFRangeStringMap extends CMapRangeMap {
 		this.last = this.chars.length - 1;
 	}
 
+	@Override
+	public int getCIDEnd() {
+		return chars[last] + end - start;
+	}
+
+	@Override
+	public int getCIDStart() {
+		return chars[last];
+	}
+
 	@Override
 	public char[] toChars(int codepoint) {
 		if ((codepoint >= start) && (codepoint <= end)) {
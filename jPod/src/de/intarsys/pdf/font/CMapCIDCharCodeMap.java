@@ -46,6 +46,16 @@ public class CMapCIDCharCodeMap extends CMapCharMap {
 		return destination;
 	}
 
+	@Override
+	public int getCIDEnd() {
+		return destination;
+	}
+
+	@Override
+	public int getCIDStart() {
+		return destination;
+	}
+
 	@Override
 	public char[] toChars(int codepoint) {
 		if (source == codepoint) {
@@ -45,6 +45,16 @@ public class CMapCIDRangeCodeMap extends CMapRangeMap {
 		return destination;
 	}
 
+	@Override
+	public int getCIDEnd() {
+		return destination + end - start;
+	}
+
+	@Override
+	public int getCIDStart() {
+		return destination;
+	}
+
 	@Override
 	public char[] toChars(int codepoint) {
 		if (codepoint >= start && codepoint <= end) {
@@ -48,6 +48,16 @@ public abstract class CMapCharMap extends CMapMap {
 		this.source = CMap.toInt(source);
 	}
 
+	@Override
+	public int getCodepointEnd() {
+		return source;
+	}
+
+	@Override
+	public int getCodepointStart() {
+		return source;
+	}
+
 	/**
 	 * The codepoint (encoded value) to be mapped to a CID.
 	 * 
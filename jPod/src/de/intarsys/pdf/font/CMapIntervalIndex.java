@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.pdf.font;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An index on the {@link CMapMap} definitions of a CMap.
+ * <p>
+ * The value intervals of all maps are split into disjoint segments. For each
+ * segment the maps covering it are recorded in definition order, so a lookup
+ * is a binary search (or a direct table access for one byte keys) followed by
+ * querying the covering maps only. The result is the same as querying all
+ * maps in definition order.
+ * <p>
+ * An index is created either on the codepoints of the maps (for
+ * {@link #toCID(int)} and {@link #toChars(int)}) or on their CID's (for
+ * {@link #toCodepoint(int)}).
+ */
+public class CMapIntervalIndex {
+
+	/**
+	 * The number of keys with direct segment lookup
+	 */
+	private static final int DIRECT_SIZE = 256;
+
+	/**
+	 * Create an index on the codepoints of <code>maps</code>.
+	 * 
+	 * @param maps
+	 *            The {@link CMapMap} definitions in order.
+	 * @return The new index.
+	 */
+	public static CMapIntervalIndex createCodepointIndex(List maps) {
+		CMapMap[] tempMaps = toArray(maps);
+		int[] starts = new int[tempMaps.length];
+		int[] ends = new int[tempMaps.length];
+		for (int i = 0; i < tempMaps.length; i++) {
+			starts[i] = tempMaps[i].getCodepointStart();
+			ends[i] = tempMaps[i].getCodepointEnd();
+		}
+		return new CMapIntervalIndex(tempMaps, starts, ends);
+	}
+
+	/**
+	 * Create an index on the CID's of <code>maps</code>.
+	 * 
+	 * @param maps
+	 *            The {@link CMapMap} definitions in order.
+	 * @return The new index.
+	 */
+	public static CMapIntervalIndex createCIDIndex(List maps) {
+		CMapMap[] tempMaps = toArray(maps);
+		int[] starts = new int[tempMaps.length];
+		int[] ends = new int[tempMaps.length];
+		for (int i = 0; i < tempMaps.length; i++) {
+			starts[i] = tempMaps[i].getCIDStart();
+			ends[i] = tempMaps[i].getCIDEnd();
+		}
+		return new CMapIntervalIndex(tempMaps, starts, ends);
+	}
+
+	/**
+	 * The {@link CMapMap} definitions in <code>maps</code> as an array.
+	 * 
+	 * @param maps
+	 *            The {@link CMapMap} definitions in order.
+	 * @return The {@link CMapMap} definitions in order.
+	 */
+	protected static CMapMap[] toArray(List maps) {
+		CMapMap[] result = new CMapMap[maps.size()];
+		int i = 0;
+		for (Iterator it = maps.iterator(); it.hasNext();) {
+			result[i++] = (CMapMap) it.next();
+		}
+		return result;
+	}
+
+	/**
+	 * The maps covering the segments, in definition order for each segment.
+	 */
+	final private CMapMap[] candidates;
+
+	/**
+	 * The index of the first candidate for each segment. The candidates for
+	 * segment i are at <code>candidateOffsets[i]</code> up to (excluding)
+	 * <code>candidateOffsets[i + 1]</code>.
+	 */
+	final private int[] candidateOffsets;
+
+	/**
+	 * The segment index for the keys 0 to {@link #DIRECT_SIZE} - 1.
+	 */
+	final private int[] directSegments;
+
+	/**
+	 * The sorted first keys of the segments. Segment i covers the keys from
+	 * <code>segmentStarts[i]</code> up to (excluding)
+	 * <code>segmentStarts[i + 1]</code>.
+	 */
+	final private int[] segmentStarts;
+
+	protected CMapIntervalIndex(CMapMap[] maps, int[] starts, int[] ends) {
+		// collect segment boundaries
+		int[] bounds = new int[maps.length * 2];
+		int boundCount = 0;
+		for (int i = 0; i < maps.length; i++) {
+			if (starts[i] > ends[i]) {
+				continue;
+			}
+			bounds[boundCount++] = starts[i];
+			if (ends[i] != Integer.MAX_VALUE) {
+				bounds[boundCount++] = ends[i] + 1;
+			}
+		}
+		Arrays.sort(bounds, 0, boundCount);
+		int segmentCount = 0;
+		for (int i = 0; i < boundCount; i++) {
+			if ((segmentCount == 0)
+					|| (bounds[i] != bounds[segmentCount - 1])) {
+				bounds[segmentCount++] = bounds[i];
+			}
+		}
+		segmentStarts = new int[segmentCount];
+		System.arraycopy(bounds, 0, segmentStarts, 0, segmentCount);
+		// count, then assign the candidates for each segment
+		int[] counts = new int[segmentCount + 1];
+		for (int i = 0; i < maps.length; i++) {
+			if (starts[i] > ends[i]) {
+				continue;
+			}
+			int first = lookupSegment(starts[i]);
+			int last = lookupSegment(ends[i]);
+			for (int s = first; s <= last; s++) {
+				counts[s]++;
+			}
+		}
+		candidateOffsets = new int[segmentCount + 1];
+		for (int s = 0; s < segmentCount; s++) {
+			candidateOffsets[s + 1] = candidateOffsets[s] + counts[s];
+		}
+		candidates = new CMapMap[candidateOffsets[segmentCount]];
+		int[] fill = new int[segmentCount];
+		System.arraycopy(candidateOffsets, 0, fill, 0, segmentCount);
+		for (int i = 0; i < maps.length; i++) {
+			if (starts[i] > ends[i]) {
+				continue;
+			}
+			int first = lookupSegment(starts[i]);
+			int last = lookupSegment(ends[i]);
+			for (int s = first; s <= last; s++) {
+				candidates[fill[s]++] = maps[i];
+			}
+		}
+		directSegments = new int[DIRECT_SIZE];
+		for (int i = 0; i < DIRECT_SIZE; i++) {
+			directSegments[i] = lookupSegment(i);
+		}
+	}
+
+	/**
+	 * The segment containing <code>key</code> or -1.
+	 * 
+	 * @param key
+	 * @return The segment containing <code>key</code> or -1.
+	 */
+	protected int getSegment(int key) {
+		if ((key >= 0) && (key < DIRECT_SIZE)) {
+			return directSegments[key];
+		}
+		return lookupSegment(key);
+	}
+
+	private int lookupSegment(int key) {
+		int low = 0;
+		int high = segmentStarts.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (segmentStarts[mid] <= key) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * The result of {@link CMapMap#toChars(int)} for the first map with a
+	 * result or <code>null</code>.
+	 * 
+	 * @param codepoint
+	 * @return The chars for <code>codepoint</code> or <code>null</code>.
+	 */
+	public char[] toChars(int codepoint) {
+		int segment = getSegment(codepoint);
+		if (segment < 0) {
+			return null;
+		}
+		int end = candidateOffsets[segment + 1];
+		for (int i = candidateOffsets[segment]; i < end; i++) {
+			char[] result = candidates[i].toChars(codepoint);
+			if (result != null) {
+				return result;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The result of {@link CMapMap#toCID(int)} for the first map with a
+	 * result or 0.
+	 * 
+	 * @param codepoint
+	 * @return The CID for <code>codepoint</code> or 0.
+	 */
+	public int toCID(int codepoint) {
+		int segment = getSegment(codepoint);
+		if (segment < 0) {
+			return 0;
+		}
+		int end = candidateOffsets[segment + 1];
+		for (int i = candidateOffsets[segment]; i < end; i++) {
+			int result = candidates[i].toCID(codepoint);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * The result of {@link CMapMap#toCodepoint(int)} for the first map with a
+	 * result or 0.
+	 * 
+	 * @param cid
+	 * @return The codepoint for <code>cid</code> or 0.
+	 */
+	public int toCodepoint(int cid) {
+		int segment = getSegment(cid);
+		if (segment < 0) {
+			return 0;
+		}
+		int end = candidateOffsets[segment + 1];
+		for (int i = candidateOffsets[segment]; i < end; i++) {
+			int result = candidates[i].toCodepoint(cid);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return 0;
+	}
+}
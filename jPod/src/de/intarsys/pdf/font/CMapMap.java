@@ -39,6 +39,50 @@ abstract public class CMapMap {
 		super();
 	}
 
+	/**
+	 * The largest CID this may map to.
+	 * <p>
+	 * This and {@link #getCIDStart()} bound the CID values where
+	 * {@link #toCodepoint(int)} may return a result. The default is
+	 * unbounded.
+	 * 
+	 * @return The largest CID this may map to.
+	 */
+	public int getCIDEnd() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * The smallest CID this may map to.
+	 * 
+	 * @return The smallest CID this may map to.
+	 */
+	public int getCIDStart() {
+		return Integer.MIN_VALUE;
+	}
+
+	/**
+	 * The largest codepoint this may map.
+	 * <p>
+	 * This and {@link #getCodepointStart()} bound the codepoints where
+	 * {@link #toCID(int)} and {@link #toChars(int)} may return a result. The
+	 * default is unbounded.
+	 * 
+	 * @return The largest codepoint this may map.
+	 */
+	public int getCodepointEnd() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * The smallest codepoint this may map.
+	 * 
+	 * @return The smallest codepoint this may map.
+	 */
+	public int getCodepointStart() {
+		return Integer.MIN_VALUE;
+	}
+
 	/**
 	 * The string value for a CID or null if not applicable.
 	 * 
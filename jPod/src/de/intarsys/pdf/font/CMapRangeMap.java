@@ -48,6 +48,16 @@ public abstract class CMapRangeMap extends CMapMap {
 		this.end = CMap.toInt(end);
 	}
 
+	@Override
+	public int getCodepointEnd() {
+		return end;
+	}
+
+	@Override
+	public int getCodepointStart() {
+		return start;
+	}
+
 	public int getEnd() {
 		return end;
 	}
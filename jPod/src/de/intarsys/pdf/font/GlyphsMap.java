@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.pdf.font;
+
+/**
+ * A map from the encoded codepoint to the {@link PDGlyphs} of a font.
+ * <p>
+ * The map is open addressed on the primitive codepoint, the {@link PDGlyphs}
+ * itself is the entry. Lookups are not synchronized and may be performed
+ * concurrently with other lookups and additions. As {@link PDGlyphs} is
+ * immutable, a lookup sees either a completely initialized entry or misses
+ * and falls back to {@link #put(PDGlyphs)}, which is synchronized.
+ */
+public class GlyphsMap {
+
+	private static final int INITIAL_SIZE = 64;
+
+	private static int hash(int codepoint) {
+		int h = codepoint * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * The number of entries
+	 */
+	private int size = 0;
+
+	/**
+	 * The hash table, its length is a power of 2
+	 */
+	private volatile PDGlyphs[] slots = new PDGlyphs[INITIAL_SIZE];
+
+	public GlyphsMap() {
+		super();
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	synchronized public void clear() {
+		slots = new PDGlyphs[INITIAL_SIZE];
+		size = 0;
+	}
+
+	/**
+	 * The {@link PDGlyphs} for <code>codepoint</code> or <code>null</code>.
+	 * 
+	 * @param codepoint
+	 *            The encoded codepoint
+	 * @return The {@link PDGlyphs} for <code>codepoint</code> or
+	 *         <code>null</code>.
+	 */
+	public PDGlyphs get(int codepoint) {
+		PDGlyphs[] tempSlots = slots;
+		int mask = tempSlots.length - 1;
+		int index = hash(codepoint) & mask;
+		while (true) {
+			PDGlyphs glyphs = tempSlots[index];
+			if (glyphs == null || glyphs.getCodepoint() == codepoint) {
+				return glyphs;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	/**
+	 * Add <code>glyphs</code> unless an entry for its codepoint is already
+	 * available.
+	 * 
+	 * @param glyphs
+	 *            The new {@link PDGlyphs}
+	 * @return The {@link PDGlyphs} in the map for the codepoint of
+	 *         <code>glyphs</code>.
+	 */
+	synchronized public PDGlyphs put(PDGlyphs glyphs) {
+		PDGlyphs[] tempSlots = slots;
+		int index = slotIndex(tempSlots, glyphs.getCodepoint());
+		if (tempSlots[index] != null) {
+			return tempSlots[index];
+		}
+		if ((size + 1) * 4 > tempSlots.length * 3) {
+			// rehash into a new table before publishing it
+			PDGlyphs[] newSlots = new PDGlyphs[tempSlots.length * 2];
+			for (int i = 0; i < tempSlots.length; i++) {
+				PDGlyphs entry = tempSlots[i];
+				if (entry != null) {
+					newSlots[slotIndex(newSlots, entry.getCodepoint())] = entry;
+				}
+			}
+			newSlots[slotIndex(newSlots, glyphs.getCodepoint())] = glyphs;
+			slots = newSlots;
+		} else {
+			tempSlots[index] = glyphs;
+		}
+		size++;
+		return glyphs;
+	}
+
+	/**
+	 * The index of the slot for <code>codepoint</code>, either its entry or
+	 * the free slot to insert it.
+	 */
+	private int slotIndex(PDGlyphs[] tempSlots, int codepoint) {
+		int mask = tempSlots.length - 1;
+		int index = hash(codepoint) & mask;
+		while (true) {
+			PDGlyphs glyphs = tempSlots[index];
+			if (glyphs == null || glyphs.getCodepoint() == codepoint) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	/**
+	 * The number of entries.
+	 * 
+	 * @return The number of entries.
+	 */
+	synchronized public int size() {
+		return size;
+	}
+}
@@ -35,6 +35,7 @@ import java.io.InputStream;
 import de.intarsys.pdf.content.CSContent;
 import de.intarsys.pdf.cos.COSName;
 import de.intarsys.pdf.cos.COSObject;
+import de.intarsys.tools.cache.Cache;
 import de.intarsys.tools.stream.StreamTools;
 
 /**
@@ -54,21 +55,84 @@ public class NamedCMap extends StreamBasedCMap {
 	public static final MetaClass META = new MetaClass(MetaClass.class
 			.getDeclaringClass());
 
-	static public CMap loadCMap(COSName name) {
+	/**
+	 * The maximum number of predefined CMaps held in memory
+	 */
+	public static final int CACHE_SIZE = 50;
+
+	/**
+	 * The parsed and compiled predefined CMaps, shared by all documents
+	 */
+	private static final Cache<NamedCMap> CMaps = new Cache<NamedCMap>(
+			CACHE_SIZE);
+
+	/**
+	 * Parse the predefined CMap <code>name</code> from its resource.
+	 * 
+	 * @param name
+	 *            The name of the predefined CMap.
+	 * @return The new CMap or <code>null</code> if not available.
+	 */
+	static protected NamedCMap createCMap(String name) {
 		ClassLoader loader = NamedCMap.class.getClassLoader();
-		InputStream is = loader.getResourceAsStream("cmaps/"
-				+ name.stringValue() + ".cmap");
+		InputStream is = loader.getResourceAsStream("cmaps/" + name + ".cmap");
 		if (is == null) {
 			return null;
 		}
 		try {
 			byte[] bytes = StreamTools.toByteArray(is);
-			NamedCMap map = new NamedCMap(name);
+			// do not share a name object from some document
+			NamedCMap map = new NamedCMap(COSName.create(name));
 			CSContent content = CSContent.createFromBytes(bytes);
 			map.initializeFromContent(content);
+			map.compile();
 			return map;
 		} catch (IOException e) {
 			return null;
+		} finally {
+			StreamTools.close(is);
+		}
+	}
+
+	/**
+	 * The predefined CMap <code>name</code>.
+	 * <p>
+	 * The CMap is parsed once and shared until it is dropped from the cache.
+	 * 
+	 * @param name
+	 *            The name of the predefined CMap.
+	 * @return The CMap or <code>null</code> if not available.
+	 */
+	static public CMap loadCMap(COSName name) {
+		String key = name.stringValue();
+		NamedCMap map = CMaps.get(key);
+		if (map == null) {
+			map = createCMap(key);
+			if (map == null) {
+				return null;
+			}
+			synchronized (CMaps) {
+				// another thread may have been faster
+				NamedCMap cached = CMaps.get(key);
+				if (cached != null) {
+					return cached;
+				}
+				CMaps.put(key, map);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Load the predefined CMaps <code>names</code> into the cache, for
+	 * example at application startup.
+	 * 
+	 * @param names
+	 *            The names of the predefined CMaps.
+	 */
+	static public void preload(String[] names) {
+		for (int i = 0; i < names.length; i++) {
+			loadCMap(COSName.create(names[i]));
 		}
 	}
 
@@ -31,8 +31,6 @@ package de.intarsys.pdf.font;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 import de.intarsys.pdf.cos.COSArray;
 import de.intarsys.pdf.cos.COSBasedObject;
@@ -68,7 +66,7 @@ public class PDFontType0 extends PDFont {
 
 	private CMap cachedMap;
 
-	private Map<Integer, PDGlyphs> cachedGlyphs = new HashMap<Integer, PDGlyphs>();
+	final private GlyphsMap cachedGlyphs = new GlyphsMap();
 
 	public PDFontType0(COSObject object) {
 		super(object);
@@ -162,11 +160,10 @@ public class PDFontType0 extends PDFont {
 
 	@Override
 	public PDGlyphs getGlyphsEncoded(int codepoint) {
-		// this codepoint may be true integer?
 		PDGlyphs glyphs = cachedGlyphs.get(codepoint);
 		if (glyphs == null) {
-			glyphs = new PDGlyphs(this, codepoint);
-			cachedGlyphs.put(codepoint, glyphs);
+			// create outside the lock, another thread may win the race
+			glyphs = cachedGlyphs.put(new PDGlyphs(this, codepoint));
 		}
 		return glyphs;
 	}
@@ -191,6 +188,13 @@ public class PDFontType0 extends PDFont {
 		return getGlyphsEncoded(codepoint);
 	}
 
+	@Override
+	public void invalidateCaches() {
+		super.invalidateCaches();
+		cachedMap = null;
+		cachedGlyphs.clear();
+	}
+
 	@Override
 	protected void initializeFromScratch() {
 		super.initializeFromScratch();
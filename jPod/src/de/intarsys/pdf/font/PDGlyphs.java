@@ -32,6 +32,13 @@ package de.intarsys.pdf.font;
 import de.intarsys.tools.attribute.AttributeMap;
 import de.intarsys.tools.attribute.IAttributeSupport;
 
+/**
+ * The glyphs selected by an encoded codepoint in a font.
+ * <p>
+ * The width, unicode value and whitespace flag are computed once when
+ * created. Apart from its attributes a {@link PDGlyphs} is immutable and can
+ * be shared between threads.
+ */
 public class PDGlyphs implements IAttributeSupport {
 
 	final private AttributeMap attributes = new AttributeMap();
@@ -40,15 +47,44 @@ public class PDGlyphs implements IAttributeSupport {
 
 	final private PDFont font;
 
-	private Boolean whitespace;
+	final private int unicode;
+
+	final private boolean whitespace;
 
-	private float width;
+	final private float width;
 
 	public PDGlyphs(PDFont font, int codepoint) {
 		super();
 		this.font = font;
 		this.codepoint = codepoint;
 		this.width = font.getGlyphWidthEncoded(codepoint);
+		this.unicode = createUnicode();
+		this.whitespace = createWhitespace();
+	}
+
+	private int createUnicode() {
+		try {
+			CMap toUnicode = font.getToUnicode();
+			if (toUnicode == null) {
+				return font.getEncoding().getDecoded(codepoint);
+			}
+			return toUnicode.getDecoded(codepoint);
+		} catch (Exception e) {
+			try {
+				return font.getEncoding().getDecoded(codepoint);
+			} catch (RuntimeException ex) {
+				return -1;
+			}
+		}
+	}
+
+	private boolean createWhitespace() {
+		try {
+			int c = getDecoded();
+			return c == 0 || c == 32;
+		} catch (RuntimeException e) {
+			return false;
+		}
 	}
 
 	public double getAscent() {
@@ -88,15 +124,7 @@ public class PDGlyphs implements IAttributeSupport {
 	}
 
 	public int getUnicode() {
-		try {
-			CMap toUnicode = font.getToUnicode();
-			if (toUnicode == null) {
-				return font.getEncoding().getDecoded(codepoint);
-			}
-			return toUnicode.getDecoded(codepoint);
-		} catch (Exception e) {
-			return font.getEncoding().getDecoded(codepoint);
-		}
+		return unicode;
 	}
 
 	public float getWidth() {
@@ -104,11 +132,6 @@ public class PDGlyphs implements IAttributeSupport {
 	}
 
 	public boolean isWhitespace() {
-		if (whitespace != null) {
-			return whitespace;
-		}
-		int c = getDecoded();
-		whitespace = c == 0 || c == 32;
 		return whitespace;
 	}
 
@@ -116,8 +139,13 @@ public class PDGlyphs implements IAttributeSupport {
 		return attributes.removeAttribute(key);
 	}
 
+	/**
+	 * @deprecated The glyph properties are fixed, the font drops its
+	 *             {@link PDGlyphs} in {@link PDFont#invalidateCaches()}.
+	 */
+	@Deprecated
 	public void reset() {
-		this.width = font.getGlyphWidthEncoded(codepoint);
+		// properties are computed once
 	}
 
 	final public Object setAttribute(Object key, Object o) {
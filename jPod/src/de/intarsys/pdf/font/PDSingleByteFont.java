@@ -30,7 +30,6 @@
 package de.intarsys.pdf.font;
 
 import java.io.ByteArrayInputStream;
-import java.util.Arrays;
 
 import de.intarsys.pdf.cos.COSObject;
 
@@ -40,10 +39,15 @@ import de.intarsys.pdf.cos.COSObject;
  */
 abstract public class PDSingleByteFont extends PDFont {
 
-	private PDGlyphs[] cachedGlyphs = new PDGlyphs[256];
+	/**
+	 * The {@link PDGlyphs} for each codepoint. Entries may be published
+	 * without synchronization as {@link PDGlyphs} is immutable; at worst a
+	 * concurrent reader creates an equivalent instance.
+	 */
+	private volatile PDGlyphs[] cachedGlyphs = new PDGlyphs[256];
 
 	// an array for the width of each glyph used
-	private int[] cachedWidths;
+	private volatile int[] cachedWidths;
 
 	public PDSingleByteFont(COSObject object) {
 		super(object);
@@ -52,10 +56,11 @@ abstract public class PDSingleByteFont extends PDFont {
 	@Override
 	public PDGlyphs getGlyphsEncoded(int codepoint) {
 		// we can access the cache directly as we expect a one byte codepoint
-		PDGlyphs glyphs = cachedGlyphs[codepoint];
+		PDGlyphs[] tempGlyphs = cachedGlyphs;
+		PDGlyphs glyphs = tempGlyphs[codepoint];
 		if (glyphs == null) {
 			glyphs = new PDGlyphs(this, codepoint);
-			cachedGlyphs[codepoint] = glyphs;
+			tempGlyphs[codepoint] = glyphs;
 		}
 		return glyphs;
 	}
@@ -76,13 +81,11 @@ abstract public class PDSingleByteFont extends PDFont {
 	 */
 	@Override
 	public int getGlyphWidthEncoded(int codepoint) {
-		if (cachedWidths == null) {
-			cachedWidths = createWidths();
-		}
-		if (codepoint < 0 || codepoint > cachedWidths.length) {
+		int[] tempWidths = getGlyphWidths();
+		if (codepoint < 0 || codepoint >= tempWidths.length) {
 			return getMissingWidth();
 		}
-		return cachedWidths[codepoint];
+		return tempWidths[codepoint];
 	}
 
 	/**
@@ -91,10 +94,12 @@ abstract public class PDSingleByteFont extends PDFont {
 	 * @return The array of glyph widths.
 	 */
 	public int[] getGlyphWidths() {
-		if (cachedWidths == null) {
-			cachedWidths = createWidths();
+		int[] tempWidths = cachedWidths;
+		if (tempWidths == null) {
+			tempWidths = createWidths();
+			cachedWidths = tempWidths;
 		}
-		return cachedWidths;
+		return tempWidths;
 	}
 
 	@Override
@@ -110,7 +115,7 @@ abstract public class PDSingleByteFont extends PDFont {
 	public void invalidateCaches() {
 		super.invalidateCaches();
 		cachedWidths = null;
-		Arrays.fill(cachedGlyphs, null);
+		cachedGlyphs = new PDGlyphs[256];
 	}
 
 }
@@ -65,6 +65,68 @@ abstract public class StreamBasedCMap extends CMap {
 		}
 	}
 
+	/**
+	 * The codespace ranges compiled to bit sets for one and two byte codes.
+	 */
+	static class CodeSpace {
+		/**
+		 * The valid one and two byte codes, indexed by byte count
+		 */
+		final private long[][] codes = new long[3][];
+
+		/**
+		 * The valid one and two byte prefixes, indexed by byte count
+		 */
+		final private long[][] prefixes = new long[3][];
+
+		protected CodeSpace(CMapRange[][] ranges) {
+			for (int count = 1; count <= 2; count++) {
+				codes[count] = new long[(1 << (8 * count)) >> 6];
+				prefixes[count] = new long[(1 << (8 * count)) >> 6];
+			}
+			for (int k = 1; k < ranges.length; k++) {
+				CMapRange[] rangeArray = ranges[k];
+				for (int i = 0; i < rangeArray.length; i++) {
+					for (int count = 1; count <= 2 && count <= k; count++) {
+						if (count == k) {
+							set(codes[count], rangeArray[i], count);
+						}
+						set(prefixes[count], rangeArray[i], count);
+					}
+				}
+			}
+		}
+
+		protected boolean isCode(int code, int count) {
+			return isSet(codes[count], code);
+		}
+
+		protected boolean isPrefix(int code, int count) {
+			return isSet(prefixes[count], code);
+		}
+
+		private boolean isSet(long[] bits, int code) {
+			return (bits[code >> 6] & (1L << (code & 63))) != 0;
+		}
+
+		private void set(long[] bits, CMapRange range, int count) {
+			byte[] start = range.getStart();
+			byte[] end = range.getEnd();
+			if (count == 1) {
+				for (int b0 = start[0] & 0xff; b0 <= (end[0] & 0xff); b0++) {
+					bits[b0 >> 6] |= 1L << (b0 & 63);
+				}
+			} else {
+				for (int b0 = start[0] & 0xff; b0 <= (end[0] & 0xff); b0++) {
+					for (int b1 = start[1] & 0xff; b1 <= (end[1] & 0xff); b1++) {
+						int code = (b0 << 8) + b1;
+						bits[code >> 6] |= 1L << (code & 63);
+					}
+				}
+			}
+		}
+	}
+
 	public static final COSName DK_CIDSystemInfo = COSName
 			.constant("CIDSystemInfo");
 
@@ -78,6 +140,21 @@ abstract public class StreamBasedCMap extends CMap {
 	public static final MetaClass META = new MetaClass(MetaClass.class
 			.getDeclaringClass());
 
+	/**
+	 * The index on the CID's of the maps, created on demand
+	 */
+	private CMapIntervalIndex cidIndex;
+
+	/**
+	 * The index on the codepoints of the maps, created on demand
+	 */
+	private CMapIntervalIndex codepointIndex;
+
+	/**
+	 * The compiled codespace ranges, created on demand
+	 */
+	private CodeSpace codeSpace;
+
 	private Map<COSName, COSObject> definitions = new HashMap<COSName, COSObject>();
 
 	/**
@@ -108,6 +185,8 @@ abstract public class StreamBasedCMap extends CMap {
 
 	protected void addMap(CMapMap map) {
 		maps.add(map);
+		codepointIndex = null;
+		cidIndex = null;
 	}
 
 	protected void addNotdef(CMapMap notdef) {
@@ -121,9 +200,13 @@ abstract public class StreamBasedCMap extends CMap {
 		System.arraycopy(rangeArray, 0, tempArray, 0, rangeArray.length);
 		tempArray[rangeArray.length] = range;
 		ranges[count] = tempArray;
+		codeSpace = null;
 	}
 
 	protected boolean checkPrefix(byte[] bytes, int count) {
+		if (count <= 2) {
+			return getCodeSpace().isPrefix(toInt(bytes, 0, count), count);
+		}
 		for (int k = 0; k < ranges.length; k++) {
 			CMapRange[] rangeArray = ranges[k];
 			for (int i = 0; i < rangeArray.length; i++) {
@@ -140,6 +223,9 @@ abstract public class StreamBasedCMap extends CMap {
 		if (count >= ranges.length) {
 			return false;
 		}
+		if (count <= 2) {
+			return getCodeSpace().isCode(toInt(bytes, 0, count), count);
+		}
 		CMapRange[] rangeArray = ranges[count];
 		for (int i = 0; i < rangeArray.length; i++) {
 			CMapRange range = rangeArray[i];
@@ -150,6 +236,18 @@ abstract public class StreamBasedCMap extends CMap {
 		return false;
 	}
 
+	/**
+	 * Create the lookup structures now instead of on first use.
+	 * <p>
+	 * A compiled CMap that is no longer changed may be shared between
+	 * threads.
+	 */
+	protected void compile() {
+		getCodepointIndex();
+		getCIDIndex();
+		getCodeSpace();
+	}
+
 	protected void do_beginbfchar(CSOperation operation) {
 		// no op, ignore size
 	}
@@ -381,24 +479,41 @@ abstract public class StreamBasedCMap extends CMap {
 
 	@Override
 	public char[] getChars(int codepoint) {
-		for (Iterator it = maps.iterator(); it.hasNext();) {
-			CMapMap map = (CMapMap) it.next();
-			char[] result = map.toChars(codepoint);
-			if (result != null) {
-				return result;
-			}
+		return getCodepointIndex().toChars(codepoint);
+	}
+
+	protected CMapIntervalIndex getCIDIndex() {
+		CMapIntervalIndex result = cidIndex;
+		if (result == null) {
+			result = CMapIntervalIndex.createCIDIndex(maps);
+			cidIndex = result;
+		}
+		return result;
+	}
+
+	protected CMapIntervalIndex getCodepointIndex() {
+		CMapIntervalIndex result = codepointIndex;
+		if (result == null) {
+			result = CMapIntervalIndex.createCodepointIndex(maps);
+			codepointIndex = result;
+		}
+		return result;
+	}
+
+	protected CodeSpace getCodeSpace() {
+		CodeSpace result = codeSpace;
+		if (result == null) {
+			result = new CodeSpace(ranges);
+			codeSpace = result;
 		}
-		return null;
+		return result;
 	}
 
 	@Override
 	public int getDecoded(int codepoint) {
-		for (Iterator it = maps.iterator(); it.hasNext();) {
-			CMapMap map = (CMapMap) it.next();
-			int result = map.toCID(codepoint);
-			if (result != 0) {
-				return result;
-			}
+		int result = getCodepointIndex().toCID(codepoint);
+		if (result != 0) {
+			return result;
 		}
 		return CharacterSelector.NotdefCID;
 	}
@@ -413,12 +528,9 @@ abstract public class StreamBasedCMap extends CMap {
 
 	@Override
 	public int getEncoded(int character) {
-		for (Iterator it = maps.iterator(); it.hasNext();) {
-			CMapMap map = (CMapMap) it.next();
-			int result = map.toCodepoint(character);
-			if (result != 0) {
-				return result;
-			}
+		int result = getCIDIndex().toCodepoint(character);
+		if (result != 0) {
+			return result;
 		}
 		return CharacterSelector.NotdefCID;
 	}
@@ -431,8 +543,24 @@ abstract public class StreamBasedCMap extends CMap {
 	@Override
 	public int getNextEncoded(InputStream is) throws IOException {
 		is.mark(4);
-		byte[] bytes = new byte[4];
+		CodeSpace tempCodeSpace = getCodeSpace();
+		int code = 0;
 		int count = 0;
+		while (count < 2) {
+			// fast path for one and two byte codes
+			int nextByte = is.read();
+			if (nextByte == -1) {
+				return -1;
+			}
+			code = (code << 8) + nextByte;
+			count++;
+			if (tempCodeSpace.isCode(code, count)) {
+				return code;
+			}
+		}
+		byte[] bytes = new byte[4];
+		bytes[0] = (byte) (code >> 8);
+		bytes[1] = (byte) code;
 		while (count < 4) {
 			int nextByte = is.read();
 			if (nextByte == -1) {
@@ -42,8 +42,11 @@ import de.intarsys.pdf.cos.COSName;
 import de.intarsys.pdf.cos.COSNull;
 import de.intarsys.pdf.cos.COSObject;
 import de.intarsys.pdf.cos.COSObjectKey;
+import de.intarsys.pdf.cos.COSStream;
+import de.intarsys.pdf.cos.ICOSStreamSource;
 import de.intarsys.pdf.crypt.ISystemSecurityHandler;
 import de.intarsys.pdf.st.STDocument;
+import de.intarsys.pdf.st.STStreamSource;
 import de.intarsys.tools.randomaccess.IRandomAccess;
 
 /**
@@ -66,6 +69,12 @@ public class COSDocumentParser extends PDFParser {
 	 */
 	public static final int SEARCH_BUFFER_SIZE = 2048;
 
+	/**
+	 * Stream bodies smaller than this are read immediately, it is not worth
+	 * the effort to defer them.
+	 */
+	public static final int LAZY_STREAM_THRESHOLD = 4096;
+
 	private STDocument doc;
 
 	public COSDocumentParser(STDocument doc) {
@@ -96,11 +105,33 @@ public class COSDocumentParser extends PDFParser {
 		return getDoc().getObjectReference(objectNumber, generationNumber);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.intarsys.pdf.parser.PDFParser#createStreamSource(de.intarsys.tools
+	 * .randomaccess.IRandomAccess, de.intarsys.pdf.cos.COSDictionary, long,
+	 * int)
+	 */
+	@Override
+	protected ICOSStreamSource createStreamSource(IRandomAccess input,
+			COSDictionary dict, long offset, int length) throws IOException {
+		// only bodies in the documents own data can be read again later
+		if ((getDoc() == null) || !getDoc().isDataAccess(input)) {
+			return null;
+		}
+		if ((length < LAZY_STREAM_THRESHOLD) || COSStream.isExternal(dict)) {
+			return null;
+		}
+		return new STStreamSource(getDoc(), dict, offset, length,
+				getObjectKey(), getSecurityHandler());
+	}
+
 	public STDocument getDoc() {
 		return doc;
 	}
 
-	public boolean isTokenXRefAt(IRandomAccess input, int offset)
+	public boolean isTokenXRefAt(IRandomAccess input, long offset)
 			throws IOException {
 		input.seek(offset);
 		readSpaces(input);
@@ -295,7 +326,7 @@ public class COSDocumentParser extends PDFParser {
 	 * @throws IOException
 	 * @throws COSLoadException
 	 */
-	public int parseStartXRef(IRandomAccess input) throws IOException,
+	public long parseStartXRef(IRandomAccess input) throws IOException,
 			COSLoadException {
 		readSpaces(input);
 		byte[] token = new byte[9];
@@ -306,7 +337,7 @@ public class COSDocumentParser extends PDFParser {
 							+ (input.getOffset() - 9));
 			handleError(e);
 		}
-		return readInteger(input, true);
+		return readLong(input, true);
 	}
 
 	/**
@@ -347,7 +378,7 @@ public class COSDocumentParser extends PDFParser {
 	 * @throws IOException
 	 * @throws COSLoadException
 	 */
-	public int searchLastStartXRef(IRandomAccess input) throws IOException,
+	public long searchLastStartXRef(IRandomAccess input) throws IOException,
 			COSLoadException {
 		long startOffset = input.getLength() - SEARCH_BUFFER_SIZE;
 		if (startOffset < 0) {
@@ -48,6 +48,13 @@ import de.intarsys.tools.randomaccess.RandomAccessByteArray;
 public class CSContentParser extends PDFParser {
 	private static final COSObject[] EMPTY_OPERANDS = new COSObject[0];
 
+	/**
+	 * The maximum number of bytes looked ahead to validate the end of inline
+	 * image data. Sequential input can step back only a limited distance (see
+	 * RandomAccessInputStream).
+	 */
+	private static final int IMAGE_LOOKAHEAD = 4096;
+
 	/**
 	 * This is an hopefully temporary workaround for identifying valid
 	 * operations. It is only used when parsing inline images to make some
@@ -272,6 +279,17 @@ public class CSContentParser extends PDFParser {
 
 	private int size = 0;
 
+	/**
+	 * The operation handed out by {@link #parseNextOperation(IRandomAccess)}
+	 */
+	private CSOperation nextOperation;
+
+	/**
+	 * The operand arrays handed out by
+	 * {@link #parseNextOperation(IRandomAccess)}, indexed by size
+	 */
+	private final COSObject[][] nextOperands = new COSObject[8][];
+
 	/**
 	 * create a COSDocumentParser
 	 */
@@ -297,6 +315,7 @@ public class CSContentParser extends PDFParser {
 	protected void parseImageData(IRandomAccess input, COSStream cosStream)
 			throws IOException {
 		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		byte[] lookahead = null;
 		int next = input.read();
 		// no more skipping
 		// the space after ID is already consumed!
@@ -319,9 +338,11 @@ public class CSContentParser extends PDFParser {
 						tempNext = input.read();
 						if (tempNext == 'I') {
 							// is this followed by a valid operation?
-							CSOperation tempOperation = parseOperation(input);
-							if (tempOperation == null
-									|| CSContentParser.accepts(tempOperation)) {
+							if (lookahead == null) {
+								lookahead = new byte[IMAGE_LOOKAHEAD];
+							}
+							int length = readLookahead(input, lookahead);
+							if (isOperationFollowing(lookahead, length)) {
 								// exit image parsing
 								break;
 							}
@@ -339,6 +360,31 @@ public class CSContentParser extends PDFParser {
 		cosStream.setEncodedBytes(bos.toByteArray());
 	}
 
+	/**
+	 * <code>true</code> if the first <code>length</code> bytes of
+	 * <code>data</code> start with a valid operation or end the content
+	 * stream. An operation exceeding the data is assumed to be valid if it
+	 * could be parsed up to the end of the data.
+	 * 
+	 * @param data
+	 * @param length
+	 * @return <code>true</code> if the data starts with a valid operation.
+	 */
+	protected boolean isOperationFollowing(byte[] data, int length) {
+		RandomAccessByteArray tempInput = new RandomAccessByteArray(data,
+				length);
+		try {
+			CSOperation tempOperation = parseOperation(tempInput);
+			return tempOperation == null
+					|| CSContentParser.accepts(tempOperation);
+		} catch (Exception e) {
+			// truncated, not invalid
+			return (length == data.length) && (tempInput.getOffset() >= length);
+		} finally {
+			size = 0;
+		}
+	}
+
 	/**
 	 * parse a valid COS object for use in stream context from the current
 	 * stream position see PDF Reference v1.4, chapter 3.7.1 Content Streams
@@ -354,20 +400,40 @@ public class CSContentParser extends PDFParser {
 	 */
 	protected CSOperation parseOperation(IRandomAccess input)
 			throws IOException, COSLoadException {
+		byte[] operatorToken = parseOperands(input);
+		if (operatorToken == null) {
+			size = 0;
+			return null;
+		}
+		COSObject[] copyOperands;
+		// speed
+		if (size == 0) {
+			copyOperands = EMPTY_OPERANDS;
+		} else {
+			copyOperands = new COSObject[size];
+			System.arraycopy(operands, 0, copyOperands, 0, size);
+		}
+		size = 0;
+		return new CSOperation(operatorToken, copyOperands);
+	}
+
+	/**
+	 * Parse the operands up to the next operator into the operand buffer.
+	 * 
+	 * @param input
+	 * 
+	 * @return The operator token or <code>null</code> at the end of the
+	 *         content stream.
+	 * 
+	 * @throws IOException
+	 * @throws COSLoadException
+	 */
+	protected byte[] parseOperands(IRandomAccess input) throws IOException,
+			COSLoadException {
 		do {
 			Object element = parseElement(input);
 			if (element instanceof byte[]) {
-				COSObject[] copyOperands;
-
-				// speed
-				if (size == 0) {
-					copyOperands = EMPTY_OPERANDS;
-				} else {
-					copyOperands = new COSObject[size];
-					System.arraycopy(operands, 0, copyOperands, 0, size);
-				}
-				size = 0;
-				return new CSOperation((byte[]) element, copyOperands);
+				return (byte[]) element;
 			} else if (element == null) {
 				int next = input.read();
 				// strange document contains a "Ctrl-D" in ToUnicode stream...
@@ -378,7 +444,6 @@ public class CSContentParser extends PDFParser {
 							+ input.getOffset());
 					handleError(e);
 				}
-				size = 0;
 				return null;
 			} else {
 				if (size >= operands.length) {
@@ -391,6 +456,27 @@ public class CSContentParser extends PDFParser {
 		} while (true);
 	}
 
+	/**
+	 * Read up to <code>buffer.length</code> bytes from <code>input</code>.
+	 * 
+	 * @param input
+	 * @param buffer
+	 * @return The number of bytes read.
+	 * @throws IOException
+	 */
+	protected int readLookahead(IRandomAccess input, byte[] buffer)
+			throws IOException {
+		int length = 0;
+		while (length < buffer.length) {
+			int count = input.read(buffer, length, buffer.length - length);
+			if (count == -1) {
+				break;
+			}
+			length += count;
+		}
+		return length;
+	}
+
 	protected CSOperation parseOperationEI(IRandomAccess input,
 			COSDictionary parameters) throws IOException, COSLoadException {
 		COSStream cosStream;
@@ -413,6 +499,64 @@ public class CSContentParser extends PDFParser {
 		return op;
 	}
 
+	/**
+	 * Parse the next operation of a content stream.
+	 * <p>
+	 * In contrast to {@link #parseStream(IRandomAccess)} the operations are
+	 * not collected. The {@link CSOperation} and its operand array are reused
+	 * by the next call, the caller must not keep a reference to them. Inline
+	 * images are parsed like in {@link #parseStream(IRandomAccess)}.
+	 * 
+	 * @param input
+	 *            a open IRandomAccessData positioned at the next operation
+	 * 
+	 * @return The next operation or <code>null</code> at the end of the
+	 *         content stream.
+	 * 
+	 * @throws IOException
+	 * @throws COSLoadException
+	 */
+	public CSOperation parseNextOperation(IRandomAccess input)
+			throws IOException, COSLoadException {
+		byte[] operatorToken = parseOperands(input);
+		if (operatorToken == null) {
+			size = 0;
+			return null;
+		}
+		if ((operatorToken.length == 2) && (operatorToken[0] == 'I')
+				&& (operatorToken[1] == 'D')) {
+			// after the "ID" tag we expect image data, followed by "EI"
+			COSDictionary parameters = COSDictionary.create();
+			for (int i = 0; i + 1 < size; i += 2) {
+				parameters.put(((COSObject) operands[i]).asName(),
+						((COSObject) operands[i + 1]).copyShallow());
+			}
+			size = 0;
+			return parseOperationEI(input, parameters);
+		}
+		COSObject[] reuseOperands;
+		if (size == 0) {
+			reuseOperands = EMPTY_OPERANDS;
+		} else if (size < nextOperands.length) {
+			reuseOperands = nextOperands[size];
+			if (reuseOperands == null) {
+				reuseOperands = new COSObject[size];
+				nextOperands[size] = reuseOperands;
+			}
+			System.arraycopy(operands, 0, reuseOperands, 0, size);
+		} else {
+			reuseOperands = new COSObject[size];
+			System.arraycopy(operands, 0, reuseOperands, 0, size);
+		}
+		size = 0;
+		if (nextOperation == null) {
+			nextOperation = new CSOperation(operatorToken, reuseOperands);
+		} else {
+			nextOperation.reset(operatorToken, reuseOperands);
+		}
+		return nextOperation;
+	}
+
 	/**
 	 * parse a content stream.
 	 * 
@@ -48,6 +48,7 @@ import de.intarsys.pdf.cos.COSObjectKey;
 import de.intarsys.pdf.cos.COSStream;
 import de.intarsys.pdf.cos.COSString;
 import de.intarsys.pdf.cos.COSTrue;
+import de.intarsys.pdf.cos.ICOSStreamSource;
 import de.intarsys.pdf.crypt.COSSecurityException;
 import de.intarsys.pdf.crypt.ISystemSecurityHandler;
 import de.intarsys.pdf.st.STDocType;
@@ -353,6 +354,26 @@ public abstract class PDFParser {
 	protected abstract COSIndirectObject createObjectReference(
 			IRandomAccess input) throws IOException, COSLoadException;
 
+	/**
+	 * Create an {@link ICOSStreamSource} for a stream body of
+	 * <code>length</code> bytes at <code>offset</code> in <code>input</code>
+	 * that is read on demand.
+	 * <p>
+	 * Return <code>null</code> if the body should be read immediately, which
+	 * is the default.
+	 * 
+	 * @param input
+	 * @param dict
+	 * @param offset
+	 * @param length
+	 * @return An {@link ICOSStreamSource} or <code>null</code>
+	 * @throws IOException
+	 */
+	protected ICOSStreamSource createStreamSource(IRandomAccess input,
+			COSDictionary dict, long offset, int length) throws IOException {
+		return null;
+	}
+
 	public IPDFParserExceptionHandler getExceptionHandler() {
 		return exceptionHandler;
 	}
@@ -1112,8 +1133,15 @@ public abstract class PDFParser {
 		input.seek(offset);
 
 		byte[] bytes = null;
+		ICOSStreamSource source = null;
+		if ((length >= 0) && ((offset + length) <= input.getLength())) {
+			source = createStreamSource(input, dict, offset, length);
+		}
 
-		if (length < 0) {
+		if (source != null) {
+			// body is read on demand
+			input.seekBy(length);
+		} else if (length < 0) {
 			bytes = readStream(input);
 		} else {
 			bytes = new byte[length];
@@ -1156,6 +1184,7 @@ public abstract class PDFParser {
 
 			if (length > 0) {
 				// retry from the beginning with undeterminate length
+				source = null;
 				input.seek(offset);
 				bytes = readStream(input);
 				// read "endstream"
@@ -1175,7 +1204,9 @@ public abstract class PDFParser {
 			}
 
 		}
-		if ((securityHandler == null) || (objectKey == null)) {
+		if (source != null) {
+			stream.basicSetEncodedSource(source);
+		} else if ((securityHandler == null) || (objectKey == null)) {
 			stream.basicSetEncodedBytes(bytes);
 		} else {
 			try {
@@ -1430,7 +1461,22 @@ public abstract class PDFParser {
 	 */
 	public int readInteger(IRandomAccess input, boolean consumeSpaceAfter)
 			throws IOException {
-		int result = 0;
+		return (int) readLong(input, consumeSpaceAfter);
+	}
+
+	/**
+	 * reads the next integer on input as a long, suitable for file offsets.
+	 * consumes one trailing space if consumeSpaceAfter is set to true.
+	 * Consumes leading spaces and comments.
+	 * 
+	 * @param input
+	 * @param consumeSpaceAfter
+	 * @return The integer read.
+	 * @throws IOException
+	 */
+	public long readLong(IRandomAccess input, boolean consumeSpaceAfter)
+			throws IOException {
+		long result = 0;
 		int next;
 		while (true) {
 			next = input.read();
@@ -0,0 +1,610 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.pdf.pd;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.intarsys.pdf.cos.COSArray;
+import de.intarsys.pdf.cos.COSName;
+import de.intarsys.pdf.cos.COSNumber;
+import de.intarsys.pdf.cos.COSObject;
+import de.intarsys.pdf.cos.COSStream;
+import de.intarsys.pdf.filter.Filter;
+import de.intarsys.tools.stream.StreamTools;
+
+/**
+ * Sequential access to the rows of a {@link PDImage}.
+ * <p>
+ * The image data is decoded incrementally while reading, only one row of the
+ * image is held in memory and nothing is cached on the image. Bit depth
+ * unpacking and the /Decode array are applied per row, {@link #readRGB(byte[])}
+ * additionally performs the lookup for indexed images and the conversion to
+ * RGB in one batch per row.
+ * <p>
+ * With a scale greater than 1, each row delivered by
+ * {@link #readRGB(byte[])} is the average of scale x scale blocks of the
+ * image, which is useful for thumbnails.
+ * <p>
+ * ICCBased images are converted via their alternate color space or the
+ * device color space with the same number of components.
+ * <p>
+ * Images compressed with DCTDecode or JPXDecode are not supported, as these
+ * filters can not be decoded.
+ */
+public class ImageRowReader {
+
+	/**
+	 * Convert component values of a color space to RGB.
+	 */
+	abstract static protected class ColorConverter {
+		/**
+		 * The number of components per pixel in the source color space.
+		 * 
+		 * @return The number of components per pixel.
+		 */
+		abstract public int getComponents();
+
+		/**
+		 * Convert <code>count</code> pixels from <code>values</code> to 8
+		 * bit RGB in <code>rgb</code>.
+		 * 
+		 * @param values
+		 *            The component values in the range of the color space
+		 * @param count
+		 *            The number of pixels
+		 * @param rgb
+		 *            The RGB values, 3 bytes per pixel
+		 */
+		abstract public void toRGB(float[] values, int count, byte[] rgb);
+	}
+
+	static protected class CMYKConverter extends ColorConverter {
+		@Override
+		public int getComponents() {
+			return 4;
+		}
+
+		@Override
+		public void toRGB(float[] values, int count, byte[] rgb) {
+			for (int i = 0, j = 0, k = 0; i < count; i++, j += 4, k += 3) {
+				float black = 1 - values[j + 3];
+				rgb[k] = toByte((1 - values[j]) * black);
+				rgb[k + 1] = toByte((1 - values[j + 1]) * black);
+				rgb[k + 2] = toByte((1 - values[j + 2]) * black);
+			}
+		}
+	}
+
+	static protected class GrayConverter extends ColorConverter {
+		@Override
+		public int getComponents() {
+			return 1;
+		}
+
+		@Override
+		public void toRGB(float[] values, int count, byte[] rgb) {
+			for (int i = 0, k = 0; i < count; i++, k += 3) {
+				byte gray = toByte(values[i]);
+				rgb[k] = gray;
+				rgb[k + 1] = gray;
+				rgb[k + 2] = gray;
+			}
+		}
+	}
+
+	static protected class IndexedConverter extends ColorConverter {
+		final private ColorConverter base;
+
+		final private float[] baseValues;
+
+		final private int maxIndex;
+
+		/** The values for the base color space per index */
+		final private float[] table;
+
+		public IndexedConverter(PDCSIndexed colorSpace, int width)
+				throws IOException {
+			base = createConverter(colorSpace.getBaseColorSpace(), width);
+			int components = base.getComponents();
+			maxIndex = colorSpace.getColorCount() - 1;
+			byte[] colorBytes = colorSpace.getColorBytes();
+			table = new float[(maxIndex + 1) * components];
+			for (int i = 0; i < table.length && i < colorBytes.length; i++) {
+				table[i] = (colorBytes[i] & 0xff) / 255f;
+			}
+			baseValues = new float[width * components];
+		}
+
+		@Override
+		public int getComponents() {
+			return 1;
+		}
+
+		@Override
+		public void toRGB(float[] values, int count, byte[] rgb) {
+			int components = base.getComponents();
+			for (int i = 0; i < count; i++) {
+				int index = (int) (values[i] + 0.5f);
+				if (index < 0) {
+					index = 0;
+				} else if (index > maxIndex) {
+					index = maxIndex;
+				}
+				System.arraycopy(table, index * components, baseValues, i
+						* components, components);
+			}
+			base.toRGB(baseValues, count, rgb);
+		}
+	}
+
+	static protected class RGBConverter extends ColorConverter {
+		@Override
+		public int getComponents() {
+			return 3;
+		}
+
+		@Override
+		public void toRGB(float[] values, int count, byte[] rgb) {
+			for (int i = 0; i < count * 3; i++) {
+				rgb[i] = toByte(values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Converts Separation and DeviceN colors using the tint transform to the
+	 * alternate color space.
+	 */
+	static protected class TintConverter extends ColorConverter {
+		final private ColorConverter alternate;
+
+		final private float[] alternateValues;
+
+		final private int components;
+
+		final private PDFunction function;
+
+		/** The tint transform baked, for a single component */
+		final private PDFunction.LookupTable table;
+
+		public TintConverter(PDFunction function, int components,
+				PDColorSpace alternateColorSpace, int width)
+				throws IOException {
+			this.function = function;
+			this.components = components;
+			this.alternate = createConverter(alternateColorSpace, width);
+			this.alternateValues = new float[width * alternate.getComponents()];
+			if (components == 1 && function.getInputSize() == 1) {
+				table = function.createLookupTable(1024);
+			} else {
+				table = null;
+			}
+		}
+
+		@Override
+		public int getComponents() {
+			return components;
+		}
+
+		@Override
+		public void toRGB(float[] values, int count, byte[] rgb) {
+			if (table != null) {
+				table.evaluate(values, alternateValues, count);
+			} else {
+				function.evaluate(values, alternateValues, count);
+			}
+			alternate.toRGB(alternateValues, count, rgb);
+		}
+	}
+
+	/**
+	 * Create a {@link ColorConverter} for <code>colorSpace</code>.
+	 * 
+	 * @param colorSpace
+	 * @param width
+	 *            The maximum number of pixels converted at once.
+	 * @return The new {@link ColorConverter}
+	 * @throws IOException
+	 */
+	static protected ColorConverter createConverter(PDColorSpace colorSpace,
+			int width) throws IOException {
+		if (colorSpace == null || colorSpace instanceof PDCSDeviceGray
+				|| colorSpace instanceof PDCSCalGray) {
+			return new GrayConverter();
+		}
+		if (colorSpace instanceof PDCSDeviceRGB
+				|| colorSpace instanceof PDCSCalRGB) {
+			return new RGBConverter();
+		}
+		if (colorSpace instanceof PDCSDeviceCMYK) {
+			return new CMYKConverter();
+		}
+		if (colorSpace instanceof PDCSICCBased) {
+			PDCSICCBased iccBased = (PDCSICCBased) colorSpace;
+			PDColorSpace alternate = iccBased.getAlternate();
+			if (alternate != null) {
+				return createConverter(alternate, width);
+			}
+			int components = iccBased.cosGetProfileStream().getDict().get(
+					PDCSICCBased.DK_N).asNumber().intValue();
+			if (components == 3) {
+				return new RGBConverter();
+			}
+			if (components == 4) {
+				return new CMYKConverter();
+			}
+			return new GrayConverter();
+		}
+		if (colorSpace instanceof PDCSIndexed) {
+			return new IndexedConverter((PDCSIndexed) colorSpace, width);
+		}
+		if (colorSpace instanceof PDCSSeparation) {
+			PDCSSeparation separation = (PDCSSeparation) colorSpace;
+			return new TintConverter(separation.getTintTransform(), 1,
+					separation.getAlternate(), width);
+		}
+		if (colorSpace instanceof PDCSDeviceN) {
+			PDCSDeviceN deviceN = (PDCSDeviceN) colorSpace;
+			return new TintConverter(deviceN.getTintTransform(), deviceN
+					.getNamedComponents().length, deviceN.getAlternate(),
+					width);
+		}
+		throw new IOException("unsupported image color space " //$NON-NLS-1$
+				+ colorSpace);
+	}
+
+	/**
+	 * <code>true</code> if the image data filtered with <code>filter</code>
+	 * can be decoded.
+	 * 
+	 * @param filter
+	 * @return <code>true</code> if the image data can be decoded.
+	 */
+	static protected boolean isDecodable(COSName filter) {
+		return !Filter.CN_Filter_DCTDecode.equals(filter)
+				&& !Filter.CN_Filter_DCT.equals(filter)
+				&& !Filter.CN_Filter_JPXDecode.equals(filter);
+	}
+
+	static protected byte toByte(float value) {
+		if (value <= 0) {
+			return 0;
+		}
+		if (value >= 1) {
+			return (byte) 255;
+		}
+		return (byte) (int) ((value * 255) + 0.5f);
+	}
+
+	final private int bitsPerComponent;
+
+	final private int components;
+
+	final private ColorConverter converter;
+
+	/** The Decode minimum per component */
+	final private float[] decodeMin;
+
+	/** The Decode scale per component, (max - min) / (2^bpc - 1) */
+	final private float[] decodeScale;
+
+	final private int height;
+
+	final private PDImage image;
+
+	/** The decoded image data */
+	private InputStream is;
+
+	/**
+	 * The component values for each sample value per component, for bit
+	 * depths up to 8
+	 */
+	final private float[][] lookup;
+
+	/** The number of image rows read */
+	private int row = 0;
+
+	/** The raw data of one image row */
+	final private byte[] rowBytes;
+
+	/** The RGB values of one image row */
+	private byte[] rowRGB;
+
+	/** The component values of one image row */
+	final private float[] rowValues;
+
+	final private int scale;
+
+	/** The sums of the RGB values of the current block row */
+	private int[] sums;
+
+	final private int width;
+
+	/**
+	 * Create a reader for the rows of <code>image</code>.
+	 * 
+	 * @param image
+	 *            The image to read.
+	 * @param scale
+	 *            The size of the blocks averaged by {@link #readRGB(byte[])},
+	 *            1 to read the image in its original size.
+	 * @throws IOException
+	 *             if the bits per component, the color space or a filter of
+	 *             the image are not supported.
+	 */
+	public ImageRowReader(PDImage image, int scale) throws IOException {
+		if (scale < 1) {
+			throw new IllegalArgumentException("scale must be positive"); //$NON-NLS-1$
+		}
+		this.image = image;
+		this.scale = scale;
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		if (image.isImageMask()) {
+			this.bitsPerComponent = 1;
+			this.converter = new GrayConverter();
+		} else {
+			this.bitsPerComponent = image.getBitsPerComponent();
+			if (bitsPerComponent != 1 && bitsPerComponent != 2
+					&& bitsPerComponent != 4 && bitsPerComponent != 8
+					&& bitsPerComponent != 16) {
+				throw new IOException("unsupported image bits per component " //$NON-NLS-1$
+						+ bitsPerComponent);
+			}
+			this.converter = createConverter(image.getColorSpace(), width);
+		}
+		this.components = converter.getComponents();
+		this.rowBytes = new byte[((width * components * bitsPerComponent) + 7) / 8];
+		this.rowValues = new float[width * components];
+		int maxSample = (1 << bitsPerComponent) - 1;
+		decodeMin = new float[components];
+		decodeScale = new float[components];
+		COSArray decode = image.cosGetField(PDImage.DK_Decode).asArray();
+		if (decode == null) {
+			decode = image.cosGetField(PDImage.DK_D).asArray();
+		}
+		for (int i = 0; i < components; i++) {
+			float min = 0;
+			float max = 1;
+			if (converter instanceof IndexedConverter) {
+				max = maxSample;
+			}
+			if (decode != null && decode.size() >= (i * 2) + 2) {
+				min = ((COSNumber) decode.get(i * 2)).floatValue();
+				max = ((COSNumber) decode.get((i * 2) + 1)).floatValue();
+			}
+			decodeMin[i] = min;
+			decodeScale[i] = (max - min) / maxSample;
+		}
+		if (bitsPerComponent <= 8) {
+			lookup = new float[components][maxSample + 1];
+			for (int i = 0; i < components; i++) {
+				for (int s = 0; s <= maxSample; s++) {
+					lookup[i][s] = decodeMin[i] + (s * decodeScale[i]);
+				}
+			}
+		} else {
+			lookup = null;
+		}
+		COSStream stream = image.cosGetStream();
+		COSObject filters = stream.getFilters();
+		if (filters instanceof COSArray) {
+			COSArray array = (COSArray) filters;
+			for (int i = 0; i < array.size(); i++) {
+				checkFilter(array.get(i).asName());
+			}
+		} else {
+			checkFilter(filters.asName());
+		}
+		is = stream.getDecodedInputStream();
+	}
+
+	static protected void checkFilter(COSName filter) throws IOException {
+		if (filter != null && !isDecodable(filter)) {
+			throw new IOException("unsupported image filter " + filter); //$NON-NLS-1$
+		}
+	}
+
+	public void close() {
+		StreamTools.close(is);
+		is = null;
+	}
+
+	/**
+	 * The number of components per pixel delivered by
+	 * {@link #readValues(float[])}.
+	 * 
+	 * @return The number of components per pixel.
+	 */
+	public int getComponents() {
+		return components;
+	}
+
+	/**
+	 * The number of rows delivered by {@link #readRGB(byte[])}.
+	 * 
+	 * @return The number of rows delivered by {@link #readRGB(byte[])}.
+	 */
+	public int getHeight() {
+		return (height + scale - 1) / scale;
+	}
+
+	public PDImage getImage() {
+		return image;
+	}
+
+	public int getScale() {
+		return scale;
+	}
+
+	/**
+	 * The number of pixels in a row delivered by {@link #readRGB(byte[])}.
+	 * 
+	 * @return The number of pixels in a row delivered by
+	 *         {@link #readRGB(byte[])}.
+	 */
+	public int getWidth() {
+		return (width + scale - 1) / scale;
+	}
+
+	/**
+	 * <code>true</code> if there are image rows left to read.
+	 * 
+	 * @return <code>true</code> if there are image rows left to read.
+	 */
+	public boolean hasNext() {
+		return row < height;
+	}
+
+	/**
+	 * Read the raw data of the next image row. Missing data is read as 0.
+	 * 
+	 * @throws IOException
+	 */
+	protected void readRowBytes() throws IOException {
+		int offset = 0;
+		if (is != null) {
+			while (offset < rowBytes.length) {
+				int count = is.read(rowBytes, offset, rowBytes.length - offset);
+				if (count == -1) {
+					break;
+				}
+				offset += count;
+			}
+		}
+		for (int i = offset; i < rowBytes.length; i++) {
+			rowBytes[i] = 0;
+		}
+		row++;
+	}
+
+	/**
+	 * Read the next <code>scale</code> image rows, converted to 8 bit RGB
+	 * and averaged over blocks of <code>scale</code> x <code>scale</code>
+	 * pixels.
+	 * 
+	 * @param rgb
+	 *            The RGB values of the row, at least
+	 *            <code>getWidth() * 3</code> bytes.
+	 * @return <code>false</code> if there are no more rows.
+	 * @throws IOException
+	 */
+	public boolean readRGB(byte[] rgb) throws IOException {
+		if (!hasNext()) {
+			return false;
+		}
+		if (scale == 1) {
+			readValues(rowValues);
+			converter.toRGB(rowValues, width, rgb);
+			return true;
+		}
+		int outWidth = getWidth();
+		if (sums == null) {
+			sums = new int[outWidth * 3];
+			rowRGB = new byte[width * 3];
+		}
+		for (int i = 0; i < sums.length; i++) {
+			sums[i] = 0;
+		}
+		int rows = 0;
+		while (rows < scale && hasNext()) {
+			readValues(rowValues);
+			converter.toRGB(rowValues, width, rowRGB);
+			for (int x = 0; x < width; x++) {
+				int k = (x / scale) * 3;
+				int j = x * 3;
+				sums[k] += rowRGB[j] & 0xff;
+				sums[k + 1] += rowRGB[j + 1] & 0xff;
+				sums[k + 2] += rowRGB[j + 2] & 0xff;
+			}
+			rows++;
+		}
+		for (int x = 0; x < outWidth; x++) {
+			int columns = Math.min(scale, width - (x * scale));
+			int count = columns * rows;
+			int k = x * 3;
+			rgb[k] = (byte) ((sums[k] + (count / 2)) / count);
+			rgb[k + 1] = (byte) ((sums[k + 1] + (count / 2)) / count);
+			rgb[k + 2] = (byte) ((sums[k + 2] + (count / 2)) / count);
+		}
+		return true;
+	}
+
+	/**
+	 * Read the next image row as component values after applying the
+	 * /Decode array. For indexed images the values are the color table
+	 * indices.
+	 * <p>
+	 * This always reads a single row of the image, regardless of the scale.
+	 * 
+	 * @param values
+	 *            The component values, at least <code>image width *
+	 *            getComponents()</code> values.
+	 * @return <code>false</code> if there are no more rows.
+	 * @throws IOException
+	 */
+	public boolean readValues(float[] values) throws IOException {
+		if (!hasNext()) {
+			return false;
+		}
+		readRowBytes();
+		int count = width * components;
+		if (bitsPerComponent == 8) {
+			for (int i = 0, c = 0; i < count; i++) {
+				values[i] = lookup[c][rowBytes[i] & 0xff];
+				if (++c == components) {
+					c = 0;
+				}
+			}
+		} else if (bitsPerComponent == 16) {
+			for (int i = 0, c = 0; i < count; i++) {
+				int sample = ((rowBytes[i * 2] & 0xff) << 8)
+						| (rowBytes[(i * 2) + 1] & 0xff);
+				values[i] = decodeMin[c] + (sample * decodeScale[c]);
+				if (++c == components) {
+					c = 0;
+				}
+			}
+		} else {
+			int mask = (1 << bitsPerComponent) - 1;
+			int bitPos = 0;
+			for (int i = 0, c = 0; i < count; i++, bitPos += bitsPerComponent) {
+				int shift = 8 - bitsPerComponent - (bitPos & 7);
+				int sample = (rowBytes[bitPos >> 3] >> shift) & mask;
+				values[i] = lookup[c][sample];
+				if (++c == components) {
+					c = 0;
+				}
+			}
+		}
+		return true;
+	}
+}
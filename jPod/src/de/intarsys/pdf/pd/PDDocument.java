@@ -30,6 +30,7 @@
 package de.intarsys.pdf.pd;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -852,6 +853,30 @@ public class PDDocument implements IAdditionalActionSupport, IAttributeSupport,
 		cosDoc.save(locator, actualOptions);
 	}
 
+	/**
+	 * Write the document sequentially to <code>os</code>, for example to a
+	 * network connection. The document is written completely unless an
+	 * incremental save is preferred and the document has data to append to.
+	 * 
+	 * @param os
+	 * @param options
+	 * @throws IOException
+	 */
+	public void save(OutputStream os, Map options) throws IOException {
+		Map<Object, Object> actualOptions = new HashMap<Object, Object>();
+		if (options != null) {
+			for (Iterator it = options.entrySet().iterator(); it.hasNext();) {
+				Map.Entry entry = (Map.Entry) it.next();
+				actualOptions.put(entry.getKey(), entry.getValue());
+			}
+		}
+		if (isPreferIncrementalSave()) {
+			actualOptions.put(STDocument.OPTION_WRITEMODEHINT,
+					EnumWriteMode.INCREMENTAL);
+		}
+		cosDoc.save(os, actualOptions);
+	}
+
 	/**
 	 * Set AcroForm in PDF Document.
 	 * 
@@ -42,6 +42,98 @@ import de.intarsys.pdf.cos.COSStream;
  * Abstract superclass for PDF function objects.
  */
 abstract public class PDFunction extends PDObject {
+	/**
+	 * A function of one input, sampled at equally spaced points of its
+	 * domain.
+	 * <p>
+	 * Evaluation interpolates linearly between the two nearest points, which
+	 * is cheap regardless of the kind of the original function. A table is
+	 * immutable and may be shared between threads.
+	 */
+	static public class LookupTable {
+		final private float min;
+
+		final private float max;
+
+		final private int outputSize;
+
+		final private int points;
+
+		/** (points - 1) / (max - min) */
+		final private float scale;
+
+		/** outputSize values per point */
+		final private float[] values;
+
+		protected LookupTable(float min, float max, int points,
+				int outputSize, float[] values) {
+			this.min = min;
+			this.max = max;
+			this.points = points;
+			this.outputSize = outputSize;
+			this.values = values;
+			this.scale = max > min ? (points - 1) / (max - min) : 0;
+		}
+
+		/**
+		 * Evaluate the table for <code>count</code> inputs at once.
+		 * 
+		 * @param input
+		 *            The input values
+		 * @param output
+		 *            The output tuples, <code>count * getOutputSize()</code>
+		 *            values
+		 * @param count
+		 *            The number of inputs to evaluate
+		 */
+		public void evaluate(float[] input, float[] output, int count) {
+			for (int i = 0; i < count; i++) {
+				evaluate(input[i], output, i * outputSize);
+			}
+		}
+
+		/**
+		 * Evaluate the table for <code>x</code>, writing the result to
+		 * <code>output</code> starting at <code>offset</code>.
+		 * 
+		 * @param x
+		 * @param output
+		 * @param offset
+		 */
+		public void evaluate(float x, float[] output, int offset) {
+			float position;
+			if (x <= min) {
+				position = 0;
+			} else if (x >= max) {
+				position = points - 1;
+			} else {
+				position = (x - min) * scale;
+			}
+			int index = (int) position;
+			if (index >= points - 1) {
+				System.arraycopy(values, (points - 1) * outputSize, output,
+						offset, outputSize);
+				return;
+			}
+			float fract = position - index;
+			int low = index * outputSize;
+			int high = low + outputSize;
+			for (int j = 0; j < outputSize; j++) {
+				float value = values[low + j];
+				output[offset + j] = value
+						+ (fract * (values[high + j] - value));
+			}
+		}
+
+		public int getOutputSize() {
+			return outputSize;
+		}
+
+		public int getPoints() {
+			return points;
+		}
+	}
+
 	/**
 	 * The meta class implementation
 	 */
@@ -103,8 +195,82 @@ abstract public class PDFunction extends PDObject {
 		super(object);
 	}
 
+	/**
+	 * Create a {@link LookupTable} sampling this function at
+	 * <code>points</code> equally spaced inputs over its domain.
+	 * <p>
+	 * This is only supported for functions with a single input, as used for
+	 * example in shadings and separation tint transforms.
+	 * 
+	 * @param points
+	 *            The number of sample points, at least 2.
+	 * @return The new {@link LookupTable}
+	 */
+	public LookupTable createLookupTable(int points) {
+		if (getInputSize() != 1) {
+			throw new IllegalStateException(
+					"lookup table needs a function with one input"); //$NON-NLS-1$
+		}
+		if (points < 2) {
+			throw new IllegalArgumentException("at least 2 points required"); //$NON-NLS-1$
+		}
+		float min = getDomainMin(0);
+		float max = getDomainMax(0);
+		int outputSize = getOutputSize();
+		float[] input = new float[points];
+		for (int i = 0; i < points; i++) {
+			input[i] = min + ((max - min) * i / (points - 1));
+		}
+		float[] values = new float[points * outputSize];
+		evaluate(input, values, points);
+		return new LookupTable(min, max, points, outputSize, values);
+	}
+
+	/**
+	 * The values of <code>array</code> or <code>null</code>.
+	 * 
+	 * @param array
+	 * @return The values of <code>array</code> as primitive floats.
+	 */
+	protected float[] createFloats(COSArray array) {
+		if (array == null) {
+			return null;
+		}
+		float[] result = new float[array.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = array.get(i).asNumber().floatValue();
+		}
+		return result;
+	}
+
 	abstract public float[] evaluate(float[] values);
 
+	/**
+	 * Evaluate the function for <code>count</code> input tuples at once.
+	 * <p>
+	 * <code>input</code> holds <code>count * getInputSize()</code> values,
+	 * the results are written to <code>output</code> which must hold
+	 * <code>count * getOutputSize()</code> values.
+	 * 
+	 * @param input
+	 *            The input tuples
+	 * @param output
+	 *            The output tuples
+	 * @param count
+	 *            The number of tuples to evaluate
+	 */
+	public void evaluate(float[] input, float[] output, int count) {
+		int inputSize = getInputSize();
+		int outputSize = getOutputSize();
+		float[] values = new float[inputSize];
+		for (int i = 0; i < count; i++) {
+			System.arraycopy(input, i * inputSize, values, 0, inputSize);
+			float[] result = evaluate(values);
+			System.arraycopy(result, 0, output, i * outputSize, Math.min(
+					result.length, outputSize));
+		}
+	}
+
 	public float getDomainMax(int dimension) {
 		return ((COSNumber) cosGetDomain().get((dimension * 2) + 1))
 				.floatValue();
@@ -156,6 +156,24 @@ public class PDImage extends PDXObject {
 		super(object);
 	}
 
+	/**
+	 * Create an {@link ImageRowReader} decoding this image row by row.
+	 * <p>
+	 * In contrast to {@link #getAdjustedBytes(int)} the image data is never
+	 * held in memory as a whole and is not cached.
+	 * 
+	 * @param scale
+	 *            The size of the blocks averaged into one pixel when reading
+	 *            RGB rows, 1 for the original size.
+	 * @return The new {@link ImageRowReader}
+	 * @throws IOException
+	 *             if the image can not be decoded, for example because it is
+	 *             compressed with DCTDecode or JPXDecode.
+	 */
+	public ImageRowReader createRowReader(int scale) throws IOException {
+		return new ImageRowReader(this, scale);
+	}
+
 	public COSStream cosExtractJPEGStream() throws IOException {
 		COSStream cosStream;
 
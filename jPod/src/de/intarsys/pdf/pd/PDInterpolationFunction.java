@@ -29,13 +29,15 @@
  */
 package de.intarsys.pdf.pd;
 
-import de.intarsys.pdf.cos.COSArray;
 import de.intarsys.pdf.cos.COSBasedObject;
 import de.intarsys.pdf.cos.COSName;
 import de.intarsys.pdf.cos.COSObject;
 
 /**
  * Function implementation supporting interpolation.
+ * <p>
+ * The parameters are read once to primitive values shared by all subsequent
+ * evaluations.
  */
 public class PDInterpolationFunction extends PDFunction {
 	/**
@@ -62,59 +64,80 @@ public class PDInterpolationFunction extends PDFunction {
 	public static final MetaClass META = new MetaClass(MetaClass.class
 			.getDeclaringClass());
 
-	private float[] c0;
+	private volatile float[] c0;
 
 	private float[] c1;
 
 	private float n;
 
+	private float[] domain;
+
+	private float[] range;
+
 	protected PDInterpolationFunction(COSObject object) {
 		super(object);
+		compile();
+	}
 
-		COSArray cosC0;
-		COSArray cosC1;
-
-		cosC0 = cosGetDict().get(DK_C0).asArray();
-		if (cosC0 == null) {
-			c0 = new float[] { 0.0f };
-		} else {
-			c0 = new float[cosC0.size()];
-			for (int i = 0; i < c0.length; i++) {
-				c0[i] = cosC0.get(i).asNumber().floatValue();
-			}
+	/**
+	 * Read the function parameters to primitive values, once for all
+	 * subsequent evaluations.
+	 */
+	protected void compile() {
+		float[] tempC0 = createFloats(cosGetDict().get(DK_C0).asArray());
+		if (tempC0 == null) {
+			tempC0 = new float[] { 0.0f };
 		}
-
-		cosC1 = cosGetDict().get(DK_C1).asArray();
-		if (cosC1 == null) {
-			c1 = new float[] { 1.0f };
-		} else {
-			c1 = new float[cosC1.size()];
-			for (int i = 0; i < c1.length; i++) {
-				c1[i] = cosC1.get(i).asNumber().floatValue();
-			}
+		float[] tempC1 = createFloats(cosGetDict().get(DK_C1).asArray());
+		if (tempC1 == null) {
+			tempC1 = new float[] { 1.0f };
 		}
-
 		// TODO 2 @ehk appropriate exception if null (required value according
 		// to spec)
 		n = cosGetDict().get(DK_N).asNumber().floatValue();
+		domain = createFloats(cosGetDomain());
+		range = createFloats(getRange());
+		c1 = tempC1;
+		c0 = tempC0;
 	}
 
 	protected float[] evaluate(float value) {
-		float[] result;
+		float[] result = new float[getOutputSize()];
+		evaluate(value, result, 0);
+		return result;
+	}
 
-		if (value == 0.0) {
-			return getC0();
+	/**
+	 * Evaluate the function for <code>value</code>, writing the result to
+	 * <code>output</code> starting at <code>offset</code>.
+	 * 
+	 * @param value
+	 * @param output
+	 * @param offset
+	 */
+	protected void evaluate(float value, float[] output, int offset) {
+		float[] tempC0 = getC0();
+		float[] tempC1 = getC1();
+		float[] tempDomain = domain;
+		float[] tempRange = range;
+		if (tempDomain != null && tempDomain.length >= 2) {
+			value = clip(value, tempDomain[0], tempDomain[1]);
 		}
-		if (value == 1.0) {
-			return getC1();
+		float factor;
+		if (value == 0.0) {
+			factor = 0;
+		} else if (value == 1.0 || n == 1.0) {
+			factor = value;
+		} else {
+			factor = (float) Math.pow(value, n);
 		}
-
-		// try to make faster by skipping accessor methods
-		result = new float[getOutputSize()];
-		for (int i = 0; i < result.length; i++) {
-			result[i] = (float) (c0[i] + (Math.pow(value, n) * (c1[i] - c0[i])));
+		for (int i = 0; i < tempC0.length; i++) {
+			float result = tempC0[i] + (factor * (tempC1[i] - tempC0[i]));
+			if (tempRange != null && tempRange.length >= (i * 2) + 2) {
+				result = clip(result, tempRange[i * 2], tempRange[(i * 2) + 1]);
+			}
+			output[offset + i] = result;
 		}
-		return result;
 	}
 
 	/*
@@ -124,28 +147,42 @@ public class PDInterpolationFunction extends PDFunction {
 	 */
 	@Override
 	public float[] evaluate(float[] values) {
-		int outputSize;
-		float[] result;
-
-		outputSize = getOutputSize();
-		result = new float[values.length * outputSize];
+		return evaluate(values[0]);
+	}
 
-		for (int i = 0; i < values.length; i++) {
-			System.arraycopy(evaluate(values[i]), i, result, i * outputSize,
-					outputSize);
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.pd.PDFunction#evaluate(float[], float[], int)
+	 */
+	@Override
+	public void evaluate(float[] input, float[] output, int count) {
+		int outputSize = getOutputSize();
+		for (int i = 0; i < count; i++) {
+			evaluate(input[i], output, i * outputSize);
 		}
-		return result;
 	}
 
 	public float[] getC0() {
-		return c0;
+		float[] result = c0;
+		if (result == null) {
+			compile();
+			result = c0;
+		}
+		return result;
 	}
 
 	public float[] getC1() {
-		return c1;
+		float[] result = c1;
+		if (result == null) {
+			compile();
+			result = c1;
+		}
+		return result;
 	}
 
 	public float getN() {
+		getC0();
 		return n;
 	}
 
@@ -158,4 +195,16 @@ public class PDInterpolationFunction extends PDFunction {
 	public int getOutputSize() {
 		return getC0().length;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.cos.COSBasedObject#invalidateCaches()
+	 */
+	@Override
+	public void invalidateCaches() {
+		super.invalidateCaches();
+		c0 = null;
+		c1 = null;
+	}
 }
@@ -29,21 +29,20 @@
  */
 package de.intarsys.pdf.pd;
 
-import java.io.StringReader;
-import java.util.ArrayList;
-import java.util.List;
-
 import de.intarsys.pdf.cos.COSBasedObject;
 import de.intarsys.pdf.cos.COSDictionary;
 import de.intarsys.pdf.cos.COSObject;
 import de.intarsys.pdf.cos.COSStream;
 import de.intarsys.pdf.encoding.PDFDocEncoding;
-import de.intarsys.pdf.postscript.Handler;
+import de.intarsys.pdf.postscript.PSCompiler;
+import de.intarsys.pdf.postscript.PSProgram;
 import de.intarsys.pdf.postscript.ParseException;
-import de.intarsys.pdf.postscript.Parser;
 
 /**
  * A function implementation based on a "mini" postscript interpreter.
+ * <p>
+ * The code is compiled once to a {@link PSProgram} which is shared by all
+ * subsequent evaluations.
  */
 public class PDPostScriptFunction extends PDFunction {
 	/**
@@ -71,6 +70,14 @@ public class PDPostScriptFunction extends PDFunction {
 
 	private String code;
 
+	private float[] domain;
+
+	private float[] range;
+
+	private volatile PSProgram program;
+
+	private volatile boolean programInvalid;
+
 	protected PDPostScriptFunction(COSObject object) {
 		super(object);
 	}
@@ -87,34 +94,71 @@ public class PDPostScriptFunction extends PDFunction {
 
 	@Override
 	public float[] evaluate(float[] values) {
-		Handler handler;
-		List argList;
-		List resultList;
 		float[] result;
 
-		handler = new Handler();
-		argList = new ArrayList(values.length);
-		for (int index = 0; index < values.length; index++) {
-			argList.add(new Double(values[index]));
+		result = new float[getOutputSize()];
+		PSProgram tempProgram = getProgram();
+		if (tempProgram == null
+				|| !evaluate(tempProgram, values, 0, values.length, result, 0,
+						new double[PSProgram.DEFAULT_STACK_SIZE],
+						new byte[PSProgram.DEFAULT_STACK_SIZE])) {
+			return dummyResult();
 		}
-		handler.pushArgs(argList);
+		return result;
+	}
+
+	@Override
+	public void evaluate(float[] input, float[] output, int count) {
+		PSProgram tempProgram = getProgram();
+		int inputSize = getInputSize();
+		int outputSize = getOutputSize();
+		double[] values = new double[PSProgram.DEFAULT_STACK_SIZE];
+		byte[] types = new byte[PSProgram.DEFAULT_STACK_SIZE];
+		for (int i = 0; i < count; i++) {
+			int outputOffset = i * outputSize;
+			if (tempProgram == null
+					|| !evaluate(tempProgram, input, i * inputSize, inputSize,
+							output, outputOffset, values, types)) {
+				for (int j = 0; j < outputSize; j++) {
+					output[outputOffset + j] = 0.5f;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evaluate <code>program</code> for a single input tuple, using
+	 * <code>values</code> and <code>types</code> as the operand stack.
+	 * 
+	 * @return <code>true</code> if the program executed successfully.
+	 */
+	protected boolean evaluate(PSProgram pProgram, float[] input,
+			int inputOffset, int inputSize, float[] output, int outputOffset,
+			double[] values, byte[] types) {
+		for (int i = 0; i < inputSize; i++) {
+			float value = input[inputOffset + i];
+			if (domain != null && domain.length >= (i * 2) + 2) {
+				value = clip(value, domain[i * 2], domain[(i * 2) + 1]);
+			}
+			values[i] = value;
+			types[i] = PSProgram.TYPE_REAL;
+		}
+		int size;
 		try {
-			new Parser(new StringReader(getCode())).parse(handler);
-		} catch (ParseException ex) {
+			size = pProgram.execute(values, types, inputSize);
+		} catch (RuntimeException ex) {
 			// TODO warning?
-			return dummyResult();
-		} catch (UnsupportedOperationException ex) {
-			// postscript is only partially implemented; do the same as when it
-			// wasn't implemented at all
-			return dummyResult();
+			return false;
 		}
-		resultList = handler.popResult();
-
-		result = new float[getOutputSize()];
-		for (int index = 0; index < result.length; index++) {
-			result[index] = ((Number) resultList.get(index)).floatValue();
+		int outputSize = range.length / 2;
+		if (size < outputSize) {
+			return false;
 		}
-		return result;
+		for (int i = 0; i < outputSize; i++) {
+			output[outputOffset + i] = clip((float) values[i], range[i * 2],
+					range[(i * 2) + 1]);
+		}
+		return true;
 	}
 
 	public String getCode() {
@@ -139,4 +183,41 @@ public class PDPostScriptFunction extends PDFunction {
 	public int getOutputSize() {
 		return getRange().size() / 2;
 	}
+
+	/**
+	 * The compiled code of this function or <code>null</code> if the code
+	 * can not be compiled.
+	 * <p>
+	 * The program is compiled only once and may be shared by concurrent
+	 * evaluations.
+	 * 
+	 * @return The compiled code of this function.
+	 */
+	public PSProgram getProgram() {
+		PSProgram result = program;
+		if (result == null && !programInvalid) {
+			try {
+				domain = createFloats(cosGetDomain());
+				range = createFloats(getRange());
+				result = PSCompiler.compile(getCode());
+				program = result;
+			} catch (ParseException ex) {
+				// TODO warning?
+				programInvalid = true;
+			} catch (UnsupportedOperationException ex) {
+				// postscript is only partially implemented; do the same as
+				// when it wasn't implemented at all
+				programInvalid = true;
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void invalidateCaches() {
+		super.invalidateCaches();
+		code = null;
+		program = null;
+		programInvalid = false;
+	}
 }
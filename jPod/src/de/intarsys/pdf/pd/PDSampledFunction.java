@@ -34,10 +34,14 @@ import de.intarsys.pdf.cos.COSBasedObject;
 import de.intarsys.pdf.cos.COSDictionary;
 import de.intarsys.pdf.cos.COSName;
 import de.intarsys.pdf.cos.COSObject;
+import de.intarsys.pdf.cos.COSRuntimeException;
 import de.intarsys.pdf.cos.COSStream;
 
 /**
  * Function implementation based on samples.
+ * <p>
+ * The parameters and the samples are compiled once to a {@link SampleTable}
+ * which is shared by all subsequent evaluations.
  */
 public class PDSampledFunction extends PDFunction {
 	/**
@@ -59,6 +63,147 @@ public class PDSampledFunction extends PDFunction {
 		}
 	}
 
+	/**
+	 * The function parameters in primitive form and the samples unpacked and
+	 * decoded to floats.
+	 * <p>
+	 * A table is immutable and may be shared between threads.
+	 */
+	static public class SampleTable {
+		final private float[] domain;
+
+		final private float[] encode;
+
+		final private int inputSize;
+
+		final private int outputSize;
+
+		final private float[] range;
+
+		/** outputSize decoded values per sample point */
+		final private float[] samples;
+
+		final private int[] size;
+
+		/** The distance of neighbor sample points in each dimension */
+		final private int[] strides;
+
+		protected SampleTable(float[] domain, float[] encode, float[] range,
+				int[] size, float[] samples) {
+			this.domain = domain;
+			this.encode = encode;
+			this.range = range;
+			this.size = size;
+			this.samples = samples;
+			this.inputSize = size.length;
+			this.outputSize = range.length / 2;
+			this.strides = new int[inputSize];
+			int stride = outputSize;
+			for (int i = 0; i < inputSize; i++) {
+				strides[i] = stride;
+				stride = stride * size[i];
+			}
+		}
+
+		/**
+		 * Evaluate one input tuple using multilinear interpolation between
+		 * the surrounding sample points.
+		 * 
+		 * @param input
+		 * @param inputOffset
+		 * @param output
+		 * @param outputOffset
+		 * @param fract
+		 *            Scratch array of at least <code>getInputSize()</code>
+		 *            values
+		 */
+		public void evaluate(float[] input, int inputOffset, float[] output,
+				int outputOffset, float[] fract) {
+			int base = 0;
+			for (int i = 0; i < inputSize; i++) {
+				float min = domain[i * 2];
+				float max = domain[(i * 2) + 1];
+				float x = input[inputOffset + i];
+				if (x < min) {
+					x = min;
+				} else if (x > max) {
+					x = max;
+				}
+				float e = encode[i * 2];
+				if (max > min) {
+					e = e + ((x - min) * (encode[(i * 2) + 1] - e) / (max - min));
+				}
+				int last = size[i] - 1;
+				if (e <= 0) {
+					fract[i] = 0;
+				} else if (e >= last) {
+					base += last * strides[i];
+					fract[i] = 0;
+				} else {
+					int index = (int) e;
+					base += index * strides[i];
+					fract[i] = e - index;
+				}
+			}
+			if (inputSize == 1) {
+				float f = fract[0];
+				int high = base + strides[0];
+				for (int j = 0; j < outputSize; j++) {
+					float value = samples[base + j];
+					if (f != 0) {
+						value = value + (f * (samples[high + j] - value));
+					}
+					output[outputOffset + j] = value;
+				}
+			} else {
+				for (int j = 0; j < outputSize; j++) {
+					output[outputOffset + j] = 0;
+				}
+				int corners = 1 << inputSize;
+				for (int corner = 0; corner < corners; corner++) {
+					float weight = 1;
+					int index = base;
+					for (int i = 0; i < inputSize; i++) {
+						if ((corner & (1 << i)) != 0) {
+							weight = weight * fract[i];
+							index += strides[i];
+						} else {
+							weight = weight * (1 - fract[i]);
+						}
+						if (weight == 0) {
+							break;
+						}
+					}
+					if (weight == 0) {
+						continue;
+					}
+					for (int j = 0; j < outputSize; j++) {
+						output[outputOffset + j] += weight
+								* samples[index + j];
+					}
+				}
+			}
+			for (int j = 0; j < outputSize; j++) {
+				float min = range[j * 2];
+				float max = range[(j * 2) + 1];
+				float value = output[outputOffset + j];
+				if (value < min) {
+					output[outputOffset + j] = min;
+				} else if (value > max) {
+					output[outputOffset + j] = max;
+				}
+			}
+		}
+
+		public int getInputSize() {
+			return inputSize;
+		}
+
+		public int getOutputSize() {
+			return outputSize;
+		}
+	}
+
 	public static final COSName DK_BitsPerSample = COSName
 			.constant("BitsPerSample"); //$NON-NLS-1$
 
@@ -70,12 +215,19 @@ public class PDSampledFunction extends PDFunction {
 
 	public static final COSName DK_Size = COSName.constant("Size"); //$NON-NLS-1$
 
+	/**
+	 * The maximum number of samples in a {@link SampleTable}
+	 */
+	public static final int MAX_SAMPLES = 1 << 24;
+
 	/** The meta class instance */
 	public static final MetaClass META = new MetaClass(MetaClass.class
 			.getDeclaringClass());
 
 	private byte[] samples;
 
+	private volatile SampleTable sampleTable;
+
 	/**
 	 * PDSampledFunction constructor.
 	 * 
@@ -109,6 +261,57 @@ public class PDSampledFunction extends PDFunction {
 		return cosGetDict().get(DK_Encode).asArray();
 	}
 
+	/**
+	 * Compile the function parameters and samples to a {@link SampleTable}.
+	 * 
+	 * @return The new {@link SampleTable}
+	 * @throws COSRuntimeException
+	 *             if the function is malformed, for example if it declares
+	 *             more than {@link #MAX_SAMPLES} samples.
+	 */
+	protected SampleTable createSampleTable() {
+		int inputSize = getInputSize();
+		int outputSize = getOutputSize();
+		int bitsPerSample = getBitsPerSample();
+		if (bitsPerSample < 1 || bitsPerSample > 32) {
+			throw new COSRuntimeException(
+					"malformed sampled function, invalid BitsPerSample " //$NON-NLS-1$
+							+ bitsPerSample);
+		}
+		float[] domain = createFloats(cosGetDomain());
+		float[] range = createFloats(getRange());
+		int[] size = new int[inputSize];
+		float[] encode = new float[inputSize * 2];
+		long count = outputSize;
+		for (int i = 0; i < inputSize; i++) {
+			size[i] = Math.max(1, getSize(i));
+			encode[i * 2] = getEncodeMin(i);
+			encode[(i * 2) + 1] = getEncodeMax(i);
+			count = count * size[i];
+			if (count > MAX_SAMPLES) {
+				throw new COSRuntimeException(
+						"malformed sampled function, more than " //$NON-NLS-1$
+								+ MAX_SAMPLES + " samples"); //$NON-NLS-1$
+			}
+		}
+		float[] decode = new float[outputSize * 2];
+		for (int j = 0; j < outputSize; j++) {
+			decode[j * 2] = getDecodeMin(j);
+			decode[(j * 2) + 1] = getDecodeMax(j);
+		}
+		float[] values = new float[(int) count];
+		byte[] bytes = getSamples();
+		double maxSample = (1L << bitsPerSample) - 1;
+		long bitPos = 0;
+		for (int k = 0; k < count; k++, bitPos += bitsPerSample) {
+			long sample = readSample(bytes, bitPos, bitsPerSample);
+			int j = k % outputSize;
+			float min = decode[j * 2];
+			values[k] = (float) (min + (sample * (decode[(j * 2) + 1] - min) / maxSample));
+		}
+		return new SampleTable(domain, encode, range, size, values);
+	}
+
 	/**
 	 * Evaluate the function for each of the input values in turn. The output
 	 * values are stored in an array and returned.
@@ -120,17 +323,28 @@ public class PDSampledFunction extends PDFunction {
 	 */
 	@Override
 	public float[] evaluate(float[] input) {
-		float[] intermediate;
-		float[] output;
-
-		intermediate = new float[input.length];
-		prepareInput(input, intermediate);
-		output = stepInterpolateOutput(intermediate, 0, 0, 0);
-		prepareOutput(output);
-
+		SampleTable table = getSampleTable();
+		float[] output = new float[table.getOutputSize()];
+		table.evaluate(input, 0, output, 0, new float[table.getInputSize()]);
 		return output;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.pd.PDFunction#evaluate(float[], float[], int)
+	 */
+	@Override
+	public void evaluate(float[] input, float[] output, int count) {
+		SampleTable table = getSampleTable();
+		int inputSize = table.getInputSize();
+		int outputSize = table.getOutputSize();
+		float[] fract = new float[inputSize];
+		for (int i = 0; i < count; i++) {
+			table.evaluate(input, i * inputSize, output, i * outputSize, fract);
+		}
+	}
+
 	/**
 	 * Return the BitsPerSample value.
 	 * 
@@ -214,32 +428,6 @@ public class PDSampledFunction extends PDFunction {
 		return getRange().size() / 2;
 	}
 
-	/**
-	 * Return the sample from the sample stream for the given bit position.
-	 * 
-	 * @param bitPos
-	 *            the bit position to get the sample for
-	 * 
-	 * @return the sample from the sample stream for the given bit position
-	 */
-	protected int getSample(int bitPos) {
-		int bytePos = bitPos >> 3;
-		int bitShift = (7 - bitPos) & 7;
-		int result = 0;
-		for (int i = 0; i < getBitsPerSample(); i++) {
-			result = result << 1;
-			int sample = (getSamples()[bytePos] >> bitShift) & 1;
-			result = result + sample;
-			if (bitShift == 0) {
-				bytePos++;
-				bitShift = 7;
-			} else {
-				bitShift--;
-			}
-		}
-		return result;
-	}
-
 	/**
 	 * Return the decoded contents of the sample stream.
 	 * 
@@ -252,6 +440,23 @@ public class PDSampledFunction extends PDFunction {
 		return samples;
 	}
 
+	/**
+	 * The compiled parameters and samples of this function.
+	 * <p>
+	 * The table is created only once and may be shared by concurrent
+	 * evaluations.
+	 * 
+	 * @return The compiled parameters and samples of this function.
+	 */
+	public SampleTable getSampleTable() {
+		SampleTable result = sampleTable;
+		if (result == null) {
+			result = createSampleTable();
+			sampleTable = result;
+		}
+		return result;
+	}
+
 	/**
 	 * Return the Size value array.
 	 * 
@@ -273,87 +478,47 @@ public class PDSampledFunction extends PDFunction {
 		return getSize().get(dimension).asNumber().intValue();
 	}
 
-	protected float interpolate(float x, float xmin, float xmax, float ymin,
-			float ymax) {
-		return ymin + ((x - xmin) * (ymax - ymin) / (xmax - xmin));
-	}
-
-	protected float[] lookup(int sampleIndex) {
-		int bitPos;
-		float[] output;
-
-		bitPos = getBitsPerSample() * getOutputSize() * sampleIndex;
-		output = new float[getOutputSize()];
-		for (int index = 0; index < output.length; index++, bitPos = bitPos
-				+ getBitsPerSample()) {
-			output[index] = getSample(bitPos);
-		}
-		return output;
-	}
-
-	protected void prepareInput(float[] values, float[] intermediate) {
-		for (int i = 0; i < values.length; i++) {
-			intermediate[i] = clip(values[i], getDomainMin(i), getDomainMax(i));
-			intermediate[i] = interpolate(intermediate[i], getDomainMin(i),
-					getDomainMax(i), getEncodeMin(i), getEncodeMax(i));
-			intermediate[i] = clip(intermediate[i], 0, getSize(i) - 1);
-		}
-	}
-
-	protected void prepareOutput(float[] values) {
-		for (int i = 0; i < values.length; i++) {
-			values[i] = interpolate(values[i], 0f, (float) Math.pow(2,
-					getBitsPerSample()), getDecodeMin(i), getDecodeMax(i));
-			values[i] = clip(values[i], getRangeMin(i), getRangeMax(i));
-		}
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.cos.COSBasedObject#invalidateCaches()
+	 */
+	@Override
+	public void invalidateCaches() {
+		super.invalidateCaches();
+		samples = null;
+		sampleTable = null;
 	}
 
-	protected float[] stepInterpolateOutput(float[] input, int lowBase,
-			int highBase, int step) {
-		int dimension;
-		int offset;
-		float[] lowSample;
-		float[] highSample;
-		float[] result;
-
-		dimension = input.length - step - 1;
-		offset = 1;
-		for (int index = 0; index < dimension; index++) {
-			offset = offset * getSize(index);
+	/**
+	 * Read the sample of <code>bitsPerSample</code> bits starting at
+	 * <code>bitPos</code>. Missing data is read as 0.
+	 * 
+	 * @param bytes
+	 * @param bitPos
+	 * @param bitsPerSample
+	 * @return The sample value
+	 */
+	protected long readSample(byte[] bytes, long bitPos, int bitsPerSample) {
+		int bytePos = (int) (bitPos >> 3);
+		if (bitsPerSample == 8) {
+			return bytePos < bytes.length ? bytes[bytePos] & 0xff : 0;
 		}
-		if (dimension > -1) {
-			int lowOffset;
-			int highOffset;
-
-			lowOffset = offset * (int) Math.floor(input[dimension]);
-			highOffset = offset * (int) Math.ceil(input[dimension]);
-			lowSample = stepInterpolateOutput(input, lowBase + lowOffset,
-					lowBase + highOffset, step + 1);
-			if (step == 0) {
-				return lowSample;
+		int bitShift = 7 - (int) (bitPos & 7);
+		long result = 0;
+		for (int i = 0; i < bitsPerSample; i++) {
+			int bit = 0;
+			if (bytePos < bytes.length) {
+				bit = (bytes[bytePos] >> bitShift) & 1;
 			}
-			highSample = stepInterpolateOutput(input, highBase + lowOffset,
-					highBase + highOffset, step + 1);
-		} else {
-			lowSample = lookup(lowBase);
-			if (highBase == lowBase) {
-				highSample = lowSample;
+			result = (result << 1) | bit;
+			if (bitShift == 0) {
+				bytePos++;
+				bitShift = 7;
 			} else {
-				highSample = lookup(highBase);
+				bitShift--;
 			}
 		}
-
-		result = new float[getOutputSize()];
-		for (int index = 0; index < result.length; index++) {
-			float low;
-			float high;
-			float fract;
-
-			low = lowSample[index];
-			high = highSample[index];
-			fract = (float) (input[step - 1] - Math.floor(input[step - 1]));
-			result[index] = low + (fract * (high - low));
-		}
 		return result;
 	}
 }
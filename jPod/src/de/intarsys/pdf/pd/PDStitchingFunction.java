@@ -32,11 +32,13 @@ package de.intarsys.pdf.pd;
 import de.intarsys.pdf.cos.COSArray;
 import de.intarsys.pdf.cos.COSBasedObject;
 import de.intarsys.pdf.cos.COSName;
-import de.intarsys.pdf.cos.COSNumber;
 import de.intarsys.pdf.cos.COSObject;
 
 /**
  * Function implementation for stitching functions.
+ * <p>
+ * The input is mapped to the domain of the function responsible for its
+ * subdomain using the /Encode entries.
  */
 public class PDStitchingFunction extends PDFunction {
 	/**
@@ -63,51 +65,106 @@ public class PDStitchingFunction extends PDFunction {
 
 	private static final COSName DK_Functions = COSName.constant("Functions"); //$NON-NLS-1$
 
-	private float[] bounds;
+	private volatile float[] bounds;
+
+	private float[] domain;
 
 	private float[] encode;
 
 	private PDFunction[] functions;
 
+	private float[] range;
+
 	protected PDStitchingFunction(COSObject object) {
 		super(object);
+		compile();
+		// functions will be resolved lazily
+	}
 
-		COSArray cosBounds;
-		COSArray cosEncode;
-		int index;
-
-		cosBounds = object.asDictionary().get(DK_Bounds).asArray();
-		bounds = new float[cosBounds.size()];
-		for (index = 0; index < cosBounds.size(); index++) {
-			bounds[index] = ((COSNumber) cosBounds.get(index)).floatValue();
+	/**
+	 * Read the function parameters to primitive values, once for all
+	 * subsequent evaluations.
+	 */
+	protected void compile() {
+		domain = createFloats(cosGetDomain());
+		if (domain == null || domain.length < 2) {
+			// required, assume the usual
+			domain = new float[] { 0, 1 };
 		}
-
-		cosEncode = object.asDictionary().get(DK_Encode).asArray();
-		encode = new float[cosEncode.size()];
-		for (index = 0; index < cosEncode.size(); index++) {
-			encode[index] = ((COSNumber) cosEncode.get(index)).floatValue();
+		range = createFloats(getRange());
+		encode = createFloats(cosGetDict().get(DK_Encode).asArray());
+		float[] tempBounds = createFloats(cosGetDict().get(DK_Bounds)
+				.asArray());
+		if (tempBounds == null) {
+			tempBounds = new float[0];
 		}
-
-		// color space will be resolved lazily
+		bounds = tempBounds;
 	}
 
 	@Override
 	public float[] evaluate(float[] values) {
-		int index;
+		float[] result = new float[getOutputSize()];
+		evaluate(values, result, 1);
+		return result;
+	}
 
-		for (index = 0; index < bounds.length; index++) {
-			if (values[0] < bounds[index]) {
-				return getFunctions()[index].evaluate(values);
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.pd.PDFunction#evaluate(float[], float[], int)
+	 */
+	@Override
+	public void evaluate(float[] input, float[] output, int count) {
+		float[] tempBounds = getBounds();
+		PDFunction[] tempFunctions = getFunctions();
+		int outputSize = getOutputSize();
+		float[] value = new float[1];
+		float[] result = new float[outputSize];
+		for (int i = 0; i < count; i++) {
+			float x = input[i];
+			float min = domain[0];
+			float max = domain[1];
+			x = clip(x, min, max);
+			int index = 0;
+			while (index < tempBounds.length && x >= tempBounds[index]) {
+				index++;
+			}
+			float low = index == 0 ? min : tempBounds[index - 1];
+			float high = index == tempBounds.length ? max : tempBounds[index];
+			float e0 = 0;
+			float e1 = 1;
+			if (encode != null && encode.length >= (index * 2) + 2) {
+				e0 = encode[index * 2];
+				e1 = encode[(index * 2) + 1];
+			}
+			if (high > low) {
+				value[0] = e0 + ((x - low) * (e1 - e0) / (high - low));
+			} else {
+				value[0] = e0;
+			}
+			tempFunctions[index].evaluate(value, result, 1);
+			int offset = i * outputSize;
+			for (int j = 0; j < outputSize; j++) {
+				float y = result[j];
+				if (range != null && range.length >= (j * 2) + 2) {
+					y = clip(y, range[j * 2], range[(j * 2) + 1]);
+				}
+				output[offset + j] = y;
 			}
 		}
-		return getFunctions()[index].evaluate(values);
 	}
 
 	public float[] getBounds() {
-		return bounds;
+		float[] result = bounds;
+		if (result == null) {
+			compile();
+			result = bounds;
+		}
+		return result;
 	}
 
 	public float[] getEncode() {
+		getBounds();
 		return encode;
 	}
 
@@ -129,6 +186,21 @@ public class PDStitchingFunction extends PDFunction {
 
 	@Override
 	public int getOutputSize() {
+		if (getRange() == null) {
+			return getFunctions()[0].getOutputSize();
+		}
 		return getRange().size() / 2;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.cos.COSBasedObject#invalidateCaches()
+	 */
+	@Override
+	public void invalidateCaches() {
+		super.invalidateCaches();
+		bounds = null;
+		functions = null;
+	}
 }
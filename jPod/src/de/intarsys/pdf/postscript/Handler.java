@@ -79,7 +79,7 @@ public class Handler {
 		throw new UnsupportedOperationException();
 	}
 
-	public void processEndProcedure() {
+	public void processEndProcedure() throws ParseException {
 		stack.push(procedure);
 		procedure = null;
 	}
@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.pdf.postscript;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * A {@link Handler} that compiles a PostScript calculator program into a
+ * {@link PSProgram} instead of executing it.
+ * <p>
+ * Operators whose operands are all literals are evaluated at compile time
+ * and replaced by their result, "if" and "ifelse" with a literal condition
+ * are resolved to the selected procedure.
+ */
+public class PSCompiler extends Handler {
+
+	/**
+	 * A node in the program tree built while parsing.
+	 */
+	static private class Node {
+		static final int LITERAL = 0;
+
+		static final int OPERATOR = 1;
+
+		static final int PROCEDURE = 2;
+
+		static final int IF = 3;
+
+		static final int IFELSE = 4;
+
+		final int kind;
+
+		int operator;
+
+		double value;
+
+		byte type;
+
+		List<Node> procedure;
+
+		List<Node> alternative;
+
+		Node(int kind) {
+			this.kind = kind;
+		}
+	}
+
+	static private final Map<String, Integer> OPERATORS = new HashMap<String, Integer>();
+
+	/**
+	 * The number of operands for the operators that can be folded at compile
+	 * time, indexed by operator code. -1 for all other operators.
+	 */
+	static private final int[] ARITY = new int[PSProgram.OP_XOR + 1];
+
+	static {
+		for (int i = 0; i < ARITY.length; i++) {
+			ARITY[i] = -1;
+		}
+		registerOperator("abs", PSProgram.OP_ABS, 1); //$NON-NLS-1$
+		registerOperator("add", PSProgram.OP_ADD, 2); //$NON-NLS-1$
+		registerOperator("and", PSProgram.OP_AND, 2); //$NON-NLS-1$
+		registerOperator("atan", PSProgram.OP_ATAN, 2); //$NON-NLS-1$
+		registerOperator("bitshift", PSProgram.OP_BITSHIFT, 2); //$NON-NLS-1$
+		registerOperator("ceiling", PSProgram.OP_CEILING, 1); //$NON-NLS-1$
+		registerOperator("copy", PSProgram.OP_COPY, -1); //$NON-NLS-1$
+		registerOperator("cos", PSProgram.OP_COS, 1); //$NON-NLS-1$
+		registerOperator("cvi", PSProgram.OP_CVI, 1); //$NON-NLS-1$
+		registerOperator("cvr", PSProgram.OP_CVR, 1); //$NON-NLS-1$
+		registerOperator("div", PSProgram.OP_DIV, 2); //$NON-NLS-1$
+		registerOperator("dup", PSProgram.OP_DUP, -1); //$NON-NLS-1$
+		registerOperator("eq", PSProgram.OP_EQ, 2); //$NON-NLS-1$
+		registerOperator("exch", PSProgram.OP_EXCH, -1); //$NON-NLS-1$
+		registerOperator("exp", PSProgram.OP_EXP, 2); //$NON-NLS-1$
+		registerOperator("floor", PSProgram.OP_FLOOR, 1); //$NON-NLS-1$
+		registerOperator("ge", PSProgram.OP_GE, 2); //$NON-NLS-1$
+		registerOperator("gt", PSProgram.OP_GT, 2); //$NON-NLS-1$
+		registerOperator("idiv", PSProgram.OP_IDIV, 2); //$NON-NLS-1$
+		registerOperator("index", PSProgram.OP_INDEX, -1); //$NON-NLS-1$
+		registerOperator("le", PSProgram.OP_LE, 2); //$NON-NLS-1$
+		registerOperator("ln", PSProgram.OP_LN, 1); //$NON-NLS-1$
+		registerOperator("log", PSProgram.OP_LOG, 1); //$NON-NLS-1$
+		registerOperator("lt", PSProgram.OP_LT, 2); //$NON-NLS-1$
+		registerOperator("mod", PSProgram.OP_MOD, 2); //$NON-NLS-1$
+		registerOperator("mul", PSProgram.OP_MUL, 2); //$NON-NLS-1$
+		registerOperator("ne", PSProgram.OP_NE, 2); //$NON-NLS-1$
+		registerOperator("neg", PSProgram.OP_NEG, 1); //$NON-NLS-1$
+		registerOperator("not", PSProgram.OP_NOT, 1); //$NON-NLS-1$
+		registerOperator("or", PSProgram.OP_OR, 2); //$NON-NLS-1$
+		registerOperator("pop", PSProgram.OP_POP, -1); //$NON-NLS-1$
+		registerOperator("roll", PSProgram.OP_ROLL, -1); //$NON-NLS-1$
+		registerOperator("round", PSProgram.OP_ROUND, 1); //$NON-NLS-1$
+		registerOperator("sin", PSProgram.OP_SIN, 1); //$NON-NLS-1$
+		registerOperator("sqrt", PSProgram.OP_SQRT, 1); //$NON-NLS-1$
+		registerOperator("sub", PSProgram.OP_SUB, 2); //$NON-NLS-1$
+		registerOperator("truncate", PSProgram.OP_TRUNCATE, 1); //$NON-NLS-1$
+		registerOperator("xor", PSProgram.OP_XOR, 2); //$NON-NLS-1$
+	}
+
+	/**
+	 * Compile the PostScript calculator program <code>code</code>. The code
+	 * must not be enclosed in the outermost braces.
+	 * 
+	 * @param code
+	 *            The PostScript code.
+	 * @return The compiled {@link PSProgram}
+	 * @throws ParseException
+	 */
+	static public PSProgram compile(String code) throws ParseException {
+		PSCompiler compiler = new PSCompiler();
+		new Parser(new StringReader(code)).parse(compiler);
+		return compiler.createProgram();
+	}
+
+	static private void registerOperator(String name, int code, int arity) {
+		OPERATORS.put(name, code);
+		ARITY[code] = arity;
+	}
+
+	private final Stack<List<Node>> procedures = new Stack<List<Node>>();
+
+	private List<Node> current = new ArrayList<Node>();
+
+	private int[] code = new int[64];
+
+	private int codeLength;
+
+	private double[] constants = new double[16];
+
+	private byte[] constantTypes = new byte[16];
+
+	private int constantsLength;
+
+	protected PSCompiler() {
+		super();
+	}
+
+	protected void addLiteral(double value, byte type) {
+		Node node = new Node(Node.LITERAL);
+		node.value = value;
+		node.type = type;
+		current.add(node);
+	}
+
+	protected void addOperator(int operator) {
+		int arity = ARITY[operator];
+		int size = current.size();
+		if (arity > 0 && size >= arity && fold(operator, arity)) {
+			return;
+		}
+		Node node = new Node(Node.OPERATOR);
+		node.operator = operator;
+		current.add(node);
+	}
+
+	protected PSProgram createProgram() throws ParseException {
+		if (!procedures.isEmpty()) {
+			throw new ParseException("unbalanced procedure"); //$NON-NLS-1$
+		}
+		emit(current);
+		int[] tempCode = new int[codeLength];
+		System.arraycopy(code, 0, tempCode, 0, codeLength);
+		double[] tempConstants = new double[constantsLength];
+		System.arraycopy(constants, 0, tempConstants, 0, constantsLength);
+		byte[] tempTypes = new byte[constantsLength];
+		System.arraycopy(constantTypes, 0, tempTypes, 0, constantsLength);
+		return new PSProgram(tempCode, tempConstants, tempTypes);
+	}
+
+	protected void emit(int value) {
+		if (codeLength == code.length) {
+			int[] tempCode = new int[code.length * 2];
+			System.arraycopy(code, 0, tempCode, 0, codeLength);
+			code = tempCode;
+		}
+		code[codeLength++] = value;
+	}
+
+	protected void emit(List<Node> nodes) throws ParseException {
+		for (Node node : nodes) {
+			switch (node.kind) {
+			case Node.LITERAL:
+				emit(PSProgram.OP_PUSH);
+				emit(emitConstant(node.value, node.type));
+				break;
+			case Node.OPERATOR:
+				emit(node.operator);
+				break;
+			case Node.IF: {
+				emit(PSProgram.OP_JUMP_FALSE);
+				int jumpEnd = codeLength;
+				emit(0);
+				emit(node.procedure);
+				code[jumpEnd] = codeLength;
+				break;
+			}
+			case Node.IFELSE: {
+				emit(PSProgram.OP_JUMP_FALSE);
+				int jumpElse = codeLength;
+				emit(0);
+				emit(node.procedure);
+				emit(PSProgram.OP_JUMP);
+				int jumpEnd = codeLength;
+				emit(0);
+				code[jumpElse] = codeLength;
+				emit(node.alternative);
+				code[jumpEnd] = codeLength;
+				break;
+			}
+			default:
+				throw new ParseException("procedure not supported here"); //$NON-NLS-1$
+			}
+		}
+	}
+
+	protected int emitConstant(double value, byte type) {
+		if (constantsLength == constants.length) {
+			double[] tempConstants = new double[constants.length * 2];
+			System.arraycopy(constants, 0, tempConstants, 0, constantsLength);
+			constants = tempConstants;
+			byte[] tempTypes = new byte[constantTypes.length * 2];
+			System.arraycopy(constantTypes, 0, tempTypes, 0, constantsLength);
+			constantTypes = tempTypes;
+		}
+		constants[constantsLength] = value;
+		constantTypes[constantsLength] = type;
+		return constantsLength++;
+	}
+
+	/**
+	 * Try to evaluate <code>operator</code> at compile time. This is possible
+	 * if the last <code>arity</code> nodes are literals.
+	 * 
+	 * @param operator
+	 * @param arity
+	 * @return <code>true</code> if the operator was folded.
+	 */
+	protected boolean fold(int operator, int arity) {
+		int start = current.size() - arity;
+		double[] values = new double[arity];
+		byte[] types = new byte[arity];
+		for (int i = 0; i < arity; i++) {
+			Node node = current.get(start + i);
+			if (node.kind != Node.LITERAL) {
+				return false;
+			}
+			values[i] = node.value;
+			types[i] = node.type;
+		}
+		PSProgram program = new PSProgram(new int[] { operator },
+				new double[0], new byte[0]);
+		try {
+			if (program.execute(values, types, arity) != 1) {
+				return false;
+			}
+		} catch (RuntimeException e) {
+			// leave the error to runtime
+			return false;
+		}
+		while (current.size() > start) {
+			current.remove(current.size() - 1);
+		}
+		addLiteral(values[0], types[0]);
+		return true;
+	}
+
+	protected Node popProcedure() throws ParseException {
+		if (current.isEmpty()) {
+			throw new ParseException("procedure expected"); //$NON-NLS-1$
+		}
+		Node node = current.remove(current.size() - 1);
+		if (node.kind != Node.PROCEDURE) {
+			throw new ParseException("procedure expected"); //$NON-NLS-1$
+		}
+		return node;
+	}
+
+	@Override
+	public void processEndProcedure() throws ParseException {
+		if (procedures.isEmpty()) {
+			throw new ParseException("unbalanced procedure"); //$NON-NLS-1$
+		}
+		Node node = new Node(Node.PROCEDURE);
+		node.procedure = current;
+		current = procedures.pop();
+		current.add(node);
+	}
+
+	@Override
+	public void processIdentifier(String string) throws ParseException {
+		if ("true".equals(string)) { //$NON-NLS-1$
+			addLiteral(1, PSProgram.TYPE_BOOL);
+			return;
+		}
+		if ("false".equals(string)) { //$NON-NLS-1$
+			addLiteral(0, PSProgram.TYPE_BOOL);
+			return;
+		}
+		if ("if".equals(string)) { //$NON-NLS-1$
+			Node procedure = popProcedure();
+			if (!resolveCondition(procedure.procedure, null)) {
+				Node node = new Node(Node.IF);
+				node.procedure = procedure.procedure;
+				current.add(node);
+			}
+			return;
+		}
+		if ("ifelse".equals(string)) { //$NON-NLS-1$
+			Node alternative = popProcedure();
+			Node procedure = popProcedure();
+			if (!resolveCondition(procedure.procedure, alternative.procedure)) {
+				Node node = new Node(Node.IFELSE);
+				node.procedure = procedure.procedure;
+				node.alternative = alternative.procedure;
+				current.add(node);
+			}
+			return;
+		}
+		Integer operator = OPERATORS.get(string);
+		if (operator == null) {
+			throw new ParseException("unsupported operator " + string); //$NON-NLS-1$
+		}
+		addOperator(operator);
+	}
+
+	@Override
+	public void processLiteral(double d) {
+		addLiteral(d, PSProgram.TYPE_REAL);
+	}
+
+	@Override
+	public void processLiteral(int i) {
+		addLiteral(i, PSProgram.TYPE_INT);
+	}
+
+	@Override
+	public void processLiteral(Object object) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void processStartProcedure() {
+		procedures.push(current);
+		current = new ArrayList<Node>();
+	}
+
+	/**
+	 * If the condition for a conditional is a literal, replace the
+	 * conditional with the procedure selected.
+	 * 
+	 * @param procedure
+	 * @param alternative
+	 * @return <code>true</code> if the condition was resolved at compile time.
+	 */
+	protected boolean resolveCondition(List<Node> procedure,
+			List<Node> alternative) {
+		if (current.isEmpty()) {
+			return false;
+		}
+		Node condition = current.get(current.size() - 1);
+		if (condition.kind != Node.LITERAL
+				|| condition.type != PSProgram.TYPE_BOOL) {
+			return false;
+		}
+		current.remove(current.size() - 1);
+		if (condition.value != 0) {
+			current.addAll(procedure);
+		} else if (alternative != null) {
+			current.addAll(alternative);
+		}
+		return true;
+	}
+}
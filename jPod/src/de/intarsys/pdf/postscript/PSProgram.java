@@ -0,0 +1,446 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.pdf.postscript;
+
+/**
+ * A compiled PostScript calculator program, as used by type 4 functions.
+ * <p>
+ * The program is a flat array of operator codes that is executed on a
+ * primitive operand stack. Procedures used with "if" and "ifelse" are inlined
+ * using conditional jumps. Each stack entry is a double value with an
+ * associated type tag (integer, real or boolean), booleans are represented by
+ * 1 and 0.
+ * <p>
+ * A {@link PSProgram} is immutable and may be shared among threads, the
+ * operand stack is always provided by the caller.
+ */
+public class PSProgram {
+
+	/**
+	 * The operand stack depth a calculator program may use according to the
+	 * PDF implementation limits.
+	 */
+	public static final int DEFAULT_STACK_SIZE = 100;
+
+	public static final byte TYPE_INT = 0;
+
+	public static final byte TYPE_REAL = 1;
+
+	public static final byte TYPE_BOOL = 2;
+
+	static final int OP_PUSH = 0;
+
+	static final int OP_JUMP = 1;
+
+	static final int OP_JUMP_FALSE = 2;
+
+	static final int OP_ABS = 3;
+
+	static final int OP_ADD = 4;
+
+	static final int OP_AND = 5;
+
+	static final int OP_ATAN = 6;
+
+	static final int OP_BITSHIFT = 7;
+
+	static final int OP_CEILING = 8;
+
+	static final int OP_COPY = 9;
+
+	static final int OP_COS = 10;
+
+	static final int OP_CVI = 11;
+
+	static final int OP_CVR = 12;
+
+	static final int OP_DIV = 13;
+
+	static final int OP_DUP = 14;
+
+	static final int OP_EQ = 15;
+
+	static final int OP_EXCH = 16;
+
+	static final int OP_EXP = 17;
+
+	static final int OP_FLOOR = 18;
+
+	static final int OP_GE = 19;
+
+	static final int OP_GT = 20;
+
+	static final int OP_IDIV = 21;
+
+	static final int OP_INDEX = 22;
+
+	static final int OP_LE = 23;
+
+	static final int OP_LN = 24;
+
+	static final int OP_LOG = 25;
+
+	static final int OP_LT = 26;
+
+	static final int OP_MOD = 27;
+
+	static final int OP_MUL = 28;
+
+	static final int OP_NE = 29;
+
+	static final int OP_NEG = 30;
+
+	static final int OP_NOT = 31;
+
+	static final int OP_OR = 32;
+
+	static final int OP_POP = 33;
+
+	static final int OP_ROLL = 34;
+
+	static final int OP_ROUND = 35;
+
+	static final int OP_SIN = 36;
+
+	static final int OP_SQRT = 37;
+
+	static final int OP_SUB = 38;
+
+	static final int OP_TRUNCATE = 39;
+
+	static final int OP_XOR = 40;
+
+	static protected byte arithmeticType(byte type1, byte type2, double result) {
+		if (type1 == TYPE_INT && type2 == TYPE_INT
+				&& result >= Integer.MIN_VALUE && result <= Integer.MAX_VALUE) {
+			return TYPE_INT;
+		}
+		return TYPE_REAL;
+	}
+
+	static protected void reverse(double[] values, byte[] types, int from,
+			int to) {
+		for (int i = from, j = to - 1; i < j; i++, j--) {
+			double value = values[i];
+			values[i] = values[j];
+			values[j] = value;
+			byte type = types[i];
+			types[i] = types[j];
+			types[j] = type;
+		}
+	}
+
+	final private int[] code;
+
+	final private double[] constants;
+
+	final private byte[] constantTypes;
+
+	protected PSProgram(int[] code, double[] constants, byte[] constantTypes) {
+		super();
+		this.code = code;
+		this.constants = constants;
+		this.constantTypes = constantTypes;
+	}
+
+	/**
+	 * Execute the program on the operand stack defined by <code>values</code>
+	 * and <code>types</code>, holding <code>size</code> entries on start.
+	 * <p>
+	 * Runtime errors (stack under- or overflow, operands out of range,
+	 * division by zero) are signaled by a {@link RuntimeException}.
+	 * 
+	 * @param values
+	 *            The operand stack values.
+	 * @param types
+	 *            The operand stack value types.
+	 * @param size
+	 *            The number of entries on the stack on start.
+	 * @return The number of entries on the stack after execution.
+	 */
+	public int execute(double[] values, byte[] types, int size) {
+		final int[] tempCode = code;
+		final int length = tempCode.length;
+		int sp = size;
+		int pc = 0;
+		while (pc < length) {
+			switch (tempCode[pc++]) {
+			case OP_PUSH: {
+				int index = tempCode[pc++];
+				values[sp] = constants[index];
+				types[sp] = constantTypes[index];
+				sp++;
+				break;
+			}
+			case OP_JUMP:
+				pc = tempCode[pc];
+				break;
+			case OP_JUMP_FALSE: {
+				int target = tempCode[pc++];
+				sp--;
+				if (values[sp] == 0) {
+					pc = target;
+				}
+				break;
+			}
+			case OP_ABS: {
+				double result = Math.abs(values[sp - 1]);
+				types[sp - 1] = arithmeticType(types[sp - 1], TYPE_INT, result);
+				values[sp - 1] = result;
+				break;
+			}
+			case OP_ADD: {
+				sp--;
+				double result = values[sp - 1] + values[sp];
+				types[sp - 1] = arithmeticType(types[sp - 1], types[sp],
+						result);
+				values[sp - 1] = result;
+				break;
+			}
+			case OP_AND:
+				sp--;
+				values[sp - 1] = (int) values[sp - 1] & (int) values[sp];
+				break;
+			case OP_ATAN: {
+				sp--;
+				double result = Math.toDegrees(Math.atan2(values[sp - 1],
+						values[sp]));
+				if (result < 0) {
+					result = result + 360;
+				}
+				values[sp - 1] = result;
+				types[sp - 1] = TYPE_REAL;
+				break;
+			}
+			case OP_BITSHIFT: {
+				sp--;
+				int operand = (int) values[sp - 1];
+				int shift = (int) values[sp];
+				if (shift > 0) {
+					values[sp - 1] = operand << shift;
+				} else {
+					values[sp - 1] = operand >> -shift;
+				}
+				types[sp - 1] = TYPE_INT;
+				break;
+			}
+			case OP_CEILING:
+				values[sp - 1] = Math.ceil(values[sp - 1]);
+				break;
+			case OP_COPY: {
+				int count = (int) values[--sp];
+				if (count < 0 || count > sp) {
+					throw new IllegalArgumentException("rangecheck in copy"); //$NON-NLS-1$
+				}
+				System.arraycopy(values, sp - count, values, sp, count);
+				System.arraycopy(types, sp - count, types, sp, count);
+				sp = sp + count;
+				break;
+			}
+			case OP_COS:
+				values[sp - 1] = Math.cos(Math.toRadians(values[sp - 1]));
+				types[sp - 1] = TYPE_REAL;
+				break;
+			case OP_CVI:
+				values[sp - 1] = (int) values[sp - 1];
+				types[sp - 1] = TYPE_INT;
+				break;
+			case OP_CVR:
+				types[sp - 1] = TYPE_REAL;
+				break;
+			case OP_DIV:
+				sp--;
+				values[sp - 1] = values[sp - 1] / values[sp];
+				types[sp - 1] = TYPE_REAL;
+				break;
+			case OP_DUP:
+				values[sp] = values[sp - 1];
+				types[sp] = types[sp - 1];
+				sp++;
+				break;
+			case OP_EQ:
+				sp--;
+				values[sp - 1] = values[sp - 1] == values[sp] ? 1 : 0;
+				types[sp - 1] = TYPE_BOOL;
+				break;
+			case OP_EXCH: {
+				double value = values[sp - 1];
+				values[sp - 1] = values[sp - 2];
+				values[sp - 2] = value;
+				byte type = types[sp - 1];
+				types[sp - 1] = types[sp - 2];
+				types[sp - 2] = type;
+				break;
+			}
+			case OP_EXP:
+				sp--;
+				values[sp - 1] = Math.pow(values[sp - 1], values[sp]);
+				types[sp - 1] = TYPE_REAL;
+				break;
+			case OP_FLOOR:
+				values[sp - 1] = Math.floor(values[sp - 1]);
+				break;
+			case OP_GE:
+				sp--;
+				values[sp - 1] = values[sp - 1] >= values[sp] ? 1 : 0;
+				types[sp - 1] = TYPE_BOOL;
+				break;
+			case OP_GT:
+				sp--;
+				values[sp - 1] = values[sp - 1] > values[sp] ? 1 : 0;
+				types[sp - 1] = TYPE_BOOL;
+				break;
+			case OP_IDIV:
+				sp--;
+				values[sp - 1] = (int) values[sp - 1] / (int) values[sp];
+				types[sp - 1] = TYPE_INT;
+				break;
+			case OP_INDEX: {
+				int n = (int) values[sp - 1];
+				int position = sp - 2 - n;
+				if (n < 0 || position < 0) {
+					throw new IllegalArgumentException("rangecheck in index"); //$NON-NLS-1$
+				}
+				values[sp - 1] = values[position];
+				types[sp - 1] = types[position];
+				break;
+			}
+			case OP_LE:
+				sp--;
+				values[sp - 1] = values[sp - 1] <= values[sp] ? 1 : 0;
+				types[sp - 1] = TYPE_BOOL;
+				break;
+			case OP_LN:
+				values[sp - 1] = Math.log(values[sp - 1]);
+				types[sp - 1] = TYPE_REAL;
+				break;
+			case OP_LOG:
+				values[sp - 1] = Math.log10(values[sp - 1]);
+				types[sp - 1] = TYPE_REAL;
+				break;
+			case OP_LT:
+				sp--;
+				values[sp - 1] = values[sp - 1] < values[sp] ? 1 : 0;
+				types[sp - 1] = TYPE_BOOL;
+				break;
+			case OP_MOD:
+				sp--;
+				values[sp - 1] = (int) values[sp - 1] % (int) values[sp];
+				types[sp - 1] = TYPE_INT;
+				break;
+			case OP_MUL: {
+				sp--;
+				double result = values[sp - 1] * values[sp];
+				types[sp - 1] = arithmeticType(types[sp - 1], types[sp],
+						result);
+				values[sp - 1] = result;
+				break;
+			}
+			case OP_NE:
+				sp--;
+				values[sp - 1] = values[sp - 1] != values[sp] ? 1 : 0;
+				types[sp - 1] = TYPE_BOOL;
+				break;
+			case OP_NEG: {
+				double result = -values[sp - 1];
+				types[sp - 1] = arithmeticType(types[sp - 1], TYPE_INT, result);
+				values[sp - 1] = result;
+				break;
+			}
+			case OP_NOT:
+				if (types[sp - 1] == TYPE_BOOL) {
+					values[sp - 1] = values[sp - 1] == 0 ? 1 : 0;
+				} else {
+					values[sp - 1] = ~(int) values[sp - 1];
+				}
+				break;
+			case OP_OR:
+				sp--;
+				values[sp - 1] = (int) values[sp - 1] | (int) values[sp];
+				break;
+			case OP_POP:
+				sp--;
+				break;
+			case OP_ROLL: {
+				int shift = (int) values[--sp];
+				int count = (int) values[--sp];
+				if (count < 0) {
+					throw new IllegalArgumentException("rangecheck in roll"); //$NON-NLS-1$
+				}
+				if (count > 0) {
+					shift = shift % count;
+					if (shift < 0) {
+						shift = shift + count;
+					}
+					if (shift != 0) {
+						int start = sp - count;
+						reverse(values, types, start, sp);
+						reverse(values, types, start, start + shift);
+						reverse(values, types, start + shift, sp);
+					}
+				}
+				break;
+			}
+			case OP_ROUND:
+				values[sp - 1] = Math.floor(values[sp - 1] + 0.5);
+				break;
+			case OP_SIN:
+				values[sp - 1] = Math.sin(Math.toRadians(values[sp - 1]));
+				types[sp - 1] = TYPE_REAL;
+				break;
+			case OP_SQRT:
+				values[sp - 1] = Math.sqrt(values[sp - 1]);
+				types[sp - 1] = TYPE_REAL;
+				break;
+			case OP_SUB: {
+				sp--;
+				double result = values[sp - 1] - values[sp];
+				types[sp - 1] = arithmeticType(types[sp - 1], types[sp],
+						result);
+				values[sp - 1] = result;
+				break;
+			}
+			case OP_TRUNCATE: {
+				double value = values[sp - 1];
+				values[sp - 1] = value < 0 ? Math.ceil(value) : Math
+						.floor(value);
+				break;
+			}
+			case OP_XOR:
+				sp--;
+				values[sp - 1] = (int) values[sp - 1] ^ (int) values[sp];
+				break;
+			default:
+				throw new IllegalStateException("unknown operator code"); //$NON-NLS-1$
+			}
+		}
+		return sp;
+	}
+}
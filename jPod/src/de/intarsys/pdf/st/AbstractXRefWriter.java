@@ -129,7 +129,7 @@ public abstract class AbstractXRefWriter implements IXRefEntryVisitor {
 	public void visitFromOccupied(STXRefEntryOccupied entry)
 			throws XRefEntryVisitorException {
 		try {
-			write((int) entry.getOffset(), entry.getGenerationNumber(),
+			write(entry.getOffset(), entry.getGenerationNumber(),
 					getTypeOccupied());
 		} catch (IOException e) {
 			throw new XRefEntryVisitorException(e);
@@ -139,7 +139,7 @@ public abstract class AbstractXRefWriter implements IXRefEntryVisitor {
 	protected abstract void visitFromSubsection(STXRefSubsection section)
 			throws IOException;
 
-	protected abstract void write(int col1, int col2, byte[] type)
+	protected abstract void write(long col1, int col2, byte[] type)
 			throws IOException;
 
 	public void writeXRef(STXRefSection xRefSection) throws IOException {
@@ -70,11 +70,16 @@ public class COSObjectStream extends COSBasedObject {
 
 	public static final COSName DK_Extends = COSName.constant("Extends"); //$NON-NLS-1$
 
+	public static final COSName DK_Type = COSName.constant("Type"); //$NON-NLS-1$
+
 	private COSStream stream;
 
-	private int[][] objectTable;
+	/**
+	 * The decoded stream data, shared by all concurrent readers
+	 */
+	private byte[] bytes;
 
-	private IRandomAccess randomAccess;
+	private int[][] objectTable;
 
 	protected COSObjectStream(COSObject stream) {
 		super(((COSStream) stream).getDict());
@@ -89,24 +94,37 @@ public class COSObjectStream extends COSBasedObject {
 		return getFieldInt(DK_N, 0);
 	}
 
-	private int getOffsetByIndex(int index, COSDocumentParser parser)
-			throws IOException {
-		if (objectTable == null) {
-			objectTable = new int[getN()][2];
-			getRandomAccess().seek(0);
-			for (int i = 0; i < objectTable.length; i++) {
-				objectTable[i][0] = parser.readInteger(getRandomAccess(), true);
-				objectTable[i][1] = parser.readInteger(getRandomAccess(), true);
+	/**
+	 * A new {@link IRandomAccess} on the decoded stream data.
+	 * <p>
+	 * Each access to the stream uses its own {@link IRandomAccess} so that
+	 * objects may be loaded concurrently.
+	 * 
+	 * @return A new {@link IRandomAccess} on the decoded stream data.
+	 */
+	protected IRandomAccess createRandomAccess() {
+		synchronized (this) {
+			if (bytes == null) {
+				bytes = stream.getDecodedBytes();
 			}
+			return new RandomAccessByteArray(bytes);
 		}
-		return objectTable[index][1];
 	}
 
-	protected IRandomAccess getRandomAccess() throws IOException {
-		if (randomAccess == null) {
-			randomAccess = new RandomAccessByteArray(stream.getDecodedBytes());
+	private int getOffsetByIndex(int index, COSDocumentParser parser)
+			throws IOException {
+		synchronized (this) {
+			if (objectTable == null) {
+				int[][] table = new int[getN()][2];
+				IRandomAccess input = createRandomAccess();
+				for (int i = 0; i < table.length; i++) {
+					table[i][0] = parser.readInteger(input, true);
+					table[i][1] = parser.readInteger(input, true);
+				}
+				objectTable = table;
+			}
+			return objectTable[index][1];
 		}
-		return randomAccess;
 	}
 
 	public COSObject loadObject(int index, COSDocumentParser parser)
@@ -115,8 +133,9 @@ public class COSObjectStream extends COSBasedObject {
 			return null;
 		}
 		int offset = getOffsetByIndex(index, parser);
-		getRandomAccess().seek(getFirst() + offset);
-		return (COSObject) parser.parseElement(getRandomAccess());
+		IRandomAccess input = createRandomAccess();
+		input.seek(getFirst() + offset);
+		return (COSObject) parser.parseElement(input);
 	}
 
 	public void parse(int index, COSDocumentParser parser) throws IOException,
@@ -125,7 +144,8 @@ public class COSObjectStream extends COSBasedObject {
 			return;
 		}
 		int offset = getOffsetByIndex(index, parser);
-		getRandomAccess().seek(getFirst() + offset);
-		parser.parseElement(getRandomAccess());
+		IRandomAccess input = createRandomAccess();
+		input.seek(getFirst() + offset);
+		parser.parseElement(input);
 	}
 }
@@ -29,18 +29,23 @@
  */
 package de.intarsys.pdf.st;
 
+import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -54,9 +59,13 @@ import de.intarsys.pdf.cos.COSName;
 import de.intarsys.pdf.cos.COSNull;
 import de.intarsys.pdf.cos.COSObject;
 import de.intarsys.pdf.cos.COSObjectKey;
+import de.intarsys.pdf.cos.COSObjectProxy;
 import de.intarsys.pdf.cos.COSObjectWalkerDeep;
+import de.intarsys.pdf.cos.COSObjectWalkerShallow;
+import de.intarsys.pdf.cos.COSStream;
 import de.intarsys.pdf.cos.COSTrailer;
 import de.intarsys.pdf.cos.COSVisitorException;
+import de.intarsys.pdf.cos.ICOSProxyVisitor;
 import de.intarsys.pdf.crypt.AccessPermissionsFull;
 import de.intarsys.pdf.crypt.COSSecurityException;
 import de.intarsys.pdf.crypt.IAccessPermissions;
@@ -82,8 +91,15 @@ import de.intarsys.tools.locator.ILocator;
 import de.intarsys.tools.locator.ILocatorSupport;
 import de.intarsys.tools.locator.TransientLocator;
 import de.intarsys.tools.message.MessageBundle;
+import de.intarsys.tools.pool.GenericPool;
+import de.intarsys.tools.pool.IPool;
+import de.intarsys.tools.pool.IPoolObjectFactory;
 import de.intarsys.tools.randomaccess.BufferedRandomAccess;
+import de.intarsys.tools.randomaccess.IPositionalRead;
 import de.intarsys.tools.randomaccess.IRandomAccess;
+import de.intarsys.tools.randomaccess.RandomAccessCursor;
+import de.intarsys.tools.randomaccess.RandomAccessMappedFile;
+import de.intarsys.tools.randomaccess.RandomAccessOutputStream;
 import de.intarsys.tools.stream.StreamTools;
 
 /**
@@ -120,6 +136,35 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 	 */
 	private static final MessageBundle Msg = PACKAGE.Messages;
 
+	/**
+	 * Creation option: if {@link Boolean#TRUE}, objects of a read only
+	 * document may be loaded concurrently.
+	 * 
+	 * @see #setConcurrentRead(boolean)
+	 */
+	public static final String OPTION_CONCURRENTREAD = "concurrentRead"; //$NON-NLS-1$
+
+	/**
+	 * Save option: if {@link Boolean#TRUE}, objects are packed into object
+	 * streams and the x ref section is written as a stream.
+	 */
+	public static final String OPTION_COMPACT = "compact"; //$NON-NLS-1$
+
+	/**
+	 * Save option: an {@link ExecutorService} encoding the streams
+	 * concurrently while the objects are written, or {@link Boolean#TRUE} to
+	 * use a pool with one thread per processor for this save.
+	 * 
+	 * @see COSWriter#setEncodingExecutor(ExecutorService)
+	 */
+	public static final String OPTION_ENCODINGEXECUTOR = "encodingExecutor"; //$NON-NLS-1$
+
+	/**
+	 * Save option: the maximum number of objects in an object stream when
+	 * {@link #OPTION_COMPACT} is set.
+	 */
+	public static final String OPTION_OBJECTSTREAMSIZE = "objectStreamSize"; //$NON-NLS-1$
+
 	public static final String OPTION_WRITEMODEHINT = "writeModeHint"; //$NON-NLS-1$
 
 	/**
@@ -165,6 +210,8 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 				Map.Entry entry = (Map.Entry) it.next();
 				result.setAttribute(entry.getKey(), entry.getValue());
 			}
+			result.setConcurrentRead(Boolean.TRUE.equals(options
+					.get(OPTION_CONCURRENTREAD)));
 		}
 		result.initializeFromLocator();
 		return result;
@@ -212,6 +259,33 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 
 	private boolean closed = false;
 
+	/**
+	 * Flag if objects may be loaded concurrently
+	 */
+	private boolean concurrentRead = false;
+
+	/**
+	 * The {@link RandomAccessCursor} instances for loading concurrently
+	 */
+	final private IPool cursorPool = new GenericPool(
+			new IPoolObjectFactory() {
+				public void activateObject(Object obj) throws Exception {
+					//
+				}
+
+				public Object createObject() throws Exception {
+					return new RandomAccessCursor(getPositionalRead());
+				}
+
+				public void deactivateObject(Object obj) throws Exception {
+					//
+				}
+
+				public void destroyObject(Object obj) throws Exception {
+					//
+				}
+			});
+
 	/**
 	 * Flag if this document is changed
 	 */
@@ -233,6 +307,11 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 	 */
 	private COSIndirectObject[] objects = new COSIndirectObject[100];
 
+	/**
+	 * The lock for {@link #objects}, which is replaced when growing.
+	 */
+	final private Object objectsLock = new Object();
+
 	/**
 	 * The locator for the document physics
 	 */
@@ -318,7 +397,7 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 	 *            The new indirect object.
 	 */
 	public void addObjectReference(COSIndirectObject newRef) {
-		synchronized (objects) {
+		synchronized (objectsLock) {
 			int index = newRef.getObjectNumber();
 			ensureLength(index);
 			objects[index] = newRef;
@@ -404,6 +483,29 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 		return getXRefSection();
 	}
 
+	/**
+	 * Create a new {@link STStreamXRefSection} for writing the changes,
+	 * regardless of the format of the current x ref section.
+	 * 
+	 * @return A new {@link STStreamXRefSection} for writing the changes.
+	 */
+	public STStreamXRefSection createNewXRefStreamSection() {
+		STXRefSection xRefSection = createNewXRefSection();
+		if (xRefSection instanceof STStreamXRefSection) {
+			return (STStreamXRefSection) xRefSection;
+		}
+		STStreamXRefSection result = new STStreamXRefSection(this);
+		COSDictionary trailer = result.cosGetDict();
+		trailer.addAll(xRefSection.cosGetDict());
+		trailer.remove(COSTrailer.DK_Prev);
+		trailer.remove(COSTrailer.DK_Size);
+		trailer.remove(STXRefSection.DK_XRefStm);
+		if (xRefSection.getPrevious() != null) {
+			result.setPrevious(xRefSection.getPrevious());
+		}
+		return result;
+	}
+
 	/**
 	 * Create a new valid key for use in the document.
 	 * 
@@ -433,6 +535,10 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 		if (baseAccess.isReadOnly()) {
 			pLocator.setReadOnly();
 		}
+		if (baseAccess instanceof RandomAccessMappedFile) {
+			// no buffering needed
+			return baseAccess;
+		}
 		BufferedRandomAccess bufferedAccess = new BufferedRandomAccess(
 				baseAccess, 4096);
 		return bufferedAccess;
@@ -491,7 +597,7 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 		emptyTrailer.remove(STXRefSection.DK_XRefStm);
 		setXRefSection(emptyXRefSection);
 		// prepare new object collection
-		synchronized (objects) {
+		synchronized (objectsLock) {
 			Arrays.fill(objects, null);
 		}
 		synchronized (nextKey) {
@@ -634,7 +740,7 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 	 */
 	public COSIndirectObject getObjectReference(int objectNumber,
 			int generationNumber) {
-		synchronized (objects) {
+		synchronized (objectsLock) {
 			COSIndirectObject result = null;
 			if (objectNumber < objects.length) {
 				result = objects[objectNumber];
@@ -656,6 +762,27 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 		return parser;
 	}
 
+	/**
+	 * The {@link IPositionalRead} to the documents data or <code>null</code>.
+	 * <p>
+	 * Positional reads do not interfere with the documents
+	 * {@link IRandomAccess} and may be used without holding the access lock
+	 * as long as the document is read only.
+	 * 
+	 * @return The {@link IPositionalRead} to the documents data or
+	 *         <code>null</code>.
+	 */
+	public IPositionalRead getPositionalRead() {
+		IRandomAccess access = getRandomAccess();
+		if (access instanceof BufferedRandomAccess) {
+			access = ((BufferedRandomAccess) access).getRandomAccess();
+		}
+		if (access instanceof IPositionalRead) {
+			return (IPositionalRead) access;
+		}
+		return null;
+	}
+
 	/**
 	 * The random access object for the documents data. Be aware that using the
 	 * IRandomAccess after it is closed will throw an IOException.
@@ -718,6 +845,42 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 		return xRefSection;
 	}
 
+	/**
+	 * <code>true</code> if a changed object contains a {@link COSObjectProxy}
+	 * that is not yet resolved. Proxies exist in memory only, so they can
+	 * only be contained in changed objects.
+	 * 
+	 * @return <code>true</code> if a changed object contains an unresolved
+	 *         {@link COSObjectProxy}.
+	 */
+	protected boolean hasChangedProxy() {
+		class ProxyDetector extends COSObjectWalkerShallow implements
+				ICOSProxyVisitor {
+			private boolean found = false;
+
+			public Object visitFromProxy(COSObjectProxy proxy) {
+				found = true;
+				return null;
+			}
+		}
+		List<COSIndirectObject> objects;
+		synchronized (changes) {
+			objects = new ArrayList<COSIndirectObject>(changes);
+		}
+		ProxyDetector detector = new ProxyDetector();
+		for (COSIndirectObject object : objects) {
+			try {
+				object.dereference().accept(detector);
+			} catch (COSVisitorException e) {
+				// won't happen
+			}
+			if (detector.found) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public void incrementalGarbageCollect() {
 		final Set unknown;
 		synchronized (changes) {
@@ -794,6 +957,38 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 		return closed;
 	}
 
+	/**
+	 * <code>true</code> if objects are loaded concurrently.
+	 * <p>
+	 * This is only true if concurrent reading is requested, the document is
+	 * read only and its data supports positional reads.
+	 * 
+	 * @return <code>true</code> if objects are loaded concurrently.
+	 */
+	public boolean isConcurrentRead() {
+		return concurrentRead && isReadOnly() && (getPositionalRead() != null);
+	}
+
+	/**
+	 * <code>true</code> if <code>input</code> reads the documents data,
+	 * either directly or via a cursor used for concurrent loading.
+	 * 
+	 * @param input
+	 *            The {@link IRandomAccess} to check.
+	 * @return <code>true</code> if <code>input</code> reads the documents
+	 *         data.
+	 */
+	public boolean isDataAccess(IRandomAccess input) {
+		if (input == null) {
+			return false;
+		}
+		if (input == getRandomAccess()) {
+			return true;
+		}
+		return (input instanceof RandomAccessCursor)
+				&& (((RandomAccessCursor) input).getSource() == getPositionalRead());
+	}
+
 	/**
 	 * <code>true</code> if this has been changed.
 	 * 
@@ -864,6 +1059,9 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 
 	protected COSObject load(int objectNumber) throws IOException,
 			COSLoadException {
+		if (isConcurrentRead()) {
+			return loadConcurrent(objectNumber);
+		}
 		synchronized (getAccessLock()) {
 			if (isClosed()) {
 				return COSNull.NULL;
@@ -873,6 +1071,45 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 		}
 	}
 
+	/**
+	 * Load a COSObject without holding the access lock, using a private parser
+	 * and {@link RandomAccessCursor}.
+	 * 
+	 * @param objectNumber
+	 *            The number of the object to load.
+	 * @return The loaded object.
+	 * @throws IOException
+	 * @throws COSLoadException
+	 */
+	protected COSObject loadConcurrent(int objectNumber) throws IOException,
+			COSLoadException {
+		if (isClosed()) {
+			return COSNull.NULL;
+		}
+		IPositionalRead source = getPositionalRead();
+		RandomAccessCursor cursor;
+		try {
+			cursor = (RandomAccessCursor) cursorPool.checkout(-1);
+		} catch (Exception e) {
+			throw ExceptionTools.createIOException("can't create cursor", e); //$NON-NLS-1$
+		}
+		if (cursor.getSource() != source) {
+			// data has been replaced
+			cursor = new RandomAccessCursor(source);
+		}
+		try {
+			return getXRefSection().load(objectNumber,
+					new COSDocumentParser(this), cursor,
+					getReadSecurityHandler());
+		} finally {
+			try {
+				cursorPool.checkin(cursor);
+			} catch (Exception e) {
+				// ignore
+			}
+		}
+	}
+
 	public void loadAll() throws IOException, COSLoadException {
 		synchronized (getAccessLock()) {
 			if (isClosed()) {
@@ -891,7 +1128,7 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 	 */
 	public int loadedSize() {
 		int result = 0;
-		synchronized (objects) {
+		synchronized (objectsLock) {
 			for (COSIndirectObject io : objects) {
 				if (!io.isSwapped()) {
 					result++;
@@ -964,7 +1201,7 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 	 */
 	public void reparseFromLocator() throws IOException, COSLoadException {
 		synchronized (getAccessLock()) {
-			int offset = getParser().searchLastStartXRef(getRandomAccess());
+			long offset = getParser().searchLastStartXRef(getRandomAccess());
 			AbstractXRefParser xRefParser;
 			if (getParser().isTokenXRefAt(getRandomAccess(), offset)) {
 				xRefParser = new XRefTrailerParser(this, getParser());
@@ -1041,7 +1278,7 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 			synchronized (changes) {
 				changes.clear();
 			}
-			synchronized (objects) {
+			synchronized (objectsLock) {
 				Arrays.fill(objects, null);
 			}
 			closed = false;
@@ -1065,9 +1302,6 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 		if (options == null) {
 			options = new HashMap();
 		}
-		if ((pLocator != null) && (pLocator != getLocator())) {
-			replaceLocator(pLocator);
-		}
 		boolean incremental = true;
 		EnumWriteMode writeMode = doc.getWriteModeHint();
 		// reset write mode
@@ -1081,6 +1315,16 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 		if (writeMode.isFull()) {
 			incremental = false;
 		}
+		if ((pLocator != null) && (pLocator != getLocator())) {
+			if (!incremental && (getRandomAccess() != null)
+					&& !pLocator.equals(getLocator())) {
+				// write directly, no need to copy the old data first
+				saveFull(pLocator, options);
+				readSecurityHandler = writeSecurityHandler;
+				return;
+			}
+			replaceLocator(pLocator);
+		}
 		IRandomAccess tempRandomAccess = getRandomAccess();
 		if (tempRandomAccess == null) {
 			throw new IOException("nowhere to write to"); //$NON-NLS-1$
@@ -1088,11 +1332,160 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 		if (tempRandomAccess.isReadOnly()) {
 			throw new FileNotFoundException("destination is read only"); //$NON-NLS-1$
 		}
-		COSWriter writer = new COSWriter(tempRandomAccess,
+		write(tempRandomAccess, incremental, true, options);
+		readSecurityHandler = writeSecurityHandler;
+	}
+
+	/**
+	 * Write this sequentially to <code>os</code>, for example to a network
+	 * connection or a pipe, without the need for a temporary file.
+	 * <p>
+	 * The document is written completely unless an incremental write is
+	 * requested via {@link #OPTION_WRITEMODEHINT}. In this case the documents
+	 * data is copied to <code>os</code> and the changes are appended.
+	 * <p>
+	 * The document keeps its locator, the next save to the locator will
+	 * write it completely. <code>os</code> is flushed but not closed.
+	 * Documents containing a {@link COSObjectProxy} (as used for signatures)
+	 * can't be written this way, as the proxy data is updated after the
+	 * fact. An {@link IOException} is thrown before anything is written in
+	 * this case.
+	 * 
+	 * @param os
+	 * @param options
+	 * @throws IOException
+	 */
+	public void save(OutputStream os, Map options) throws IOException {
+		if (hasChangedProxy()) {
+			throw new IOException(
+					"document with object proxy can't be written to a stream"); //$NON-NLS-1$
+		}
+		if (options == null) {
+			options = new HashMap();
+		}
+		boolean incremental = false;
+		EnumWriteMode writeMode = doc.getWriteModeHint();
+		if (writeMode.isUndefined()) {
+			Object tempHint = options.get(OPTION_WRITEMODEHINT);
+			if (tempHint instanceof EnumWriteMode) {
+				writeMode = (EnumWriteMode) tempHint;
+			}
+		}
+		if (writeMode.isIncremental() && (getRandomAccess() != null)
+				&& !isNew()) {
+			incremental = true;
+		}
+		IRandomAccess target = new RandomAccessOutputStream(
+				new BufferedOutputStream(os));
+		if (incremental) {
+			synchronized (getAccessLock()) {
+				IRandomAccess data = getRandomAccess();
+				byte[] buffer = new byte[StreamTools.MAX_BUFFER];
+				data.seek(0);
+				int count;
+				while ((count = data.read(buffer)) != -1) {
+					target.write(buffer, 0, count);
+				}
+			}
+		}
+		write(target, incremental, false, options);
+		target.flush();
+		if (!incremental) {
+			// the objects are held in memory, the documents data is no longer
+			// described by the x ref section
+			doc.setWriteModeHint(EnumWriteMode.FULL);
+		}
+	}
+
+	/**
+	 * Write the complete document to <code>newLocator</code> and make it
+	 * the new location of the documents data.
+	 * <p>
+	 * Unchanged stream bodies are copied from the current data to the new
+	 * data without being read into memory.
+	 * 
+	 * @param newLocator
+	 * @param options
+	 * @throws IOException
+	 */
+	protected void saveFull(ILocator newLocator, Map options)
+			throws IOException {
+		ILocator oldLocator = getLocator();
+		IRandomAccess newRandomAccess = createRandomAccess(newLocator);
+		COSWriter writer;
+		try {
+			if (newRandomAccess.isReadOnly()) {
+				throw new FileNotFoundException("destination is read only"); //$NON-NLS-1$
+			}
+			writer = write(newRandomAccess, false, true, options);
+		} catch (IOException e) {
+			StreamTools.close(newRandomAccess);
+			throw e;
+		} catch (RuntimeException e) {
+			StreamTools.close(newRandomAccess);
+			throw e;
+		}
+		synchronized (getAccessLock()) {
+			IRandomAccess oldRandomAccess = getRandomAccess();
+			setLocator(newLocator);
+			setRandomAccess(newRandomAccess);
+			// let the copied streams read from the new data
+			for (Iterator it = writer.getCopiedStreams().entrySet().iterator(); it
+					.hasNext();) {
+				Map.Entry entry = (Map.Entry) it.next();
+				COSStream stream = (COSStream) entry.getKey();
+				STStreamSource source = (STStreamSource) stream
+						.getEncodedSource();
+				long offset = ((Long) entry.getValue()).longValue();
+				stream.basicSetEncodedSource(new STStreamSource(this, source
+						.getDict(), offset, (int) source.getLength(), source
+						.getKey(), source.getSecurityHandler()));
+			}
+			StreamTools.close(oldRandomAccess);
+		}
+		triggerChanged(ATTR_LOCATOR, oldLocator, newLocator);
+	}
+
+	/**
+	 * Write this to <code>randomAccess</code>.
+	 * 
+	 * @param randomAccess
+	 * @param incremental
+	 * @param updateDocument
+	 *            <code>false</code> if <code>randomAccess</code> will not
+	 *            become the documents data.
+	 * @param options
+	 * @return The {@link COSWriter} used.
+	 * @throws IOException
+	 */
+	protected COSWriter write(IRandomAccess randomAccess, boolean incremental,
+			boolean updateDocument, Map options) throws IOException {
+		COSWriter writer = new COSWriter(randomAccess,
 				getWriteSecurityHandler());
 		writer.setIncremental(incremental);
-		writer.writeDocument(this);
-		readSecurityHandler = writeSecurityHandler;
+		writer.setUpdateDocument(updateDocument);
+		writer.setCompact(Boolean.TRUE.equals(options.get(OPTION_COMPACT)));
+		Object tempSize = options.get(OPTION_OBJECTSTREAMSIZE);
+		if (tempSize instanceof Integer) {
+			writer.setObjectStreamSize(((Integer) tempSize).intValue());
+		}
+		ExecutorService encodingExecutor = null;
+		Object tempExecutor = options.get(OPTION_ENCODINGEXECUTOR);
+		if (tempExecutor instanceof ExecutorService) {
+			writer.setEncodingExecutor((ExecutorService) tempExecutor);
+		} else if (Boolean.TRUE.equals(tempExecutor)) {
+			encodingExecutor = Executors.newFixedThreadPool(Runtime
+					.getRuntime().availableProcessors());
+			writer.setEncodingExecutor(encodingExecutor);
+		}
+		try {
+			writer.writeDocument(this);
+		} finally {
+			if (encodingExecutor != null) {
+				encodingExecutor.shutdownNow();
+			}
+		}
+		return writer;
 	}
 
 	final synchronized public Object setAttribute(Object key, Object value) {
@@ -1147,6 +1540,21 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 		}
 	}
 
+	/**
+	 * Request concurrent loading of objects.
+	 * <p>
+	 * When enabled on a read only document whose data supports positional
+	 * reads, objects are loaded without holding the documents access lock,
+	 * each thread using its own parser and cursor on the shared data. Loading
+	 * an indirect object is then synchronized on the object itself.
+	 * 
+	 * @param concurrentRead
+	 *            <code>true</code> to load objects concurrently.
+	 */
+	public void setConcurrentRead(boolean concurrentRead) {
+		this.concurrentRead = concurrentRead;
+	}
+
 	/**
 	 * Assign the {@link IRandomAccess} to the raw data.
 	 * 
@@ -1215,7 +1623,7 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 			STXRefSection initialXRefSection;
 			setDocType(getParser().parseHeader(getRandomAccess()));
 			try {
-				int offset = getParser().searchLastStartXRef(getRandomAccess());
+				long offset = getParser().searchLastStartXRef(getRandomAccess());
 				AbstractXRefParser xRefParser;
 				if (getParser().isTokenXRefAt(getRandomAccess(), offset)) {
 					xRefParser = new XRefTrailerParser(this, getParser());
@@ -1229,7 +1637,7 @@ public class STDocument implements INotificationSupport, IAttributeSupport,
 			} catch (Exception ex) {
 				Log.log(Level.FINEST, "error parsing " //$NON-NLS-1$
 						+ getLocator().getFullName(), ex);
-				synchronized (objects) {
+				synchronized (objectsLock) {
 					// must reset objects, catalog may already be read
 					Arrays.fill(objects, null);
 				}
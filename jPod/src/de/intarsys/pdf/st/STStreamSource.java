@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.pdf.st;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.intarsys.pdf.cos.COSDictionary;
+import de.intarsys.pdf.cos.COSObjectKey;
+import de.intarsys.pdf.cos.ICOSStreamSource;
+import de.intarsys.pdf.crypt.COSSecurityException;
+import de.intarsys.pdf.crypt.ISystemSecurityHandler;
+import de.intarsys.tools.randomaccess.IPositionalRead;
+import de.intarsys.tools.randomaccess.IRandomAccess;
+import de.intarsys.tools.stream.StreamTools;
+
+/**
+ * A {@link ICOSStreamSource} for a stream body located in the data of a
+ * {@link STDocument}.
+ * <p>
+ * The body is read using the documents random access. The random access is
+ * shared with the parser and writer, so all access is synchronized on the
+ * documents access lock and the random access position is restored after
+ * reading.
+ */
+public class STStreamSource implements ICOSStreamSource {
+
+	/**
+	 * An {@link InputStream} reading the body region in chunks, each chunk
+	 * under the documents access lock.
+	 */
+	protected class RegionInputStream extends InputStream {
+
+		private long position = 0;
+
+		@Override
+		public int read() throws IOException {
+			byte[] buffer = new byte[1];
+			int count = read(buffer, 0, 1);
+			if (count <= 0) {
+				return -1;
+			}
+			return buffer[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			long remaining = length - position;
+			if (remaining <= 0) {
+				return -1;
+			}
+			if (len > remaining) {
+				len = (int) remaining;
+			}
+			int count = basicRead(position, b, off, len);
+			if (count > 0) {
+				position += count;
+			}
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long remaining = length - position;
+			if (n > remaining) {
+				n = remaining;
+			}
+			if (n <= 0) {
+				return 0;
+			}
+			position += n;
+			return n;
+		}
+	}
+
+	private static final Logger Log = PACKAGE.Log;
+
+	/** The stream dictionary, needed for decryption */
+	final private COSDictionary dict;
+
+	/** The document containing the body */
+	final private STDocument doc;
+
+	/** The key of the object containing the stream, needed for decryption */
+	final private COSObjectKey key;
+
+	/** The number of bytes in the body */
+	final private int length;
+
+	/** The offset of the body in the documents data */
+	final private long offset;
+
+	/** The security handler to decrypt the body or <code>null</code> */
+	final private ISystemSecurityHandler securityHandler;
+
+	public STStreamSource(STDocument doc, COSDictionary dict, long offset,
+			int length, COSObjectKey key,
+			ISystemSecurityHandler securityHandler) {
+		super();
+		this.doc = doc;
+		this.dict = dict;
+		this.offset = offset;
+		this.length = length;
+		this.key = key;
+		this.securityHandler = securityHandler;
+	}
+
+	/**
+	 * Read up to <code>len</code> bytes starting at <code>position</code>
+	 * relative to the body start.
+	 * 
+	 * @param position
+	 * @param b
+	 * @param off
+	 * @param len
+	 * @return The number of bytes read or -1
+	 * @throws IOException
+	 */
+	protected int basicRead(long position, byte[] b, int off, int len)
+			throws IOException {
+		if (doc.isConcurrentRead()) {
+			IPositionalRead positionalRead = doc.getPositionalRead();
+			if (positionalRead != null) {
+				return positionalRead.read(offset + position, b, off, len);
+			}
+		}
+		synchronized (doc.getAccessLock()) {
+			IRandomAccess randomAccess = doc.getRandomAccess();
+			if (randomAccess == null) {
+				throw new IOException("document closed"); //$NON-NLS-1$
+			}
+			long oldOffset = randomAccess.getOffset();
+			try {
+				randomAccess.seek(offset + position);
+				return randomAccess.read(b, off, len);
+			} finally {
+				randomAccess.seek(oldOffset);
+			}
+		}
+	}
+
+	/**
+	 * Copy the body as it is stored in the documents data, without
+	 * decryption, to <code>target</code>. The body is copied in chunks and
+	 * never held in memory as a whole.
+	 * 
+	 * @param target
+	 * @throws IOException
+	 */
+	public void copyTo(IRandomAccess target) throws IOException {
+		byte[] buffer = new byte[Math.min(length, StreamTools.MAX_BUFFER)];
+		long position = 0;
+		while (position < length) {
+			int count = basicRead(position, buffer, 0, (int) Math.min(
+					buffer.length, length - position));
+			if (count <= 0) {
+				throw new IOException("unexpected end of stream data"); //$NON-NLS-1$
+			}
+			target.write(buffer, 0, count);
+			position += count;
+		}
+	}
+
+	protected byte[] decrypt(byte[] bytes) {
+		if ((securityHandler == null) || (key == null)) {
+			return bytes;
+		}
+		try {
+			return securityHandler.decryptStream(key, dict, bytes);
+		} catch (COSSecurityException e) {
+			Log.log(Level.WARNING, "error decrypting stream " + key, e); //$NON-NLS-1$
+			return bytes;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.cos.ICOSStreamSource#getBytes()
+	 */
+	public byte[] getBytes() throws IOException {
+		byte[] bytes = new byte[length];
+		int position = 0;
+		while (position < length) {
+			int count = basicRead(position, bytes, position, length - position);
+			if (count <= 0) {
+				throw new IOException("unexpected end of stream data"); //$NON-NLS-1$
+			}
+			position += count;
+		}
+		return decrypt(bytes);
+	}
+
+	public COSDictionary getDict() {
+		return dict;
+	}
+
+	public STDocument getDoc() {
+		return doc;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.cos.ICOSStreamSource#getInputStream()
+	 */
+	public InputStream getInputStream() throws IOException {
+		if ((securityHandler != null) && (key != null)) {
+			try {
+				return securityHandler.decryptStream(key, dict,
+						new RegionInputStream());
+			} catch (COSSecurityException e) {
+				Log.log(Level.WARNING, "error decrypting stream " + key, e); //$NON-NLS-1$
+				return new RegionInputStream();
+			}
+		}
+		return new RegionInputStream();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.intarsys.pdf.cos.ICOSStreamSource#getLength()
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * The key of the object containing the stream, used for decryption.
+	 * 
+	 * @return The key of the object containing the stream.
+	 */
+	public COSObjectKey getKey() {
+		return key;
+	}
+
+	/**
+	 * The offset of the body in the documents data.
+	 * 
+	 * @return The offset of the body in the documents data.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * The security handler decrypting the body or <code>null</code>.
+	 * 
+	 * @return The security handler decrypting the body.
+	 */
+	public ISystemSecurityHandler getSecurityHandler() {
+		return securityHandler;
+	}
+}
@@ -88,8 +88,11 @@ public class STStreamXRefSection extends STXRefSection {
 				cosGetDict().get(COSTrailer.DK_ID).copyShallow());
 		newXRefSection.cosGetDict().put(COSTrailer.DK_Root,
 				cosGetDict().get(COSTrailer.DK_Root));
-		newXRefSection.cosGetDict().put(COSTrailer.DK_Info,
-				cosGetDict().get(COSTrailer.DK_Info));
+		COSObject info = cosGetDict().get(COSTrailer.DK_Info);
+		if (!info.isIndirect()) {
+			info = info.copyShallow();
+		}
+		newXRefSection.cosGetDict().put(COSTrailer.DK_Info, info);
 		COSObject encrypt = cosGetDict().get(COSTrailer.DK_Encrypt);
 		if (!encrypt.isIndirect()) {
 			encrypt = encrypt.copyShallow();
@@ -35,8 +35,10 @@ import de.intarsys.pdf.cos.COSDictionary;
 import de.intarsys.pdf.cos.COSObject;
 import de.intarsys.pdf.cos.COSTrailer;
 import de.intarsys.pdf.crypt.ISystemSecurityHandler;
+import de.intarsys.pdf.parser.COSDocumentParser;
 import de.intarsys.pdf.parser.COSLoadException;
 import de.intarsys.pdf.writer.COSWriter;
+import de.intarsys.tools.randomaccess.IRandomAccess;
 
 /**
  * A section in a classical XRef.
@@ -96,17 +98,17 @@ public class STTrailerXRefSection extends STXRefSection {
 	}
 
 	@Override
-	public COSObject load(int objectNumber,
-			ISystemSecurityHandler securityHandler) throws IOException,
-			COSLoadException {
+	public COSObject load(int objectNumber, COSDocumentParser parser,
+			IRandomAccess input, ISystemSecurityHandler securityHandler)
+			throws IOException, COSLoadException {
 		if (getXRefStream() != null) {
-			COSObject loaded = getXRefStream().load(objectNumber,
-					securityHandler);
+			COSObject loaded = getXRefStream().load(objectNumber, parser,
+					input, securityHandler);
 			if (loaded != null) {
 				return loaded;
 			}
 		}
-		return super.load(objectNumber, securityHandler);
+		return super.load(objectNumber, parser, input, securityHandler);
 	}
 
 	public void setXRefStream(STStreamXRefSection xRefStream) {
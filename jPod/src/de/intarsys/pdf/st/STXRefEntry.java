@@ -33,7 +33,9 @@ import java.io.IOException;
 
 import de.intarsys.pdf.cos.COSObject;
 import de.intarsys.pdf.crypt.ISystemSecurityHandler;
+import de.intarsys.pdf.parser.COSDocumentParser;
 import de.intarsys.pdf.parser.COSLoadException;
+import de.intarsys.tools.randomaccess.IRandomAccess;
 
 /**
  * Abstract superclass for a XRef entry.
@@ -81,9 +83,46 @@ public abstract class STXRefEntry implements Comparable {
 
 	abstract public boolean isFree();
 
-	public abstract COSObject load(STDocument doc,
-			ISystemSecurityHandler securityHandler) throws IOException,
-			COSLoadException;
+	/**
+	 * Load the object for this entry using the documents parser and random
+	 * access.
+	 * 
+	 * @param doc
+	 *            The document containing the object.
+	 * @param securityHandler
+	 *            The security handler for decrypting the object.
+	 * @return The object for this entry.
+	 * @throws IOException
+	 * @throws COSLoadException
+	 */
+	public COSObject load(STDocument doc, ISystemSecurityHandler securityHandler)
+			throws IOException, COSLoadException {
+		return load(doc, doc.getParser(), doc.getRandomAccess(),
+				securityHandler);
+	}
+
+	/**
+	 * Load the object for this entry using <code>parser</code> on
+	 * <code>input</code>.
+	 * <p>
+	 * <code>input</code> must give access to the documents data. Callers
+	 * loading concurrently must use their own parser and random access.
+	 * 
+	 * @param doc
+	 *            The document containing the object.
+	 * @param parser
+	 *            The parser to use.
+	 * @param input
+	 *            The random access to the documents data.
+	 * @param securityHandler
+	 *            The security handler for decrypting the object.
+	 * @return The object for this entry.
+	 * @throws IOException
+	 * @throws COSLoadException
+	 */
+	public abstract COSObject load(STDocument doc, COSDocumentParser parser,
+			IRandomAccess input, ISystemSecurityHandler securityHandler)
+			throws IOException, COSLoadException;
 
 	@Override
 	public String toString() {
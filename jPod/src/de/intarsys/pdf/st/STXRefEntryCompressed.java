@@ -34,7 +34,9 @@ import java.io.IOException;
 import de.intarsys.pdf.cos.COSIndirectObject;
 import de.intarsys.pdf.cos.COSObject;
 import de.intarsys.pdf.crypt.ISystemSecurityHandler;
+import de.intarsys.pdf.parser.COSDocumentParser;
 import de.intarsys.pdf.parser.COSLoadException;
+import de.intarsys.tools.randomaccess.IRandomAccess;
 
 /**
  * An entry in a XRef stream.
@@ -127,7 +129,8 @@ public class STXRefEntryCompressed extends STXRefEntry {
 	}
 
 	@Override
-	public COSObject load(STDocument doc, ISystemSecurityHandler securityHandler)
+	public COSObject load(STDocument doc, COSDocumentParser parser,
+			IRandomAccess input, ISystemSecurityHandler securityHandler)
 			throws IOException, COSLoadException {
 		COSIndirectObject streamObjectRef = doc.getObjectReference(
 				getStreamObjectNumber(), getStreamGenerationNumber());
@@ -135,7 +138,7 @@ public class STXRefEntryCompressed extends STXRefEntry {
 		if ((objStrmIO != null) && !objStrmIO.isNull()) {
 			COSObjectStream strm = (COSObjectStream) COSObjectStream.META
 					.createFromCos(objStrmIO);
-			return strm.loadObject(index, doc.getParser());
+			return strm.loadObject(index, parser);
 		}
 		return null;
 	}
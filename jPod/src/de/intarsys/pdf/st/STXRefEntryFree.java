@@ -31,6 +31,8 @@ package de.intarsys.pdf.st;
 
 import de.intarsys.pdf.cos.COSObject;
 import de.intarsys.pdf.crypt.ISystemSecurityHandler;
+import de.intarsys.pdf.parser.COSDocumentParser;
+import de.intarsys.tools.randomaccess.IRandomAccess;
 
 /**
  * Represents a free object entry in a pdf xref table.
@@ -140,7 +142,8 @@ public class STXRefEntryFree extends STXRefEntry {
 	 * @see de.intarsys.pdf.storage.STXRefEntry#loadObject(de.intarsys.pdf.cos.COSIndirectObject)
 	 */
 	@Override
-	public COSObject load(STDocument doc, ISystemSecurityHandler securityHandler) {
+	public COSObject load(STDocument doc, COSDocumentParser parser,
+			IRandomAccess input, ISystemSecurityHandler securityHandler) {
 		return null;
 	}
 
@@ -33,7 +33,9 @@ import java.io.IOException;
 
 import de.intarsys.pdf.cos.COSObject;
 import de.intarsys.pdf.crypt.ISystemSecurityHandler;
+import de.intarsys.pdf.parser.COSDocumentParser;
 import de.intarsys.pdf.parser.COSLoadException;
+import de.intarsys.tools.randomaccess.IRandomAccess;
 
 /**
  * Represents an occupied object entry in a pdf xref table.
@@ -109,11 +111,11 @@ public class STXRefEntryOccupied extends STXRefEntry {
 	 * @see de.intarsys.pdf.storage.STXRefEntry#loadObject(de.intarsys.pdf.cos.COSIndirectObject)
 	 */
 	@Override
-	public COSObject load(STDocument doc, ISystemSecurityHandler securityHandler)
+	public COSObject load(STDocument doc, COSDocumentParser parser,
+			IRandomAccess input, ISystemSecurityHandler securityHandler)
 			throws IOException, COSLoadException {
-		doc.getRandomAccess().seek(getOffset());
-		return doc.getParser().parseIndirectObject(doc.getRandomAccess(),
-				securityHandler);
+		input.seek(getOffset());
+		return parser.parseIndirectObject(input, securityHandler);
 	}
 
 	public void setOffset(long offset) {
@@ -41,8 +41,10 @@ import de.intarsys.pdf.cos.COSName;
 import de.intarsys.pdf.cos.COSObject;
 import de.intarsys.pdf.cos.COSTrailer;
 import de.intarsys.pdf.crypt.ISystemSecurityHandler;
+import de.intarsys.pdf.parser.COSDocumentParser;
 import de.intarsys.pdf.parser.COSLoadException;
 import de.intarsys.pdf.writer.COSWriter;
+import de.intarsys.tools.randomaccess.IRandomAccess;
 
 /**
  * A section in a XRef.
@@ -229,20 +231,20 @@ public abstract class STXRefSection {
 	/**
 	 * @return offset of previous trailer dict or -1 if none exists
 	 */
-	public int getPreviousOffset() {
+	public long getPreviousOffset() {
 		COSInteger value = cosGetDict().get(COSTrailer.DK_Prev).asInteger();
 		if (value == null) {
 			return -1;
 		}
-		return value.intValue();
+		return value.longValue();
 	}
 
-	protected int getPreviousXRefStmOffset() {
+	protected long getPreviousXRefStmOffset() {
 		COSInteger value = cosGetDict().get(DK_XRefStm).asInteger();
 		if (value == null) {
 			return -1;
 		}
-		return value.intValue();
+		return value.longValue();
 	}
 
 	/**
@@ -269,12 +271,12 @@ public abstract class STXRefSection {
 
 	public abstract AbstractXRefWriter getWriter(COSWriter cosWriter);
 
-	protected int getXRefStmOffset() {
+	protected long getXRefStmOffset() {
 		COSInteger value = cosGetDict().get(DK_XRefStm).asInteger();
 		if (value == null) {
 			return -1;
 		}
-		return value.intValue();
+		return value.longValue();
 	}
 
 	/**
@@ -292,11 +294,20 @@ public abstract class STXRefSection {
 	public COSObject load(int objectNumber,
 			ISystemSecurityHandler securityHandler) throws IOException,
 			COSLoadException {
+		return load(objectNumber, getDoc().getParser(), getDoc()
+				.getRandomAccess(), securityHandler);
+	}
+
+	public COSObject load(int objectNumber, COSDocumentParser parser,
+			IRandomAccess input, ISystemSecurityHandler securityHandler)
+			throws IOException, COSLoadException {
 		if (contains(objectNumber)) {
-			return getEntry(objectNumber).load(getDoc(), securityHandler);
+			return getEntry(objectNumber).load(getDoc(), parser, input,
+					securityHandler);
 		}
 		if (getPrevious() != null) {
-			return getPrevious().load(objectNumber, securityHandler);
+			return getPrevious().load(objectNumber, parser, input,
+					securityHandler);
 		}
 		return null;
 	}
@@ -321,7 +332,7 @@ public abstract class STXRefSection {
 	}
 
 	protected void setPreviousOffset(long offset) {
-		cosGetDict().put(COSTrailer.DK_Prev, COSInteger.create((int) offset));
+		cosGetDict().put(COSTrailer.DK_Prev, COSInteger.create(offset));
 	}
 
 	protected void setSize(int size) {
@@ -329,7 +340,7 @@ public abstract class STXRefSection {
 	}
 
 	protected void setXRefStmOffset(long xrefStmOffset) {
-		cosGetDict().put(DK_XRefStm, COSInteger.create((int) xrefStmOffset));
+		cosGetDict().put(DK_XRefStm, COSInteger.create(xrefStmOffset));
 	}
 
 	protected void setXRefSubsection(STXRefSubsection newXRef) {
@@ -134,7 +134,7 @@ public class XRefFallbackParser extends AbstractXRefParser {
 					if (Arrays.equals(PDFParser.TOKEN_obj, token)) {
 						getXRefSection().addEntry(
 								new STXRefEntryOccupied(objNumber, genNumber,
-										(int) offset));
+										offset));
 						continue;
 					}
 				}
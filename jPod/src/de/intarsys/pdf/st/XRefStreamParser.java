@@ -74,10 +74,15 @@ public class XRefStreamParser extends AbstractXRefParser {
 
 	protected void loadPrevious(IRandomAccess randomAccess,
 			STXRefSection xRefSection) throws IOException, COSLoadException {
-		int offset = xRefSection.getPreviousOffset();
+		long offset = xRefSection.getPreviousOffset();
 		if (offset != -1) {
-			AbstractXRefParser parser = new XRefStreamParser(getDoc(),
-					getParser());
+			AbstractXRefParser parser;
+			if (getParser().isTokenXRefAt(randomAccess, offset)) {
+				// a stream update to a classical x ref
+				parser = new XRefTrailerParser(getDoc(), getParser());
+			} else {
+				parser = new XRefStreamParser(getDoc(), getParser());
+			}
 			randomAccess.seek(offset);
 			STXRefSection xrefStream = parser.parse(randomAccess);
 			xRefSection.setPrevious(xrefStream);
@@ -139,7 +144,7 @@ public class XRefStreamParser extends AbstractXRefParser {
 	}
 
 	private STXRefEntry parseType1(ByteArrayInputStream pIn, int objectNumber) {
-		int offset = read(pIn, wSize[1], -1);
+		long offset = readLong(pIn, wSize[1], -1);
 		int genNum = read(pIn, wSize[2], 0);
 		return new STXRefEntryOccupied(objectNumber, genNum, offset);
 	}
@@ -170,10 +175,15 @@ public class XRefStreamParser extends AbstractXRefParser {
 	}
 
 	private int read(ByteArrayInputStream pIn, int numBytes, int defaultValue) {
+		return (int) readLong(pIn, numBytes, defaultValue);
+	}
+
+	private long readLong(ByteArrayInputStream pIn, int numBytes,
+			long defaultValue) {
 		if (numBytes == 0) {
 			return defaultValue;
 		}
-		int result = 0;
+		long result = 0;
 		for (int i = 0; i < numBytes; i++) {
 			result <<= 8;
 			result += pIn.read();
@@ -35,6 +35,8 @@ import java.util.Iterator;
 import de.intarsys.pdf.cos.COSArray;
 import de.intarsys.pdf.cos.COSIndirectObject;
 import de.intarsys.pdf.cos.COSInteger;
+import de.intarsys.pdf.cos.COSStream;
+import de.intarsys.pdf.filter.Filter;
 import de.intarsys.pdf.writer.COSWriter;
 import de.intarsys.tools.randomaccess.RandomAccessByteArray;
 
@@ -98,13 +100,11 @@ public class XRefStreamWriter extends AbstractXRefWriter {
 		super(cosWriter);
 	}
 
-	private int byteSizeOf(int number) {
-		int mask = 0xff000000;
-		for (int size = 4; size > 0; size--) {
-			if ((number & mask) != 0) {
+	private int byteSizeOf(long number) {
+		for (int size = 8; size > 0; size--) {
+			if ((number >>> ((size - 1) * 8)) != 0) {
 				return size;
 			}
-			mask = mask >> 8;
 		}
 		return 0;
 	}
@@ -113,8 +113,10 @@ public class XRefStreamWriter extends AbstractXRefWriter {
 	protected void finish(STXRefSection xRefSection) throws IOException {
 		byte[] innerBytes = ((RandomAccessByteArray) getRandomAccess())
 				.toByteArray();
-		((STStreamXRefSection) xRefSection).cosGetStream().setDecodedBytes(
-				innerBytes);
+		COSStream stream = ((STStreamXRefSection) xRefSection).cosGetStream();
+		stream.getDict().put(COSStream.DK_Filter, Filter.CN_Filter_FlateDecode);
+		stream.getDict().remove(COSStream.DK_DecodeParms);
+		stream.setDecodedBytes(innerBytes);
 		getCosWriter().writeIndirectObject(
 				((STStreamXRefSection) xRefSection).cosGetStream()
 						.getIndirectObject());
@@ -172,7 +174,7 @@ public class XRefStreamWriter extends AbstractXRefWriter {
 		}
 		wSize = new int[3];
 		wSize[0] = 1;
-		wSize[1] = byteSizeOf((int) search.getHighestOffset());
+		wSize[1] = byteSizeOf(search.getHighestOffset());
 		wSize[2] = byteSizeOf(search.getHighestGeneration());
 
 		COSArray wArray = COSArray.create(3);
@@ -190,25 +192,15 @@ public class XRefStreamWriter extends AbstractXRefWriter {
 		index.add(COSInteger.create(section.getSize()));
 	}
 
-	private void write(int data, int numBytes) throws IOException {
-		switch (numBytes) {
-		case 4:
-			getRandomAccess().write((data & 0xFF000000) >> 24);
-		case 3:
-			getRandomAccess().write((data & 0x00FF0000) >> 16);
-		case 2:
-			getRandomAccess().write((data & 0x0000FF00) >> 8);
-		case 1:
-			getRandomAccess().write(data & 0x000000FF);
-			break;
-		default:
-
-			// should not happen
+	private void write(long data, int numBytes) throws IOException {
+		// big endian, high order byte first
+		for (int i = numBytes - 1; i >= 0; i--) {
+			getRandomAccess().write((int) ((data >>> (i * 8)) & 0xFF));
 		}
 	}
 
 	@Override
-	protected void write(int col1, int col2, byte[] type) throws IOException {
+	protected void write(long col1, int col2, byte[] type) throws IOException {
 		getRandomAccess().write(type);
 		write(col1, wSize[1]);
 		write(col2, wSize[2]);
@@ -49,7 +49,7 @@ public class XRefTrailerParser extends AbstractXRefParser {
 
 	protected void loadPrevious(IRandomAccess randomAccess,
 			STXRefSection xRefSection) throws IOException, COSLoadException {
-		int xrefStreamOffset = xRefSection.getXRefStmOffset();
+		long xrefStreamOffset = xRefSection.getXRefStmOffset();
 		if (xrefStreamOffset != -1) {
 			// this is for the mixed mode
 			AbstractXRefParser parser = new XRefStreamParser(getDoc(),
@@ -64,7 +64,7 @@ public class XRefTrailerParser extends AbstractXRefParser {
 				// ignore, just like adobe does...
 			}
 		}
-		int offset = xRefSection.getPreviousOffset();
+		long offset = xRefSection.getPreviousOffset();
 		if (offset != -1) {
 			AbstractXRefParser parser = new XRefTrailerParser(getDoc(),
 					getParser());
@@ -88,7 +88,7 @@ public class XRefTrailerParser extends AbstractXRefParser {
 	}
 
 	private STXRefEntry parseEntry(int objectNumber, byte[] entryBytes) {
-		int offset = 0;
+		long offset = 0;
 		for (int i = 0; i < 10; i++) {
 			offset = (offset * 10) + (entryBytes[i] - '0');
 		}
@@ -102,7 +102,7 @@ public class XRefTrailerParser extends AbstractXRefParser {
 		if (inuse) {
 			return new STXRefEntryOccupied(objectNumber, generation, offset);
 		}
-		return new STXRefEntryFree(objectNumber, generation, offset);
+		return new STXRefEntryFree(objectNumber, generation, (int) offset);
 	}
 
 	protected STXRefSection parseXRef(IRandomAccess randomAccess)
@@ -98,9 +98,9 @@ public class XRefTrailerWriter extends AbstractXRefWriter {
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see de.intarsys.pdf.storage.AbstractXRefWriter#write(int, int, byte[])
+	 * @see de.intarsys.pdf.storage.AbstractXRefWriter#write(long, int, byte[])
 	 */
-	protected void write(int col1, int col2, byte[] type) throws IOException {
+	protected void write(long col1, int col2, byte[] type) throws IOException {
 		String stCol1 = XRefTrailerWriter.FORMAT_XREF_OFFSET.format(col1);
 		String stCol2 = XRefTrailerWriter.FORMAT_XREF_GENERATION.format(col2);
 		getRandomAccess().write(StringTools.toByteArray(stCol1));
@@ -33,10 +33,14 @@ import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import de.intarsys.pdf.content.CSContent;
 import de.intarsys.pdf.content.CSOperation;
@@ -51,19 +55,27 @@ import de.intarsys.pdf.cos.COSInteger;
 import de.intarsys.pdf.cos.COSName;
 import de.intarsys.pdf.cos.COSNull;
 import de.intarsys.pdf.cos.COSObject;
+import de.intarsys.pdf.cos.COSObjectKey;
 import de.intarsys.pdf.cos.COSObjectProxy;
 import de.intarsys.pdf.cos.COSStream;
 import de.intarsys.pdf.cos.COSString;
+import de.intarsys.pdf.cos.COSTrailer;
 import de.intarsys.pdf.cos.COSVisitorException;
 import de.intarsys.pdf.cos.ICOSObjectVisitor;
 import de.intarsys.pdf.cos.ICOSProxyVisitor;
+import de.intarsys.pdf.cos.ICOSStreamSource;
 import de.intarsys.pdf.crypt.COSSecurityException;
 import de.intarsys.pdf.crypt.ISystemSecurityHandler;
+import de.intarsys.pdf.filter.Filter;
 import de.intarsys.pdf.parser.PDFParser;
 import de.intarsys.pdf.st.AbstractXRefWriter;
+import de.intarsys.pdf.st.COSObjectStream;
 import de.intarsys.pdf.st.STDocument;
+import de.intarsys.pdf.st.STStreamSource;
+import de.intarsys.pdf.st.STXRefEntryCompressed;
 import de.intarsys.pdf.st.STXRefEntryOccupied;
 import de.intarsys.pdf.st.STXRefSection;
+import de.intarsys.tools.exception.ExceptionTools;
 import de.intarsys.tools.hex.HexTools;
 import de.intarsys.tools.randomaccess.IRandomAccess;
 import de.intarsys.tools.randomaccess.RandomAccessByteArray;
@@ -90,6 +102,12 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 
 	public static final byte[] DICT_OPEN = "<<".getBytes(); //$NON-NLS-1$
 
+	/**
+	 * The default maximum number of objects packed into a single object stream
+	 * in compact mode.
+	 */
+	public static final int DEFAULT_OBJECTSTREAM_SIZE = 100;
+
 	/** a fast lookup for serializing digits */
 	protected static final char[] DIGITS = new char[] { '0', '1', '2', '3',
 			'4', '5', '6', '7', '8', '9', '9' };
@@ -172,6 +190,11 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 		randomAccess.write(StringTools.toByteArray(Integer.toString(value)));
 	}
 
+	public static void basicWriteInteger(IRandomAccess randomAccess, long value)
+			throws IOException {
+		randomAccess.write(StringTools.toByteArray(Long.toString(value)));
+	}
+
 	/**
 	 * create the byte stream for the representation of a name
 	 * 
@@ -270,12 +293,46 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 		return tempRandom.toByteArray();
 	}
 
+	private boolean compact = false;
+
+	/**
+	 * Flag if the document state is updated to the data written.
+	 */
+	private boolean updateDocument = true;
+
+	/**
+	 * The streams copied from their source, with the offset of their body in
+	 * the data written.
+	 */
+	private Map<COSStream, Long> copiedStreams = new IdentityHashMap<COSStream, Long>();
+
 	private COSIndirectObject currentObject;
 
+	/**
+	 * The encodings running or waiting to be written, when streams are
+	 * encoded ahead of the serialization.
+	 */
+	private Map<COSStream, Future<?>> encodings;
+
+	private ExecutorService encodingExecutor;
+
 	private ISystemSecurityHandler securityHandler;
 
 	private boolean incremental = true;
 
+	/**
+	 * The maximum number of stream encodings running or waiting to be
+	 * written.
+	 */
+	private int maxPendingEncodings = Runtime.getRuntime()
+			.availableProcessors() * 2;
+
+	/**
+	 * The maximum number of objects packed into a single object stream in
+	 * compact mode.
+	 */
+	private int objectStreamSize = DEFAULT_OBJECTSTREAM_SIZE;
+
 	/** flag to prevent generating two newlines in sequence */
 	private boolean onNewLine = false;
 
@@ -311,27 +368,46 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 		}
 		synchronized (doc.getAccessLock()) {
 			if (!isIncremental()) {
+				if (doc.isDataAccess(getRandomAccess())) {
+					detachStreams(doc);
+				}
 				getRandomAccess().setLength(0);
 				writeHeader(doc);
 			}
 			Collection changes = doc.getChanges();
 			if (changes.size() > 0) {
 				seekToEnd();
-				STXRefSection xrefSection = doc.createNewXRefSection();
+				STXRefSection xrefSection;
+				if (isCompact()) {
+					xrefSection = doc.createNewXRefStreamSection();
+				} else {
+					xrefSection = doc.createNewXRefSection();
+				}
 				if (getSecurityHandler() != null) {
 					getSecurityHandler()
 							.updateTrailer(xrefSection.cosGetDict());
 				}
+				List<COSIndirectObject> compressible = new ArrayList<COSIndirectObject>();
+				List<COSIndirectObject> objects = new ArrayList<COSIndirectObject>(
+						changes.size());
 				for (Iterator it = changes.iterator(); it.hasNext();) {
 					COSIndirectObject object = (COSIndirectObject) it.next();
-					writeEntry(xrefSection, object);
-					object.setDirty(false);
+					if (isCompact() && isCompressible(xrefSection, object)) {
+						// keep dirty (and in memory) until written
+						compressible.add(object);
+						continue;
+					}
+					objects.add(object);
 				}
+				writeEntries(xrefSection, objects);
+				writeObjectStreams(xrefSection, compressible);
 				seekToEnd();
 				writeXRef(xrefSection);
 				writeEOF();
-				doc.setXRefSection(xrefSection);
-				doc.setDirty(false);
+				if (isUpdateDocument()) {
+					doc.setXRefSection(xrefSection);
+					doc.setDirty(false);
+				}
 			}
 			for (Iterator it = getProxies().iterator(); it.hasNext();) {
 				COSObjectProxy proxy = (COSObjectProxy) it.next();
@@ -345,6 +421,61 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 		// todo 1 change dirty
 	}
 
+	/**
+	 * Read all stream bodies still residing in the documents data into memory
+	 * before the data is overwritten.
+	 * 
+	 * @param doc
+	 */
+	protected void detachStreams(STDocument doc) {
+		for (Iterator it = doc.getChanges().iterator(); it.hasNext();) {
+			COSIndirectObject object = (COSIndirectObject) it.next();
+			COSObject dereferenced = object.dereference();
+			if (dereferenced instanceof COSStream) {
+				((COSStream) dereferenced).detachEncodedSource();
+			}
+		}
+	}
+
+	/**
+	 * Start the encoding of the streams among <code>objects</code>, from
+	 * <code>start</code> on, until {@link #getMaxPendingEncodings()} encodings
+	 * are running or waiting to be written.
+	 * 
+	 * @param objects
+	 *            The indirect objects to be written
+	 * @param start
+	 *            The index of the first object not yet examined
+	 * @return The index of the first object not yet examined
+	 */
+	protected int encodeAhead(List objects, int start) {
+		int index = start;
+		while ((index < objects.size())
+				&& (encodings.size() < Math.max(1, getMaxPendingEncodings()))) {
+			COSObject object = ((COSIndirectObject) objects.get(index++))
+					.dereference();
+			if (!(object instanceof COSStream)) {
+				continue;
+			}
+			final COSStream stream = (COSStream) object;
+			if (!stream.isEncodingRequired() || stream.isExternal()
+					|| stream.getFilters().isNull()) {
+				continue;
+			}
+			// the writer holds the access lock while waiting for the
+			// encoding, which therefore must not load any objects
+			final List<COSObject> filterObjects = loadFilterObjects(stream);
+			encodings.put(stream, encodingExecutor.submit(new Runnable() {
+				public void run() {
+					stream.getEncodedBytes();
+					// release the filter objects kept reachable until now
+					filterObjects.clear();
+				}
+			}));
+		}
+		return index;
+	}
+
 	protected byte[] encryptStream(COSDictionary dict, byte[] bytes)
 			throws IOException {
 		if (getSecurityHandler() != null && getCurrentObject() != null) {
@@ -375,10 +506,85 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 		return bytes;
 	}
 
+	/**
+	 * The streams whose body was copied unchanged from the documents data,
+	 * with the offset of the body in the data written.
+	 * 
+	 * @return The streams copied from the documents data.
+	 */
+	public Map<COSStream, Long> getCopiedStreams() {
+		return copiedStreams;
+	}
+
 	protected COSIndirectObject getCurrentObject() {
 		return currentObject;
 	}
 
+	/**
+	 * The physical content of <code>stream</code>, waiting for its encoding
+	 * if it was started ahead of the serialization.
+	 * 
+	 * @param stream
+	 * @return The physical content of <code>stream</code>
+	 * @throws IOException
+	 */
+	protected byte[] getEncodedBytes(COSStream stream) throws IOException {
+		Future<?> encoding = null;
+		if (encodings != null) {
+			encoding = encodings.remove(stream);
+		}
+		if (encoding != null) {
+			try {
+				encoding.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw ExceptionTools.createIOException(
+						"stream encoding interrupted", e); //$NON-NLS-1$
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw ExceptionTools.createIOException(
+						"stream encoding failed", cause); //$NON-NLS-1$
+			}
+		}
+		return stream.getEncodedBytes();
+	}
+
+	/**
+	 * The {@link ExecutorService} encoding the streams ahead of the
+	 * serialization or <code>null</code>.
+	 * 
+	 * @return The {@link ExecutorService} encoding the streams.
+	 */
+	public ExecutorService getEncodingExecutor() {
+		return encodingExecutor;
+	}
+
+	/**
+	 * The maximum number of stream encodings running or waiting to be
+	 * written. This limits the memory held by encoded streams not yet written.
+	 * 
+	 * @return The maximum number of pending stream encodings.
+	 */
+	public int getMaxPendingEncodings() {
+		return maxPendingEncodings;
+	}
+
+	/**
+	 * The maximum number of objects packed into a single object stream in
+	 * compact mode.
+	 * 
+	 * @return The maximum number of objects in an object stream.
+	 */
+	public int getObjectStreamSize() {
+		return objectStreamSize;
+	}
+
 	/**
 	 * The collection of proxies to COSObjects visited by the writer.
 	 * 
@@ -396,6 +602,91 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 		return securityHandler;
 	}
 
+	/**
+	 * <code>true</code> if objects are packed into object streams and the x
+	 * ref section is written as a stream.
+	 * 
+	 * @return <code>true</code> if this writes in compact mode.
+	 */
+	public boolean isCompact() {
+		return compact;
+	}
+
+	/**
+	 * <code>true</code> if the document state is updated to the data written,
+	 * that is the objects are marked as saved and the new x ref section
+	 * becomes the documents x ref section.
+	 * 
+	 * @return <code>true</code> if the document state is updated.
+	 */
+	public boolean isUpdateDocument() {
+		return updateDocument;
+	}
+
+	/**
+	 * <code>true</code> if <code>object</code> may be stored in an object
+	 * stream. Streams, objects with a generation number other than 0 and the
+	 * encryption dictionary must be written directly.
+	 * 
+	 * @param xrefSection
+	 * @param object
+	 * @return <code>true</code> if <code>object</code> may be stored in an
+	 *         object stream.
+	 */
+	protected boolean isCompressible(STXRefSection xrefSection,
+			COSIndirectObject object) {
+		COSObjectKey key = object.getKey();
+		if ((key == null) || (key.getGenerationNumber() != 0)) {
+			return false;
+		}
+		COSObject dereferenced = object.dereference();
+		if (dereferenced instanceof COSStream) {
+			return false;
+		}
+		if (dereferenced == xrefSection.cosGetDict().get(COSTrailer.DK_Encrypt)) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * <code>true</code> if the body of <code>stream</code> can be copied
+	 * from <code>source</code> as it is.
+	 * <p>
+	 * This is the case when the source is not the data written to and the
+	 * body is encrypted exactly as it would be by this writer, that is, not
+	 * at all or with the same security handler and object key.
+	 * 
+	 * @param stream
+	 * @param source
+	 * @return <code>true</code> if the body of <code>stream</code> can be
+	 *         copied.
+	 */
+	protected boolean isCopyable(COSStream stream, STStreamSource source) {
+		if (source.getDoc().getRandomAccess() == getRandomAccess()) {
+			// the body would be overwritten while copying
+			return false;
+		}
+		if (stream.isExternal()) {
+			return false;
+		}
+		if (source.getSecurityHandler() != getSecurityHandler()) {
+			return false;
+		}
+		if (getSecurityHandler() == null) {
+			return true;
+		}
+		COSObjectKey sourceKey = source.getKey();
+		COSObjectKey key = getCurrentObject() == null ? null
+				: getCurrentObject().getKey();
+		if ((sourceKey == null) || (key == null)) {
+			return false;
+		}
+		return (sourceKey.getObjectNumber() == key.getObjectNumber())
+				&& (sourceKey.getGenerationNumber() == key
+						.getGenerationNumber());
+	}
+
 	public boolean isIncremental() {
 		return incremental;
 	}
@@ -409,6 +700,47 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 		return onNewLine;
 	}
 
+	/**
+	 * Load the filters and filter options of <code>stream</code>, including
+	 * the option values, any of which may be an indirect object.
+	 * <p>
+	 * The objects are returned to keep them reachable until the encoding is
+	 * done.
+	 * 
+	 * @param stream
+	 * @return The filters and filter options of <code>stream</code>
+	 */
+	protected List<COSObject> loadFilterObjects(COSStream stream) {
+		List<COSObject> result = new ArrayList<COSObject>();
+		COSObject filters = stream.getFilters();
+		result.add(filters);
+		if (filters instanceof COSArray) {
+			COSArray array = (COSArray) filters;
+			for (int i = 0; i < array.size(); i++) {
+				result.add(array.get(i));
+			}
+		}
+		COSObject options = stream.getDecodeParams();
+		List<COSObject> optionDicts = new ArrayList<COSObject>();
+		optionDicts.add(options);
+		if (options instanceof COSArray) {
+			COSArray array = (COSArray) options;
+			for (int i = 0; i < array.size(); i++) {
+				optionDicts.add(array.get(i));
+			}
+		}
+		for (COSObject option : optionDicts) {
+			result.add(option);
+			if (option instanceof COSDictionary) {
+				COSDictionary dict = (COSDictionary) option;
+				for (Iterator it = dict.keySet().iterator(); it.hasNext();) {
+					result.add(dict.get((COSName) it.next()));
+				}
+			}
+		}
+		return result;
+	}
+
 	protected void reset() {
 		onNewLine = false;
 	}
@@ -418,14 +750,82 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 		reset();
 	}
 
+	public void setCompact(boolean compact) {
+		this.compact = compact;
+	}
+
+	/**
+	 * Request if the document state should be updated to the data written.
+	 * <p>
+	 * When writing a copy that will not become the documents data, the
+	 * objects must stay in memory and the x ref section must stay valid for
+	 * the documents data.
+	 * 
+	 * @param updateDocument
+	 *            <code>false</code> to leave the document state untouched.
+	 */
+	public void setUpdateDocument(boolean updateDocument) {
+		this.updateDocument = updateDocument;
+	}
+
+	/**
+	 * Mark <code>object</code> as saved after it is written, if the document
+	 * state is updated.
+	 * 
+	 * @param object
+	 */
+	protected void setSaved(COSIndirectObject object) {
+		if (isUpdateDocument()) {
+			object.setDirty(false);
+		}
+	}
+
 	protected void setCurrentObject(COSIndirectObject currentObject) {
 		this.currentObject = currentObject;
 	}
 
+	/**
+	 * Assign an {@link ExecutorService} to encode the streams of the written
+	 * objects concurrently, ahead of the serialization. The executor is not
+	 * shut down by the writer.
+	 * 
+	 * @param encodingExecutor
+	 */
+	public void setEncodingExecutor(ExecutorService encodingExecutor) {
+		this.encodingExecutor = encodingExecutor;
+	}
+
 	public void setIncremental(boolean incremental) {
 		this.incremental = incremental;
 	}
 
+	/**
+	 * Set the maximum number of stream encodings running or waiting to be
+	 * written. Values below 1 are treated as 1.
+	 * 
+	 * @param maxPendingEncodings
+	 *            The maximum number of pending stream encodings.
+	 */
+	public void setMaxPendingEncodings(int maxPendingEncodings) {
+		this.maxPendingEncodings = maxPendingEncodings;
+	}
+
+	/**
+	 * Set the maximum number of objects packed into a single object stream in
+	 * compact mode.
+	 * 
+	 * @param objectStreamSize
+	 *            The maximum number of objects in an object stream, at least
+	 *            1.
+	 */
+	public void setObjectStreamSize(int objectStreamSize) {
+		if (objectStreamSize < 1) {
+			throw new IllegalArgumentException(
+					"object stream size must be positive"); //$NON-NLS-1$
+		}
+		this.objectStreamSize = objectStreamSize;
+	}
+
 	/**
 	 * visitFromArray.
 	 * 
@@ -596,7 +996,7 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 	 */
 	public Object visitFromInteger(COSInteger obj) throws COSVisitorException {
 		try {
-			basicWriteInteger(randomAccess, obj.intValue());
+			basicWriteInteger(randomAccess, obj.longValue());
 			onNewLine = false;
 		} catch (IOException e) {
 			throw new COSVisitorException(e);
@@ -673,11 +1073,23 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 			if (getSecurityHandler() != null) {
 				getSecurityHandler().pushContextObject(obj);
 			}
+			ICOSStreamSource source = obj.getEncodedSource();
+			if ((source instanceof STStreamSource)
+					&& isCopyable(obj, (STStreamSource) source)) {
+				writeStreamCopy(obj, (STStreamSource) source);
+				return null;
+			}
 			int length;
 			byte[] bytes = new byte[0];
 			if (!obj.isExternal()) {
 				// only standard (internal) streams have a writable byte content
-				bytes = obj.getEncodedBytes();
+				bytes = getEncodedBytes(obj);
+				if (isUpdateDocument() && (source instanceof STStreamSource)
+						&& !((STStreamSource) source).getDoc().isDataAccess(
+								getRandomAccess())) {
+					// the data written may replace the source, keep the bytes
+					obj.detachEncodedSource();
+				}
 			}
 			// MUST encrypt before dict is written - length may be changed
 			byte[] encrypted = encryptStream(obj.getDict(), bytes);
@@ -806,6 +1218,46 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 		close(doc);
 	}
 
+	/**
+	 * Write the indirect <code>objects</code> in sequence, adding their
+	 * entries to <code>xrefSection</code>.
+	 * <p>
+	 * If an encoding executor is assigned, the streams are encoded
+	 * concurrently ahead of the serialization. Encryption is still performed
+	 * by the serialization, so the output is the same as without an executor.
+	 * 
+	 * @param xrefSection
+	 * @param objects
+	 * @throws IOException
+	 */
+	protected void writeEntries(STXRefSection xrefSection, List objects)
+			throws IOException {
+		if (encodingExecutor == null) {
+			for (Iterator it = objects.iterator(); it.hasNext();) {
+				COSIndirectObject object = (COSIndirectObject) it.next();
+				writeEntry(xrefSection, object);
+				setSaved(object);
+			}
+			return;
+		}
+		encodings = new IdentityHashMap<COSStream, Future<?>>();
+		try {
+			int next = 0;
+			for (int i = 0; i < objects.size(); i++) {
+				next = encodeAhead(objects, Math.max(next, i));
+				COSIndirectObject object = (COSIndirectObject) objects.get(i);
+				writeEntry(xrefSection, object);
+				setSaved(object);
+			}
+		} finally {
+			for (Iterator<Future<?>> it = encodings.values().iterator(); it
+					.hasNext();) {
+				it.next().cancel(false);
+			}
+			encodings = null;
+		}
+	}
+
 	protected void writeEntry(STXRefSection xrefSection,
 			COSIndirectObject object) throws IOException {
 		STXRefEntryOccupied entry = new STXRefEntryOccupied(object
@@ -841,7 +1293,13 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 	 */
 	protected void writeHeader(STDocument stdoc) throws IOException {
 		write(COMMENT);
-		write(stdoc.getVersion().getBytes());
+		String version = stdoc.getVersion();
+		if (isCompact() && stdoc.getDocType().isPDF()
+				&& (stdoc.getDocType().getVersion().compareTo("1.5") < 0)) { //$NON-NLS-1$
+			// object and x ref streams require PDF 1.5
+			version = stdoc.getDocType().getTypeName() + "-1.5"; //$NON-NLS-1$
+		}
+		write(version.getBytes());
 		writeEOL();
 		write(COMMENT);
 		write(GARBAGE);
@@ -904,6 +1362,89 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 		}
 	}
 
+	/**
+	 * Pack <code>objects</code> into a new object stream and write it.
+	 * <p>
+	 * Objects within the stream are not encrypted individually, the object
+	 * stream as a whole is encrypted instead. Objects that reserve space for
+	 * later update (see {@link COSObjectProxy}) are written directly.
+	 * 
+	 * @param xrefSection
+	 * @param objects
+	 * @throws IOException
+	 */
+	protected void writeObjectStream(STXRefSection xrefSection, List objects)
+			throws IOException {
+		COSStream stream = COSStream.create(null);
+		COSIndirectObject streamObject = stream.getIndirectObject();
+		COSObjectKey streamKey = xrefSection.getDoc().createObjectKey();
+		streamObject.setKey(streamKey);
+		RandomAccessByteArray header = new RandomAccessByteArray(null);
+		RandomAccessByteArray body = new RandomAccessByteArray(null);
+		COSWriter bodyWriter = new COSWriter(body, null);
+		int index = 0;
+		for (Iterator it = objects.iterator(); it.hasNext();) {
+			COSIndirectObject object = (COSIndirectObject) it.next();
+			long offset = body.getOffset();
+			bodyWriter.writeObject(object.dereference());
+			if (!bodyWriter.getProxies().isEmpty()) {
+				// undo, proxies must be resolved in the file itself
+				body.setLength(offset);
+				body.seek(offset);
+				bodyWriter.getProxies().clear();
+				seekToEnd();
+				writeEntry(xrefSection, object);
+				setSaved(object);
+				continue;
+			}
+			bodyWriter.writeEOL();
+			basicWriteInteger(header, object.getObjectNumber());
+			header.write(SPACE);
+			basicWriteInteger(header, offset);
+			header.write(SPACE);
+			xrefSection.addEntry(new STXRefEntryCompressed(object
+					.getObjectNumber(), 0, streamKey.getObjectNumber(),
+					streamKey.getGenerationNumber(), index));
+			setSaved(object);
+			index++;
+		}
+		if (index == 0) {
+			return;
+		}
+		byte[] headerBytes = header.toByteArray();
+		byte[] bodyBytes = body.toByteArray();
+		byte[] content = new byte[headerBytes.length + bodyBytes.length];
+		System.arraycopy(headerBytes, 0, content, 0, headerBytes.length);
+		System.arraycopy(bodyBytes, 0, content, headerBytes.length,
+				bodyBytes.length);
+		COSDictionary dict = stream.getDict();
+		dict.put(COSObjectStream.DK_Type, COSObjectStream.CN_Type_ObjStm);
+		dict.put(COSObjectStream.DK_N, COSInteger.create(index));
+		dict.put(COSObjectStream.DK_First, COSInteger
+				.create(headerBytes.length));
+		dict.put(COSStream.DK_Filter, Filter.CN_Filter_FlateDecode);
+		stream.setDecodedBytes(content);
+		seekToEnd();
+		writeEntry(xrefSection, streamObject);
+	}
+
+	/**
+	 * Pack <code>objects</code> into as many object streams as needed with
+	 * regard to {@link #getObjectStreamSize()}.
+	 * 
+	 * @param xrefSection
+	 * @param objects
+	 * @throws IOException
+	 */
+	protected void writeObjectStreams(STXRefSection xrefSection, List objects)
+			throws IOException {
+		int size = getObjectStreamSize();
+		for (int start = 0; start < objects.size(); start += size) {
+			int end = Math.min(start + size, objects.size());
+			writeObjectStream(xrefSection, objects.subList(start, end));
+		}
+	}
+
 	protected void writeOperation(CSOperation obj) throws COSVisitorException,
 			IOException {
 		if (obj.matchesOperator(CSOperators.CSO_EI) && obj.operandSize() == 1) {
@@ -918,6 +1459,34 @@ public class COSWriter implements ICOSObjectVisitor, ICOSProxyVisitor {
 		write(obj.getOperatorToken());
 	}
 
+	/**
+	 * Write <code>stream</code>, copying the body unchanged from
+	 * <code>source</code>.
+	 * 
+	 * @param stream
+	 * @param source
+	 * @throws IOException
+	 * @throws COSVisitorException
+	 */
+	protected void writeStreamCopy(COSStream stream, STStreamSource source)
+			throws IOException, COSVisitorException {
+		// /Length must state the stored (encrypted) number of bytes
+		COSDocumentElement oldLength = stream.getDict().basicPutSilent(
+				COSStream.DK_Length, COSInteger.create(source.getLength()));
+		stream.getDict().accept(this);
+		if (oldLength != null) {
+			stream.getDict().basicPutSilent(COSStream.DK_Length, oldLength);
+		}
+		writeCRLF();
+		write(STREAM);
+		writeCRLF();
+		copiedStreams.put(stream, new Long(getRandomAccess().getOffset()));
+		source.copyTo(getRandomAccess());
+		writeCRLF();
+		write(ENDSTREAM);
+		writeEOL();
+	}
+
 	protected void writeStreamContent(byte[] bytes) throws IOException {
 		write(STREAM);
 		writeCRLF();
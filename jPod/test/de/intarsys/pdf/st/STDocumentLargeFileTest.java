@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2007, intarsys consulting GmbH
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * - Neither the name of intarsys nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific
+ *   prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.intarsys.pdf.st;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.intarsys.pdf.parser.COSLoadException;
+import de.intarsys.pdf.pd.PDDocument;
+import de.intarsys.pdf.pd.PDPage;
+import de.intarsys.tools.locator.FileLocator;
+
+/**
+ * Write and read objects and x ref sections beyond 2 GB.
+ * <p>
+ * The documents are extended by a sparse gap of NUL bytes (white space in
+ * PDF), so the test needs little disk space on file systems supporting sparse
+ * files.
+ */
+public class STDocumentLargeFileTest {
+
+	/**
+	 * The size of the gap, beyond the range of an int
+	 */
+	private static final long GAP = 3L << 30;
+
+	private File file;
+
+	/**
+	 * Create a document with a single page and extend it beyond
+	 * {@link #GAP}. The gap is followed by a startxref pointing to the
+	 * original x ref section, so that the next incremental save is appended
+	 * beyond the gap.
+	 *
+	 * @param compact
+	 * @throws IOException
+	 */
+	protected void createDocument(boolean compact) throws IOException {
+		PDDocument doc = PDDocument.createNew();
+		doc.addPageNode((PDPage) PDPage.META.createNew());
+		Map options = new HashMap();
+		options.put(STDocument.OPTION_COMPACT, Boolean.valueOf(compact));
+		doc.save(new FileLocator(file), options);
+		long xrefOffset = doc.cosGetDoc().stGetDoc().getXRefSection()
+				.getOffset();
+		doc.close();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		try {
+			raf.setLength(GAP);
+			raf.seek(GAP);
+			raf.writeBytes("\nstartxref\n" + xrefOffset + "\n%%EOF\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			raf.close();
+		}
+	}
+
+	protected PDDocument open() throws IOException, COSLoadException {
+		return PDDocument.createFromLocator(new FileLocator(file));
+	}
+
+	/**
+	 * Change the rotation of the first page in two incremental saves beyond
+	 * the gap and read it back after each save.
+	 *
+	 * @param compact
+	 * @throws Exception
+	 */
+	protected void roundTrip(boolean compact) throws Exception {
+		createDocument(compact);
+		for (int rotate = 90; rotate <= 180; rotate += 90) {
+			PDDocument doc = open();
+			try {
+				doc.getPageTree().getFirstPage().setRotate(rotate);
+				Map options = new HashMap();
+				options.put(STDocument.OPTION_COMPACT, Boolean.valueOf(compact));
+				doc.save(doc.getLocator(), options);
+			} finally {
+				doc.close();
+			}
+			assertTrue(file.length() > GAP);
+			doc = open();
+			try {
+				STDocument stDoc = doc.cosGetDoc().stGetDoc();
+				assertTrue(stDoc.getXRefSection().getOffset() > GAP);
+				assertEquals(rotate, doc.getPageTree().getFirstPage()
+						.getRotate());
+			} finally {
+				doc.close();
+			}
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("large", ".pdf"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testXRefStream() throws Exception {
+		roundTrip(true);
+	}
+
+	@Test
+	public void testXRefTable() throws Exception {
+		roundTrip(false);
+	}
+}
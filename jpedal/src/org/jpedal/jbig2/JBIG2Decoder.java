@@ -89,6 +89,28 @@ public class JBIG2Decoder {
 		streamDecoder.setGlobalData(data);
 	}
 
+	/**
+	 * Decodes PDF global data only, so that the result can be shared by
+	 * other decoders via setGlobalDecoder(...) instead of decoding the same
+	 * global data for every image.
+	 * @param data global data
+	 * @throws IOException
+	 * @throws JBIG2Exception
+	 */
+	public void decodeGlobalData(byte[] data) throws IOException, JBIG2Exception {
+		streamDecoder.decodeGlobalData(data);
+	}
+
+	/**
+	 * Use the global data already decoded by <code>globals</code>. The
+	 * segments of <code>globals</code> are not modified, so the same decoder
+	 * may be shared between threads.  Call this method before decodeJBIG2(...)
+	 * @param globals decoder holding the global data
+	 */
+	public void setGlobalDecoder(JBIG2Decoder globals) {
+		streamDecoder.setGlobalDecoder(globals.streamDecoder);
+	}
+
 	/**
 	 * Decodes a JBIG2 image from a File object
 	 * @param file File to decode
@@ -80,11 +80,13 @@ public class JBIG2StreamDecoder {
 
 	private int noOfPages = -1;
 
-	private List segments = new ArrayList();
-	private List bitmaps = new ArrayList();
+	private List<Segment> segments = new ArrayList<Segment>();
+	private List<JBIG2Bitmap> bitmaps = new ArrayList<JBIG2Bitmap>();
 
 	private byte[] globalData;
 
+	private JBIG2StreamDecoder globalDecoder;
+
 	private ArithmeticDecoder arithmeticDecoder;
 
 	private HuffmanDecoder huffmanDecoder;
@@ -101,6 +103,36 @@ public class JBIG2StreamDecoder {
 		globalData = data;
 	}
 
+	/**
+	 * Use the segments already read by <code>decoder</code> as global data
+	 * instead of reading them again. The segments of <code>decoder</code> are
+	 * only read, so one decoder may serve any number of others, even
+	 * concurrently.
+	 */
+	public void setGlobalDecoder(JBIG2StreamDecoder decoder) {
+		globalDecoder = decoder;
+	}
+
+	/**
+	 * Read the segments of PDF global data (no file header) into this decoder,
+	 * so that it can be used with {@link #setGlobalDecoder(JBIG2StreamDecoder)}.
+	 */
+	public void decodeGlobalData(byte[] data) throws IOException, JBIG2Exception {
+		reader = new StreamReader(data);
+
+		resetDecoder();
+
+		noOfPagesKnown = true;
+		randomAccessOrganisation = false;
+		noOfPages = 1;
+
+		huffmanDecoder = new HuffmanDecoder(reader);
+		mmrDecoder = new MMRDecoder(reader);
+		arithmeticDecoder = new ArithmeticDecoder(reader);
+
+		readSegments();
+	}
+
 	public void decodeJBIG2(byte[] data) throws IOException, JBIG2Exception {
 		reader = new StreamReader(data);
 
@@ -122,7 +154,13 @@ public class JBIG2StreamDecoder {
 			noOfPages = 1;
 
 			/** check to see if there is any global data to be read */
-			if (globalData != null) {
+			if (globalDecoder != null) {
+				/** the global segments are already read, share them */
+				segments.addAll(globalDecoder.segments);
+				bitmaps.addAll(globalDecoder.bitmaps);
+
+				reader.movePointer(-8);
+			} else if (globalData != null) {
 				/** set the reader to read from the global data */
 				reader = new StreamReader(globalData);
 
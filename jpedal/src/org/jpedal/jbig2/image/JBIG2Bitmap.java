@@ -56,7 +56,6 @@ import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.BitSet;
 
 import org.jpedal.jbig2.JBIG2Exception;
 import org.jpedal.jbig2.decoders.ArithmeticDecoder;
@@ -70,11 +69,15 @@ public final class JBIG2Bitmap {
 
 	private int width, height, line;
 	private int bitmapNumber;
-	//private FastBitSet data;
 
-	private BitSet data;
-	
-	//private static int counter = 0;
+	/**
+	 * The pixels, packed into rows of <code>line</code> bytes. The leftmost
+	 * pixel of a byte is its most significant bit, 1 is black. The bits
+	 * padding a row to the byte boundary are always 0.
+	 * <p>
+	 * This is the layout returned by {@link #getData(boolean)}.
+	 */
+	private byte[] data;
 	
 	private ArithmeticDecoder arithmeticDecoder;
 	private HuffmanDecoder huffmanDecoder;
@@ -89,7 +92,7 @@ public final class JBIG2Bitmap {
 		
 		this.line = (width + 7) >> 3;
 
-		this.data = new BitSet(width * height);
+		this.data = new byte[height * line];
 	}
 
 	public void readBitmap(boolean useMMR, int template, boolean typicalPredictionGenericDecodingOn, boolean useSkip, JBIG2Bitmap skipBitmap, short[] adaptiveTemplateX, short[] adaptiveTemplateY, int mmrDataLength) throws IOException, JBIG2Exception {
@@ -244,9 +247,7 @@ public final class JBIG2Bitmap {
 				codingLine[codingI++] = width;
 
 				for (int j = 0; codingLine[j] < width; j += 2) {
-					for (int col = codingLine[j]; col < codingLine[j + 1]; col++) {
-						setPixel(col, row, 1);
-					}
+					setPixels(row, codingLine[j], codingLine[j + 1]);
 				}
 			}
 
@@ -263,9 +264,6 @@ public final class JBIG2Bitmap {
 
 			//ArithmeticDecoder arithmeticDecoder = ArithmeticDecoder.getInstance();
 
-			BitmapPointer cxPtr0 = new BitmapPointer(this), cxPtr1 = new BitmapPointer(this);
-			BitmapPointer atPtr0 = new BitmapPointer(this), atPtr1 = new BitmapPointer(this), atPtr2 = new BitmapPointer(this), atPtr3 = new BitmapPointer(this);
-
 			long ltpCX = 0;
 			if (typicalPredictionGenericDecodingOn) {
 				switch (template) {
@@ -285,7 +283,16 @@ public final class JBIG2Bitmap {
 			}
 
 			boolean ltp = false;
-			long cx, cx0, cx1, cx2;
+			int cx, cx0, cx1, cx2;
+
+			/*
+			 * The context is computed incrementally: cx0, cx1 and cx2 hold the
+			 * template pixels of the two rows above and of the current row,
+			 * each step shifts in the pixel entering the template from the
+			 * packed rows. Rows outside the bitmap have an offset of -1 and
+			 * read as 0.
+			 */
+			int at0X = adaptiveTemplateX[0];
 
 			for (int row = 0; row < height; row++) {
 				if (typicalPredictionGenericDecodingOn) {
@@ -302,126 +309,100 @@ public final class JBIG2Bitmap {
 
 				int pixel;
 
+				int offset = row * line;
+				int offset1 = getRowOffset(row - 1);
+				int offset2 = getRowOffset(row - 2);
+				int at0 = getRowOffset(row + adaptiveTemplateY[0]);
+
 				switch (template) {
 				case 0:
 
-					cxPtr0.setPointer(0, row - 2);
-					cx0 = cxPtr0.nextPixel();
-					cx0 = (BinaryOperation.bit32Shift(cx0, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr0.nextPixel();
-
-					cxPtr1.setPointer(0, row - 1);
-					cx1 = cxPtr1.nextPixel();
-
-					cx1 = (BinaryOperation.bit32Shift(cx1, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr1.nextPixel();
-					cx1 = (BinaryOperation.bit32Shift(cx1, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr1.nextPixel();
+					int at1X = adaptiveTemplateX[1], at2X = adaptiveTemplateX[2], at3X = adaptiveTemplateX[3];
+					int at1 = getRowOffset(row + adaptiveTemplateY[1]);
+					int at2 = getRowOffset(row + adaptiveTemplateY[2]);
+					int at3 = getRowOffset(row + adaptiveTemplateY[3]);
 
+					cx0 = (getPixelAt(offset2, 0) << 1) | getPixelAt(offset2, 1);
+					cx1 = (getPixelAt(offset1, 0) << 2) | (getPixelAt(offset1, 1) << 1) | getPixelAt(offset1, 2);
 					cx2 = 0;
 
-					atPtr0.setPointer(adaptiveTemplateX[0], row + adaptiveTemplateY[0]);
-					atPtr1.setPointer(adaptiveTemplateX[1], row + adaptiveTemplateY[1]);
-					atPtr2.setPointer(adaptiveTemplateX[2], row + adaptiveTemplateY[2]);
-					atPtr3.setPointer(adaptiveTemplateX[3], row + adaptiveTemplateY[3]);
-
 					for (int col = 0; col < width; col++) {
 
-						cx = (BinaryOperation.bit32Shift(cx0, 13, BinaryOperation.LEFT_SHIFT)) | (BinaryOperation.bit32Shift(cx1, 8, BinaryOperation.LEFT_SHIFT)) | (BinaryOperation.bit32Shift(cx2, 4, BinaryOperation.LEFT_SHIFT)) | (atPtr0.nextPixel() << 3) | (atPtr1.nextPixel() << 2) | (atPtr2.nextPixel() << 1) | atPtr3.nextPixel();
+						cx = (cx0 << 13) | (cx1 << 8) | (cx2 << 4) | (getPixelAt(at0, col + at0X) << 3) | (getPixelAt(at1, col + at1X) << 2) | (getPixelAt(at2, col + at2X) << 1) | getPixelAt(at3, col + at3X);
 
 						if (useSkip && skipBitmap.getPixel(col, row) != 0) {
 							pixel = 0;
 						} else {
 							pixel = arithmeticDecoder.decodeBit(cx, arithmeticDecoder.genericRegionStats);
 							if (pixel != 0) {
-								setPixel(col, row, 1);
+								data[offset + (col >> 3)] |= 0x80 >> (col & 7);
 							}
 						}
 
-						cx0 = ((BinaryOperation.bit32Shift(cx0, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr0.nextPixel()) & 0x07;
-						cx1 = ((BinaryOperation.bit32Shift(cx1, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr1.nextPixel()) & 0x1f;
-						cx2 = ((BinaryOperation.bit32Shift(cx2, 1, BinaryOperation.LEFT_SHIFT)) | pixel) & 0x0f;
+						cx0 = ((cx0 << 1) | getPixelAt(offset2, col + 2)) & 0x07;
+						cx1 = ((cx1 << 1) | getPixelAt(offset1, col + 3)) & 0x1f;
+						cx2 = ((cx2 << 1) | pixel) & 0x0f;
 					}
 					break;
 
 				case 1:
 
-					cxPtr0.setPointer(0, row - 2);
-					cx0 = cxPtr0.nextPixel();
-					cx0 = (BinaryOperation.bit32Shift(cx0, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr0.nextPixel();
-					cx0 = (BinaryOperation.bit32Shift(cx0, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr0.nextPixel();
-
-					cxPtr1.setPointer(0, row - 1);
-					cx1 = cxPtr1.nextPixel();
-					cx1 = (BinaryOperation.bit32Shift(cx1, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr1.nextPixel();
-					cx1 = (BinaryOperation.bit32Shift(cx1, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr1.nextPixel();
-
+					cx0 = (getPixelAt(offset2, 0) << 2) | (getPixelAt(offset2, 1) << 1) | getPixelAt(offset2, 2);
+					cx1 = (getPixelAt(offset1, 0) << 2) | (getPixelAt(offset1, 1) << 1) | getPixelAt(offset1, 2);
 					cx2 = 0;
 
-					atPtr0.setPointer(adaptiveTemplateX[0], row + adaptiveTemplateY[0]);
-
 					for (int col = 0; col < width; col++) {
 
-						cx = (BinaryOperation.bit32Shift(cx0, 9, BinaryOperation.LEFT_SHIFT)) | (BinaryOperation.bit32Shift(cx1, 4, BinaryOperation.LEFT_SHIFT)) | (BinaryOperation.bit32Shift(cx2, 1, BinaryOperation.LEFT_SHIFT)) | atPtr0.nextPixel();
+						cx = (cx0 << 9) | (cx1 << 4) | (cx2 << 1) | getPixelAt(at0, col + at0X);
 
 						if (useSkip && skipBitmap.getPixel(col, row) != 0) {
 							pixel = 0;
 						} else {
 							pixel = arithmeticDecoder.decodeBit(cx, arithmeticDecoder.genericRegionStats);
 							if (pixel != 0) {
-								setPixel(col, row, 1);
+								data[offset + (col >> 3)] |= 0x80 >> (col & 7);
 							}
 						}
 
-						cx0 = ((BinaryOperation.bit32Shift(cx0, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr0.nextPixel()) & 0x0f;
-						cx1 = ((BinaryOperation.bit32Shift(cx1, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr1.nextPixel()) & 0x1f;
-						cx2 = ((BinaryOperation.bit32Shift(cx2, 1, BinaryOperation.LEFT_SHIFT)) | pixel) & 0x07;
+						cx0 = ((cx0 << 1) | getPixelAt(offset2, col + 3)) & 0x0f;
+						cx1 = ((cx1 << 1) | getPixelAt(offset1, col + 3)) & 0x1f;
+						cx2 = ((cx2 << 1) | pixel) & 0x07;
 					}
 					break;
 
 				case 2:
 
-					cxPtr0.setPointer(0, row - 2);
-					cx0 = cxPtr0.nextPixel();
-					cx0 = (BinaryOperation.bit32Shift(cx0, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr0.nextPixel();
-
-					cxPtr1.setPointer(0, row - 1);
-					cx1 = cxPtr1.nextPixel();
-					cx1 = (BinaryOperation.bit32Shift(cx1, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr1.nextPixel();
-
+					cx0 = (getPixelAt(offset2, 0) << 1) | getPixelAt(offset2, 1);
+					cx1 = (getPixelAt(offset1, 0) << 1) | getPixelAt(offset1, 1);
 					cx2 = 0;
 
-					atPtr0.setPointer(adaptiveTemplateX[0], row + adaptiveTemplateY[0]);
-
 					for (int col = 0; col < width; col++) {
 
-						cx = (BinaryOperation.bit32Shift(cx0, 7, BinaryOperation.LEFT_SHIFT)) | (BinaryOperation.bit32Shift(cx1, 3, BinaryOperation.LEFT_SHIFT)) | (BinaryOperation.bit32Shift(cx2, 1, BinaryOperation.LEFT_SHIFT)) | atPtr0.nextPixel();
+						cx = (cx0 << 7) | (cx1 << 3) | (cx2 << 1) | getPixelAt(at0, col + at0X);
 
 						if (useSkip && skipBitmap.getPixel(col, row) != 0) {
 							pixel = 0;
 						} else {
 							pixel = arithmeticDecoder.decodeBit(cx, arithmeticDecoder.genericRegionStats);
 							if (pixel != 0) {
-								setPixel(col, row, 1);
+								data[offset + (col >> 3)] |= 0x80 >> (col & 7);
 							}
 						}
 
-						cx0 = ((BinaryOperation.bit32Shift(cx0, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr0.nextPixel()) & 0x07;
-						cx1 = ((BinaryOperation.bit32Shift(cx1, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr1.nextPixel()) & 0x0f;
-						cx2 = ((BinaryOperation.bit32Shift(cx2, 1, BinaryOperation.LEFT_SHIFT)) | pixel) & 0x03;
+						cx0 = ((cx0 << 1) | getPixelAt(offset2, col + 2)) & 0x07;
+						cx1 = ((cx1 << 1) | getPixelAt(offset1, col + 2)) & 0x0f;
+						cx2 = ((cx2 << 1) | pixel) & 0x03;
 					}
 					break;
 
 				case 3:
 
-					cxPtr1.setPointer(0, row - 1);
-					cx1 = cxPtr1.nextPixel();
-					cx1 = (BinaryOperation.bit32Shift(cx1, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr1.nextPixel();
-
+					cx1 = (getPixelAt(offset1, 0) << 1) | getPixelAt(offset1, 1);
 					cx2 = 0;
 
-					atPtr0.setPointer(adaptiveTemplateX[0], row + adaptiveTemplateY[0]);
-
 					for (int col = 0; col < width; col++) {
 
-						cx = (BinaryOperation.bit32Shift(cx1, 5, BinaryOperation.LEFT_SHIFT)) | (BinaryOperation.bit32Shift(cx2, 1, BinaryOperation.LEFT_SHIFT)) | atPtr0.nextPixel();
+						cx = (cx1 << 5) | (cx2 << 1) | getPixelAt(at0, col + at0X);
 
 						if (useSkip && skipBitmap.getPixel(col, row) != 0) {
 							pixel = 0;
@@ -429,12 +410,12 @@ public final class JBIG2Bitmap {
 						} else {
 							pixel = arithmeticDecoder.decodeBit(cx, arithmeticDecoder.genericRegionStats);
 							if (pixel != 0) {
-								setPixel(col, row, 1);
+								data[offset + (col >> 3)] |= 0x80 >> (col & 7);
 							}
 						}
 
-						cx1 = ((BinaryOperation.bit32Shift(cx1, 1, BinaryOperation.LEFT_SHIFT)) | cxPtr1.nextPixel()) & 0x1f;
-						cx2 = ((BinaryOperation.bit32Shift(cx2, 1, BinaryOperation.LEFT_SHIFT)) | pixel) & 0x0f;
+						cx1 = ((cx1 << 1) | getPixelAt(offset1, col + 2)) & 0x1f;
+						cx2 = ((cx2 << 1) | pixel) & 0x0f;
 					}
 					break;
 				}
@@ -792,109 +773,102 @@ public final class JBIG2Bitmap {
 	}
 
 	public void clear(int defPixel) {
-		data.set(0, data.size(), defPixel == 1);
+		Arrays.fill(data, defPixel == 1 ? (byte) 0xff : (byte) 0);
+		if (defPixel == 1) {
+			clearPadding();
+		}
 	}
 
-	public void combine(JBIG2Bitmap bitmap, int x, int y, long combOp) {
-		int srcWidth = bitmap.width;
-		int srcHeight = bitmap.height;
-		int srcRow = 0, srcCol = 0;
-		
-//		int maxRow = y + srcHeight;
-//		int maxCol = x + srcWidth;
-//
-//		for (int row = y; row < maxRow; row++) {
-//			for (int col = x; col < maxCol; srcCol += 8, col += 8) {
-//
-//				byte srcPixelByte = bitmap.getPixelByte(srcCol, srcRow);
-//				byte dstPixelByte = getPixelByte(col, row);
-//				byte endPixelByte;
-//
-//				switch ((int) combOp) {
-//				case 0: // or
-//					endPixelByte = (byte) (dstPixelByte | srcPixelByte);
-//					break;
-//				case 1: // and
-//					endPixelByte = (byte) (dstPixelByte & srcPixelByte);
-//					break;
-//				case 2: // xor
-//					endPixelByte = (byte) (dstPixelByte ^ srcPixelByte);
-//					break;
-//				case 3: // xnor
-//					endPixelByte = (byte) ~(dstPixelByte ^ srcPixelByte);
-//					break;
-//				case 4: // replace
-//				default:
-//					endPixelByte = srcPixelByte;
-//					break;
-//				}
-//				int used = maxCol - col;
-//				if (used < 8) {
-//					// mask bits
-//					endPixelByte = (byte) ((endPixelByte & (0xFF >> (8 - used))) | (dstPixelByte & (0xFF << (used))));
-//				}
-//				setPixelByte(col, row, endPixelByte);
-//			}
-//
-//			srcCol = 0;
-//			srcRow++;
-		
-		for (int row = y; row < y + srcHeight; row++) {
-			for (int col = x; col < x + srcWidth; col++) {
+	/**
+	 * Reset the bits padding each row to the byte boundary.
+	 */
+	private void clearPadding() {
+		int padding = (line << 3) - width;
+		if (padding == 0) {
+			return;
+		}
+		byte mask = (byte) (0xff << padding);
+		for (int index = line - 1; index < data.length; index += line) {
+			data[index] &= mask;
+		}
+	}
 
-				int srcPixel = bitmap.getPixel(srcCol, srcRow);
+	/**
+	 * Combine <code>bitmap</code> into this at <code>x</code>,
+	 * <code>y</code>. The rows are processed a destination byte at a time,
+	 * pixels outside this bitmap are ignored.
+	 */
+	public void combine(JBIG2Bitmap bitmap, int x, int y, long combOp) {
+		int startCol = Math.max(x, 0);
+		int endCol = Math.min(x + bitmap.width, width);
+		int startRow = Math.max(y, 0);
+		int endRow = Math.min(y + bitmap.height, height);
+		if (startCol >= endCol || startRow >= endRow) {
+			return;
+		}
+		int op = (int) combOp;
+		if (op < 0 || op > 4) {
+			return;
+		}
 
-				switch ((int) combOp) {
+		byte[] srcData = bitmap.data;
+		for (int row = startRow; row < endRow; row++) {
+			int srcOffset = (row - y) * bitmap.line;
+			int dstOffset = row * line;
+
+			int col = startCol;
+			while (col < endCol) {
+				int shift = col & 7;
+				int count = Math.min(8 - shift, endCol - col);
+				int mask = (0xff >> shift) & (0xff << (8 - shift - count));
+				int src = (getByte(srcData, srcOffset, bitmap.line, col - x) >> shift);
+				int index = dstOffset + (col >> 3);
+				int dst = data[index];
+
+				int result;
+				switch (op) {
 				case 0: // or
-					setPixel(col, row, getPixel(col, row) | srcPixel);
+					result = dst | src;
 					break;
 				case 1: // and
-					setPixel(col, row, getPixel(col, row) & srcPixel);
+					result = dst & src;
 					break;
 				case 2: // xor
-					setPixel(col, row, getPixel(col, row) ^ srcPixel);
+					result = dst ^ src;
 					break;
 				case 3: // xnor
-					if ((getPixel(col, row) == 1 && srcPixel == 1) || (getPixel(col, row) == 0 && srcPixel == 0))
-						setPixel(col, row, 1);
-					else
-						setPixel(col, row, 0);
-
+					result = ~(dst ^ src);
 					break;
-				case 4: // replace
-					setPixel(col, row, srcPixel);
+				default: // replace
+					result = src;
 					break;
 				}
-				srcCol++;
+				data[index] = (byte) ((dst & ~mask) | (result & mask));
+				col += count;
 			}
-
-			srcCol = 0;
-			srcRow++;
 		}
 	}
 
 	/**
-	 * set a full byte of pixels
-	 */
-//	private void setPixelByte(int col, int row, byte bits) {
-		//data.setByte(row, col, bits);
-//	}
-
-	/**
-	 * get a byte of pixels
+	 * The 8 pixels of a row starting at <code>col</code>, the leftmost pixel
+	 * in the most significant bit. Pixels beyond the row are 0.
 	 */
-//	public byte getPixelByte(int col, int row) {
-		//return data.getByte(row, col);
-//	}
+	private static int getByte(byte[] data, int offset, int line, int col) {
+		int index = col >> 3;
+		int shift = col & 7;
+		int value = (data[offset + index] & 0xff) << shift;
+		if (shift != 0 && index + 1 < line) {
+			value |= (data[offset + index + 1] & 0xff) >> (8 - shift);
+		}
+		return value & 0xff;
+	}
 
 	private void duplicateRow(int yDest, int ySrc) {
-//		for (int i = 0; i < width;) {
-//			setPixelByte(i, yDest, getPixelByte(i, ySrc));
-//			i += 8;
-//		}
-		for (int i = 0; i < width; i++) {
-			setPixel(i, yDest, getPixel(i, ySrc));
+		if (ySrc < 0) {
+			Arrays.fill(data, yDest * line, (yDest + 1) * line, (byte) 0);
+			return;
 		}
+		System.arraycopy(data, ySrc * line, data, yDest * line, line);
 	}
 
 	public int getWidth() {
@@ -905,158 +879,156 @@ public final class JBIG2Bitmap {
 		return height;
 	}
 
+	/**
+	 * A copy of the pixels, packed into rows of whole bytes with the leftmost
+	 * pixel in the most significant bit.
+	 * 
+	 * @param switchPixelColor
+	 *            <code>true</code> to invert the pixels (1 is white)
+	 */
 	public byte[] getData(boolean switchPixelColor) {
-//		byte[] bytes = new byte[height * line];
-//
-//		for (int i = 0; i < height; i++) {
-//			System.arraycopy(data.bytes[i], 0, bytes, line * i, line);
-//		}
-//
-//		for (int i = 0; i < bytes.length; i++) {
-//			// reverse bits
-//
-//			int value = bytes[i];
-//			value = (value & 0x0f) << 4 | (value & 0xf0) >> 4;
-//			value = (value & 0x33) << 2 | (value & 0xcc) >> 2;
-//			value = (value & 0x55) << 1 | (value & 0xaa) >> 1;
-//
-//			if (switchPixelColor) {
-//				value ^= 0xff;
-//			}
-//
-//			bytes[i] = (byte) (value & 0xFF);
-//		}
-//
-//		return bytes;
-		byte[] bytes = new byte[height * line];
-
-		int count = 0, offset = 0;
-		for (int row = 0; row < height; row++) {
-			for (int col = 0; col < width; col++) {
-				if (data.get(count)) {
-					int bite = (count + offset) / 8;
-					int bit = (count + offset) % 8;
-
-					bytes[bite] |= 1 << (7 - bit);
-				}
-				count++;
+		byte[] bytes = new byte[data.length];
+		if (switchPixelColor) {
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte) ~data[i];
 			}
-
-			offset = (line * 8 * (row + 1)) - count;
+		} else {
+			System.arraycopy(data, 0, bytes, 0, data.length);
 		}
+		return bytes;
+	}
 
+	/**
+	 * The pixels in the layout of {@link #getData(boolean)}, without copying.
+	 * <p>
+	 * The result is the bitmaps own storage, which is inverted in place if
+	 * <code>switchPixelColor</code> is set. The bitmap must not be used after
+	 * this call.
+	 * 
+	 * @param switchPixelColor
+	 *            <code>true</code> to invert the pixels (1 is white)
+	 */
+	public byte[] releaseData(boolean switchPixelColor) {
+		byte[] bytes = data;
 		if (switchPixelColor) {
 			for (int i = 0; i < bytes.length; i++) {
-				bytes[i] ^= 0xff;
+				bytes[i] = (byte) ~bytes[i];
 			}
 		}
-
+		data = null;
 		return bytes;
 	}
 
 	public JBIG2Bitmap getSlice(int x, int y, int width, int height) {
-//		JBIG2Bitmap slice = new JBIG2Bitmap(width, height);
-//
-//		int sliceRow = 0, sliceCol = 0;
-//		int maxCol = x + width;
-//		
-//		//ShowGUIMessage.showGUIMessage("x", this.getBufferedImage(), "xx");
-//		
-//		System.out.println(">>> getSlice x = "+x+" y = "+y+ " width = "+width+ " height = "+height);
-//		System.out.println(">>> baseImage width = "+this.width+ " height = "+this.height);
-//		
-//		System.out.println("counter = "+counter);
-//		if(counter == 17){
-//			System.out.println();
-//			//ShowGUIMessage.showGUIMessage("x", this.getBufferedImage(), "xx");
-//		}
-//		
-//		ShowGUIMessage.showGUIMessage("x", this.getBufferedImage(), "xx");
-//		
-//		for (int row = y; row < height; row++) {
-//			for (int col = x; col < maxCol; col += 8, sliceCol += 8) {
-//				slice.setPixelByte(sliceCol, sliceRow, getPixelByte(col, row));
-//				//if(counter > 10)
-//					//ShowGUIMessage.showGUIMessage("new", slice.getBufferedImage(), "new");
-//			}
-//			sliceCol = 0;
-//			sliceRow++;
-//		}
-//		counter++;
-//
-//		ShowGUIMessage.showGUIMessage("new", slice.getBufferedImage(), "new");
-//		
-//		return slice;
-		
 		JBIG2Bitmap slice = new JBIG2Bitmap(width, height, arithmeticDecoder, huffmanDecoder, mmrDecoder);
 
-		int sliceRow = 0, sliceCol = 0;
-		for (int row = y; row < height; row++) {
-			for (int col = x; col < x + width; col++) {
-				//System.out.println("row = "+row +" column = "+col);
-				slice.setPixel(sliceCol, sliceRow, getPixel(col, row));
-				sliceCol++;
+		int endRow = Math.min(y + height, this.height);
+		for (int row = Math.max(y, 0); row < endRow; row++) {
+			int srcOffset = row * line;
+			int dstOffset = (row - y) * slice.line;
+			for (int i = 0; i < slice.line; i++) {
+				int col = x + (i << 3);
+				int value;
+				if (col >= 0) {
+					value = col < this.width ? getByte(data, srcOffset, line, col) : 0;
+				} else if (col > -8) {
+					value = getByte(data, srcOffset, line, 0) >> -col;
+				} else {
+					value = 0;
+				}
+				slice.data[dstOffset + i] = (byte) value;
 			}
-			sliceCol = 0;
-			sliceRow++;
 		}
+		slice.clearPadding();
 
 		return slice;
 	}
 
-	/**
-	private static void setPixel(int col, int row, FastBitSet data, int value) {
-		if (value == 1)
-			data.set(row, col);
-		else
-			data.clear(row, col);
-	}/**/
-
-//	private void setPixelByte(int col, int row, FastBitSet data, byte bits) {
-//		data.setByte(row, col, bits);
-//	}
-
-//	public void setPixel(int col, int row, int value) {
-//		setPixel(col, row, data, value);
-//	}
-
-//	public int getPixel(int col, int row) {
-//		return data.get(row, col) ? 1 : 0;
-//	}
+	private int getRowOffset(int row) {
+		if (row < 0 || row >= height) {
+			return -1;
+		}
+		return row * line;
+	}
 
-	private void setPixel(int col, int row, BitSet data, int value) {
-		int index = (row * width) + col;
+	/**
+	 * The pixel at <code>col</code> in the row starting at
+	 * <code>offset</code>, 0 if outside the bitmap.
+	 */
+	private int getPixelAt(int offset, int col) {
+		if (offset < 0 || col < 0 || col >= width) {
+			return 0;
+		}
+		return (data[offset + (col >> 3)] >> (7 - (col & 7))) & 1;
+	}
 
-		data.set(index, value == 1);
+	/**
+	 * Set the pixels <code>startCol</code> (inclusive) to
+	 * <code>endCol</code> (exclusive) of <code>row</code> to 1.
+	 */
+	private void setPixels(int row, int startCol, int endCol) {
+		if (startCol < 0) {
+			startCol = 0;
+		}
+		if (endCol > width) {
+			endCol = width;
+		}
+		if (startCol >= endCol) {
+			return;
+		}
+		int offset = row * line;
+		int first = startCol >> 3;
+		int last = (endCol - 1) >> 3;
+		int firstMask = 0xff >> (startCol & 7);
+		int lastMask = 0xff << (7 - ((endCol - 1) & 7));
+		if (first == last) {
+			data[offset + first] |= firstMask & lastMask;
+			return;
+		}
+		data[offset + first] |= firstMask;
+		if (last > first + 1) {
+			Arrays.fill(data, offset + first + 1, offset + last, (byte) 0xff);
+		}
+		data[offset + last] |= lastMask;
 	}
 
 	public void setPixel(int col, int row, int value) {
-		setPixel(col, row, data, value);
+		if (col < 0 || col >= width || row < 0 || row >= height) {
+			return;
+		}
+		int index = (row * line) + (col >> 3);
+		int bit = 0x80 >> (col & 7);
+		if (value == 1) {
+			data[index] |= bit;
+		} else {
+			data[index] &= ~bit;
+		}
 	}
 
 	public int getPixel(int col, int row) {
-		return data.get((row * width) + col) ? 1 : 0;
+		if (row < 0 || row >= height) {
+			return 0;
+		}
+		return getPixelAt(row * line, col);
+	}
+
+	/**
+	 * The packed rows, see {@link #data}.
+	 */
+	byte[] getBytes() {
+		return data;
+	}
+
+	/**
+	 * The number of bytes in a row.
+	 */
+	int getLine() {
+		return line;
 	}
 	
 	public void expand(int newHeight, int defaultPixel) {
-//		System.out.println("expand FastBitSet");
-//		FastBitSet newData = new FastBitSet(width, newHeight);
-//
-//		for (int row = 0; row < height; row++) {
-//			for (int col = 0; col < width; col += 8) {
-//				setPixelByte(col, row, newData, getPixelByte(col, row));
-//			}
-//		}
-//
-//		this.height = newHeight;
-//		this.data = newData;
-		BitSet newData = new BitSet(newHeight * width);
-
-		for (int row = 0; row < height; row++) {
-			for (int col = 0; col < width; col++) {
-				setPixel(col, row, newData, getPixel(col, row));
-			}
-		}
+		byte[] newData = new byte[newHeight * line];
+		System.arraycopy(data, 0, newData, 0, Math.min(data.length, newData.length));
 
 		this.height = newHeight;
 		this.data = newData;
@@ -1071,18 +1043,14 @@ public final class JBIG2Bitmap {
 	}
 
 	public BufferedImage getBufferedImage() {
+		// getData returns a copy we can hand out
 		byte[] bytes = getData(true);
 
 		if (bytes == null)
 			return null;
 
-		// make a a DEEP copy so we can't alter
-		int len = bytes.length;
-		byte[] copy = new byte[len];
-		System.arraycopy(bytes, 0, copy, 0, len);
-
 		/** create an image from the raw data */
-		DataBuffer db = new DataBufferByte(copy, copy.length);
+		DataBuffer db = new DataBufferByte(bytes, bytes.length);
 
 		WritableRaster raster = Raster.createPackedRaster(db, width, height, 1, null);
 
@@ -1091,147 +1059,4 @@ public final class JBIG2Bitmap {
 
 		return image;
 	}
-
-	static final class FastBitSet {
-		byte[][] bytes;
-
-		int w, h;
-		
-		public FastBitSet(int width, int height) {
-			bytes = new byte[height][(width + 7) / 8];
-			this.w = width;
-			this.h = height;
-			//System.out.println("width = "+width+" height = "+height);
-		}
-
-//		public int getByte(int row, int col) {
-//			
-//			System.out.println("(width + 7) / 8 = " + (width + 7) / 8);
-//			System.out.println("external width = " + width + " external height = " + height);
-//			System.out.println("internal width = " + w + " internal height = " + h);
-//			System.out.println("row = " + row + " column = " + col);
-//			
-//			int offset = col / 8;
-//			int mod = col % 8;
-//
-//			System.out.println("offset = " + offset + " mod = " + mod+" bytes[row].length = "+bytes[row].length);
-//			
-//			if (mod == 0)
-//				return bytes[row][offset];
-//
-//			if(offset == bytes[row].length - 1){
-//				System.out.println("returning");
-//				return ((bytes[row][offset] & 0xFF) >> mod);
-//			}
-//			
-//			int left = ((bytes[row][offset] & 0xFF) >> mod);
-//			int right = ((bytes[row][offset + 1] & 0xFF) << (8 - mod));
-//			
-//			return left | right;
-//		}
-
-//		public void setByte(int row, int col, int bits) {
-//			int offset = col / 8;
-//			int mod = col % 8;
-//
-//			System.out.println("setByte offset = " + offset + " mod = " + mod);
-//			
-//			
-//			if (mod == 0)
-//				bytes[row][offset] = (byte) bits;
-//			else {
-//				int mask = 0xFF >> (8 - mod);
-//				System.out.println("setByte mask = " + mask);
-//				bytes[row][offset] = (byte) ((bytes[row][offset] & mask) | ((bits & 0xFF) << mod));
-//				bytes[row][offset + 1] = (byte) ((bytes[row][offset + 1] & ~mask) | ((bits & 0xFF) >> (8 - mod)));
-//			}
-//		}
-
-		public byte getByte(int row, int col) {
-//			System.out.println("(width + 7) / 8 = " + (width + 7) / 8);
-//			System.out.println("external width = " + width + " external height = " + height);
-//			System.out.println("internal width = " + w + " internal height = " + h);
-//			System.out.println("row = " + row + " column = " + col);
-			
-			int offset = col / 8;
-			int mod = col % 8;
-
-//			System.out.println("offset = " + offset + " mod = " + mod+" bytes[row].length = "+bytes[row].length);
-			
-			if (mod == 0)
-				return bytes[row][offset];
-
-//			if(offset == bytes[row].length - 1){
-//				System.out.println("returning");
-//				return ((bytes[row][offset] & 0xFF) >> mod);
-//			}
-			
-			byte leftMask = (byte) (0xFF >> (8 - mod));
-			byte rightMask = (byte) (0xFF << mod);
-			
-			byte left = (byte) ((bytes[row][offset] & leftMask) << (8 - mod));
-			
-			if(offset + 1 >= bytes[row].length){
-				System.out.println("returning");
-				return left;
-			}
-			
-			byte right = (byte) ((bytes[row][offset + 1] & rightMask) >> mod);
-			
-			return (byte) (left | right);
-		}
-		
-		public void setByte(int row, int col, byte bits) {
-			int offset = col / 8;
-			int mod = col % 8;
-
-			//System.out.println("setByte offset = " + offset + " mod = " + mod);
-			
-			
-			if (mod == 0)
-				bytes[row][offset] = (byte) bits;
-			else {
-				
-				byte left = (byte) (bits >> mod);
-				byte leftMask = (byte) (0xFF << (8 - mod));
-				
-				bytes[row][offset] &= leftMask;
-				bytes[row][offset] |= left;
-				
-				if(offset + 1 >= bytes[row].length)
-					return;
-				
-				byte right = (byte) (bits << (8 - mod));
-				byte rightMask = (byte) (0xFF >> mod);
-				
-				bytes[row][offset + 1] &= rightMask;
-				bytes[row][offset + 1] |= right;
-				
-//				int mask = 0xFF >> (8 - mod);
-//				System.out.println("setByte mask = " + mask);
-//				bytes[row][offset] = (byte) ((bytes[row][offset] & mask) | ((bits & 0xFF) << mod));
-//				bytes[row][offset + 1] = (byte) ((bytes[row][offset + 1] & ~mask) | ((bits & 0xFF) >> (8 - mod)));
-			}
-		}
-		
-		public void set(int row, int col) {
-			byte bit = (byte) (1 << (col % 8));
-			bytes[row][col / 8] |= bit;
-		}
-
-		public void clear(int row, int col) {
-			byte bit = (byte) (1 << (col % 8));
-			bytes[row][col / 8] &= ~bit;
-		}
-
-		public boolean get(int row, int col) {
-			byte bit = (byte) (1 << (col % 8));
-			return (bytes[row][col / 8] & bit) != 0;
-		}
-
-		public void reset(boolean set) {
-			for (int i = 0; i < bytes.length; i++)
-				Arrays.fill(bytes[i], set ? (byte) 0xFF : (byte) 0x00);
-		}
-	}
 }